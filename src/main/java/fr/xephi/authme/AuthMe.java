@@ -24,10 +24,12 @@ import fr.xephi.authme.security.crypts.Sha256;
 import fr.xephi.authme.service.BackupService;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.service.MigrationService;
+import fr.xephi.authme.service.VpnDetectionService;
 import fr.xephi.authme.service.bungeecord.BungeeReceiver;
 import fr.xephi.authme.service.yaml.YamlParseException;
 import fr.xephi.authme.settings.Settings;
 import fr.xephi.authme.settings.SettingsWarner;
+import fr.xephi.authme.settings.properties.RestrictionSettings;
 import fr.xephi.authme.settings.properties.SecuritySettings;
 import fr.xephi.authme.task.CleanupTask;
 import fr.xephi.authme.task.purge.PurgeService;
@@ -308,6 +310,15 @@ public class AuthMe extends JavaPlugin {
             onShutdownPlayerSaver.saveAllPlayers();
         }
 
+        // Save the VPN check results if enabled
+        VpnDetectionService vpnDetectionService = injector == null
+            ? null
+            : injector.getIfAvailable(VpnDetectionService.class);
+        if (vpnDetectionService != null && settings != null
+            && settings.getProperty(RestrictionSettings.ENABLE_VPN_CACHE_PERSISTENCE)) {
+            vpnDetectionService.saveSnapshot();
+        }
+
         // Do backup on stop if enabled
         if (backupService != null) {
             backupService.doBackup(BackupService.BackupCause.STOP);
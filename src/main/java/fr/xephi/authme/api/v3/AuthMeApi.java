@@ -3,6 +3,7 @@ package fr.xephi.authme.api.v3;
 import fr.xephi.authme.AuthMe;
 import fr.xephi.authme.data.auth.PlayerAuth;
 import fr.xephi.authme.data.auth.PlayerCache;
+import fr.xephi.authme.datasource.AuthProjection;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.process.Management;
 import fr.xephi.authme.process.register.executors.ApiPasswordRegisterParams;
@@ -331,7 +332,7 @@ public class AuthMeApi {
      */
     public List<String> getRegisteredNames() {
         List<String> registeredNames = new ArrayList<>();
-        dataSource.getAllAuths().forEach(auth -> registeredNames.add(auth.getNickname()));
+        dataSource.forEachName(registeredNames::add);
         return registeredNames;
     }
 
@@ -342,7 +343,7 @@ public class AuthMeApi {
      */
     public List<String> getRegisteredRealNames() {
         List<String> registeredNames = new ArrayList<>();
-        dataSource.getAllAuths().forEach(auth -> registeredNames.add(auth.getRealName()));
+        dataSource.forEachAuth(AuthProjection.NAMES, auth -> registeredNames.add(auth.getRealName()));
         return registeredNames;
     }
 
@@ -2,6 +2,7 @@ package fr.xephi.authme.command.executable.authme;
 
 import fr.xephi.authme.command.ExecutableCommand;
 import fr.xephi.authme.data.auth.PlayerAuth;
+import fr.xephi.authme.datasource.AuthProjection;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.message.MessageKey;
 import fr.xephi.authme.service.CommonService;
@@ -26,11 +27,12 @@ public class PurgeLastPositionCommand implements ExecutableCommand {
         String playerName = arguments.isEmpty() ? sender.getName() : arguments.get(0);
 
         if ("*".equals(playerName)) {
-            for (PlayerAuth auth : dataSource.getAllAuths()) {
+            // All columns are needed as updateQuitLoc also writes the yaw and pitch
+            dataSource.forEachAuth(AuthProjection.ALL, auth -> {
                 resetLastPosition(auth);
                 dataSource.updateQuitLoc(auth);
                 // TODO: send an update when a messaging service will be implemented (QUITLOC)
-            }
+            });
             sender.sendMessage("All players last position locations are now reset");
         } else {
             // Get the user auth and make sure the user exists
@@ -34,8 +34,8 @@ public class ResetIpCommand implements ExecutableCommand {
     public void executeCommand(CommandSender sender, List<String> arguments) {
         if (arguments.isEmpty()) {
             // Reset all IP cache and database
-            ipRestrictionService.clearAllCache();
             int clearedAccounts = dataSource.clearAllLastIp();
+            ipRestrictionService.processAllLastIpsCleared();
             commonService.send(sender, MessageKey.IP_CACHE_CLEARED);
             commonService.send(sender, MessageKey.IP_DATA_CLEARED_ALL, Integer.toString(clearedAccounts));
             return;
@@ -63,8 +63,8 @@ public class ResetIpCommand implements ExecutableCommand {
         }
 
         // Reset cache and database for the specific IP
-        ipRestrictionService.invalidateCache(ipToReset);
         int clearedAccounts = dataSource.clearLastIpForIp(ipToReset);
+        ipRestrictionService.processLastIpCleared(ipToReset);
         commonService.send(sender, MessageKey.IP_CACHE_RESET, ipToReset);
 
         commonService.send(sender, MessageKey.IP_RESET_COMPLETE, ipToReset);
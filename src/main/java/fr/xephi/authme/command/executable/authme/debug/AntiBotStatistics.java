@@ -0,0 +1,62 @@
+package fr.xephi.authme.command.executable.authme.debug;
+
+import fr.xephi.authme.permission.DebugSectionPermissions;
+import fr.xephi.authme.permission.PermissionNode;
+import fr.xephi.authme.service.AdmissionControlService;
+import fr.xephi.authme.service.AntiBotService;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import javax.inject.Inject;
+import java.util.List;
+
+/**
+ * Outputs statistics of the protection against connection floods.
+ */
+class AntiBotStatistics implements DebugSection {
+
+    @Inject
+    private AdmissionControlService admissionControlService;
+
+    @Inject
+    private AntiBotService antiBotService;
+
+    @Override
+    public String getName() {
+        return "antibot";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Outputs connection rate limit and antibot statistics";
+    }
+
+    @Override
+    public PermissionNode getRequiredPermission() {
+        return DebugSectionPermissions.ANTIBOT_STATISTICS;
+    }
+
+    @Override
+    public void execute(CommandSender sender, List<String> arguments) {
+        sender.sendMessage(ChatColor.BLUE + "AuthMe antibot statistics");
+        sender.sendMessage("Connection rate limit enabled: " + admissionControlService.isEnabled());
+        sender.sendMessage("Admitted connections: " + admissionControlService.getAdmittedCount());
+        sender.sendMessage("Refused connections: " + admissionControlService.getIpRejectCount() + " by IP limit, "
+            + admissionControlService.getSubnetRejectCount() + " by subnet limit, "
+            + admissionControlService.getGlobalRejectCount() + " by global limit");
+        sender.sendMessage("Tracked IP addresses and subnets: " + admissionControlService.getTrackedAddressCount());
+        outputAntiBotStats(sender);
+    }
+
+    private void outputAntiBotStats(CommandSender sender) {
+        sender.sendMessage("AntiBot status: " + antiBotService.getAntiBotStatus() + ", activated "
+            + antiBotService.getActivationCount() + " times");
+        if (antiBotService.isAdaptive()) {
+            sender.sendMessage(String.format("Joins in interval: %d, usual joins: %.2f, activation threshold: %.2f",
+                antiBotService.getJoinRate(), antiBotService.getJoinRateBaseline(),
+                antiBotService.getActivationThreshold()));
+        } else {
+            sender.sendMessage("Adaptive antibot: disabled");
+        }
+    }
+}
@@ -65,12 +65,18 @@ class CountryLookup implements DebugSection {
     private void outputInfoForIpAddr(CommandSender sender, String ipAddr) {
         sender.sendMessage("IP '" + ipAddr + "' maps to country '" + geoIpService.getCountryCode(ipAddr)
             + "' (" + geoIpService.getCountryName(ipAddr) + ")");
+        long asn = geoIpService.getAsn(ipAddr);
+        if (asn >= 0) {
+            sender.sendMessage("IP '" + ipAddr + "' belongs to network AS" + asn);
+        }
         if (validationService.isCountryAdmitted(ipAddr)) {
             sender.sendMessage(ChatColor.DARK_GREEN + "This IP address' country is not blocked");
         } else {
             sender.sendMessage(ChatColor.DARK_RED + "This IP address' country is blocked from the server");
         }
         sender.sendMessage("Note: if " + ProtectionSettings.ENABLE_PROTECTION + " is false no country is blocked");
+        sender.sendMessage("Country cache: " + geoIpService.getCachedCountryCount() + " IP addresses, "
+            + geoIpService.getCacheHitCount() + " hits, " + geoIpService.getCacheMissCount() + " misses");
     }
 
     // TODO #1366: Extend with registration IP?
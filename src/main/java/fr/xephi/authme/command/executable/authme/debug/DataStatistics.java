@@ -5,6 +5,7 @@ import fr.xephi.authme.data.auth.PlayerCache;
 import fr.xephi.authme.data.limbo.LimboService;
 import fr.xephi.authme.datasource.CacheDataSource;
 import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.datasource.RegisteredNamesFilter;
 import fr.xephi.authme.initialization.HasCleanup;
 import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.initialization.SettingsDependent;
@@ -68,6 +69,22 @@ class DataStatistics implements DebugSection {
         if (dataSource instanceof CacheDataSource) {
             CacheDataSource cacheDataSource = (CacheDataSource) this.dataSource;
             sender.sendMessage("Cached PlayerAuth objects: " + cacheDataSource.getCachedAuths().size());
+            outputRegisteredNamesFilterStats(sender, cacheDataSource.getRegisteredNamesFilter());
+            if (cacheDataSource.isWriteBehindEnabled()) {
+                sender.sendMessage("Buffered player updates: " + cacheDataSource.getPendingWritesCount());
+            }
+        }
+    }
+
+    private static void outputRegisteredNamesFilterStats(CommandSender sender, RegisteredNamesFilter filter) {
+        if (filter == null) {
+            sender.sendMessage("Registered names filter: disabled");
+        } else if (!filter.isLoaded()) {
+            sender.sendMessage("Registered names filter: loading");
+        } else {
+            sender.sendMessage(String.format("Registered names filter: ~%d names, %.3f%% false positives, "
+                + "%d lookups skipped", filter.getApproximateSize(), filter.getFalsePositiveRate() * 100,
+                filter.getNegativeLookups()));
         }
     }
 
@@ -22,7 +22,8 @@ public class DebugCommand implements ExecutableCommand {
     private static final Set<Class<? extends DebugSection>> SECTION_CLASSES = ImmutableSet.of(
         PermissionGroups.class, DataStatistics.class, CountryLookup.class, PlayerAuthViewer.class, InputValidator.class,
         LimboPlayerViewer.class, CountryLookup.class, HasPermissionChecker.class, TestEmailSender.class,
-        SpawnLocationViewer.class, MySqlDefaultChanger.class);
+        SpawnLocationViewer.class, MySqlDefaultChanger.class, QueryPlanAuditor.class,
+        VpnDetectionStatistics.class, AntiBotStatistics.class);
 
     @Inject
     private Factory<DebugSection> debugSectionFactory;
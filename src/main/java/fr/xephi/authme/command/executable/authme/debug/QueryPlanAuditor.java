@@ -0,0 +1,77 @@
+package fr.xephi.authme.command.executable.authme.debug;
+
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.datasource.AbstractSqlDataSource;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.datasource.QueryPlan;
+import fr.xephi.authme.output.ConsoleLoggerFactory;
+import fr.xephi.authme.permission.DebugSectionPermissions;
+import fr.xephi.authme.permission.PermissionNode;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import javax.inject.Inject;
+import java.util.List;
+
+import static fr.xephi.authme.command.executable.authme.debug.DebugSectionUtils.castToTypeOrNull;
+import static fr.xephi.authme.command.executable.authme.debug.DebugSectionUtils.unwrapSourceFromCacheDataSource;
+
+/**
+ * Runs EXPLAIN on the frequently executed queries of the SQL data source and
+ * warns about queries which cannot use an index.
+ */
+class QueryPlanAuditor implements DebugSection {
+
+    private final ConsoleLogger logger = ConsoleLoggerFactory.get(QueryPlanAuditor.class);
+
+    @Inject
+    private DataSource dataSource;
+
+    @Override
+    public String getName() {
+        return "queryplan";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Checks that frequent database queries use an index";
+    }
+
+    @Override
+    public PermissionNode getRequiredPermission() {
+        return DebugSectionPermissions.QUERY_PLAN_AUDITOR;
+    }
+
+    @Override
+    public void execute(CommandSender sender, List<String> arguments) {
+        AbstractSqlDataSource sqlDataSource =
+            castToTypeOrNull(unwrapSourceFromCacheDataSource(dataSource), AbstractSqlDataSource.class);
+        if (sqlDataSource == null) {
+            sender.sendMessage("Query plans can only be checked for SQL data sources.");
+            return;
+        }
+
+        sender.sendMessage(ChatColor.BLUE + "AuthMe query plans");
+        List<QueryPlan> plans = sqlDataSource.explainHotQueries();
+        if (plans.isEmpty()) {
+            sender.sendMessage(ChatColor.RED + "Could not get the query plans. Please see the console for details.");
+            return;
+        }
+
+        int fullScans = 0;
+        for (QueryPlan plan : plans) {
+            if (plan.isFullScan()) {
+                ++fullScans;
+                sender.sendMessage(ChatColor.RED + plan.getQueryName() + ": full table scan");
+                logger.warning("Query '" + plan.getQueryName() + "' scans the entire table: " + plan.getPlanRows());
+            } else {
+                sender.sendMessage(ChatColor.GREEN + plan.getQueryName() + ": uses index");
+            }
+            plan.getPlanRows().forEach(row -> sender.sendMessage(ChatColor.GRAY + " " + row));
+        }
+        if (fullScans > 0) {
+            sender.sendMessage(fullScans + " queries scan the entire table. Note that databases may prefer "
+                + "a table scan for small tables even if an index exists.");
+        }
+    }
+}
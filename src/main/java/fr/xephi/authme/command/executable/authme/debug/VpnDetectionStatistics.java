@@ -0,0 +1,92 @@
+package fr.xephi.authme.command.executable.authme.debug;
+
+import fr.xephi.authme.permission.DebugSectionPermissions;
+import fr.xephi.authme.permission.PermissionNode;
+import fr.xephi.authme.service.ReverseDnsResolver;
+import fr.xephi.authme.service.VpnDetectionService;
+import fr.xephi.authme.service.VpnRangeFileLoader;
+import fr.xephi.authme.util.CidrRangeSet;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import javax.inject.Inject;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Outputs statistics of the VPN detection, such as the ranges loaded from the VPN range files
+ * and the reverse DNS lookups.
+ */
+class VpnDetectionStatistics implements DebugSection {
+
+    @Inject
+    private VpnDetectionService vpnDetectionService;
+
+    @Inject
+    private VpnRangeFileLoader vpnRangeFileLoader;
+
+    @Inject
+    private ReverseDnsResolver reverseDnsResolver;
+
+    @Override
+    public String getName() {
+        return "vpn";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Outputs VPN detection statistics";
+    }
+
+    @Override
+    public PermissionNode getRequiredPermission() {
+        return DebugSectionPermissions.VPN_DETECTION_STATISTICS;
+    }
+
+    @Override
+    public void execute(CommandSender sender, List<String> arguments) {
+        sender.sendMessage(ChatColor.BLUE + "AuthMe VPN detection statistics");
+        sender.sendMessage("VPN detection enabled: " + vpnDetectionService.isVpnDetectionEnabled());
+        sender.sendMessage("Cached VPN check results: " + vpnDetectionService.getCachedResultCount());
+        outputRangeFileStats(sender);
+        outputReverseDnsStats(sender);
+    }
+
+    private void outputRangeFileStats(CommandSender sender) {
+        VpnRangeFileLoader.LoadStatistics lastLoad = vpnRangeFileLoader.getLastLoad();
+        if (lastLoad == null) {
+            sender.sendMessage("VPN range files: not loaded");
+            return;
+        }
+
+        CidrRangeSet ranges = vpnRangeFileLoader.getRanges();
+        sender.sendMessage("VPN range files: " + lastLoad.getFileCount() + " files, loaded at "
+            + new Date(lastLoad.getTimestamp()) + " in " + lastLoad.getLoadTimeMillis() + " ms");
+        sender.sendMessage("Ranges: " + ranges.getRangeCount() + " (merged into " + ranges.getIntervalCount()
+            + " intervals), invalid lines: " + lastLoad.getInvalidLines());
+        sender.sendMessage("Memory footprint: " + formatBytes(ranges.getMemoryFootprint()));
+        if (ranges.getRangeCount() > 0) {
+            long perMillion = ranges.getMemoryFootprint() * 1_000_000L / ranges.getRangeCount();
+            long loadTimePerMillion = lastLoad.getLoadTimeMillis() * 1_000_000L / ranges.getRangeCount();
+            sender.sendMessage("Per million ranges: " + formatBytes(perMillion) + ", " + loadTimePerMillion
+                + " ms load time");
+        }
+    }
+
+    private void outputReverseDnsStats(CommandSender sender) {
+        sender.sendMessage("Reverse DNS lookups: " + reverseDnsResolver.getLookupCount() + " started, "
+            + reverseDnsResolver.getPendingLookups() + " running, " + reverseDnsResolver.getTimeoutCount()
+            + " timed out, " + reverseDnsResolver.getRejectedCount() + " rejected (pool busy)");
+        sender.sendMessage("Cached host names: " + reverseDnsResolver.getCachedHostNames()
+            + ", cached IPs without host name: " + reverseDnsResolver.getCachedIpsWithoutHostName());
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f KiB", bytes / 1024.0);
+        }
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,148 @@
+package fr.xephi.authme.data;
+
+import fr.xephi.authme.data.auth.PlayerCache;
+import fr.xephi.authme.service.BukkitService;
+import fr.xephi.authme.service.GeoIpService;
+import fr.xephi.authme.util.IpAddress;
+import fr.xephi.authme.util.PlayerUtils;
+import org.bukkit.entity.Player;
+
+import javax.inject.Inject;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the online players by IP address. It is updated when a player joins or quits, so that
+ * the number of online and logged in players of an IP address can be looked up without iterating
+ * over all online players or querying the database.
+ * <p>
+ * The index also keeps the country name of each online player once it has been looked up, so that
+ * it is only resolved once per connection.
+ */
+public class OnlinePlayerIpIndex {
+
+    private final PlayerCache playerCache;
+    private final GeoIpService geoIpService;
+
+    /** Lowercase names of the online players, by IP address. */
+    private final Map<IpAddress, Set<String>> namesByIp = new ConcurrentHashMap<>();
+    /** IP address of each online player, by lowercase name. */
+    private final Map<String, IpAddress> ipByName = new ConcurrentHashMap<>();
+    /** Country name of the online players whose country has been looked up, by lowercase name. */
+    private final Map<String, String> countryNameByName = new ConcurrentHashMap<>();
+
+    @Inject
+    OnlinePlayerIpIndex(BukkitService bukkitService, PlayerCache playerCache, GeoIpService geoIpService) {
+        this.playerCache = playerCache;
+        this.geoIpService = geoIpService;
+        // Players may already be online, e.g. when the plugin is reloaded
+        for (Player player : bukkitService.getOnlinePlayers()) {
+            processJoin(player);
+        }
+    }
+
+    /**
+     * Adds the player to the index.
+     *
+     * @param player the player who joined
+     */
+    public void processJoin(Player player) {
+        IpAddress ip = IpAddress.parse(PlayerUtils.getPlayerIp(player));
+        if (ip == null) {
+            return;
+        }
+        String name = player.getName().toLowerCase(Locale.ROOT);
+
+        countryNameByName.remove(name);
+        IpAddress previousIp = ipByName.put(name, ip);
+        if (previousIp != null && !previousIp.equals(ip)) {
+            removeFromIp(name, previousIp);
+        }
+        namesByIp.compute(ip, (k, names) -> {
+            Set<String> result = names == null ? ConcurrentHashMap.newKeySet() : names;
+            result.add(name);
+            return result;
+        });
+    }
+
+    /**
+     * Removes the player from the index.
+     *
+     * @param player the player who quit
+     */
+    public void processQuit(Player player) {
+        String name = player.getName().toLowerCase(Locale.ROOT);
+        countryNameByName.remove(name);
+        IpAddress ip = ipByName.remove(name);
+        if (ip != null) {
+            removeFromIp(name, ip);
+        }
+    }
+
+    /**
+     * Returns the number of online players with the given IP address.
+     *
+     * @param ip the IP address
+     * @return number of online players with the IP address
+     */
+    public int countOnlinePlayers(String ip) {
+        Set<String> names = getNames(ip);
+        return names == null ? 0 : names.size();
+    }
+
+    /**
+     * Returns the number of logged in players with the given IP address.
+     *
+     * @param ip the IP address
+     * @param excludedName name of a player not to count (e.g. the player who wants to log in)
+     * @return number of logged in players with the IP address
+     */
+    public int countLoggedInPlayers(String ip, String excludedName) {
+        Set<String> names = getNames(ip);
+        if (names == null) {
+            return 0;
+        }
+        String excluded = excludedName.toLowerCase(Locale.ROOT);
+        int count = 0;
+        for (String name : names) {
+            if (!name.equals(excluded) && playerCache.isAuthenticated(name)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the country name of the given player's IP address. It is looked up the first time
+     * and kept until the player quits.
+     *
+     * @param player the player
+     * @return the country name, as returned by {@link GeoIpService#getCountryName}
+     */
+    public String getCountryName(Player player) {
+        String name = player.getName().toLowerCase(Locale.ROOT);
+        String countryName = countryNameByName.get(name);
+        if (countryName == null) {
+            countryName = geoIpService.getCountryName(PlayerUtils.getPlayerIp(player));
+            // Only keep the country of indexed players, and not if the GeoIP database is unavailable
+            if (ipByName.containsKey(name) && !"N/A".equals(countryName)) {
+                countryNameByName.put(name, countryName);
+            }
+        }
+        return countryName;
+    }
+
+    private Set<String> getNames(String ip) {
+        IpAddress address = IpAddress.parse(ip);
+        return address == null ? null : namesByIp.get(address);
+    }
+
+    private void removeFromIp(String name, IpAddress ip) {
+        namesByIp.computeIfPresent(ip, (k, names) -> {
+            names.remove(name);
+            return names.isEmpty() ? null : names;
+        });
+    }
+}
@@ -7,6 +7,7 @@ import fr.xephi.authme.message.Messages;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.settings.Settings;
 import fr.xephi.authme.settings.properties.SecuritySettings;
+import fr.xephi.authme.util.IpAddress;
 import fr.xephi.authme.util.PlayerUtils;
 import fr.xephi.authme.util.expiring.TimedCounter;
 import org.bukkit.entity.Player;
@@ -24,7 +25,7 @@ import static fr.xephi.authme.util.Utils.MILLIS_PER_MINUTE;
  */
 public class TempbanManager implements SettingsDependent, HasCleanup {
 
-    private final Map<String, TimedCounter<String>> ipLoginFailureCounts;
+    private final Map<IpAddress, TimedCounter<String>> ipLoginFailureCounts;
     private final BukkitService bukkitService;
     private final Messages messages;
 
@@ -49,9 +50,10 @@ public class TempbanManager implements SettingsDependent, HasCleanup {
      * @param name The username
      */
     public void increaseCount(String address, String name) {
-        if (isEnabled) {
+        IpAddress ip = IpAddress.parse(address);
+        if (isEnabled && ip != null) {
             TimedCounter<String> countsByName = ipLoginFailureCounts.computeIfAbsent(
-                address, k -> new TimedCounter<>(resetThreshold, TimeUnit.MINUTES));
+                ip, k -> new TimedCounter<>(resetThreshold, TimeUnit.MINUTES));
             countsByName.increment(name);
         }
     }
@@ -63,8 +65,9 @@ public class TempbanManager implements SettingsDependent, HasCleanup {
      * @param name The username
      */
     public void resetCount(String address, String name) {
-        if (isEnabled) {
-            TimedCounter<String> counter = ipLoginFailureCounts.get(address);
+        IpAddress ip = IpAddress.parse(address);
+        if (isEnabled && ip != null) {
+            TimedCounter<String> counter = ipLoginFailureCounts.get(ip);
             if (counter != null) {
                 counter.remove(name);
             }
@@ -78,8 +81,9 @@ public class TempbanManager implements SettingsDependent, HasCleanup {
      * @return True if the IP should be tempbanned
      */
     public boolean shouldTempban(String address) {
-        if (isEnabled) {
-            TimedCounter<String> countsByName = ipLoginFailureCounts.get(address);
+        IpAddress ip = IpAddress.parse(address);
+        if (isEnabled && ip != null) {
+            TimedCounter<String> countsByName = ipLoginFailureCounts.get(ip);
             if (countsByName != null) {
                 return countsByName.total() >= threshold;
             }
@@ -115,7 +119,10 @@ public class TempbanManager implements SettingsDependent, HasCleanup {
                 }
             });
 
-            ipLoginFailureCounts.remove(ip);
+            IpAddress address = IpAddress.parse(ip);
+            if (address != null) {
+                ipLoginFailureCounts.remove(address);
+            }
         }
     }
 
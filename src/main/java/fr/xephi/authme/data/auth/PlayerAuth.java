@@ -117,10 +117,18 @@ public class PlayerAuth {
         return yaw;
     }
 
+    public void setYaw(float yaw) {
+        this.yaw = yaw;
+    }
+
     public float getPitch() {
         return pitch;
     }
 
+    public void setPitch(float pitch) {
+        this.pitch = pitch;
+    }
+
     public String getLastIp() {
         return lastIp;
     }
@@ -9,9 +9,18 @@ import fr.xephi.authme.datasource.columnshandler.AuthMeColumns;
 import fr.xephi.authme.datasource.columnshandler.AuthMeColumnsHandler;
 import fr.xephi.authme.security.crypts.HashedPassword;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 import static ch.jalu.datasourcecolumns.data.UpdateValues.with;
 import static ch.jalu.datasourcecolumns.predicate.StandardPredicates.eq;
@@ -20,16 +29,109 @@ import static fr.xephi.authme.datasource.SqlDataSourceUtils.logSqlException;
 
 /**
  * Common type for SQL-based data sources. Classes implementing this
- * must ensure that {@link #columnsHandler} is initialized on creation.
+ * must ensure that {@link #columnsHandler} is initialized on creation,
+ * and that {@link #initAsyncExecutor} is called before any async method is used.
  */
 public abstract class AbstractSqlDataSource implements DataSource {
 
     protected AuthMeColumnsHandler columnsHandler;
+    private ExecutorService asyncExecutor;
+
+    /**
+     * Creates the executor on which the {@link AsyncDataSource} methods are run.
+     *
+     * @param name the name of the executor
+     * @param threads the maximum number of threads (should not exceed the number of available connections)
+     */
+    protected void initAsyncExecutor(String name, int threads) {
+        SqlDataSourceUtils.shutdownDatabaseExecutor(asyncExecutor);
+        asyncExecutor = SqlDataSourceUtils.createDatabaseExecutor(name, threads);
+    }
+
+    /**
+     * Shuts down the executor of the {@link AsyncDataSource} methods, waiting for pending operations.
+     */
+    protected void shutdownAsyncExecutor() {
+        SqlDataSourceUtils.shutdownDatabaseExecutor(asyncExecutor);
+    }
+
+    /**
+     * Returns the columns handler to use for operations that only read data.
+     *
+     * @return the columns handler for read operations
+     */
+    protected AuthMeColumnsHandler getReadColumnsHandler() {
+        return columnsHandler;
+    }
+
+    /**
+     * Runs an operation that writes to the database. Data sources may override this method
+     * to run writes on a dedicated connection or thread.
+     *
+     * @param operation the write operation to run
+     * @param failureValue the value to return if the write could not be committed
+     * @param <T> the result type
+     * @return the result of the operation
+     */
+    protected <T> T write(Supplier<T> operation, T failureValue) {
+        return operation.get();
+    }
+
+    /**
+     * Runs an operation that writes to the database, see {@link #write(Supplier, Object)}.
+     *
+     * @param operation the write operation to run
+     */
+    protected void write(Runnable operation) {
+        write(() -> {
+            operation.run();
+            return null;
+        }, null);
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(operation, asyncExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> isAuthAvailableAsync(String user) {
+        return supplyAsync(() -> isAuthAvailable(user));
+    }
+
+    @Override
+    public CompletableFuture<PlayerAuth> getAuthAsync(String user) {
+        return supplyAsync(() -> getAuth(user));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> saveAuthAsync(PlayerAuth auth) {
+        return supplyAsync(() -> saveAuth(auth));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateSessionAsync(PlayerAuth auth) {
+        return supplyAsync(() -> updateSession(auth));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> commitLoginAsync(PlayerAuth auth, boolean grantSession) {
+        return supplyAsync(() -> commitLogin(auth, grantSession));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateQuitLocAsync(PlayerAuth auth) {
+        return supplyAsync(() -> updateQuitLoc(auth));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getAllAuthsByIpAsync(String ip) {
+        return supplyAsync(() -> getAllAuthsByIp(ip));
+    }
 
     @Override
     public boolean isAuthAvailable(String user) {
         try {
-            return columnsHandler.retrieve(user, AuthMeColumns.NAME).rowExists();
+            return getReadColumnsHandler().retrieve(user, AuthMeColumns.NAME).rowExists();
         } catch (SQLException e) {
             logSqlException(e);
             return false;
@@ -39,7 +141,8 @@ public abstract class AbstractSqlDataSource implements DataSource {
     @Override
     public HashedPassword getPassword(String user) {
         try {
-            DataSourceValues values = columnsHandler.retrieve(user, AuthMeColumns.PASSWORD, AuthMeColumns.SALT);
+            DataSourceValues values = getReadColumnsHandler().retrieve(user,
+                AuthMeColumns.PASSWORD, AuthMeColumns.SALT);
             if (values.rowExists()) {
                 return new HashedPassword(values.get(AuthMeColumns.PASSWORD), values.get(AuthMeColumns.SALT));
             }
@@ -51,16 +154,16 @@ public abstract class AbstractSqlDataSource implements DataSource {
 
     @Override
     public boolean saveAuth(PlayerAuth auth) {
-        return columnsHandler.insert(auth,
+        return write(() -> columnsHandler.insert(auth,
             AuthMeColumns.NAME, AuthMeColumns.NICK_NAME, AuthMeColumns.PASSWORD, AuthMeColumns.SALT,
             AuthMeColumns.EMAIL, AuthMeColumns.REGISTRATION_DATE, AuthMeColumns.REGISTRATION_IP,
-            AuthMeColumns.UUID);
+            AuthMeColumns.UUID), false);
     }
 
     @Override
     public boolean hasSession(String user) {
         try {
-            DataSourceValue<Integer> result = columnsHandler.retrieve(user, AuthMeColumns.HAS_SESSION);
+            DataSourceValue<Integer> result = getReadColumnsHandler().retrieve(user, AuthMeColumns.HAS_SESSION);
             return result.rowExists() && Integer.valueOf(1).equals(result.getValue());
         } catch (SQLException e) {
             logSqlException(e);
@@ -70,7 +173,8 @@ public abstract class AbstractSqlDataSource implements DataSource {
 
     @Override
     public boolean updateSession(PlayerAuth auth) {
-        return columnsHandler.update(auth, AuthMeColumns.LAST_IP, AuthMeColumns.LAST_LOGIN, AuthMeColumns.NICK_NAME);
+        return write(() -> columnsHandler.update(auth,
+            AuthMeColumns.LAST_IP, AuthMeColumns.LAST_LOGIN, AuthMeColumns.NICK_NAME), false);
     }
 
     @Override
@@ -80,57 +184,62 @@ public abstract class AbstractSqlDataSource implements DataSource {
 
     @Override
     public boolean updatePassword(String user, HashedPassword password) {
-        return columnsHandler.update(user,
+        return write(() -> columnsHandler.update(user,
             with(AuthMeColumns.PASSWORD, password.getHash())
-            .and(AuthMeColumns.SALT, password.getSalt()).build());
+            .and(AuthMeColumns.SALT, password.getSalt()).build()), false);
     }
 
     @Override
     public boolean updateQuitLoc(PlayerAuth auth) {
-        return columnsHandler.update(auth,
+        return write(() -> columnsHandler.update(auth,
             AuthMeColumns.LOCATION_X, AuthMeColumns.LOCATION_Y, AuthMeColumns.LOCATION_Z,
-            AuthMeColumns.LOCATION_WORLD, AuthMeColumns.LOCATION_YAW, AuthMeColumns.LOCATION_PITCH);
+            AuthMeColumns.LOCATION_WORLD, AuthMeColumns.LOCATION_YAW, AuthMeColumns.LOCATION_PITCH), false);
     }
 
     @Override
     public List<String> getAllAuthsByIp(String ip) {
         try {
-            return columnsHandler.retrieve(eq(AuthMeColumns.LAST_IP, ip), AuthMeColumns.NAME);
+            return getReadColumnsHandler().retrieve(eq(AuthMeColumns.LAST_IP, ip), AuthMeColumns.NAME);
         } catch (SQLException e) {
             logSqlException(e);
             return Collections.emptyList();
         }
     }
 
+    @Override
+    public int countAuthsByIp(String ip) {
+        return getReadColumnsHandler().count(eq(AuthMeColumns.LAST_IP, ip));
+    }
+
     @Override
     public boolean clearLastIp(String user) {
-        return columnsHandler.update(user, AuthMeColumns.LAST_IP, null);
+        return write(() -> columnsHandler.update(user, AuthMeColumns.LAST_IP, null), false);
     }
 
     @Override
     public int clearLastIpForIp(String ip) {
-        return columnsHandler.update(eq(AuthMeColumns.LAST_IP, ip), AuthMeColumns.LAST_IP, null);
+        return write(() -> columnsHandler.update(eq(AuthMeColumns.LAST_IP, ip), AuthMeColumns.LAST_IP, null), 0);
     }
 
     @Override
     public int clearAllLastIp() {
-        return columnsHandler.update(new AlwaysTruePredicate<>(), AuthMeColumns.LAST_IP, null);
+        return write(() -> columnsHandler.update(new AlwaysTruePredicate<>(), AuthMeColumns.LAST_IP, null), 0);
     }
 
     @Override
     public int countAuthsByEmail(String email) {
-        return columnsHandler.count(eqIgnoreCase(AuthMeColumns.EMAIL, email));
+        return getReadColumnsHandler().count(eqIgnoreCase(AuthMeColumns.EMAIL, email));
     }
 
     @Override
     public boolean updateEmail(PlayerAuth auth) {
-        return columnsHandler.update(auth, AuthMeColumns.EMAIL);
+        return write(() -> columnsHandler.update(auth, AuthMeColumns.EMAIL), false);
     }
 
     @Override
     public boolean isLogged(String user) {
         try {
-            DataSourceValue<Integer> result = columnsHandler.retrieve(user, AuthMeColumns.IS_LOGGED);
+            DataSourceValue<Integer> result = getReadColumnsHandler().retrieve(user, AuthMeColumns.IS_LOGGED);
             return result.rowExists() && Integer.valueOf(1).equals(result.getValue());
         } catch (SQLException e) {
             logSqlException(e);
@@ -140,48 +249,237 @@ public abstract class AbstractSqlDataSource implements DataSource {
 
     @Override
     public void setLogged(String user) {
-        columnsHandler.update(user, AuthMeColumns.IS_LOGGED, 1);
+        write(() -> columnsHandler.update(user, AuthMeColumns.IS_LOGGED, 1));
     }
 
     @Override
     public void setUnlogged(String user) {
-        columnsHandler.update(user, AuthMeColumns.IS_LOGGED, 0);
+        write(() -> columnsHandler.update(user, AuthMeColumns.IS_LOGGED, 0));
     }
 
     @Override
     public void grantSession(String user) {
-        columnsHandler.update(user, AuthMeColumns.HAS_SESSION, 1);
+        write(() -> columnsHandler.update(user, AuthMeColumns.HAS_SESSION, 1));
     }
 
     @Override
     public void revokeSession(String user) {
-        columnsHandler.update(user, AuthMeColumns.HAS_SESSION, 0);
+        write(() -> columnsHandler.update(user, AuthMeColumns.HAS_SESSION, 0));
+    }
+
+    /**
+     * Saves the login of a player, see {@link DataSource#commitLogin}. The changes are made in a transaction
+     * unless the connection is already part of one.
+     *
+     * @param con the connection to use
+     * @param tableName the name of the AuthMe table
+     * @param col the column names
+     * @param auth the auth with the new last IP, last login and real name
+     * @param grantSession whether the player should be granted a session
+     * @return the names of the accounts with the player's last IP address
+     * @throws SQLException :)
+     */
+    protected static List<String> commitLogin(Connection con, String tableName, Columns col, PlayerAuth auth,
+                                              boolean grantSession) throws SQLException {
+        if (!con.getAutoCommit()) {
+            return saveLoginAndGetAccounts(con, tableName, col, auth, grantSession);
+        }
+        con.setAutoCommit(false);
+        try {
+            List<String> accounts = saveLoginAndGetAccounts(con, tableName, col, auth, grantSession);
+            con.commit();
+            return accounts;
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    private static List<String> saveLoginAndGetAccounts(Connection con, String tableName, Columns col,
+                                                        PlayerAuth auth, boolean grantSession) throws SQLException {
+        String update = "UPDATE " + tableName + " SET " + col.LAST_IP + "=?, " + col.LAST_LOGIN + "=?, "
+            + col.REAL_NAME + "=?, " + col.IS_LOGGED + "=1"
+            + (grantSession ? ", " + col.HAS_SESSION + "=1" : "") + " WHERE " + col.NAME + "=?;";
+        try (PreparedStatement pst = con.prepareStatement(update)) {
+            pst.setString(1, auth.getLastIp());
+            if (auth.getLastLogin() == null) {
+                pst.setNull(2, Types.BIGINT);
+            } else {
+                pst.setLong(2, auth.getLastLogin());
+            }
+            pst.setString(3, auth.getRealName());
+            pst.setString(4, auth.getNickname());
+            pst.executeUpdate();
+        }
+
+        List<String> accounts = new ArrayList<>();
+        String select = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + col.LAST_IP + "=?;";
+        try (PreparedStatement pst = con.prepareStatement(select)) {
+            pst.setString(1, auth.getLastIp());
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    accounts.add(rs.getString(col.NAME));
+                }
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * Clears the session and logged in flags of the given user if the user has a session.
+     *
+     * @param con the connection to use
+     * @param tableName the name of the AuthMe table
+     * @param col the column names
+     * @param user the name of the user
+     * @return true if the user had a session, false otherwise
+     * @throws SQLException :)
+     */
+    protected static boolean clearSessionFlags(Connection con, String tableName, Columns col,
+                                               String user) throws SQLException {
+        String sql = "UPDATE " + tableName + " SET " + col.HAS_SESSION + "=0, " + col.IS_LOGGED + "=0 WHERE "
+            + col.NAME + "=? AND " + col.HAS_SESSION + "=1;";
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setString(1, user.toLowerCase(Locale.ROOT));
+            return pst.executeUpdate() > 0;
+        }
     }
 
     @Override
     public void purgeLogged() {
-        columnsHandler.update(eq(AuthMeColumns.IS_LOGGED, 1), AuthMeColumns.IS_LOGGED, 0);
+        write(() -> columnsHandler.update(eq(AuthMeColumns.IS_LOGGED, 1), AuthMeColumns.IS_LOGGED, 0));
     }
 
     @Override
     public int getAccountsRegistered() {
-        return columnsHandler.count(new AlwaysTruePredicate<>());
+        return getReadColumnsHandler().count(new AlwaysTruePredicate<>());
     }
 
     @Override
     public boolean updateRealName(String user, String realName) {
-        return columnsHandler.update(user, AuthMeColumns.NICK_NAME, realName);
+        return write(() -> columnsHandler.update(user, AuthMeColumns.NICK_NAME, realName), false);
+    }
+
+    @Override
+    public List<PlayerAuth> getAllAuths() {
+        List<PlayerAuth> auths = new ArrayList<>();
+        forEachAuth(AuthProjection.ALL, auths::add);
+        return auths;
     }
 
     @Override
     public DataSourceValue<String> getEmail(String user) {
         try {
-            return columnsHandler.retrieve(user, AuthMeColumns.EMAIL);
+            return getReadColumnsHandler().retrieve(user, AuthMeColumns.EMAIL);
         } catch (SQLException e) {
             logSqlException(e);
             return DataSourceValueImpl.unknownRow();
         }
     }
 
+    /**
+     * Creates a PlayerAuth with only the name and real name of the given row.
+     *
+     * @param row the row to read
+     * @param col the column names
+     * @return the created auth
+     * @throws SQLException :)
+     */
+    static PlayerAuth buildNamesFromResultSet(ResultSet row, Columns col) throws SQLException {
+        return PlayerAuth.builder()
+            .name(row.getString(col.NAME))
+            .realName(row.getString(col.REAL_NAME))
+            .build();
+    }
+
+    /**
+     * Returns the WHERE condition selecting the accounts whose last login and registration date are
+     * both before a given timestamp. Each column is compared on its own so that its index can be used.
+     *
+     * @param col the column names
+     * @return the condition, with two parameters to set to the timestamp
+     */
+    static String getPurgeCondition(Columns col) {
+        return "(" + col.LAST_LOGIN + " IS NULL OR " + col.LAST_LOGIN + " < ?)"
+            + " AND (" + col.REGISTRATION_DATE + " IS NULL OR " + col.REGISTRATION_DATE + " < ?)";
+    }
+
+    /**
+     * Runs EXPLAIN on the queries which are executed frequently and should be able to use an index,
+     * and reports whether the database has to scan the entire table for them.
+     *
+     * @return the query plans, empty list upon error
+     */
+    public abstract List<QueryPlan> explainHotQueries();
+
+    /**
+     * Runs EXPLAIN on the frequently executed queries with the given connection.
+     *
+     * @param con the connection to use
+     * @param tableName the name of the table
+     * @param col the column names
+     * @return the query plans
+     * @throws SQLException :)
+     */
+    protected List<QueryPlan> explainHotQueries(Connection con, String tableName,
+                                                Columns col) throws SQLException {
+        List<QueryPlan> plans = new ArrayList<>();
+        plans.add(explainQuery(con, "getAllAuthsByIp",
+            "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + col.LAST_IP + " = ?", "127.0.0.1"));
+        plans.add(explainQuery(con, "countAuthsByEmail",
+            "SELECT COUNT(*) FROM " + tableName + " WHERE LOWER(" + col.EMAIL + ") = LOWER(?)", "player@example.org"));
+        plans.add(explainQuery(con, "getRecordsToPurge",
+            "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + getPurgeCondition(col), 1L, 1L));
+        plans.add(explainQuery(con, "getLoggedPlayersWithEmptyMail",
+            "SELECT " + col.REAL_NAME + " FROM " + tableName + " WHERE " + col.IS_LOGGED + " = 1"
+                + " AND (" + col.EMAIL + " = 'your@email.com' OR " + col.EMAIL + " IS NULL)"));
+        return plans;
+    }
+
+    private QueryPlan explainQuery(Connection con, String queryName, String sql,
+                                   Object... parameters) throws SQLException {
+        try (PreparedStatement pst = con.prepareStatement(getExplainPrefix() + sql)) {
+            for (int i = 0; i < parameters.length; ++i) {
+                pst.setObject(i + 1, parameters[i]);
+            }
+            List<String> planRows = new ArrayList<>();
+            boolean isFullScan = false;
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    String planRow = formatQueryPlanRow(rs);
+                    planRows.add(planRow);
+                    isFullScan |= isFullScan(planRow);
+                }
+            }
+            return new QueryPlan(queryName, planRows, isFullScan);
+        }
+    }
+
+    /**
+     * @return the statement prefix which makes the database return the query plan
+     */
+    protected String getExplainPrefix() {
+        return "EXPLAIN ";
+    }
+
+    /**
+     * Formats the current row of an EXPLAIN result set.
+     *
+     * @param rs the result set to read
+     * @return the row as text
+     * @throws SQLException :)
+     */
+    protected abstract String formatQueryPlanRow(ResultSet rs) throws SQLException;
+
+    /**
+     * Returns whether the given query plan row, as returned by {@link #formatQueryPlanRow}, is a full table scan.
+     *
+     * @param planRow the query plan row
+     * @return true if the row is a full table scan, false otherwise
+     */
+    protected abstract boolean isFullScan(String planRow);
+
     abstract String getJdbcUrl(String host, String port, String database);
 }
@@ -0,0 +1,74 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.data.auth.PlayerAuth;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variants of the most frequently used {@link DataSource} operations. The returned futures
+ * are completed on a dedicated, bounded database executor so that callers (e.g. Bukkit async workers)
+ * don't have to wait for the database round trip.
+ * <p>
+ * The semantics of each method are the same as its synchronous counterpart in {@link DataSource}.
+ */
+public interface AsyncDataSource {
+
+    /**
+     * Asynchronous variant of {@link DataSource#isAuthAvailable}.
+     *
+     * @param user The username to look up
+     * @return future with true if there is a record, false otherwise
+     */
+    CompletableFuture<Boolean> isAuthAvailableAsync(String user);
+
+    /**
+     * Asynchronous variant of {@link DataSource#getAuth}.
+     *
+     * @param user The user to retrieve
+     * @return future with the PlayerAuth object for the given username (null if not registered)
+     */
+    CompletableFuture<PlayerAuth> getAuthAsync(String user);
+
+    /**
+     * Asynchronous variant of {@link DataSource#saveAuth}.
+     *
+     * @param auth The new PlayerAuth to persist
+     * @return future with true upon success, false upon failure
+     */
+    CompletableFuture<Boolean> saveAuthAsync(PlayerAuth auth);
+
+    /**
+     * Asynchronous variant of {@link DataSource#updateSession}.
+     *
+     * @param auth The PlayerAuth object to update in the database
+     * @return future with true upon success, false upon failure
+     */
+    CompletableFuture<Boolean> updateSessionAsync(PlayerAuth auth);
+
+    /**
+     * Asynchronous variant of {@link DataSource#commitLogin}.
+     *
+     * @param auth The PlayerAuth object with the new last IP, last login and real name
+     * @param grantSession Whether the player should be granted a session
+     * @return future with the names of all accounts with the player's last IP address
+     */
+    CompletableFuture<List<String>> commitLoginAsync(PlayerAuth auth, boolean grantSession);
+
+    /**
+     * Asynchronous variant of {@link DataSource#updateQuitLoc}.
+     *
+     * @param auth The entry whose quit location should be updated
+     * @return future with true upon success, false upon failure
+     */
+    CompletableFuture<Boolean> updateQuitLocAsync(PlayerAuth auth);
+
+    /**
+     * Asynchronous variant of {@link DataSource#getAllAuthsByIp}.
+     *
+     * @param ip The IP address to look up
+     * @return future with the usernames associated with the given IP address
+     */
+    CompletableFuture<List<String>> getAllAuthsByIpAsync(String ip);
+
+}
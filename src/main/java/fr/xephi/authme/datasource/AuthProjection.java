@@ -0,0 +1,14 @@
+package fr.xephi.authme.datasource;
+
+/**
+ * Columns to load when iterating over all accounts with {@link DataSource#forEachAuth}.
+ */
+public enum AuthProjection {
+
+    /** Only the name and real name are loaded; all other fields of the auths have default values. */
+    NAMES,
+
+    /** All columns are loaded. */
+    ALL
+
+}
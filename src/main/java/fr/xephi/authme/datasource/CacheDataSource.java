@@ -8,55 +8,80 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.data.auth.PlayerAuth;
 import fr.xephi.authme.data.auth.PlayerCache;
 import fr.xephi.authme.output.ConsoleLoggerFactory;
 import fr.xephi.authme.security.crypts.HashedPassword;
+import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.DatabaseSettings;
 import fr.xephi.authme.util.Utils;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class CacheDataSource implements DataSource {
 
+    /** Maximum number of threads loading entries into the cache. */
+    private static final int CACHE_LOADER_THREADS = 4;
+
     private final ConsoleLogger logger = ConsoleLoggerFactory.get(CacheDataSource.class);
 
     private final DataSource source;
     private final PlayerCache playerCache;
     private final LoadingCache<String, Optional<PlayerAuth>> cachedAuths;
     private final ListeningExecutorService executorService;
+    private final RegisteredNamesFilter registeredNamesFilter;
+    private final WriteBehindBuffer writeBehindBuffer;
 
     /**
      * Constructor for CacheDataSource.
      *
      * @param source the source
      * @param playerCache the player cache
+     * @param settings the settings
      */
-    public CacheDataSource(DataSource source, PlayerCache playerCache) {
+    public CacheDataSource(DataSource source, PlayerCache playerCache, Settings settings) {
         this.source = source;
         this.playerCache = playerCache;
 
         executorService = MoreExecutors.listeningDecorator(
-            Executors.newCachedThreadPool(new ThreadFactoryBuilder()
-                .setDaemon(true)
-                .setNameFormat("AuthMe-CacheLoader")
-                .build())
-        );
+            SqlDataSourceUtils.createDatabaseExecutor("AuthMe-CacheLoader", CACHE_LOADER_THREADS));
+        int writeBehindInterval = settings.getProperty(DatabaseSettings.WRITE_BEHIND_INTERVAL);
+        if (writeBehindInterval > 0) {
+            writeBehindBuffer = new WriteBehindBuffer(source, writeBehindInterval,
+                settings.getProperty(DatabaseSettings.WRITE_BEHIND_MAX_PENDING));
+        } else {
+            writeBehindBuffer = null;
+        }
+        if (settings.getProperty(DatabaseSettings.USE_REGISTERED_NAMES_FILTER)) {
+            registeredNamesFilter = new RegisteredNamesFilter();
+            registeredNamesFilter.loadAsync(source, executorService);
+        } else {
+            registeredNamesFilter = null;
+        }
         cachedAuths = CacheBuilder.newBuilder()
             .refreshAfterWrite(5, TimeUnit.MINUTES)
             .expireAfterAccess(15, TimeUnit.MINUTES)
             .build(new CacheLoader<String, Optional<PlayerAuth>>() {
                 @Override
                 public Optional<PlayerAuth> load(String key) {
-                    return Optional.ofNullable(source.getAuth(key));
+                    PlayerAuth auth = source.getAuth(key);
+                    if (auth != null && writeBehindBuffer != null) {
+                        PendingAuthWrite pendingWrite = writeBehindBuffer.get(key);
+                        if (pendingWrite != null) {
+                            pendingWrite.applyTo(auth);
+                        }
+                    }
+                    return Optional.ofNullable(auth);
                 }
 
                 @Override
@@ -70,6 +95,27 @@ public class CacheDataSource implements DataSource {
         return cachedAuths;
     }
 
+    /**
+     * @return the filter of registered names, or null if it is disabled
+     */
+    public RegisteredNamesFilter getRegisteredNamesFilter() {
+        return registeredNamesFilter;
+    }
+
+    /**
+     * @return true if session and login state updates are buffered, false if they are written immediately
+     */
+    public boolean isWriteBehindEnabled() {
+        return writeBehindBuffer != null;
+    }
+
+    /**
+     * @return the number of players whose buffered updates have not been written yet
+     */
+    public int getPendingWritesCount() {
+        return writeBehindBuffer == null ? 0 : writeBehindBuffer.size();
+    }
+
     @Override
     public void reload() {
         source.reload();
@@ -87,24 +133,110 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public HashedPassword getPassword(String user) {
+        // Used for logins: never answered by the names filter, as the account may have been created elsewhere
         user = user.toLowerCase(Locale.ROOT);
         Optional<PlayerAuth> pAuthOpt = cachedAuths.getIfPresent(user);
         if (pAuthOpt != null && pAuthOpt.isPresent()) {
             return pAuthOpt.get().getPassword();
         }
-        return source.getPassword(user);
+        HashedPassword password = source.getPassword(user);
+        if (password != null) {
+            addRegisteredName(user);
+        }
+        return password;
     }
 
     @Override
     public PlayerAuth getAuth(String user) {
         user = user.toLowerCase(Locale.ROOT);
+        if (!mightBeRegistered(user)) {
+            return null;
+        }
         return cachedAuths.getUnchecked(user).orElse(null);
     }
 
+    @Override
+    public CompletableFuture<Boolean> isAuthAvailableAsync(String user) {
+        return getAuthAsync(user).thenApply(auth -> auth != null);
+    }
+
+    @Override
+    public CompletableFuture<PlayerAuth> getAuthAsync(String user) {
+        // Used for logins and registrations: never answered by the names filter, as the account
+        // may have been created elsewhere (other server sharing the database, website)
+        String name = user.toLowerCase(Locale.ROOT);
+        Optional<PlayerAuth> cachedAuth = cachedAuths.getIfPresent(name);
+        if (cachedAuth != null) {
+            return CompletableFuture.completedFuture(cachedAuth.orElse(null));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            PlayerAuth auth = cachedAuths.getUnchecked(name).orElse(null);
+            if (auth != null) {
+                addRegisteredName(name);
+            }
+            return auth;
+        }, executorService);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> saveAuthAsync(PlayerAuth auth) {
+        return source.saveAuthAsync(auth).thenApply(result -> {
+            if (result) {
+                addRegisteredName(auth.getNickname());
+                cachedAuths.refresh(auth.getNickname());
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateSessionAsync(PlayerAuth auth) {
+        if (writeBehindBuffer != null) {
+            return CompletableFuture.completedFuture(updateSession(auth));
+        }
+        return source.updateSessionAsync(auth).thenApply(result -> {
+            if (result) {
+                cachedAuths.refresh(auth.getNickname());
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<String>> commitLoginAsync(PlayerAuth auth, boolean grantSession) {
+        if (writeBehindBuffer != null) {
+            bufferLogin(auth, grantSession);
+            return getAllAuthsByIpAsync(auth.getLastIp());
+        }
+        return source.commitLoginAsync(auth, grantSession).thenApply(names -> {
+            cachedAuths.refresh(auth.getNickname());
+            return names;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateQuitLocAsync(PlayerAuth auth) {
+        if (writeBehindBuffer != null) {
+            return CompletableFuture.completedFuture(updateQuitLoc(auth));
+        }
+        return source.updateQuitLocAsync(auth).thenApply(result -> {
+            if (result) {
+                cachedAuths.refresh(auth.getNickname());
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getAllAuthsByIpAsync(String ip) {
+        return source.getAllAuthsByIpAsync(ip).thenApply(names -> withPendingLastIps(ip, names));
+    }
+
     @Override
     public boolean saveAuth(PlayerAuth auth) {
         boolean result = source.saveAuth(auth);
         if (result) {
+            addRegisteredName(auth.getNickname());
             cachedAuths.refresh(auth.getNickname());
         }
         return result;
@@ -131,6 +263,10 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public boolean updateSession(PlayerAuth auth) {
+        if (writeBehindBuffer != null) {
+            bufferAuthWrite(auth.getNickname(), write -> write.setSessionData(auth));
+            return true;
+        }
         boolean result = source.updateSession(auth);
         if (result) {
             cachedAuths.refresh(auth.getNickname());
@@ -138,8 +274,23 @@ public class CacheDataSource implements DataSource {
         return result;
     }
 
+    @Override
+    public List<String> commitLogin(PlayerAuth auth, boolean grantSession) {
+        if (writeBehindBuffer != null) {
+            bufferLogin(auth, grantSession);
+            return getAllAuthsByIp(auth.getLastIp());
+        }
+        List<String> names = source.commitLogin(auth, grantSession);
+        cachedAuths.refresh(auth.getNickname());
+        return names;
+    }
+
     @Override
     public boolean updateQuitLoc(final PlayerAuth auth) {
+        if (writeBehindBuffer != null) {
+            bufferAuthWrite(auth.getNickname(), write -> write.setQuitLocation(auth));
+            return true;
+        }
         boolean result = source.updateQuitLoc(auth);
         if (result) {
             cachedAuths.refresh(auth.getNickname());
@@ -149,21 +300,27 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public Set<String> getRecordsToPurge(long until) {
+        flushPendingWrites();
         return source.getRecordsToPurge(until);
     }
 
     @Override
     public boolean removeAuth(String name) {
         name = name.toLowerCase(Locale.ROOT);
+        flushPendingWrites();
         boolean result = source.removeAuth(name);
         if (result) {
             cachedAuths.invalidate(name);
+            markNamesRemoved(1);
         }
         return result;
     }
 
     @Override
     public void closeConnection() {
+        if (writeBehindBuffer != null) {
+            writeBehindBuffer.close();
+        }
         executorService.shutdown();
         try {
             executorService.awaitTermination(5, TimeUnit.SECONDS);
@@ -185,11 +342,35 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public List<String> getAllAuthsByIp(String ip) {
-        return source.getAllAuthsByIp(ip);
+        return withPendingLastIps(ip, source.getAllAuthsByIp(ip));
+    }
+
+    @Override
+    public int countAuthsByIp(String ip) {
+        int count = source.countAuthsByIp(ip);
+        if (writeBehindBuffer == null) {
+            return count;
+        }
+        for (PendingAuthWrite pendingWrite : writeBehindBuffer.getPendingWrites()) {
+            if (!pendingWrite.hasSessionData()) {
+                continue;
+            } else if (!pendingWrite.isStoredLastIpKnown()) {
+                return getAllAuthsByIp(ip).size();
+            }
+            boolean isStoredIp = ip.equals(pendingWrite.getStoredLastIp());
+            boolean isPendingIp = ip.equals(pendingWrite.getLastIp());
+            if (isPendingIp && !isStoredIp) {
+                ++count;
+            } else if (isStoredIp && !isPendingIp) {
+                --count;
+            }
+        }
+        return count;
     }
 
     @Override
     public boolean clearLastIp(String user) {
+        flushPendingWrites();
         boolean result = source.clearLastIp(user);
         if (result) {
             cachedAuths.refresh(user.toLowerCase(Locale.ROOT));
@@ -199,6 +380,7 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public int clearLastIpForIp(String ip) {
+        flushPendingWrites();
         List<String> affectedUsers = source.getAllAuthsByIp(ip);
         int result = source.clearLastIpForIp(ip);
         if (result > 0) {
@@ -211,6 +393,7 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public int clearAllLastIp() {
+        flushPendingWrites();
         int result = source.clearAllLastIp();
         if (result > 0) {
             cachedAuths.invalidateAll();
@@ -224,9 +407,12 @@ public class CacheDataSource implements DataSource {
     }
 
     @Override
-    public void purgeRecords(Collection<String> banned) {
-        source.purgeRecords(banned);
+    public int purgeRecords(Collection<String> banned) {
+        flushPendingWrites();
+        int result = source.purgeRecords(banned);
         cachedAuths.invalidateAll(banned);
+        markNamesRemoved(result);
+        return result;
     }
 
     @Override
@@ -236,36 +422,90 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public boolean isLogged(String user) {
+        PendingAuthWrite pendingWrite = getPendingWrite(user);
+        if (pendingWrite != null && pendingWrite.getLogged() != null) {
+            return pendingWrite.getLogged();
+        }
         return source.isLogged(user);
     }
 
     @Override
     public void setLogged(final String user) {
-        source.setLogged(user.toLowerCase(Locale.ROOT));
+        if (writeBehindBuffer != null) {
+            writeBehindBuffer.update(user.toLowerCase(Locale.ROOT), write -> write.setLogged(true));
+        } else {
+            source.setLogged(user.toLowerCase(Locale.ROOT));
+        }
     }
 
     @Override
     public void setUnlogged(final String user) {
-        source.setUnlogged(user.toLowerCase(Locale.ROOT));
+        if (writeBehindBuffer != null) {
+            writeBehindBuffer.update(user.toLowerCase(Locale.ROOT), write -> write.setLogged(false));
+        } else {
+            source.setUnlogged(user.toLowerCase(Locale.ROOT));
+        }
     }
 
     @Override
     public boolean hasSession(final String user) {
+        PendingAuthWrite pendingWrite = getPendingWrite(user);
+        if (pendingWrite != null && pendingWrite.getHasSession() != null) {
+            return pendingWrite.getHasSession();
+        }
         return source.hasSession(user);
     }
 
     @Override
     public void grantSession(final String user) {
-        source.grantSession(user);
+        if (writeBehindBuffer != null) {
+            writeBehindBuffer.update(user.toLowerCase(Locale.ROOT), write -> write.setHasSession(true));
+        } else {
+            source.grantSession(user);
+        }
     }
 
     @Override
     public void revokeSession(final String user) {
-        source.revokeSession(user);
+        if (writeBehindBuffer != null) {
+            writeBehindBuffer.update(user.toLowerCase(Locale.ROOT), write -> write.setHasSession(false));
+        } else {
+            source.revokeSession(user);
+        }
+    }
+
+    @Override
+    public PlayerAuth consumeSession(final String user) {
+        String name = user.toLowerCase(Locale.ROOT);
+        PendingAuthWrite pendingWrite = getPendingWrite(name);
+        if (pendingWrite != null && pendingWrite.getHasSession() != null) {
+            if (!pendingWrite.getHasSession()) {
+                return null;
+            }
+            writeBehindBuffer.update(name, write -> {
+                write.setLogged(false);
+                write.setHasSession(false);
+            });
+            return getAuth(name);
+        }
+
+        PlayerAuth auth = source.consumeSession(name);
+        if (auth != null) {
+            if (pendingWrite != null) {
+                // Don't let a buffered login state override the state cleared in the source
+                if (pendingWrite.getLogged() != null) {
+                    writeBehindBuffer.update(name, write -> write.setLogged(false));
+                }
+                pendingWrite.applyTo(auth);
+            }
+            cachedAuths.put(name, Optional.of(auth));
+        }
+        return auth;
     }
 
     @Override
     public void purgeLogged() {
+        flushPendingWrites();
         source.purgeLogged();
         cachedAuths.invalidateAll();
     }
@@ -277,6 +517,7 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public boolean updateRealName(String user, String realName) {
+        flushPendingWrites();
         boolean result = source.updateRealName(user, realName);
         if (result) {
             cachedAuths.refresh(user);
@@ -293,9 +534,21 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public List<PlayerAuth> getAllAuths() {
+        flushPendingWrites();
         return source.getAllAuths();
     }
 
+    @Override
+    public boolean forEachAuth(AuthProjection projection, Consumer<PlayerAuth> consumer) {
+        flushPendingWrites();
+        return source.forEachAuth(projection, consumer);
+    }
+
+    @Override
+    public boolean applyPendingWrites(Collection<PendingAuthWrite> writes) {
+        return source.applyPendingWrites(writes);
+    }
+
     @Override
     public List<String> getLoggedPlayersWithEmptyMail() {
         return playerCache.getCache().values().stream()
@@ -306,6 +559,7 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public List<PlayerAuth> getRecentlyLoggedInPlayers() {
+        flushPendingWrites();
         return source.getRecentlyLoggedInPlayers();
     }
 
@@ -320,14 +574,118 @@ public class CacheDataSource implements DataSource {
 
     @Override
     public void invalidateCache(String playerName) {
+        // Also called for accounts which were changed or created by another server
+        addRegisteredName(playerName);
         cachedAuths.invalidate(playerName);
     }
 
     @Override
     public void refreshCache(String playerName) {
+        addRegisteredName(playerName);
         if (cachedAuths.getIfPresent(playerName) != null) {
             cachedAuths.refresh(playerName);
         }
     }
 
+    private PendingAuthWrite getPendingWrite(String user) {
+        return writeBehindBuffer == null ? null : writeBehindBuffer.get(user.toLowerCase(Locale.ROOT));
+    }
+
+    private void flushPendingWrites() {
+        if (writeBehindBuffer != null) {
+            writeBehindBuffer.flush();
+        }
+    }
+
+    /**
+     * Buffers the given change and applies it to the cached auth of the player, if present.
+     *
+     * @param user the player name
+     * @param change the change to buffer
+     */
+    private void bufferAuthWrite(String user, Consumer<PendingAuthWrite> change) {
+        String name = user.toLowerCase(Locale.ROOT);
+        Optional<PlayerAuth> cachedAuth = cachedAuths.getIfPresent(name);
+        PendingAuthWrite pendingWrite = writeBehindBuffer.update(name, write -> {
+            if (!write.hasSessionData() && cachedAuth != null && cachedAuth.isPresent()) {
+                // Without pending session data, the cached auth has the last IP saved in the data source
+                write.setStoredLastIp(cachedAuth.get().getLastIp());
+            }
+            change.accept(write);
+        });
+        if (cachedAuth != null && cachedAuth.isPresent()) {
+            pendingWrite.applyTo(cachedAuth.get());
+        }
+    }
+
+    /**
+     * Buffers the changes of {@link #commitLogin}.
+     *
+     * @param auth the auth with the new session data
+     * @param grantSession whether the player is granted a session
+     */
+    private void bufferLogin(PlayerAuth auth, boolean grantSession) {
+        bufferAuthWrite(auth.getNickname(), write -> {
+            write.setSessionData(auth);
+            write.setLogged(true);
+            if (grantSession) {
+                write.setHasSession(true);
+            }
+        });
+    }
+
+    /**
+     * Adjusts the names associated with an IP address by the buffered last IP changes.
+     *
+     * @param ip the IP address
+     * @param names the names associated with the IP address in the source
+     * @return the names associated with the IP address, including pending changes
+     */
+    private List<String> withPendingLastIps(String ip, List<String> names) {
+        if (writeBehindBuffer == null || writeBehindBuffer.size() == 0) {
+            return names;
+        }
+        List<String> result = new ArrayList<>(names);
+        for (PendingAuthWrite pendingWrite : writeBehindBuffer.getPendingWrites()) {
+            if (pendingWrite.hasSessionData()) {
+                if (ip.equals(pendingWrite.getLastIp())) {
+                    if (!result.contains(pendingWrite.getName())) {
+                        result.add(pendingWrite.getName());
+                    }
+                } else {
+                    result.remove(pendingWrite.getName());
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean mightBeRegistered(String name) {
+        if (registeredNamesFilter == null || registeredNamesFilter.mightBeRegistered(name)) {
+            return true;
+        }
+        rebuildNamesFilterIfNeeded();
+        return false;
+    }
+
+    private void addRegisteredName(String name) {
+        if (registeredNamesFilter != null) {
+            registeredNamesFilter.add(name.toLowerCase(Locale.ROOT));
+            rebuildNamesFilterIfNeeded();
+        }
+    }
+
+    private void markNamesRemoved(int total) {
+        if (registeredNamesFilter != null) {
+            registeredNamesFilter.markRemoved(total);
+            rebuildNamesFilterIfNeeded();
+        }
+    }
+
+    private void rebuildNamesFilterIfNeeded() {
+        if (registeredNamesFilter.needsRebuild() && !executorService.isShutdown()) {
+            registeredNamesFilter.loadAsync(source, executorService);
+        }
+    }
+
 }
@@ -3,6 +3,9 @@ package fr.xephi.authme.datasource;
 import fr.xephi.authme.settings.Settings;
 import fr.xephi.authme.settings.properties.DatabaseSettings;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Database column names.
  */
@@ -56,4 +59,14 @@ public final class Columns {
         PLAYER_UUID       = settings.getProperty(DatabaseSettings.MYSQL_COL_PLAYER_UUID);
     }
 
+    /**
+     * Returns all column names in a fixed order, e.g. to detect changes to the column configuration.
+     *
+     * @return all column names
+     */
+    public List<String> getAllColumnNames() {
+        return Arrays.asList(NAME, REAL_NAME, PASSWORD, SALT, TOTP_KEY, LAST_IP, LAST_LOGIN, GROUP,
+            LASTLOC_X, LASTLOC_Y, LASTLOC_Z, LASTLOC_WORLD, LASTLOC_YAW, LASTLOC_PITCH, EMAIL, ID,
+            IS_LOGGED, HAS_SESSION, REGISTRATION_DATE, REGISTRATION_IP, PLAYER_UUID);
+    }
 }
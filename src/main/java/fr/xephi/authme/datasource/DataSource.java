@@ -8,11 +8,12 @@ import fr.xephi.authme.security.crypts.HashedPassword;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Interface for manipulating {@link PlayerAuth} objects from a data source.
  */
-public interface DataSource extends Reloadable {
+public interface DataSource extends AsyncDataSource, Reloadable {
 
     /**
      * Return whether the data source is cached and needs to send plugin messaging updates.
@@ -63,6 +64,17 @@ public interface DataSource extends Reloadable {
      */
     boolean updateSession(PlayerAuth auth);
 
+    /**
+     * Save a successful login in one transaction: update the session data as {@link #updateSession} does,
+     * mark the player as logged in and optionally grant him a session.
+     *
+     * @param auth The PlayerAuth object with the new last IP, last login and real name
+     * @param grantSession Whether the player should be granted a session
+     * @return the names of all accounts with the player's last IP address (including the player's),
+     *         or an empty list if the login could not be saved
+     */
+    List<String> commitLogin(PlayerAuth auth, boolean grantSession);
+
     /**
      * Update the password of the given PlayerAuth object.
      *
@@ -89,11 +101,12 @@ public interface DataSource extends Reloadable {
     Set<String> getRecordsToPurge(long until);
 
     /**
-     * Purge the given players from the database.
+     * Purge the given players from the database. All players are deleted in one transaction.
      *
      * @param toPurge The players to purge
+     * @return the number of deleted accounts
      */
-    void purgeRecords(Collection<String> toPurge);
+    int purgeRecords(Collection<String> toPurge);
 
     /**
      * Remove a user record from the database.
@@ -119,6 +132,14 @@ public interface DataSource extends Reloadable {
      */
     List<String> getAllAuthsByIp(String ip);
 
+    /**
+     * Return the number of accounts associated with the given IP address.
+     *
+     * @param ip The IP address to look up
+     * @return number of accounts associated with the IP address
+     */
+    int countAuthsByIp(String ip);
+
     /**
      * Clear the last IP address for a specific user.
      *
@@ -215,6 +236,16 @@ public interface DataSource extends Reloadable {
      */
     void revokeSession(String user);
 
+    /**
+     * Revoke the user's session and mark the user as not logged in, if the user has a session. The session
+     * flag is checked and cleared atomically, so a session can only be resumed once.
+     * Warning: the session won't expire, you have also to check the returned auth's last login timestamp.
+     *
+     * @param user The name of the player
+     * @return the player auth if the user had a session, null otherwise
+     */
+    PlayerAuth consumeSession(String user);
+
     /**
      * Set all players who are marked as logged in as NOT logged in.
      */
@@ -258,6 +289,35 @@ public interface DataSource extends Reloadable {
      */
     List<PlayerAuth> getAllAuths();
 
+    /**
+     * Writes the given coalesced updates of session data, quit locations and login state, batching
+     * them where possible.
+     *
+     * @param writes the writes to perform
+     * @return true if all writes were performed, false if an error occurred
+     */
+    boolean applyPendingWrites(Collection<PendingAuthWrite> writes);
+
+    /**
+     * Passes every account to the given consumer. Unlike {@link #getAllAuths()}, rows are streamed from the
+     * data source instead of being loaded into memory all at once.
+     *
+     * @param projection the columns to load
+     * @param consumer the consumer to pass each account to
+     * @return true if all accounts were passed to the consumer, false if an error occurred
+     */
+    boolean forEachAuth(AuthProjection projection, Consumer<PlayerAuth> consumer);
+
+    /**
+     * Passes the name of every account to the given consumer, streaming the rows of the data source.
+     *
+     * @param consumer the consumer to pass each name (lowercase) to
+     * @return true if all names were passed to the consumer, false if an error occurred
+     */
+    default boolean forEachName(Consumer<String> consumer) {
+        return forEachAuth(AuthProjection.NAMES, auth -> consumer.accept(auth.getNickname()));
+    }
+
     /**
      * Returns the last ten players who have recently logged in (first ten players with highest last login date).
      *
@@ -20,6 +20,12 @@ public class MariaDB extends MySQL {
         return "org.mariadb.jdbc.Driver";
     }
 
+    @Override
+    protected int getStreamingFetchSize() {
+        // MariaDB Connector/J streams result sets with any positive fetch size
+        return 1000;
+    }
+
     @Override
     public DataSourceType getType() {
         return DataSourceType.MARIADB;
@@ -22,13 +22,16 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static fr.xephi.authme.datasource.SqlDataSourceUtils.getNullableLong;
+import static fr.xephi.authme.datasource.SqlDataSourceUtils.isIndexMissing;
 import static fr.xephi.authme.datasource.SqlDataSourceUtils.logSqlException;
 
 /**
@@ -90,6 +93,17 @@ public class MySQL extends AbstractSqlDataSource {
         setParameters(settings, extensionsFactory);
     }
 
+    /**
+     * Returns the fetch size to set on statements whose results should be streamed row by row
+     * instead of being loaded into memory all at once.
+     *
+     * @return the fetch size for streaming result sets
+     */
+    protected int getStreamingFetchSize() {
+        // Special value that makes MySQL Connector/J stream the rows of a result set
+        return Integer.MIN_VALUE;
+    }
+
     /**
      * Returns the path of the Driver class to use when connecting to the database.
      *
@@ -121,6 +135,7 @@ public class MySQL extends AbstractSqlDataSource {
         this.useSsl = settings.getProperty(DatabaseSettings.MYSQL_USE_SSL);
         this.serverCertificateVerification = settings.getProperty(DatabaseSettings.MYSQL_CHECK_SERVER_CERTIFICATE);
         this.allowPublicKeyRetrieval = settings.getProperty(DatabaseSettings.MYSQL_ALLOW_PUBLIC_KEY_RETRIEVAL);
+        initAsyncExecutor("AuthMe-MySQL-Async", poolSize);
     }
 
     /**
@@ -186,11 +201,17 @@ public class MySQL extends AbstractSqlDataSource {
     }
 
     /**
-     * Creates the table or any of its required columns if they don't exist.
+     * Creates the table or any of its required columns if they don't exist. Skipped if the table
+     * has already been set up with the current schema version, see {@link SchemaVersionTable}.
      */
     @SuppressWarnings({"checkstyle:CyclomaticComplexity", "checkstyle:JavaNCSS"})
     private void checkTablesAndColumns() throws SQLException {
         try (Connection con = getConnection(); Statement st = con.createStatement()) {
+            if (SchemaVersionTable.isUpToDate(con, tableName, col)) {
+                logger.info("MySQL schema is up to date");
+                return;
+            }
+
             // Create table with ID column if it doesn't exist
             String sql = "CREATE TABLE IF NOT EXISTS " + tableName + " ("
                 + col.ID + " MEDIUMINT(8) UNSIGNED AUTO_INCREMENT,"
@@ -247,10 +268,7 @@ public class MySQL extends AbstractSqlDataSource {
                     + col.LASTLOC_Y + " DOUBLE NOT NULL DEFAULT '0.0' AFTER " + col.LASTLOC_X + " , ADD "
                     + col.LASTLOC_Z + " DOUBLE NOT NULL DEFAULT '0.0' AFTER " + col.LASTLOC_Y);
             } else {
-                st.executeUpdate("ALTER TABLE " + tableName + " MODIFY "
-                    + col.LASTLOC_X + " DOUBLE NOT NULL DEFAULT '0.0', MODIFY "
-                    + col.LASTLOC_Y + " DOUBLE NOT NULL DEFAULT '0.0', MODIFY "
-                    + col.LASTLOC_Z + " DOUBLE NOT NULL DEFAULT '0.0';");
+                MySqlMigrater.migrateLastLocationColumns(st, md, tableName, col);
             }
 
             if (isColumnMissing(md, col.LASTLOC_WORLD)) {
@@ -295,32 +313,120 @@ public class MySQL extends AbstractSqlDataSource {
                 st.executeUpdate("ALTER TABLE " + tableName
                     + " ADD COLUMN " + col.PLAYER_UUID + " VARCHAR(36)");
             }
+
+            createIndexes(st, md);
+            SchemaVersionTable.markUpToDate(con, tableName, col);
         }
         logger.info("MySQL setup finished");
     }
 
+    /**
+     * Creates the indexes used by frequently run queries if they don't exist.
+     *
+     * @param st the statement to use
+     * @param md the database meta data
+     * @throws SQLException .
+     */
+    private void createIndexes(Statement st, DatabaseMetaData md) throws SQLException {
+        createIndexIfMissing(st, md, "lastip_idx", col.LAST_IP);
+        createIndexIfMissing(st, md, "lastlogin_idx", col.LAST_LOGIN);
+        createIndexIfMissing(st, md, "regdate_idx", col.REGISTRATION_DATE);
+        createIndexIfMissing(st, md, "islogged_idx", col.IS_LOGGED);
+
+        String emailIndex = tableName + "_email_idx";
+        if (isIndexMissing(md, database, tableName, emailIndex)) {
+            try {
+                // Functional index for case-insensitive email lookups, supported as of MySQL 8.0.13
+                st.executeUpdate("CREATE INDEX " + emailIndex + " ON " + tableName
+                    + " ((LOWER(" + col.EMAIL + ")));");
+            } catch (SQLException e) {
+                logger.info("Database does not support functional indexes (" + e.getMessage()
+                    + "), creating plain index on email column");
+                st.executeUpdate("CREATE INDEX " + emailIndex + " ON " + tableName + " (" + col.EMAIL + ");");
+            }
+            logger.info("Created index '" + emailIndex + "' on column '" + col.EMAIL + "'");
+        }
+    }
+
+    private void createIndexIfMissing(Statement st, DatabaseMetaData md, String suffix,
+                                      String column) throws SQLException {
+        String indexName = tableName + "_" + suffix;
+        if (isIndexMissing(md, database, tableName, indexName)) {
+            st.executeUpdate("CREATE INDEX " + indexName + " ON " + tableName + " (" + column + ");");
+            logger.info("Created index '" + indexName + "' on column '" + column + "'");
+        }
+    }
+
     private boolean isColumnMissing(DatabaseMetaData metaData, String columnName) throws SQLException {
         try (ResultSet rs = metaData.getColumns(database, null, tableName, columnName)) {
             return !rs.next();
         }
     }
 
+    @Override
+    public List<QueryPlan> explainHotQueries() {
+        try (Connection con = getConnection()) {
+            return explainHotQueries(con, tableName, col);
+        } catch (SQLException e) {
+            logSqlException(e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    protected String formatQueryPlanRow(ResultSet rs) throws SQLException {
+        return "table=" + rs.getString("table") + ", type=" + rs.getString("type")
+            + ", key=" + rs.getString("key") + ", rows=" + rs.getString("rows");
+    }
+
+    @Override
+    protected boolean isFullScan(String planRow) {
+        return planRow.contains("type=ALL");
+    }
+
     @Override
     public PlayerAuth getAuth(String user) {
+        try (Connection con = getConnection()) {
+            return getAuth(con, user);
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return null;
+    }
+
+    @Override
+    public List<String> commitLogin(PlayerAuth auth, boolean grantSession) {
+        try (Connection con = getConnection()) {
+            return commitLogin(con, tableName, col, auth, grantSession);
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public PlayerAuth consumeSession(String user) {
+        try (Connection con = getConnection()) {
+            // The conditional update claims the session, so only one caller can get the auth
+            return clearSessionFlags(con, tableName, col, user) ? getAuth(con, user) : null;
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return null;
+    }
+
+    private PlayerAuth getAuth(Connection con, String user) throws SQLException {
         String sql = "SELECT * FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        PlayerAuth auth;
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, user.toLowerCase(Locale.ROOT));
             try (ResultSet rs = pst.executeQuery()) {
                 if (rs.next()) {
                     int id = rs.getInt(col.ID);
-                    auth = buildAuthFromResultSet(rs);
+                    PlayerAuth auth = buildAuthFromResultSet(rs);
                     sqlExtension.extendAuth(auth, id, con);
                     return auth;
                 }
             }
-        } catch (SQLException ex) {
-            logSqlException(ex);
         }
         return null;
     }
@@ -357,13 +463,11 @@ public class MySQL extends AbstractSqlDataSource {
     @Override
     public Set<String> getRecordsToPurge(long until) {
         Set<String> list = new HashSet<>();
-        String select = "SELECT " + col.NAME + " FROM " + tableName + " WHERE GREATEST("
-            + " COALESCE(" + col.LAST_LOGIN + ", 0),"
-            + " COALESCE(" + col.REGISTRATION_DATE + ", 0)"
-            + ") < ?;";
+        String select = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + getPurgeCondition(col) + ";";
         try (Connection con = getConnection();
              PreparedStatement selectPst = con.prepareStatement(select)) {
             selectPst.setLong(1, until);
+            selectPst.setLong(2, until);
             try (ResultSet rs = selectPst.executeQuery()) {
                 while (rs.next()) {
                     list.add(rs.getString(col.NAME));
@@ -393,21 +497,19 @@ public class MySQL extends AbstractSqlDataSource {
 
     @Override
     public void closeConnection() {
+        shutdownAsyncExecutor();
         if (ds != null && !ds.isClosed()) {
             ds.close();
         }
     }
 
     @Override
-    public void purgeRecords(Collection<String> toPurge) {
-        String sql = "DELETE FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
-            for (String name : toPurge) {
-                pst.setString(1, name.toLowerCase(Locale.ROOT));
-                pst.executeUpdate();
-            }
+    public int purgeRecords(Collection<String> toPurge) {
+        try (Connection con = getConnection()) {
+            return SqlDataSourceUtils.deleteByNames(con, tableName, col.NAME, toPurge);
         } catch (SQLException ex) {
             logSqlException(ex);
+            return 0;
         }
     }
 
@@ -417,20 +519,43 @@ public class MySQL extends AbstractSqlDataSource {
     }
 
     @Override
-    public List<PlayerAuth> getAllAuths() {
-        List<PlayerAuth> auths = new ArrayList<>();
-        try (Connection con = getConnection(); Statement st = con.createStatement()) {
-            try (ResultSet rs = st.executeQuery("SELECT * FROM " + tableName)) {
+    public boolean forEachAuth(AuthProjection projection, Consumer<PlayerAuth> consumer) {
+        String columns = projection == AuthProjection.NAMES ? col.NAME + ", " + col.REAL_NAME : "*";
+        // No other queries can be run on a connection while it streams a result set, so the extension
+        // gets a separate connection if it reads anything
+        boolean isExtended = projection == AuthProjection.ALL && sqlExtension.extendsAuths();
+        try (Connection con = getConnection(); Connection extensionCon = isExtended ? getConnection() : null;
+             Statement st = con.createStatement()) {
+            st.setFetchSize(getStreamingFetchSize());
+            try (ResultSet rs = st.executeQuery("SELECT " + columns + " FROM " + tableName)) {
                 while (rs.next()) {
-                    PlayerAuth auth = buildAuthFromResultSet(rs);
-                    sqlExtension.extendAuth(auth, rs.getInt(col.ID), con);
-                    auths.add(auth);
+                    if (projection == AuthProjection.NAMES) {
+                        consumer.accept(buildNamesFromResultSet(rs, col));
+                    } else {
+                        PlayerAuth auth = buildAuthFromResultSet(rs);
+                        if (isExtended) {
+                            sqlExtension.extendAuth(auth, rs.getInt(col.ID), extensionCon);
+                        }
+                        consumer.accept(auth);
+                    }
                 }
             }
         } catch (SQLException ex) {
             logSqlException(ex);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean applyPendingWrites(Collection<PendingAuthWrite> writes) {
+        try (Connection con = getConnection()) {
+            SqlDataSourceUtils.executePendingWrites(con, col, tableName, writes);
+            return true;
+        } catch (SQLException ex) {
+            logSqlException(ex);
+            return false;
         }
-        return auths;
     }
 
     @Override
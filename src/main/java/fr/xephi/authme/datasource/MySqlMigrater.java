@@ -43,6 +43,42 @@ final class MySqlMigrater {
         }
     }
 
+    /**
+     * Changes the last location columns to {@code DOUBLE NOT NULL DEFAULT '0.0'} if any of them has
+     * a different definition. Background: this used to be done unconditionally on every startup,
+     * which rebuilds the table on MySQL.
+     *
+     * @param st Statement object to the database
+     * @param metaData column metadata for the table
+     * @param tableName the MySQL table's name
+     * @param col the column names configuration
+     */
+    static void migrateLastLocationColumns(Statement st, DatabaseMetaData metaData,
+                                           String tableName, Columns col) throws SQLException {
+        boolean isMigrationRequired = false;
+        for (String column : new String[]{col.LASTLOC_X, col.LASTLOC_Y, col.LASTLOC_Z}) {
+            isMigrationRequired |= !isNotNullDoubleWithDefault(metaData, tableName, column);
+        }
+
+        if (isMigrationRequired) {
+            st.executeUpdate("ALTER TABLE " + tableName + " MODIFY "
+                + col.LASTLOC_X + " DOUBLE NOT NULL DEFAULT '0.0', MODIFY "
+                + col.LASTLOC_Y + " DOUBLE NOT NULL DEFAULT '0.0', MODIFY "
+                + col.LASTLOC_Z + " DOUBLE NOT NULL DEFAULT '0.0';");
+            logger.info("Changed last location columns to be NOT NULL with default value 0.0");
+        }
+    }
+
+    private static boolean isNotNullDoubleWithDefault(DatabaseMetaData metaData, String tableName,
+                                                      String columnName) throws SQLException {
+        try (ResultSet rs = metaData.getColumns(null, null, tableName, columnName)) {
+            return rs.next()
+                && rs.getInt("DATA_TYPE") == Types.DOUBLE
+                && rs.getInt("NULLABLE") == DatabaseMetaData.columnNoNulls
+                && rs.getString("COLUMN_DEF") != null;
+        }
+    }
+
     /**
      * Checks if the last login column has a type that needs to be migrated.
      *
@@ -0,0 +1,265 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.data.auth.PlayerAuth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Coalesced session, quit location and login state updates of one player that have not been
+ * written to the database yet. Later updates of the same kind replace earlier ones.
+ *
+ * @see DataSource#applyPendingWrites
+ */
+public final class PendingAuthWrite {
+
+    private final String name;
+
+    private boolean hasSessionData;
+    private String lastIp;
+    private Long lastLogin;
+    private String realName;
+    private boolean isStoredLastIpKnown;
+    private String storedLastIp;
+
+    private boolean hasQuitLocation;
+    private double x;
+    private double y;
+    private double z;
+    private String world;
+    private float yaw;
+    private float pitch;
+
+    private Boolean isLogged;
+    private Boolean hasSession;
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the player
+     */
+    public PendingAuthWrite(String name) {
+        this.name = name.toLowerCase(Locale.ROOT);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the data written by {@link DataSource#updateSession}.
+     *
+     * @param auth the auth to take the last IP, last login and real name from
+     */
+    public void setSessionData(PlayerAuth auth) {
+        hasSessionData = true;
+        lastIp = auth.getLastIp();
+        lastLogin = auth.getLastLogin();
+        realName = auth.getRealName();
+    }
+
+    /**
+     * Sets the data written by {@link DataSource#updateQuitLoc}.
+     *
+     * @param auth the auth to take the quit location from
+     */
+    public void setQuitLocation(PlayerAuth auth) {
+        hasQuitLocation = true;
+        x = auth.getQuitLocX();
+        y = auth.getQuitLocY();
+        z = auth.getQuitLocZ();
+        world = auth.getWorld();
+        yaw = auth.getYaw();
+        pitch = auth.getPitch();
+    }
+
+    /**
+     * Records the last IP which is currently saved in the data source for the player.
+     *
+     * @param storedLastIp the saved last IP
+     */
+    public void setStoredLastIp(String storedLastIp) {
+        isStoredLastIpKnown = true;
+        this.storedLastIp = storedLastIp;
+    }
+
+    public void setLogged(boolean isLogged) {
+        this.isLogged = isLogged;
+    }
+
+    public void setHasSession(boolean hasSession) {
+        this.hasSession = hasSession;
+    }
+
+    /**
+     * @return the pending value of the logged in flag, or null if it has not been changed
+     */
+    public Boolean getLogged() {
+        return isLogged;
+    }
+
+    /**
+     * @return the pending value of the session flag, or null if it has not been changed
+     */
+    public Boolean getHasSession() {
+        return hasSession;
+    }
+
+    /**
+     * @return the pending last IP, or null if the session data has not been changed
+     */
+    public String getLastIp() {
+        return hasSessionData ? lastIp : null;
+    }
+
+    public boolean hasSessionData() {
+        return hasSessionData;
+    }
+
+    /**
+     * @return true if the last IP saved in the data source is known, false otherwise
+     */
+    public boolean isStoredLastIpKnown() {
+        return isStoredLastIpKnown;
+    }
+
+    /**
+     * @return the last IP saved in the data source (only meaningful if {@link #isStoredLastIpKnown()})
+     */
+    public String getStoredLastIp() {
+        return storedLastIp;
+    }
+
+    /**
+     * Returns a copy of this write for after the given older write has been saved to the data source.
+     *
+     * @param written the write which has been saved
+     * @return copy of this write with the saved last IP
+     */
+    public PendingAuthWrite afterWriting(PendingAuthWrite written) {
+        PendingAuthWrite copy = new PendingAuthWrite(name);
+        copy.mergeFrom(this);
+        if (written.hasSessionData) {
+            copy.setStoredLastIp(written.lastIp);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies all changes of the given write into this one, overriding changes of the same kind.
+     *
+     * @param newer the write with more recent changes
+     */
+    public void mergeFrom(PendingAuthWrite newer) {
+        if (newer.hasSessionData) {
+            hasSessionData = true;
+            lastIp = newer.lastIp;
+            lastLogin = newer.lastLogin;
+            realName = newer.realName;
+        }
+        if (newer.isStoredLastIpKnown) {
+            setStoredLastIp(newer.storedLastIp);
+        }
+        if (newer.hasQuitLocation) {
+            hasQuitLocation = true;
+            x = newer.x;
+            y = newer.y;
+            z = newer.z;
+            world = newer.world;
+            yaw = newer.yaw;
+            pitch = newer.pitch;
+        }
+        if (newer.isLogged != null) {
+            isLogged = newer.isLogged;
+        }
+        if (newer.hasSession != null) {
+            hasSession = newer.hasSession;
+        }
+    }
+
+    /**
+     * Applies the pending session and quit location changes to the given auth.
+     *
+     * @param auth the auth to update
+     */
+    public void applyTo(PlayerAuth auth) {
+        if (hasSessionData) {
+            auth.setLastIp(lastIp);
+            if (lastLogin != null) {
+                auth.setLastLogin(lastLogin);
+            }
+            auth.setRealName(realName);
+        }
+        if (hasQuitLocation) {
+            auth.setQuitLocX(x);
+            auth.setQuitLocY(y);
+            auth.setQuitLocZ(z);
+            auth.setWorld(world);
+            auth.setYaw(yaw);
+            auth.setPitch(pitch);
+        }
+    }
+
+    /**
+     * Returns the SQL UPDATE statement for the changes of this write. Writes changing the same columns
+     * return the same statement, so that they can be executed in one batch.
+     *
+     * @param col the column names
+     * @param tableName the table name
+     * @return the UPDATE statement to pass to {@link #getStatementValues}
+     */
+    public String getUpdateStatement(Columns col, String tableName) {
+        List<String> columns = new ArrayList<>();
+        if (hasSessionData) {
+            columns.add(col.LAST_IP);
+            columns.add(col.LAST_LOGIN);
+            columns.add(col.REAL_NAME);
+        }
+        if (hasQuitLocation) {
+            columns.add(col.LASTLOC_X);
+            columns.add(col.LASTLOC_Y);
+            columns.add(col.LASTLOC_Z);
+            columns.add(col.LASTLOC_WORLD);
+            columns.add(col.LASTLOC_YAW);
+            columns.add(col.LASTLOC_PITCH);
+        }
+        if (isLogged != null) {
+            columns.add(col.IS_LOGGED);
+        }
+        if (hasSession != null) {
+            columns.add(col.HAS_SESSION);
+        }
+        return "UPDATE " + tableName + " SET " + String.join("=?, ", columns) + "=? WHERE " + col.NAME + "=?;";
+    }
+
+    /**
+     * Returns the values to bind to the statement returned by {@link #getUpdateStatement}, in order.
+     *
+     * @return the statement values (may contain nulls)
+     */
+    public List<Object> getStatementValues() {
+        List<Object> values = new ArrayList<>();
+        if (hasSessionData) {
+            values.add(lastIp);
+            values.add(lastLogin);
+            values.add(realName);
+        }
+        if (hasQuitLocation) {
+            values.add(x);
+            values.add(y);
+            values.add(z);
+            values.add(world);
+            values.add(yaw);
+            values.add(pitch);
+        }
+        if (isLogged != null) {
+            values.add(isLogged ? 1 : 0);
+        }
+        if (hasSession != null) {
+            values.add(hasSession ? 1 : 0);
+        }
+        values.add(name);
+        return values;
+    }
+}
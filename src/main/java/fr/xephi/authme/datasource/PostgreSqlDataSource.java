@@ -21,10 +21,12 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import static fr.xephi.authme.datasource.SqlDataSourceUtils.getNullableLong;
 import static fr.xephi.authme.datasource.SqlDataSourceUtils.logSqlException;
@@ -34,6 +36,9 @@ import static fr.xephi.authme.datasource.SqlDataSourceUtils.logSqlException;
  */
 public class PostgreSqlDataSource extends AbstractSqlDataSource {
 
+    /** Number of rows fetched per round trip when streaming a result set. */
+    private static final int STREAMING_FETCH_SIZE = 1000;
+
     private final ConsoleLogger logger = ConsoleLoggerFactory.get(PostgreSqlDataSource.class);
 
     private String host;
@@ -105,6 +110,7 @@ public class PostgreSqlDataSource extends AbstractSqlDataSource {
         this.sqlExtension = extensionsFactory.buildExtension(col);
         this.poolSize = settings.getProperty(DatabaseSettings.MYSQL_POOL_SIZE);
         this.maxLifetime = settings.getProperty(DatabaseSettings.MYSQL_CONNECTION_MAX_LIFETIME);
+        initAsyncExecutor("AuthMe-PostgreSQL-Async", poolSize);
     }
 
     /**
@@ -154,6 +160,11 @@ public class PostgreSqlDataSource extends AbstractSqlDataSource {
      */
     private void checkTablesAndColumns() throws SQLException {
         try (Connection con = getConnection(); Statement st = con.createStatement()) {
+            if (SchemaVersionTable.isUpToDate(con, tableName, col)) {
+                logger.info("PostgreSQL schema is up to date");
+                return;
+            }
+
             // Create table with ID column if it doesn't exist
             String sql = "CREATE TABLE IF NOT EXISTS " + tableName + " ("
                 + col.ID + " BIGSERIAL,"
@@ -253,32 +264,101 @@ public class PostgreSqlDataSource extends AbstractSqlDataSource {
                 st.executeUpdate("ALTER TABLE " + tableName
                     + " ADD COLUMN " + col.PLAYER_UUID + " VARCHAR(36)");
             }
+
+            createIndexes(st);
+            SchemaVersionTable.markUpToDate(con, tableName, col);
         }
         logger.info("PostgreSQL setup finished");
     }
 
+    /**
+     * Creates the indexes used by frequently run queries if they don't exist.
+     *
+     * @param st the statement to use
+     * @throws SQLException .
+     */
+    private void createIndexes(Statement st) throws SQLException {
+        createIndexIfMissing(st, "lastip_idx", col.LAST_IP);
+        createIndexIfMissing(st, "email_idx", "LOWER(" + col.EMAIL + ")");
+        createIndexIfMissing(st, "lastlogin_idx", col.LAST_LOGIN);
+        createIndexIfMissing(st, "regdate_idx", col.REGISTRATION_DATE);
+        createIndexIfMissing(st, "islogged_idx", col.IS_LOGGED);
+    }
+
+    private void createIndexIfMissing(Statement st, String suffix, String expression) throws SQLException {
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS " + tableName + "_" + suffix
+            + " ON " + tableName + " (" + expression + ");");
+    }
+
     private boolean isColumnMissing(DatabaseMetaData metaData, String columnName) throws SQLException {
         try (ResultSet rs = metaData.getColumns(null, null, tableName, columnName.toLowerCase(Locale.ROOT))) {
             return !rs.next();
         }
     }
 
+    @Override
+    public List<QueryPlan> explainHotQueries() {
+        try (Connection con = getConnection()) {
+            return explainHotQueries(con, tableName, col);
+        } catch (SQLException e) {
+            logSqlException(e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    protected String formatQueryPlanRow(ResultSet rs) throws SQLException {
+        return rs.getString(1);
+    }
+
+    @Override
+    protected boolean isFullScan(String planRow) {
+        return planRow.contains("Seq Scan");
+    }
+
     @Override
     public PlayerAuth getAuth(String user) {
+        try (Connection con = getConnection()) {
+            return getAuth(con, user);
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return null;
+    }
+
+    @Override
+    public List<String> commitLogin(PlayerAuth auth, boolean grantSession) {
+        try (Connection con = getConnection()) {
+            return commitLogin(con, tableName, col, auth, grantSession);
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public PlayerAuth consumeSession(String user) {
+        try (Connection con = getConnection()) {
+            // The conditional update claims the session, so only one caller can get the auth
+            return clearSessionFlags(con, tableName, col, user) ? getAuth(con, user) : null;
+        } catch (SQLException ex) {
+            logSqlException(ex);
+        }
+        return null;
+    }
+
+    private PlayerAuth getAuth(Connection con, String user) throws SQLException {
         String sql = "SELECT * FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        PlayerAuth auth;
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
+        try (PreparedStatement pst = con.prepareStatement(sql)) {
             pst.setString(1, user.toLowerCase(Locale.ROOT));
             try (ResultSet rs = pst.executeQuery()) {
                 if (rs.next()) {
                     int id = rs.getInt(col.ID);
-                    auth = buildAuthFromResultSet(rs);
+                    PlayerAuth auth = buildAuthFromResultSet(rs);
                     sqlExtension.extendAuth(auth, id, con);
                     return auth;
                 }
             }
-        } catch (SQLException ex) {
-            logSqlException(ex);
         }
         return null;
     }
@@ -315,13 +395,11 @@ public class PostgreSqlDataSource extends AbstractSqlDataSource {
     @Override
     public Set<String> getRecordsToPurge(long until) {
         Set<String> list = new HashSet<>();
-        String select = "SELECT " + col.NAME + " FROM " + tableName + " WHERE GREATEST("
-            + " COALESCE(" + col.LAST_LOGIN + ", 0),"
-            + " COALESCE(" + col.REGISTRATION_DATE + ", 0)"
-            + ") < ?;";
+        String select = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + getPurgeCondition(col) + ";";
         try (Connection con = getConnection();
              PreparedStatement selectPst = con.prepareStatement(select)) {
             selectPst.setLong(1, until);
+            selectPst.setLong(2, until);
             try (ResultSet rs = selectPst.executeQuery()) {
                 while (rs.next()) {
                     list.add(rs.getString(col.NAME));
@@ -351,21 +429,19 @@ public class PostgreSqlDataSource extends AbstractSqlDataSource {
 
     @Override
     public void closeConnection() {
+        shutdownAsyncExecutor();
         if (ds != null && !ds.isClosed()) {
             ds.close();
         }
     }
 
     @Override
-    public void purgeRecords(Collection<String> toPurge) {
-        String sql = "DELETE FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        try (Connection con = getConnection(); PreparedStatement pst = con.prepareStatement(sql)) {
-            for (String name : toPurge) {
-                pst.setString(1, name.toLowerCase(Locale.ROOT));
-                pst.executeUpdate();
-            }
+    public int purgeRecords(Collection<String> toPurge) {
+        try (Connection con = getConnection()) {
+            return SqlDataSourceUtils.deleteByNames(con, tableName, col.NAME, toPurge);
         } catch (SQLException ex) {
             logSqlException(ex);
+            return 0;
         }
     }
 
@@ -375,20 +451,43 @@ public class PostgreSqlDataSource extends AbstractSqlDataSource {
     }
 
     @Override
-    public List<PlayerAuth> getAllAuths() {
-        List<PlayerAuth> auths = new ArrayList<>();
-        try (Connection con = getConnection(); Statement st = con.createStatement()) {
-            try (ResultSet rs = st.executeQuery("SELECT * FROM " + tableName)) {
-                while (rs.next()) {
-                    PlayerAuth auth = buildAuthFromResultSet(rs);
-                    sqlExtension.extendAuth(auth, rs.getInt(col.ID), con);
-                    auths.add(auth);
+    public boolean forEachAuth(AuthProjection projection, Consumer<PlayerAuth> consumer) {
+        String columns = projection == AuthProjection.NAMES ? col.NAME + ", " + col.REAL_NAME : "*";
+        try (Connection con = getConnection()) {
+            // The PostgreSQL driver only uses a cursor for fetching rows outside of auto-commit mode
+            con.setAutoCommit(false);
+            try (Statement st = con.createStatement()) {
+                st.setFetchSize(STREAMING_FETCH_SIZE);
+                try (ResultSet rs = st.executeQuery("SELECT " + columns + " FROM " + tableName)) {
+                    while (rs.next()) {
+                        if (projection == AuthProjection.NAMES) {
+                            consumer.accept(buildNamesFromResultSet(rs, col));
+                        } else {
+                            PlayerAuth auth = buildAuthFromResultSet(rs);
+                            sqlExtension.extendAuth(auth, rs.getInt(col.ID), con);
+                            consumer.accept(auth);
+                        }
+                    }
                 }
+            } finally {
+                con.setAutoCommit(true);
             }
         } catch (SQLException ex) {
             logSqlException(ex);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean applyPendingWrites(Collection<PendingAuthWrite> writes) {
+        try (Connection con = getConnection()) {
+            SqlDataSourceUtils.executePendingWrites(con, col, tableName, writes);
+            return true;
+        } catch (SQLException ex) {
+            logSqlException(ex);
+            return false;
         }
-        return auths;
     }
 
     @Override
@@ -0,0 +1,40 @@
+package fr.xephi.authme.datasource;
+
+import java.util.List;
+
+/**
+ * Result of running EXPLAIN on a query of a SQL data source.
+ *
+ * @see AbstractSqlDataSource#explainHotQueries()
+ */
+public final class QueryPlan {
+
+    private final String queryName;
+    private final List<String> planRows;
+    private final boolean fullScan;
+
+    /**
+     * Constructor.
+     *
+     * @param queryName name of the query (name of the data source method)
+     * @param planRows the rows returned by EXPLAIN, formatted as text
+     * @param fullScan whether the database scans the entire table to execute the query
+     */
+    public QueryPlan(String queryName, List<String> planRows, boolean fullScan) {
+        this.queryName = queryName;
+        this.planRows = planRows;
+        this.fullScan = fullScan;
+    }
+
+    public String getQueryName() {
+        return queryName;
+    }
+
+    public List<String> getPlanRows() {
+        return planRows;
+    }
+
+    public boolean isFullScan() {
+        return fullScan;
+    }
+}
@@ -0,0 +1,199 @@
+package fr.xephi.authme.datasource;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.output.ConsoleLoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Probabilistic set of all registered (lowercase) names. Used by {@link CacheDataSource} to answer
+ * "definitely not registered" for unknown names without querying the database, e.g. during bot attacks
+ * with random names.
+ * <p>
+ * Names can only be added to the underlying Bloom filter: removed accounts stay in the filter (which only
+ * results in an unnecessary database lookup) until the filter is rebuilt. The filter is also rebuilt
+ * periodically so that accounts created by other servers sharing the database are picked up.
+ */
+public class RegisteredNamesFilter {
+
+    /** Targeted probability that an unregistered name is reported as possibly registered. */
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+    /** Minimum number of names the filter is sized for. */
+    private static final int MIN_EXPECTED_INSERTIONS = 10_000;
+    /** Time after which the filter is rebuilt to pick up names which were added to the database elsewhere. */
+    private static final long REBUILD_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final ConsoleLogger logger = ConsoleLoggerFactory.get(RegisteredNamesFilter.class);
+
+    /** The filter to query; null until the names have been loaded from the data source. */
+    private volatile BloomFilter<String> filter;
+    /** Filter currently being loaded, which also receives all names added during the load. */
+    private BloomFilter<String> loadingFilter;
+    /** Whether a load has been scheduled or is running; claimed before anything is queried or allocated. */
+    private final AtomicBoolean isLoadPending = new AtomicBoolean();
+    private volatile int expectedInsertions;
+    private volatile long loadTimestamp;
+    private final AtomicInteger removedNames = new AtomicInteger();
+    private final AtomicLong negativeLookups = new AtomicLong();
+
+    /**
+     * Builds the filter by streaming all names from the given data source. The previous filter, if any,
+     * remains in use until the new one has been completely loaded. Does nothing if a load is already
+     * scheduled or running.
+     *
+     * @param dataSource the data source to read the names from
+     */
+    public void load(DataSource dataSource) {
+        if (isLoadPending.compareAndSet(false, true)) {
+            loadClaimed(dataSource);
+        }
+    }
+
+    /**
+     * Schedules a rebuild of the filter on the given executor. Only one load is scheduled at a time:
+     * calls made while a load is scheduled or running do nothing.
+     *
+     * @param dataSource the data source to read the names from
+     * @param executor the executor to run the load on
+     */
+    public void loadAsync(DataSource dataSource, Executor executor) {
+        if (isLoadPending.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> loadClaimed(dataSource));
+            } catch (RejectedExecutionException e) {
+                isLoadPending.set(false);
+            }
+        }
+    }
+
+    private void loadClaimed(DataSource dataSource) {
+        long startTimestamp = System.currentTimeMillis();
+        BloomFilter<String> newFilter;
+        boolean isSuccessful = false;
+        try {
+            int expected = Math.max(MIN_EXPECTED_INSERTIONS, dataSource.getAccountsRegistered() * 2);
+            newFilter = createFilter(expected);
+            synchronized (this) {
+                loadingFilter = newFilter;
+            }
+            isSuccessful = dataSource.forEachName(name -> newFilter.put(name.toLowerCase(Locale.ROOT)));
+            if (isSuccessful) {
+                synchronized (this) {
+                    filter = newFilter;
+                    expectedInsertions = expected;
+                    loadTimestamp = startTimestamp;
+                    removedNames.set(0);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                loadingFilter = null;
+            }
+            isLoadPending.set(false);
+        }
+
+        if (isSuccessful) {
+            logger.debug("Loaded registered names filter with approximately {0} names",
+                newFilter.approximateElementCount());
+        } else {
+            logger.warning("Could not load the names of all accounts; registered names filter is not updated");
+        }
+    }
+
+    /**
+     * Returns whether the given name may be registered. If false is returned, the name is guaranteed
+     * not to be registered. Always returns true while the filter has not been loaded.
+     *
+     * @param name the name to check (lowercase)
+     * @return false if the name is definitely not registered, true otherwise
+     */
+    public boolean mightBeRegistered(String name) {
+        BloomFilter<String> currentFilter = filter;
+        if (currentFilter == null || currentFilter.mightContain(name)) {
+            return true;
+        }
+        negativeLookups.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Adds the given name to the filter.
+     *
+     * @param name the name to add (lowercase)
+     */
+    public synchronized void add(String name) {
+        if (filter != null) {
+            filter.put(name);
+        }
+        if (loadingFilter != null) {
+            loadingFilter.put(name);
+        }
+    }
+
+    /**
+     * Records that the given number of names were removed from the data source.
+     *
+     * @param total the number of removed names
+     */
+    public void markRemoved(int total) {
+        removedNames.addAndGet(total);
+    }
+
+    /**
+     * Returns whether the filter should be rebuilt because it holds more names than it was sized for,
+     * because too many names have been removed since it was built, or because it is outdated.
+     *
+     * @return true if the filter should be rebuilt, false otherwise
+     */
+    public boolean needsRebuild() {
+        BloomFilter<String> currentFilter = filter;
+        return currentFilter != null
+            && (currentFilter.approximateElementCount() > expectedInsertions
+                || removedNames.get() > expectedInsertions / 4
+                || System.currentTimeMillis() - loadTimestamp > REBUILD_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @return true if the filter has been loaded and is used to answer lookups, false otherwise
+     */
+    public boolean isLoaded() {
+        return filter != null;
+    }
+
+    /**
+     * @return the approximate number of names in the filter
+     */
+    public long getApproximateSize() {
+        BloomFilter<String> currentFilter = filter;
+        return currentFilter == null ? 0 : currentFilter.approximateElementCount();
+    }
+
+    /**
+     * @return the probability that an unregistered name is reported as possibly registered
+     */
+    public double getFalsePositiveRate() {
+        BloomFilter<String> currentFilter = filter;
+        return currentFilter == null ? 0 : currentFilter.expectedFpp();
+    }
+
+    /**
+     * @return the number of lookups answered with "not registered" without querying the database
+     */
+    public long getNegativeLookups() {
+        return negativeLookups.get();
+    }
+
+    private static BloomFilter<String> createFilter(int expectedInsertions) {
+        return BloomFilter.create(
+            Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions, FALSE_POSITIVE_PROBABILITY);
+    }
+}
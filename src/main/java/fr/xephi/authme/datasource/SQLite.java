@@ -18,10 +18,13 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static fr.xephi.authme.datasource.SqlDataSourceUtils.getNullableLong;
 import static fr.xephi.authme.datasource.SqlDataSourceUtils.logSqlException;
@@ -39,6 +42,9 @@ public class SQLite extends AbstractSqlDataSource {
     private final String tableName;
     private final Columns col;
     private Connection con;
+    private SqLiteReadPool readPool;
+    private AuthMeColumnsHandler readColumnsHandler;
+    private SqLiteWriter writer;
 
     /**
      * Constructor for SQLite.
@@ -54,11 +60,19 @@ public class SQLite extends AbstractSqlDataSource {
         this.database = settings.getProperty(DatabaseSettings.MYSQL_DATABASE);
         this.tableName = settings.getProperty(DatabaseSettings.MYSQL_TABLE);
         this.col = new Columns(settings);
+        boolean isWalMode = settings.getProperty(DatabaseSettings.SQLITE_WAL_MODE);
+        // Without WAL mode all operations share a single connection, so additional threads would
+        // only wait on each other
+        initAsyncExecutor("AuthMe-SQLite-Async",
+            isWalMode ? settings.getProperty(DatabaseSettings.SQLITE_READ_CONNECTIONS) + 1 : 1);
 
         try {
             this.connect();
             this.setup();
             this.migrateIfNeeded();
+            if (isWalMode) {
+                this.enableWalMode();
+            }
         } catch (Exception ex) {
             logger.logException("Error during SQLite initialization:", ex);
             throw ex;
@@ -74,6 +88,7 @@ public class SQLite extends AbstractSqlDataSource {
         this.col = new Columns(settings);
         this.con = connection;
         this.columnsHandler = AuthMeColumnsHandler.createForSqlite(con, settings);
+        initAsyncExecutor("AuthMe-SQLite-Async", 1);
     }
 
     /**
@@ -101,6 +116,11 @@ public class SQLite extends AbstractSqlDataSource {
     @VisibleForTesting
     @SuppressWarnings("checkstyle:CyclomaticComplexity")
     protected void setup() throws SQLException {
+        if (SchemaVersionTable.isUpToDate(con, tableName, col)) {
+            logger.info("SQLite schema is up to date");
+            return;
+        }
+
         try (Statement st = con.createStatement()) {
             // Note: cannot add unique fields later on in SQLite, so we add it on initialization
             st.executeUpdate("CREATE TABLE IF NOT EXISTS " + tableName + " ("
@@ -191,10 +211,32 @@ public class SQLite extends AbstractSqlDataSource {
                 st.executeUpdate("ALTER TABLE " + tableName
                     + " ADD COLUMN " + col.PLAYER_UUID + " VARCHAR(36)");
             }
+
+            createIndexes(st);
         }
+        SchemaVersionTable.markUpToDate(con, tableName, col);
         logger.info("SQLite Setup finished");
     }
 
+    /**
+     * Creates the indexes used by frequently run queries if they don't exist.
+     *
+     * @param st the statement to use
+     * @throws SQLException .
+     */
+    private void createIndexes(Statement st) throws SQLException {
+        createIndexIfMissing(st, "lastip_idx", col.LAST_IP);
+        createIndexIfMissing(st, "email_idx", "LOWER(" + col.EMAIL + ")");
+        createIndexIfMissing(st, "lastlogin_idx", col.LAST_LOGIN);
+        createIndexIfMissing(st, "regdate_idx", col.REGISTRATION_DATE);
+        createIndexIfMissing(st, "islogged_idx", col.IS_LOGGED);
+    }
+
+    private void createIndexIfMissing(Statement st, String suffix, String expression) throws SQLException {
+        st.executeUpdate("CREATE INDEX IF NOT EXISTS " + tableName + "_" + suffix
+            + " ON " + tableName + " (" + expression + ");");
+    }
+
     /**
      * Migrates the database if necessary. See {@link SqLiteMigrater} for details.
      */
@@ -204,8 +246,13 @@ public class SQLite extends AbstractSqlDataSource {
         if (SqLiteMigrater.isMigrationRequired(metaData, tableName, col)) {
             new SqLiteMigrater(settings, dataFolder).performMigration(this);
             // Migration deletes the table and recreates it, therefore call connect() again
-            // to get an up-to-date Connection to the database
+            // to get an up-to-date Connection to the database. The caller enables WAL mode again
+            disableWalMode();
+            close(con);
             connect();
+            // Indexes were dropped with the old table: set up the new table again
+            SchemaVersionTable.reset(con, tableName);
+            setup();
         }
     }
 
@@ -215,22 +262,148 @@ public class SQLite extends AbstractSqlDataSource {
         }
     }
 
+    /**
+     * Switches the database to write-ahead logging, in which readers and the writer don't block each other.
+     * Reads are then run on a pool of read-only connections and writes are grouped by a single writer thread.
+     *
+     * @throws SQLException when an SQL error occurs while opening the read connections
+     */
+    private void enableWalMode() throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute("PRAGMA journal_mode = WAL;");
+            // Safe in WAL mode: a crash may lose the last commits but cannot corrupt the database
+            st.execute("PRAGMA synchronous = NORMAL;");
+            st.execute("PRAGMA busy_timeout = 5000;");
+        }
+        int readConnections = settings.getProperty(DatabaseSettings.SQLITE_READ_CONNECTIONS);
+        readPool = new SqLiteReadPool(getJdbcUrl(dataFolder.getAbsolutePath(), "", database), readConnections);
+        readColumnsHandler = AuthMeColumnsHandler.createForSqlite(readPool::getConnection, settings);
+        writer = new SqLiteWriter(con);
+        logger.info("SQLite uses write-ahead logging with " + readConnections + " read connections");
+    }
+
+    /**
+     * Stops the writer thread and closes the read connections of the write-ahead logging mode, if active.
+     */
+    private void disableWalMode() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        if (readPool != null) {
+            readColumnsHandler = null;
+            readPool.close();
+            readPool = null;
+        }
+    }
+
+    @Override
+    protected AuthMeColumnsHandler getReadColumnsHandler() {
+        return readColumnsHandler == null ? columnsHandler : readColumnsHandler;
+    }
+
+    /**
+     * Runs the given query on a connection of the read pool in write-ahead logging mode, or on the main
+     * connection otherwise. In WAL mode, the main connection belongs to the writer thread, which may have
+     * a transaction of grouped writes open on it.
+     *
+     * @param query the query to run
+     * @param failureValue the value to return if an SQL error occurs
+     * @param <T> the result type
+     * @return the result of the query, or the failure value
+     */
+    private <T> T read(SqlQuery<T> query, T failureValue) {
+        if (readPool == null) {
+            try {
+                return query.run(con);
+            } catch (SQLException ex) {
+                logSqlException(ex);
+                return failureValue;
+            }
+        }
+        try (Connection readCon = readPool.getConnection()) {
+            return query.run(readCon);
+        } catch (SQLException ex) {
+            logSqlException(ex);
+            return failureValue;
+        }
+    }
+
+    @Override
+    protected <T> T write(Supplier<T> operation, T failureValue) {
+        return writer == null ? operation.get() : writer.execute(operation, failureValue, false);
+    }
+
     @Override
     public void reload() {
+        disableWalMode();
         close(con);
         try {
             this.connect();
             this.setup();
             this.migrateIfNeeded();
+            if (settings.getProperty(DatabaseSettings.SQLITE_WAL_MODE)) {
+                this.enableWalMode();
+            }
         } catch (SQLException ex) {
             logger.logException("Error while reloading SQLite:", ex);
         }
     }
 
+    @Override
+    public List<QueryPlan> explainHotQueries() {
+        return read(connection -> explainHotQueries(connection, tableName, col), Collections.emptyList());
+    }
+
+    @Override
+    protected String getExplainPrefix() {
+        return "EXPLAIN QUERY PLAN ";
+    }
+
+    @Override
+    protected String formatQueryPlanRow(ResultSet rs) throws SQLException {
+        return rs.getString("detail");
+    }
+
+    @Override
+    protected boolean isFullScan(String planRow) {
+        // Index lookups are reported as "SEARCH", full table scans as "SCAN"
+        return planRow.startsWith("SCAN");
+    }
+
     @Override
     public PlayerAuth getAuth(String user) {
+        return read(connection -> getAuth(connection, user), null);
+    }
+
+    @Override
+    public List<String> commitLogin(PlayerAuth auth, boolean grantSession) {
+        return write(() -> {
+            try {
+                return commitLogin(con, tableName, col, auth, grantSession);
+            } catch (SQLException ex) {
+                logSqlException(ex);
+                return Collections.<String>emptyList();
+            }
+        }, Collections.emptyList());
+    }
+
+    @Override
+    public PlayerAuth consumeSession(String user) {
+        return write(() -> {
+            try {
+                // The conditional update claims the session, so only one caller can get the auth
+                return clearSessionFlags(con, tableName, col, user) ? getAuth(con, user) : null;
+            } catch (SQLException ex) {
+                logSqlException(ex);
+                return null;
+            }
+        }, null);
+    }
+
+    private PlayerAuth getAuth(Connection connection, String user) {
         String sql = "SELECT * FROM " + tableName + " WHERE LOWER(" + col.NAME + ")=LOWER(?);";
-        try (PreparedStatement pst = con.prepareStatement(sql)) {
+        try (PreparedStatement pst = connection.prepareStatement(sql)) {
             pst.setString(1, user);
             try (ResultSet rs = pst.executeQuery()) {
                 if (rs.next()) {
@@ -246,52 +419,54 @@ public class SQLite extends AbstractSqlDataSource {
     @Override
     public Set<String> getRecordsToPurge(long until) {
         Set<String> list = new HashSet<>();
-        String select = "SELECT " + col.NAME + " FROM " + tableName + " WHERE MAX("
-            + " COALESCE(" + col.LAST_LOGIN + ", 0),"
-            + " COALESCE(" + col.REGISTRATION_DATE + ", 0)"
-            + ") < ?;";
-        try (PreparedStatement selectPst = con.prepareStatement(select)) {
-            selectPst.setLong(1, until);
-            try (ResultSet rs = selectPst.executeQuery()) {
-                while (rs.next()) {
-                    list.add(rs.getString(col.NAME));
+        String select = "SELECT " + col.NAME + " FROM " + tableName + " WHERE " + getPurgeCondition(col) + ";";
+        return read(connection -> {
+            try (PreparedStatement selectPst = connection.prepareStatement(select)) {
+                selectPst.setLong(1, until);
+                selectPst.setLong(2, until);
+                try (ResultSet rs = selectPst.executeQuery()) {
+                    while (rs.next()) {
+                        list.add(rs.getString(col.NAME));
+                    }
                 }
             }
-        } catch (SQLException ex) {
-            logSqlException(ex);
-        }
-
-        return list;
+            return list;
+        }, list);
     }
 
     @Override
-    public void purgeRecords(Collection<String> toPurge) {
-        String delete = "DELETE FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        try (PreparedStatement deletePst = con.prepareStatement(delete)) {
-            for (String name : toPurge) {
-                deletePst.setString(1, name.toLowerCase(Locale.ROOT));
-                deletePst.executeUpdate();
+    public int purgeRecords(Collection<String> toPurge) {
+        Supplier<Integer> deletion = () -> {
+            try {
+                return SqlDataSourceUtils.deleteByNames(con, tableName, col.NAME, toPurge);
+            } catch (SQLException ex) {
+                logSqlException(ex);
+                return 0;
             }
-        } catch (SQLException ex) {
-            logSqlException(ex);
-        }
+        };
+        // Deletion runs in its own transaction, so it must not be grouped with other writes
+        return writer == null ? deletion.get() : writer.execute(deletion, 0, true);
     }
 
     @Override
     public boolean removeAuth(String user) {
-        String sql = "DELETE FROM " + tableName + " WHERE " + col.NAME + "=?;";
-        try (PreparedStatement pst = con.prepareStatement(sql)) {
-            pst.setString(1, user.toLowerCase(Locale.ROOT));
-            pst.executeUpdate();
-            return true;
-        } catch (SQLException ex) {
-            logSqlException(ex);
-        }
-        return false;
+        return write(() -> {
+            String sql = "DELETE FROM " + tableName + " WHERE " + col.NAME + "=?;";
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                pst.setString(1, user.toLowerCase(Locale.ROOT));
+                pst.executeUpdate();
+                return true;
+            } catch (SQLException ex) {
+                logSqlException(ex);
+            }
+            return false;
+        }, false);
     }
 
     @Override
     public void closeConnection() {
+        shutdownAsyncExecutor();
+        disableWalMode();
         try {
             if (con != null && !con.isClosed()) {
                 con.close();
@@ -307,18 +482,32 @@ public class SQLite extends AbstractSqlDataSource {
     }
 
     @Override
-    public List<PlayerAuth> getAllAuths() {
-        List<PlayerAuth> auths = new ArrayList<>();
-        String sql = "SELECT * FROM " + tableName + ";";
-        try (PreparedStatement pst = con.prepareStatement(sql); ResultSet rs = pst.executeQuery()) {
-            while (rs.next()) {
-                PlayerAuth auth = buildAuthFromResultSet(rs);
-                auths.add(auth);
+    public boolean forEachAuth(AuthProjection projection, Consumer<PlayerAuth> consumer) {
+        String columns = projection == AuthProjection.NAMES ? col.NAME + ", " + col.REAL_NAME : "*";
+        String sql = "SELECT " + columns + " FROM " + tableName + ";";
+        return read(connection -> {
+            try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+                while (rs.next()) {
+                    consumer.accept(projection == AuthProjection.NAMES
+                        ? buildNamesFromResultSet(rs, col)
+                        : buildAuthFromResultSet(rs));
+                }
             }
-        } catch (SQLException ex) {
-            logSqlException(ex);
-        }
-        return auths;
+            return true;
+        }, false);
+    }
+
+    @Override
+    public boolean applyPendingWrites(Collection<PendingAuthWrite> writes) {
+        return write(() -> {
+            try {
+                SqlDataSourceUtils.executePendingWrites(con, col, tableName, writes);
+                return true;
+            } catch (SQLException ex) {
+                logSqlException(ex);
+                return false;
+            }
+        }, false);
     }
 
     @Override
@@ -326,43 +515,45 @@ public class SQLite extends AbstractSqlDataSource {
         List<String> players = new ArrayList<>();
         String sql = "SELECT " + col.REAL_NAME + " FROM " + tableName + " WHERE " + col.IS_LOGGED + " = 1"
             + " AND (" + col.EMAIL + " = 'your@email.com' OR " + col.EMAIL + " IS NULL);";
-        try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) {
-                players.add(rs.getString(1));
+        return read(connection -> {
+            try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+                while (rs.next()) {
+                    players.add(rs.getString(1));
+                }
             }
-        } catch (SQLException ex) {
-            logSqlException(ex);
-        }
-        return players;
+            return players;
+        }, players);
     }
 
     @Override
     public List<PlayerAuth> getRecentlyLoggedInPlayers() {
         List<PlayerAuth> players = new ArrayList<>();
         String sql = "SELECT * FROM " + tableName + " ORDER BY " + col.LAST_LOGIN + " DESC LIMIT 10;";
-        try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) {
-                players.add(buildAuthFromResultSet(rs));
+        return read(connection -> {
+            try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+                while (rs.next()) {
+                    players.add(buildAuthFromResultSet(rs));
+                }
             }
-        } catch (SQLException e) {
-            logSqlException(e);
-        }
-        return players;
+            return players;
+        }, players);
     }
 
 
     @Override
     public boolean setTotpKey(String user, String totpKey) {
-        String sql = "UPDATE " + tableName + " SET " + col.TOTP_KEY + " = ? WHERE " + col.NAME + " = ?";
-        try (PreparedStatement pst = con.prepareStatement(sql)) {
-            pst.setString(1, totpKey);
-            pst.setString(2, user.toLowerCase(Locale.ROOT));
-            pst.executeUpdate();
-            return true;
-        } catch (SQLException e) {
-            logSqlException(e);
-        }
-        return false;
+        return write(() -> {
+            String sql = "UPDATE " + tableName + " SET " + col.TOTP_KEY + " = ? WHERE " + col.NAME + " = ?";
+            try (PreparedStatement pst = con.prepareStatement(sql)) {
+                pst.setString(1, totpKey);
+                pst.setString(2, user.toLowerCase(Locale.ROOT));
+                pst.executeUpdate();
+                return true;
+            } catch (SQLException e) {
+                logSqlException(e);
+            }
+            return false;
+        }, false);
     }
 
     private PlayerAuth buildAuthFromResultSet(ResultSet row) throws SQLException {
@@ -420,4 +611,14 @@ public class SQLite extends AbstractSqlDataSource {
             }
         }
     }
+
+    /**
+     * Query to run with a given connection.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    private interface SqlQuery<T> {
+        T run(Connection connection) throws SQLException;
+    }
 }
@@ -0,0 +1,105 @@
+package fr.xephi.authme.datasource;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * Keeps track of the schema version of the AuthMe table in a separate table, so that the checks for
+ * missing columns and the migrations are only run once instead of on every startup.
+ * <p>
+ * Increase {@link #CURRENT_VERSION} whenever the table setup of a data source is changed, e.g. a column
+ * or an index is added, so that the setup is run again for existing databases. The setup is also run
+ * again if the column names in the configuration are changed.
+ */
+final class SchemaVersionTable {
+
+    /** Version of the AuthMe table's schema as created by the SQL data sources. */
+    static final int CURRENT_VERSION = 1;
+
+    private SchemaVersionTable() {
+    }
+
+    /**
+     * Returns whether the table has been set up with the current schema version and column names.
+     *
+     * @param con the connection to use
+     * @param authTable the name of the AuthMe table
+     * @param col the column names
+     * @return true if the table is up to date, false if it has to be checked
+     */
+    static boolean isUpToDate(Connection con, String authTable, Columns col) {
+        String sql = "SELECT version, column_names FROM " + getVersionTableName(authTable) + ";";
+        try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            return rs.next()
+                && rs.getInt("version") == CURRENT_VERSION
+                && getColumnsFingerprint(col).equals(rs.getString("column_names"))
+                // The version table may have outlived the AuthMe table, e.g. if it was dropped or renamed
+                && isTablePresent(con, authTable);
+        } catch (SQLException e) {
+            // The version table does not exist yet
+            return false;
+        }
+    }
+
+    /**
+     * Saves that the table has been set up with the current schema version and column names.
+     *
+     * @param con the connection to use
+     * @param authTable the name of the AuthMe table
+     * @param col the column names
+     * @throws SQLException :)
+     */
+    static void markUpToDate(Connection con, String authTable, Columns col) throws SQLException {
+        String versionTable = getVersionTableName(authTable);
+        try (Statement st = con.createStatement()) {
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS " + versionTable
+                + " (version INT NOT NULL, column_names VARCHAR(64) NOT NULL);");
+            st.executeUpdate("DELETE FROM " + versionTable + ";");
+        }
+        try (PreparedStatement pst = con.prepareStatement(
+            "INSERT INTO " + versionTable + " (version, column_names) VALUES (?, ?);")) {
+            pst.setInt(1, CURRENT_VERSION);
+            pst.setString(2, getColumnsFingerprint(col));
+            pst.executeUpdate();
+        }
+    }
+
+    /**
+     * Removes the saved schema version, so that the table is fully set up again on the next check.
+     *
+     * @param con the connection to use
+     * @param authTable the name of the AuthMe table
+     * @throws SQLException :)
+     */
+    static void reset(Connection con, String authTable) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.executeUpdate("DROP TABLE IF EXISTS " + getVersionTableName(authTable) + ";");
+        }
+    }
+
+    private static boolean isTablePresent(Connection con, String table) throws SQLException {
+        DatabaseMetaData metaData = con.getMetaData();
+        String storedName = table;
+        if (metaData.storesLowerCaseIdentifiers()) {
+            storedName = table.toLowerCase(Locale.ROOT);
+        } else if (metaData.storesUpperCaseIdentifiers()) {
+            storedName = table.toUpperCase(Locale.ROOT);
+        }
+        try (ResultSet rs = metaData.getTables(null, null, storedName, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    static String getVersionTableName(String authTable) {
+        return authTable + "_schema";
+    }
+
+    private static String getColumnsFingerprint(Columns col) {
+        return Integer.toHexString(String.join(",", col.getAllColumnNames()).hashCode());
+    }
+}
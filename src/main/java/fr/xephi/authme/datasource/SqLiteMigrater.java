@@ -93,6 +93,8 @@ class SqLiteMigrater {
         try (Statement st = connection.createStatement()) {
             st.execute("ALTER TABLE " + tableName + " RENAME TO " + tempTable + ";");
         }
+        // Make sure that the new table is created by the reload
+        SchemaVersionTable.reset(connection, tableName);
 
         sqLite.reload();
         connection = getConnection(sqLite);
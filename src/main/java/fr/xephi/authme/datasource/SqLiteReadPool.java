@@ -0,0 +1,118 @@
+package fr.xephi.authme.datasource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static fr.xephi.authme.datasource.SqlDataSourceUtils.logSqlException;
+
+/**
+ * Small pool of read-only connections to an SQLite database in write-ahead logging mode, in which
+ * readers don't block the writer and vice versa. Closing a connection obtained from this pool
+ * returns it to the pool.
+ */
+class SqLiteReadPool {
+
+    private static final long BORROW_TIMEOUT_SECONDS = 10;
+
+    private final List<Connection> connections = new ArrayList<>();
+    private final BlockingQueue<Connection> idleConnections;
+
+    /**
+     * Constructor. Opens all connections of the pool.
+     *
+     * @param jdbcUrl the URL of the SQLite database
+     * @param size the number of connections to open
+     * @throws SQLException when a connection could not be opened
+     */
+    SqLiteReadPool(String jdbcUrl, int size) throws SQLException {
+        idleConnections = new ArrayBlockingQueue<>(size);
+        try {
+            for (int i = 0; i < size; ++i) {
+                Connection connection = DriverManager.getConnection(jdbcUrl);
+                connections.add(connection);
+                try (Statement st = connection.createStatement()) {
+                    st.execute("PRAGMA query_only = true;");
+                    st.execute("PRAGMA busy_timeout = 5000;");
+                }
+                idleConnections.add(connection);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a connection from the pool, waiting if all connections are in use.
+     *
+     * @return a read-only connection, to be closed after use
+     * @throws SQLException if no connection became available in time
+     */
+    Connection getConnection() throws SQLException {
+        Connection connection;
+        try {
+            connection = idleConnections.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for an SQLite read connection", e);
+        }
+        if (connection == null) {
+            throw new SQLException("No SQLite read connection became available within "
+                + BORROW_TIMEOUT_SECONDS + " seconds");
+        }
+        return wrapConnection(connection);
+    }
+
+    /**
+     * Closes all connections of the pool.
+     */
+    void close() {
+        idleConnections.clear();
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logSqlException(e);
+            }
+        }
+        connections.clear();
+    }
+
+    /**
+     * Wraps the given pooled connection so that closing it returns it to the pool instead.
+     *
+     * @param connection the connection to wrap
+     * @return the wrapped connection
+     */
+    private Connection wrapConnection(Connection connection) {
+        AtomicBoolean isReturned = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "close":
+                        if (isReturned.compareAndSet(false, true)) {
+                            idleConnections.offer(connection);
+                        }
+                        return null;
+                    case "isClosed":
+                        return isReturned.get() || connection.isClosed();
+                    default:
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            });
+    }
+}
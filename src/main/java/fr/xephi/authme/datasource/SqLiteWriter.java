@@ -0,0 +1,217 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.output.ConsoleLoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static fr.xephi.authme.datasource.SqlDataSourceUtils.logSqlException;
+
+/**
+ * Runs all writes to an SQLite database on a single thread. Writes which are queued at the same
+ * time are executed in one transaction, so that many small writes only cost one commit.
+ */
+class SqLiteWriter {
+
+    private static final int MAX_WRITES_PER_TRANSACTION = 200;
+
+    private final ConsoleLogger logger = ConsoleLoggerFactory.get(SqLiteWriter.class);
+
+    private final Connection connection;
+    private final BlockingQueue<WriteTask<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean isRunning = true;
+
+    /**
+     * Constructor. Starts the writer thread.
+     *
+     * @param connection the connection to write with (must not be used for writes elsewhere)
+     */
+    SqLiteWriter(Connection connection) {
+        this.connection = connection;
+        writerThread = new Thread(this::processWrites, "AuthMe-SQLite-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues the given write and waits until it has been committed.
+     *
+     * @param operation the write operation
+     * @param failureValue the value to return if the write could not be committed
+     * @param exclusive true if the operation manages its own transaction and must not be grouped with other writes
+     * @param <T> the result type
+     * @return the result of the operation, or the failure value
+     */
+    <T> T execute(Supplier<T> operation, T failureValue, boolean exclusive) {
+        if (Thread.currentThread() == writerThread) {
+            return operation.get();
+        }
+        WriteTask<T> task = new WriteTask<>(operation, failureValue, exclusive);
+        if (!enqueue(task)) {
+            return operation.get();
+        }
+        try {
+            return task.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the task to the queue if the writer is still running. Synchronized with {@link #close()}
+     * so that no task can be queued after the remaining tasks have been taken from the queue.
+     *
+     * @param task the task to queue
+     * @return true if the task was queued, false if the writer has been stopped
+     */
+    private synchronized boolean enqueue(WriteTask<?> task) {
+        if (!isRunning) {
+            return false;
+        }
+        queue.add(task);
+        return true;
+    }
+
+    /**
+     * @return the number of writes waiting to be executed
+     */
+    int getQueuedWrites() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the writer thread after all queued writes have been executed.
+     */
+    void close() {
+        synchronized (this) {
+            isRunning = false;
+        }
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Execute anything that may have been queued while stopping
+        List<WriteTask<?>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(WriteTask::runAlone);
+    }
+
+    private void processWrites() {
+        List<WriteTask<?>> batch = new ArrayList<>();
+        while (isRunning || !queue.isEmpty()) {
+            WriteTask<?> first;
+            try {
+                first = isRunning ? queue.take() : queue.poll();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                break;
+            } else if (first.exclusive) {
+                first.runAlone();
+                continue;
+            }
+
+            batch.add(first);
+            WriteTask<?> next;
+            while (batch.size() < MAX_WRITES_PER_TRANSACTION
+                && (next = queue.peek()) != null && !next.exclusive) {
+                batch.add(queue.poll());
+            }
+            runInTransaction(batch);
+            batch.clear();
+        }
+    }
+
+    private void runInTransaction(List<WriteTask<?>> batch) {
+        if (batch.size() == 1) {
+            batch.get(0).runAlone();
+            return;
+        }
+        try {
+            connection.setAutoCommit(false);
+            batch.forEach(WriteTask::run);
+            connection.commit();
+            batch.forEach(WriteTask::complete);
+        } catch (SQLException e) {
+            logger.warning("Failed to commit " + batch.size() + " grouped writes");
+            logSqlException(e);
+            rollback();
+            batch.forEach(WriteTask::fail);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                logSqlException(e);
+            }
+        }
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logSqlException(e);
+        }
+    }
+
+    /**
+     * A queued write operation.
+     *
+     * @param <T> the result type
+     */
+    private static final class WriteTask<T> {
+        private final Supplier<T> operation;
+        private final T failureValue;
+        private final boolean exclusive;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+        private RuntimeException exception;
+
+        WriteTask(Supplier<T> operation, T failureValue, boolean exclusive) {
+            this.operation = operation;
+            this.failureValue = failureValue;
+            this.exclusive = exclusive;
+        }
+
+        void run() {
+            try {
+                value = operation.get();
+            } catch (RuntimeException e) {
+                exception = e;
+            }
+        }
+
+        void runAlone() {
+            run();
+            complete();
+        }
+
+        void complete() {
+            if (exception == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(exception);
+            }
+        }
+
+        void fail() {
+            result.complete(failureValue);
+        }
+    }
+}
@@ -1,11 +1,28 @@
 package fr.xephi.authme.datasource;
 
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.output.ConsoleLoggerFactory;
 
+import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Utilities for SQL data sources.
@@ -14,6 +31,12 @@ public final class SqlDataSourceUtils {
 
     private static final ConsoleLogger logger = ConsoleLoggerFactory.get(SqlDataSourceUtils.class);
 
+    /** Maximum number of names in one {@code IN (...)} condition, below the parameter limit of all databases. */
+    private static final int MAX_NAMES_PER_STATEMENT = 500;
+
+    /** Maximum number of queued tasks of a database executor before the caller has to run the task itself. */
+    private static final int DATABASE_EXECUTOR_QUEUE_SIZE = 1024;
+
     private SqlDataSourceUtils() {
     }
 
@@ -26,6 +49,86 @@ public final class SqlDataSourceUtils {
         logger.logException("Error during SQL operation:", e);
     }
 
+    /**
+     * Executes the given pending writes, grouping writes that change the same columns into one JDBC batch.
+     *
+     * @param con the connection to use
+     * @param col the column names
+     * @param tableName the table name
+     * @param writes the writes to execute
+     * @throws SQLException :)
+     */
+    public static void executePendingWrites(Connection con, Columns col, String tableName,
+                                            Collection<PendingAuthWrite> writes) throws SQLException {
+        Map<String, List<PendingAuthWrite>> writesByStatement = new LinkedHashMap<>();
+        for (PendingAuthWrite write : writes) {
+            writesByStatement.computeIfAbsent(write.getUpdateStatement(col, tableName), k -> new ArrayList<>())
+                .add(write);
+        }
+
+        for (Map.Entry<String, List<PendingAuthWrite>> entry : writesByStatement.entrySet()) {
+            try (PreparedStatement pst = con.prepareStatement(entry.getKey())) {
+                for (PendingAuthWrite write : entry.getValue()) {
+                    int index = 1;
+                    for (Object value : write.getStatementValues()) {
+                        if (value == null) {
+                            pst.setNull(index, Types.NULL);
+                        } else {
+                            pst.setObject(index, value);
+                        }
+                        ++index;
+                    }
+                    pst.addBatch();
+                }
+                pst.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Deletes the accounts with the given names in one transaction, using {@code DELETE ... IN (...)}
+     * statements with multiple names each.
+     *
+     * @param con the connection to use
+     * @param tableName the table name
+     * @param nameColumn the name column
+     * @param names the names of the accounts to delete
+     * @return the number of deleted rows
+     * @throws SQLException :)
+     */
+    public static int deleteByNames(Connection con, String tableName, String nameColumn,
+                                    Collection<String> names) throws SQLException {
+        List<String> lowercaseNames = names.stream()
+            .map(name -> name.toLowerCase(Locale.ROOT))
+            .distinct()
+            .collect(Collectors.toList());
+
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        int deletedRows = 0;
+        try {
+            for (List<String> chunk : Lists.partition(lowercaseNames, MAX_NAMES_PER_STATEMENT)) {
+                String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                String sql = "DELETE FROM " + tableName + " WHERE " + nameColumn + " IN (" + placeholders + ");";
+                try (PreparedStatement pst = con.prepareStatement(sql)) {
+                    int index = 1;
+                    for (String name : chunk) {
+                        pst.setString(index, name);
+                        ++index;
+                    }
+                    deletedRows += pst.executeUpdate();
+                }
+            }
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+        return deletedRows;
+    }
+
     /**
      * Returns the long value of a column, or null when appropriate. This method is necessary because
      * JDBC's {@link ResultSet#getLong} returns {@code 0} if the entry in the database is {@code null}.
@@ -106,4 +209,67 @@ public final class SqlDataSourceUtils {
             return rs.getInt("COLUMN_SIZE");
         }
     }
+
+    /**
+     * Returns whether the given table has no index with the given name.
+     *
+     * @param metaData the database meta data
+     * @param catalog the catalog (database) of the table, or null
+     * @param tableName the name of the table
+     * @param indexName the name of the index to look for
+     * @return true if the index does not exist, false otherwise
+     * @throws SQLException :)
+     */
+    public static boolean isIndexMissing(DatabaseMetaData metaData, String catalog, String tableName,
+                                         String indexName) throws SQLException {
+        try (ResultSet rs = metaData.getIndexInfo(catalog, null, tableName, false, true)) {
+            while (rs.next()) {
+                if (indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a bounded executor for running database operations asynchronously. Idle threads are
+     * discarded after a minute. If the executor's queue is full, the task is run by the calling thread
+     * so that the database is never flooded with more tasks than it can handle.
+     *
+     * @param name the name of the executor (used to name its threads)
+     * @param threads the maximum number of threads
+     * @return the created executor
+     */
+    public static ExecutorService createDatabaseExecutor(String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(DATABASE_EXECUTOR_QUEUE_SIZE),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat(name + "-%d")
+                .build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Shuts down the given database executor, waiting a few seconds for pending tasks to finish.
+     *
+     * @param executor the executor to shut down (nullable)
+     */
+    public static void shutdownDatabaseExecutor(ExecutorService executor) {
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warning("Database executor did not finish all pending tasks in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.logException("Interrupted while waiting for the database executor:", e);
+        }
+    }
 }
@@ -0,0 +1,140 @@
+package fr.xephi.authme.datasource;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.output.ConsoleLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Buffers session, quit location and login state updates per player and periodically writes them
+ * to the data source in batches. Used by {@link CacheDataSource} when write-behind is enabled.
+ * <p>
+ * Buffered writes are never modified after they have been added to the buffer: a new write merging
+ * the previous one is created on each update, so the pending writes can be read from any thread.
+ */
+class WriteBehindBuffer {
+
+    private final ConsoleLogger logger = ConsoleLoggerFactory.get(WriteBehindBuffer.class);
+
+    private final DataSource source;
+    private final int maxPendingWrites;
+    private final ConcurrentMap<String, PendingAuthWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushExecutor;
+    private final AtomicBoolean isFlushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+
+    /**
+     * Constructor.
+     *
+     * @param source the data source to write to
+     * @param flushInterval interval in milliseconds in which pending writes are flushed
+     * @param maxPendingWrites number of pending writes after which a flush is triggered immediately
+     */
+    WriteBehindBuffer(DataSource source, long flushInterval, int maxPendingWrites) {
+        this.source = source;
+        this.maxPendingWrites = maxPendingWrites;
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("AuthMe-WriteBehind")
+            .setDaemon(true)
+            .build());
+        flushExecutor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a change for the given player to the buffer.
+     *
+     * @param name the player name (lowercase)
+     * @param change the change to apply to the player's pending write
+     * @return the pending write of the player, including the change
+     */
+    PendingAuthWrite update(String name, Consumer<PendingAuthWrite> change) {
+        PendingAuthWrite result = pendingWrites.compute(name, (key, previous) -> {
+            PendingAuthWrite write = new PendingAuthWrite(key);
+            if (previous != null) {
+                write.mergeFrom(previous);
+            }
+            change.accept(write);
+            return write;
+        });
+
+        int size = pendingWrites.size();
+        if (size >= 2 * maxPendingWrites) {
+            // Flushing can't keep up: write in the caller's thread to prevent the buffer from growing
+            flush();
+        } else if (size >= maxPendingWrites && isFlushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(this::flush);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the pending write of the given player.
+     *
+     * @param name the player name (lowercase)
+     * @return the pending write, or null if there is none
+     */
+    PendingAuthWrite get(String name) {
+        return pendingWrites.get(name);
+    }
+
+    /**
+     * @return all pending writes
+     */
+    Collection<PendingAuthWrite> getPendingWrites() {
+        return pendingWrites.values();
+    }
+
+    /**
+     * @return the number of players with pending writes
+     */
+    int size() {
+        return pendingWrites.size();
+    }
+
+    /**
+     * Writes all pending writes to the data source. Writes remain in the buffer (and visible to readers)
+     * until they have been written successfully; failed writes are retried on the next flush.
+     */
+    void flush() {
+        isFlushRequested.set(false);
+        synchronized (flushLock) {
+            if (pendingWrites.isEmpty()) {
+                return;
+            }
+            List<PendingAuthWrite> writes = new ArrayList<>(pendingWrites.values());
+            if (source.applyPendingWrites(writes)) {
+                // Only remove entries that were not changed in the meantime; newer entries include the written data
+                for (PendingAuthWrite write : writes) {
+                    pendingWrites.computeIfPresent(write.getName(),
+                        (name, current) -> current == write ? null : current.afterWriting(write));
+                }
+            } else {
+                logger.warning("Failed to write " + writes.size() + " buffered updates, will retry later");
+            }
+        }
+    }
+
+    /**
+     * Stops the periodic flushing and writes all pending writes.
+     */
+    void close() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            logger.logException("Could not close write-behind executor:", e);
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
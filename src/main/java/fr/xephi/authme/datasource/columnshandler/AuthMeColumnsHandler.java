@@ -51,6 +51,25 @@ public final class AuthMeColumnsHandler {
         return new AuthMeColumnsHandler(sqlColHandler);
     }
 
+    /**
+     * Creates a column handler for SQLite which takes a connection from the given supplier for each operation.
+     *
+     * @param connectionSupplier supplier of connections from a connection pool
+     * @param settings plugin settings
+     * @return created column handler
+     */
+    public static AuthMeColumnsHandler createForSqlite(ConnectionSupplier connectionSupplier, Settings settings) {
+        ColumnContext columnContext = new ColumnContext(settings, false);
+        String tableName = settings.getProperty(DatabaseSettings.MYSQL_TABLE);
+        String nameColumn = settings.getProperty(DatabaseSettings.MYSQL_COL_NAME);
+
+        SqlColumnsHandler<ColumnContext, String> sqlColHandler = new SqlColumnsHandler<>(
+            forConnectionPool(connectionSupplier, tableName, nameColumn, columnContext)
+                .setPredicateSqlGenerator(new PredicateSqlGenerator<>(columnContext, true))
+        );
+        return new AuthMeColumnsHandler(sqlColHandler);
+    }
+
     /**
      * Creates a column handler for MySQL.
      *
@@ -1,7 +1,7 @@
 package fr.xephi.authme.datasource.converter;
 
 import fr.xephi.authme.ConsoleLogger;
-import fr.xephi.authme.data.auth.PlayerAuth;
+import fr.xephi.authme.datasource.AuthProjection;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.datasource.DataSourceType;
 import fr.xephi.authme.output.ConsoleLoggerFactory;
@@ -59,7 +59,7 @@ public abstract class AbstractDataSourceConverter<S extends DataSource> implemen
         }
 
         List<String> skippedPlayers = new ArrayList<>();
-        for (PlayerAuth auth : source.getAllAuths()) {
+        source.forEachAuth(AuthProjection.ALL, auth -> {
             if (destination.isAuthAvailable(auth.getNickname())) {
                 skippedPlayers.add(auth.getNickname());
             } else {
@@ -67,7 +67,7 @@ public abstract class AbstractDataSourceConverter<S extends DataSource> implemen
                 destination.updateSession(auth);
                 destination.updateQuitLoc(auth);
             }
-        }
+        });
 
         if (!skippedPlayers.isEmpty()) {
             logAndSendMessage(sender, "Skipped conversion for players which were already in "
@@ -50,6 +50,15 @@ public abstract class MySqlExtension {
         // extend for custom behavior
     }
 
+    /**
+     * Returns whether {@link #extendAuth} reads any additional data, i.e. whether it needs a connection.
+     *
+     * @return true if auths are extended, false otherwise
+     */
+    public boolean extendsAuths() {
+        return false;
+    }
+
     /**
      * Performs additional actions when a user's password is changed.
      *
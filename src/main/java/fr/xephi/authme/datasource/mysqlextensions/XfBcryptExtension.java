@@ -92,6 +92,11 @@ class XfBcryptExtension extends MySqlExtension {
         }
     }
 
+    @Override
+    public boolean extendsAuths() {
+        return true;
+    }
+
     @Override
     public void extendAuth(PlayerAuth auth, int id, Connection con) throws SQLException {
         try (PreparedStatement pst = con.prepareStatement(
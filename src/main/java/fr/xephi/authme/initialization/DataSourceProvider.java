@@ -81,7 +81,7 @@ public class DataSourceProvider implements Provider<DataSource> {
         }
 
         if (settings.getProperty(DatabaseSettings.USE_CACHING)) {
-            dataSource = new CacheDataSource(dataSource, playerCache);
+            dataSource = new CacheDataSource(dataSource, playerCache, settings);
         }
         if (DataSourceType.SQLITE.equals(dataSourceType)) {
             checkDataSourceSize(dataSource);
@@ -95,6 +95,10 @@ public class DataSourceProvider implements Provider<DataSource> {
             if (accounts >= SQLITE_MAX_SIZE) {
                 logger.warning("YOU'RE USING THE SQLITE DATABASE WITH "
                     + accounts + "+ ACCOUNTS; FOR BETTER PERFORMANCE, PLEASE UPGRADE TO MYSQL!!");
+                if (!settings.getProperty(DatabaseSettings.SQLITE_WAL_MODE)) {
+                    logger.warning("To keep using SQLite, consider enabling write-ahead logging "
+                        + "with 'DataSource.sqliteWalMode' in config.yml");
+                }
             }
         });
     }
@@ -9,6 +9,7 @@ import fr.xephi.authme.message.MessageKey;
 import fr.xephi.authme.message.Messages;
 import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.permission.PlayerStatePermission;
+import fr.xephi.authme.service.AdmissionControlService;
 import fr.xephi.authme.service.AntiBotService;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.service.ValidationService;
@@ -24,6 +25,7 @@ import org.bukkit.event.player.PlayerLoginEvent;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import java.net.InetAddress;
 import java.util.Collection;
 import java.util.Locale;
 import java.util.regex.Pattern;
@@ -46,6 +48,8 @@ public class OnJoinVerifier implements Reloadable {
     @Inject
     private AntiBotService antiBotService;
     @Inject
+    private AdmissionControlService admissionControlService;
+    @Inject
     private ValidationService validationService;
     @Inject
     private BukkitService bukkitService;
@@ -65,6 +69,20 @@ public class OnJoinVerifier implements Reloadable {
         nicknamePattern = Utils.safePatternCompile(nickRegEx);
     }
 
+    /**
+     * Checks that the connection rate of the player's IP address, of its subnet and of the whole server
+     * allows the connection. This check must be performed before any other, since it is meant to protect
+     * the database and other services from connection floods.
+     *
+     * @param address the address of the connecting player
+     * @throws FailedVerificationException if the verification fails
+     */
+    public void checkAdmission(InetAddress address) throws FailedVerificationException {
+        if (!admissionControlService.tryAdmit(address)) {
+            throw new FailedVerificationException(MessageKey.KICK_ANTIBOT);
+        }
+    }
+
     /**
      * Checks if Antibot is enabled.
      *
@@ -186,6 +204,22 @@ public class OnJoinVerifier implements Reloadable {
         }
     }
 
+    /**
+     * Checks that the player's network (autonomous system) is allowed to join. This check does not need
+     * the player's account, so it can reject players before the database is queried.
+     *
+     * @param name the name of the player
+     * @param address the IP address of the player
+     * @throws FailedVerificationException if the verification fails
+     */
+    public void checkPlayerAsn(String name, String address) throws FailedVerificationException {
+        if (settings.getProperty(ProtectionSettings.ENABLE_PROTECTION)
+            && !validationService.isAsnAdmitted(address)
+            && !permissionsManager.hasPermissionOffline(name, PlayerStatePermission.BYPASS_ASN_CHECK)) {
+            throw new FailedVerificationException(MessageKey.VPN_PROXY_DETECTED);
+        }
+    }
+
     /**
      * Checks if a player with the same name (case-insensitive) is already playing and refuses the
      * connection if so configured.
@@ -1,5 +1,6 @@
 package fr.xephi.authme.listener;
 
+import fr.xephi.authme.data.OnlinePlayerIpIndex;
 import fr.xephi.authme.data.QuickCommandsProtectionManager;
 import fr.xephi.authme.data.auth.PlayerAuth;
 import fr.xephi.authme.datasource.DataSource;
@@ -91,6 +92,8 @@ public class PlayerListener implements Listener {
     private PermissionsManager permissionsManager;
     @Inject
     private QuickCommandsProtectionManager quickCommandsProtectionManager;
+    @Inject
+    private OnlinePlayerIpIndex onlinePlayerIpIndex;
 
     // Lowest priority to apply fast protection checks
     @EventHandler(priority = EventPriority.LOWEST)
@@ -134,18 +137,28 @@ public class PlayerListener implements Listener {
         }
         final String name = event.getName();
 
+        try {
+            // Runs first so that refused connections cause no further lookups
+            onJoinVerifier.checkAdmission(event.getAddress());
+        } catch (FailedVerificationException e) {
+            event.setKickMessage(messages.retrieveSingle(name, e.getReason(), e.getArgs()));
+            event.setLoginResult(AsyncPlayerPreLoginEvent.Result.KICK_OTHER);
+            return;
+        }
+
         if (validationService.isUnrestricted(name)) {
             return;
         }
 
         // Slow, blocking checks
         try {
+            final String ip = event.getAddress().getHostAddress();
+            onJoinVerifier.checkPlayerAsn(name, ip);
             final PlayerAuth auth = dataSource.getAuth(name);
             final boolean isAuthAvailable = auth != null;
             onJoinVerifier.checkKickNonRegistered(isAuthAvailable);
             onJoinVerifier.checkAntibot(name, isAuthAvailable);
             onJoinVerifier.checkNameCasing(name, auth);
-            final String ip = event.getAddress().getHostAddress();
             onJoinVerifier.checkPlayerCountry(name, ip, isAuthAvailable);
         } catch (FailedVerificationException e) {
             event.setKickMessage(messages.retrieveSingle(name, e.getReason(), e.getArgs()));
@@ -185,6 +198,7 @@ public class PlayerListener implements Listener {
         }
 
         quickCommandsProtectionManager.processJoin(player);
+        onlinePlayerIpIndex.processJoin(player);
 
         management.performJoin(player);
 
@@ -228,6 +242,7 @@ public class PlayerListener implements Listener {
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
+        onlinePlayerIpIndex.processQuit(player);
 
         // Note: quit message can be null, despite api documentation says not
         if (settings.getProperty(RegistrationSettings.REMOVE_LEAVE_MESSAGE)) {
@@ -8,6 +8,9 @@ public enum DebugSectionPermissions implements PermissionNode {
     /** General permission to use the /authme debug command. */
     DEBUG_COMMAND("authme.debug.command"),
 
+    /** Permission to view connection rate limit and antibot statistics. */
+    ANTIBOT_STATISTICS("authme.debug.antibot"),
+
     /** Permission to use the country lookup section. */
     COUNTRY_LOOKUP("authme.debug.country"),
 
@@ -32,11 +35,17 @@ public enum DebugSectionPermissions implements PermissionNode {
     /** Permission to change nullable status of MySQL columns. */
     MYSQL_DEFAULT_CHANGER("authme.debug.mysqldef"),
 
+    /** Permission to check the query plans of frequent database queries. */
+    QUERY_PLAN_AUDITOR("authme.debug.queryplan"),
+
     /** Permission to view spawn information. */
     SPAWN_LOCATION("authme.debug.spawn"),
 
     /** Permission to use the test email sender. */
-    TEST_EMAIL("authme.debug.mail");
+    TEST_EMAIL("authme.debug.mail"),
+
+    /** Permission to view VPN detection statistics. */
+    VPN_DETECTION_STATISTICS("authme.debug.vpn");
 
     private final String node;
 
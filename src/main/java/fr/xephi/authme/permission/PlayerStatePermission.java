@@ -41,6 +41,11 @@ public enum PlayerStatePermission implements PermissionNode {
      */
     BYPASS_COUNTRY_CHECK("authme.bypasscountrycheck", DefaultPermission.NOT_ALLOWED),
 
+    /**
+     * Permission to bypass the ASN (network) check.
+     */
+    BYPASS_ASN_CHECK("authme.bypassasncheck", DefaultPermission.NOT_ALLOWED),
+
     /**
      * Permission to send chat messages before being logged in.
      */
@@ -1,6 +1,7 @@
 package fr.xephi.authme.process.join;
 
 import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.data.OnlinePlayerIpIndex;
 import fr.xephi.authme.data.ProxySessionManager;
 import fr.xephi.authme.data.limbo.LimboService;
 import fr.xephi.authme.datasource.DataSource;
@@ -91,6 +92,9 @@ public class AsynchronousJoin implements AsynchronousProcess {
     @Inject
     private VpnDetectionService vpnDetectionService;
 
+    @Inject
+    private OnlinePlayerIpIndex onlinePlayerIpIndex;
+
     AsynchronousJoin() {
     }
 
@@ -126,8 +130,18 @@ public class AsynchronousJoin implements AsynchronousProcess {
             return;
         }
 
-        boolean isAuthAvailable = database.isAuthAvailable(name);
+        bukkitService.runWhenCompleteOptionallyAsync(database.isAuthAvailableAsync(name),
+            isAuthAvailable -> processJoinWithAuthState(player, name, isAuthAvailable));
+    }
 
+    /**
+     * Continues the join process once it is known whether the player is registered.
+     *
+     * @param player the player to process
+     * @param name the player's name (lowercase)
+     * @param isAuthAvailable true if the player is registered, false otherwise
+     */
+    private void processJoinWithAuthState(Player player, String name, boolean isAuthAvailable) {
         if (isAuthAvailable) {
             // Protect inventory
             if (service.getProperty(PROTECT_INVENTORY_BEFORE_LOGIN)) {
@@ -244,7 +258,7 @@ public class AsynchronousJoin implements AsynchronousProcess {
             && !service.hasPermission(player, PlayerStatePermission.ALLOW_MULTIPLE_ACCOUNTS)
             && ip != null
             && !InternetProtocolUtils.isLoopbackAddress(ip)
-            && countOnlinePlayersByIp(ip) > service.getProperty(RestrictionSettings.MAX_JOIN_PER_IP)) {
+            && onlinePlayerIpIndex.countOnlinePlayers(ip) > service.getProperty(RestrictionSettings.MAX_JOIN_PER_IP)) {
 
             bukkitService.scheduleSyncTaskFromOptionallyAsyncTask(
                 () -> player.kickPlayer(service.retrieveSingleMessage(player, MessageKey.SAME_IP_ONLINE)));
@@ -252,14 +266,4 @@ public class AsynchronousJoin implements AsynchronousProcess {
         }
         return true;
     }
-
-    private int countOnlinePlayersByIp(String ip) {
-        int count = 0;
-        for (Player player : bukkitService.getOnlinePlayers()) {
-            if (ip.equalsIgnoreCase(PlayerUtils.getPlayerIp(player))) {
-                ++count;
-            }
-        }
-        return count;
-    }
 }
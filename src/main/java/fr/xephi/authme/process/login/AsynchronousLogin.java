@@ -2,6 +2,7 @@ package fr.xephi.authme.process.login;
 
 import com.google.common.annotations.VisibleForTesting;
 import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.data.OnlinePlayerIpIndex;
 import fr.xephi.authme.data.TempbanManager;
 import fr.xephi.authme.data.auth.PlayerAuth;
 import fr.xephi.authme.data.auth.PlayerCache;
@@ -43,6 +44,8 @@ import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Asynchronous task for a player login.
@@ -93,6 +96,9 @@ public class AsynchronousLogin implements AsynchronousProcess {
     @Inject
     private VpnDetectionService vpnDetectionService;
 
+    @Inject
+    private OnlinePlayerIpIndex onlinePlayerIpIndex;
+
     AsynchronousLogin() {
     }
 
@@ -103,16 +109,17 @@ public class AsynchronousLogin implements AsynchronousProcess {
      * @param password the password to log in with
      */
     public void login(Player player, String password) {
-        PlayerAuth auth = getPlayerAuth(player);
-        if (auth != null && checkPlayerInfo(player, auth, password)) {
-            if (auth.getTotpKey() != null) {
-                limboService.resetMessageTask(player, LimboMessageType.TOTP_CODE);
-                limboService.getLimboPlayer(player.getName()).setState(LimboPlayerState.TOTP_REQUIRED);
-                // TODO #1141: Check if we should check limbo state before processing password
-            } else {
-                performLogin(player, auth);
+        withPlayerAuth(player, false, auth -> {
+            if (checkPlayerInfo(player, auth, password)) {
+                if (auth.getTotpKey() != null) {
+                    limboService.resetMessageTask(player, LimboMessageType.TOTP_CODE);
+                    limboService.getLimboPlayer(player.getName()).setState(LimboPlayerState.TOTP_REQUIRED);
+                    // TODO #1141: Check if we should check limbo state before processing password
+                } else {
+                    performLogin(player, auth);
+                }
             }
-        }
+        });
     }
 
     /**
@@ -121,10 +128,7 @@ public class AsynchronousLogin implements AsynchronousProcess {
      * @param player the player to log in
      */
     public void forceLogin(Player player) {
-        PlayerAuth auth = getPlayerAuth(player);
-        if (auth != null) {
-            performLogin(player, auth);
-        }
+        withPlayerAuth(player, false, auth -> performLogin(player, auth));
     }
 
     /**
@@ -134,50 +138,50 @@ public class AsynchronousLogin implements AsynchronousProcess {
      * @param quiet if true no messages will be sent
      */
     public void forceLogin(Player player, boolean quiet) {
-        PlayerAuth auth = getPlayerAuth(player, quiet);
-        if (auth != null) {
-            performLogin(player, auth);
-        }
-    }
-
-    /**
-     * Checks the precondition for authentication (like user known) and returns
-     * the player's {@link PlayerAuth} object.
-     *
-     * @param player the player to check
-     * @return the PlayerAuth object, or {@code null} if the player doesn't exist or may not log in
-     *         (e.g. because he is already logged in)
-     */
-    private PlayerAuth getPlayerAuth(Player player) {
-        return getPlayerAuth(player, false);
+        withPlayerAuth(player, quiet, auth -> performLogin(player, auth));
     }
 
     /**
-     * Checks the precondition for authentication (like user known) and returns
-     * the player's {@link PlayerAuth} object.
+     * Checks the precondition for authentication (like user known) and runs the given action with
+     * the player's {@link PlayerAuth} object once it has been loaded from the data source.
+     * The action is not run if the player doesn't exist or may not log in (e.g. because he is already logged in).
      *
      * @param player the player to check
      * @param quiet don't send messages
-     * @return the PlayerAuth object, or {@code null} if the player doesn't exist or may not log in
-     *         (e.g. because he is already logged in)
+     * @param action the action to run with the player's PlayerAuth object
      */
-    private PlayerAuth getPlayerAuth(Player player, boolean quiet) {
+    private void withPlayerAuth(Player player, boolean quiet, Consumer<PlayerAuth> action) {
         String name = player.getName().toLowerCase(Locale.ROOT);
         if (playerCache.isAuthenticated(name)) {
             if (!quiet) {
                 service.send(player, MessageKey.ALREADY_LOGGED_IN_ERROR);
             }
-            return null;
+            return;
         }
 
-        PlayerAuth auth = dataSource.getAuth(name);
+        bukkitService.runWhenCompleteOptionallyAsync(dataSource.getAuthAsync(name), auth -> {
+            if (isLoginAdmitted(player, auth, quiet)) {
+                action.accept(auth);
+            }
+        });
+    }
+
+    /**
+     * Checks whether the player may log in with the given {@link PlayerAuth} object.
+     *
+     * @param player the player to check
+     * @param auth the PlayerAuth object of the player, as loaded from the data source (nullable)
+     * @param quiet don't send messages
+     * @return true if the player is registered and may log in, false otherwise
+     */
+    private boolean isLoginAdmitted(Player player, PlayerAuth auth, boolean quiet) {
         if (auth == null) {
             if (!quiet) {
                 service.send(player, MessageKey.UNKNOWN_USER);
             }
             // Recreate the message task to immediately send the message again as response
             limboService.resetMessageTask(player, LimboMessageType.REGISTER);
-            return null;
+            return false;
         }
 
         if (!service.getProperty(DatabaseSettings.MYSQL_COL_GROUP).isEmpty()
@@ -185,7 +189,7 @@ public class AsynchronousLogin implements AsynchronousProcess {
             if (!quiet) {
                 service.send(player, MessageKey.ACCOUNT_NOT_ACTIVATED);
             }
-            return null;
+            return false;
         }
 
         String ip = PlayerUtils.getPlayerIp(player);
@@ -194,7 +198,7 @@ public class AsynchronousLogin implements AsynchronousProcess {
                 if (!quiet) {
                     service.send(player, MessageKey.ALREADY_LOGGED_IN_ERROR);
                 }
-                return null;
+                return false;
             }
         } else if (vpnDetectionService.isVpnOrProxy(ip)) {
             VpnDetectionService.VpnDetectionAction action = vpnDetectionService.getVpnDetectionAction();
@@ -203,22 +207,19 @@ public class AsynchronousLogin implements AsynchronousProcess {
                 if (!quiet) {
                     service.send(player, MessageKey.VPN_PROXY_DETECTED);
                 }
-                return null;
+                return false;
             }
         } else if (hasReachedMaxLoggedInPlayersForIp(player, ip)) {
             if (!quiet) {
                 service.send(player, MessageKey.ALREADY_LOGGED_IN_ERROR);
             }
-            return null;
+            return false;
         }
 
         boolean isAsync = service.getProperty(PluginSettings.USE_ASYNC_TASKS);
         AuthMeAsyncPreLoginEvent event = new AuthMeAsyncPreLoginEvent(player, isAsync);
         bukkitService.callEvent(event);
-        if (!event.canLogin()) {
-            return null;
-        }
-        return auth;
+        return event.canLogin();
     }
 
     /**
@@ -294,53 +295,71 @@ public class AsynchronousLogin implements AsynchronousProcess {
             boolean isFirstLogin = (auth.getLastLogin() == null);
 
             // Update auth to reflect this new login
+            String previousIp = auth.getLastIp();
             String ip = PlayerUtils.getPlayerIp(player);
             auth.setRealName(player.getName());
             auth.setLastLogin(System.currentTimeMillis());
             auth.setLastIp(ip);
-            dataSource.updateSession(auth);
 
             // TODO: send an update when a messaging service will be implemented (SESSION)
 
-            // Successful login, so reset the captcha & temp ban count
-            String name = player.getName();
-            loginCaptchaManager.resetLoginFailureCount(name);
-            tempbanManager.resetCount(ip, name);
-            player.setNoDamageTicks(0);
+            CompletableFuture<List<String>> otherAccounts =
+                dataSource.commitLoginAsync(auth, sessionService.isEnabled());
+            bukkitService.runWhenCompleteOptionallyAsync(otherAccounts, auths -> {
+                if (!auths.isEmpty()) {
+                    ipRestrictionService.processLogin(previousIp, ip, auths.size());
+                }
+                finishLogin(player, auth, isFirstLogin, auths);
+            });
+        } else {
+            logger.warning("Player '" + player.getName() + "' wasn't online during login process, aborted...");
+        }
+    }
+
+    /**
+     * Completes the login of the player after his login has been committed to the data source.
+     *
+     * @param player the player to log in
+     * @param auth the associated PlayerAuth object
+     * @param isFirstLogin true if it is the player's first login
+     * @param auths the names of the accounts with the same IP address as the player
+     */
+    private void finishLogin(Player player, PlayerAuth auth, boolean isFirstLogin, List<String> auths) {
+        String ip = auth.getLastIp();
 
-            service.send(player, MessageKey.LOGIN_SUCCESS);
+        // Successful login, so reset the captcha & temp ban count
+        String name = player.getName();
+        loginCaptchaManager.resetLoginFailureCount(name);
+        tempbanManager.resetCount(ip, name);
+        player.setNoDamageTicks(0);
 
-            // Other auths
-            List<String> auths = dataSource.getAllAuthsByIp(auth.getLastIp());
-            displayOtherAccounts(auths, player);
+        service.send(player, MessageKey.LOGIN_SUCCESS);
 
-            String email = auth.getEmail();
-            if (service.getProperty(EmailSettings.RECALL_PLAYERS) && Utils.isEmailEmpty(email)) {
-                service.send(player, MessageKey.ADD_EMAIL_MESSAGE);
-            }
+        // Other auths
+        displayOtherAccounts(auths, player);
 
-            logger.fine(player.getName() + " logged in " + ip);
+        String email = auth.getEmail();
+        if (service.getProperty(EmailSettings.RECALL_PLAYERS) && Utils.isEmailEmpty(email)) {
+            service.send(player, MessageKey.ADD_EMAIL_MESSAGE);
+        }
 
-            // makes player loggedin
-            playerCache.updatePlayer(auth);
-            dataSource.setLogged(name);
-            sessionService.grantSession(name);
+        logger.fine(player.getName() + " logged in " + ip);
 
-            if (bungeeSender.isEnabled()) {
-                // As described at https://www.spigotmc.org/wiki/bukkit-bungee-plugin-messaging-channel/
-                // "Keep in mind that you can't send plugin messages directly after a player joins."
-                bukkitService.scheduleSyncDelayedTask(() ->
-                    bungeeSender.sendAuthMeBungeecordMessage(player, MessageType.LOGIN), 5L);
-            }
+        // makes player loggedin (the data source has been updated by the login commit)
+        playerCache.updatePlayer(auth);
 
-            // As the scheduling executes the Task most likely after the current
-            // task, we schedule it in the end
-            // so that we can be sure, and have not to care if it might be
-            // processed in other order.
-            syncProcessManager.processSyncPlayerLogin(player, isFirstLogin, auths);
-        } else {
-            logger.warning("Player '" + player.getName() + "' wasn't online during login process, aborted...");
+        if (bungeeSender.isEnabled()) {
+            // As described at https://www.spigotmc.org/wiki/bukkit-bungee-plugin-messaging-channel/
+            // "Keep in mind that you can't send plugin messages directly after a player joins."
+            bukkitService.scheduleSyncDelayedTask(() ->
+                bungeeSender.sendAuthMeBungeecordMessage(player, MessageType.LOGIN), 5L);
         }
+
+        // As the scheduling executes the Task most likely after the current
+        // task, we schedule it in the end
+        // so that we can be sure, and have not to care if it might be
+        // processed in other order.
+        syncProcessManager.processSyncPlayerLogin(player, isFirstLogin, auths);
     }
 
     /**
@@ -400,15 +419,7 @@ public class AsynchronousLogin implements AsynchronousProcess {
         }
 
         // Count logged in players with same IP address
-        String name = player.getName();
-        int count = 0;
-        for (Player onlinePlayer : bukkitService.getOnlinePlayers()) {
-            if (ip.equalsIgnoreCase(PlayerUtils.getPlayerIp(onlinePlayer))
-                && !onlinePlayer.getName().equals(name)
-                && dataSource.isLogged(onlinePlayer.getName().toLowerCase(Locale.ROOT))) {
-                ++count;
-            }
-        }
+        int count = onlinePlayerIpIndex.countLoggedInPlayers(ip, player.getName());
         return count >= service.getProperty(RestrictionSettings.MAX_LOGIN_PER_IP);
     }
 }
@@ -58,16 +58,30 @@ public class AsyncRegister implements AsynchronousProcess {
      * @param <P>        parameters type
      */
     public <P extends RegistrationParameters> void register(RegistrationMethod<P> variant, P parameters) {
-        if (preRegisterCheck(variant, parameters.getPlayer())) {
-            RegistrationExecutor<P> executor = registrationExecutorFactory.getSingleton(variant.getExecutorClass());
-            if (executor.isRegistrationAdmitted(parameters)) {
-                executeRegistration(parameters, executor);
-            }
+        Player player = parameters.getPlayer();
+        String name = player.getName().toLowerCase(Locale.ROOT);
+        if (playerCache.isAuthenticated(name)) {
+            service.send(player, MessageKey.ALREADY_LOGGED_IN_ERROR);
+        } else if (!service.getProperty(RegistrationSettings.IS_ENABLED)) {
+            service.send(player, MessageKey.REGISTRATION_DISABLED);
+        } else {
+            bukkitService.runWhenCompleteOptionallyAsync(database.isAuthAvailableAsync(name), isAuthAvailable -> {
+                if (isAuthAvailable) {
+                    service.send(player, MessageKey.NAME_ALREADY_REGISTERED);
+                } else if (preRegisterCheck(variant, player)) {
+                    RegistrationExecutor<P> executor =
+                        registrationExecutorFactory.getSingleton(variant.getExecutorClass());
+                    if (executor.isRegistrationAdmitted(parameters)) {
+                        executeRegistration(parameters, executor);
+                    }
+                }
+            });
         }
     }
 
     /**
-     * Checks if the player is able to register, in that case the {@link AuthMeAsyncPreRegisterEvent} is invoked.
+     * Checks if the unregistered player is able to register, in that case the {@link AuthMeAsyncPreRegisterEvent}
+     * is invoked.
      *
      * @param variant the registration type variant.
      * @param player  the player which is trying to register.
@@ -75,18 +89,6 @@ public class AsyncRegister implements AsynchronousProcess {
      * @return true if the checks are successful and the event hasn't marked the action as denied, false otherwise.
      */
     private boolean preRegisterCheck(RegistrationMethod<?> variant, Player player) {
-        String name = player.getName().toLowerCase(Locale.ROOT);
-        if (playerCache.isAuthenticated(name)) {
-            service.send(player, MessageKey.ALREADY_LOGGED_IN_ERROR);
-            return false;
-        } else if (!service.getProperty(RegistrationSettings.IS_ENABLED)) {
-            service.send(player, MessageKey.REGISTRATION_DISABLED);
-            return false;
-        } else if (database.isAuthAvailable(name)) {
-            service.send(player, MessageKey.NAME_ALREADY_REGISTERED);
-            return false;
-        }
-
         AuthMeAsyncPreRegisterEvent event = bukkitService.createAndCallEvent(
             isAsync -> new AuthMeAsyncPreRegisterEvent(player, isAsync));
         if (!event.canRegister()) {
@@ -106,11 +108,13 @@ public class AsyncRegister implements AsynchronousProcess {
     private <P extends RegistrationParameters>
     void executeRegistration(P parameters, RegistrationExecutor<P> executor) {
         PlayerAuth auth = executor.buildPlayerAuth(parameters);
-        if (database.saveAuth(auth)) {
-            executor.executePostPersistAction(parameters);
-        } else {
-            service.send(parameters.getPlayer(), MessageKey.ERROR);
-        }
+        bukkitService.runWhenCompleteOptionallyAsync(database.saveAuthAsync(auth), isSaved -> {
+            if (isSaved) {
+                executor.executePostPersistAction(parameters);
+            } else {
+                service.send(parameters.getPlayer(), MessageKey.ERROR);
+            }
+        });
     }
 
     /**
@@ -123,6 +127,11 @@ public class AsyncRegister implements AsynchronousProcess {
     private boolean isPlayerIpAllowedToRegister(Player player) {
         String ip = PlayerUtils.getPlayerIp(player);
 
+        if (ipRestrictionService.isAsnBlocked(player)) {
+            service.send(player, MessageKey.VPN_PROXY_DETECTED);
+            return false;
+        }
+
         if (vpnDetectionService.isVpnOrProxy(ip)) {
             VpnDetectionService.VpnDetectionAction action = vpnDetectionService.getVpnDetectionAction();
             if (action == VpnDetectionService.VpnDetectionAction.BLOCK_REGISTER ||
@@ -13,6 +13,7 @@ import fr.xephi.authme.process.AsynchronousProcess;
 import fr.xephi.authme.security.PasswordSecurity;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.service.CommonService;
+import fr.xephi.authme.service.IpRestrictionService;
 import fr.xephi.authme.service.TeleportationService;
 import fr.xephi.authme.service.bungeecord.MessageType;
 import fr.xephi.authme.settings.commandconfig.CommandManager;
@@ -59,6 +60,9 @@ public class AsynchronousUnregister implements AsynchronousProcess {
     @Inject
     private BungeeSender bungeeSender;
 
+    @Inject
+    private IpRestrictionService ipRestrictionService;
+
     AsynchronousUnregister() {
     }
 
@@ -74,6 +78,7 @@ public class AsynchronousUnregister implements AsynchronousProcess {
         PlayerAuth cachedAuth = playerCache.getAuth(name);
         if (passwordSecurity.comparePassword(password, cachedAuth.getPassword(), name)) {
             if (dataSource.removeAuth(name)) {
+                ipRestrictionService.processAccountRemoval(cachedAuth.getLastIp());
                 performPostUnregisterActions(name, player);
                 logger.info(name + " unregistered himself");
                 bukkitService.createAndCallEvent(isAsync -> new UnregisterByPlayerEvent(player, isAsync));
@@ -95,7 +100,9 @@ public class AsynchronousUnregister implements AsynchronousProcess {
     // We need to have the name and the player separate because Player might be null in this case:
     // we might have some player in the database that has never been online on the server
     public void adminUnregister(CommandSender initiator, String name, Player player) {
+        PlayerAuth auth = dataSource.getAuth(name);
         if (dataSource.removeAuth(name)) {
+            ipRestrictionService.processAccountRemoval(auth == null ? null : auth.getLastIp());
             performPostUnregisterActions(name, player);
             bukkitService.createAndCallEvent(isAsync -> new UnregisterByAdminEvent(player, name, isAsync, initiator));
 
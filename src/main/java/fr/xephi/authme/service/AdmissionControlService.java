@@ -0,0 +1,163 @@
+package fr.xephi.authme.service;
+
+import fr.xephi.authme.initialization.HasCleanup;
+import fr.xephi.authme.initialization.SettingsDependent;
+import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.ProtectionSettings;
+import fr.xephi.authme.util.IpAddress;
+import fr.xephi.authme.util.TokenBucket;
+
+import javax.inject.Inject;
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the rate of incoming connections before any other join check is performed. Each connection
+ * takes a token from the bucket of its IP address, of its subnet and from the global bucket, and is
+ * refused if one of them is empty. No database, GeoIP or permission lookup is done here.
+ * <p>
+ * Connections from loopback addresses (e.g. from a proxy on the same machine) are only limited by the
+ * global bucket.
+ */
+public class AdmissionControlService implements SettingsDependent, HasCleanup {
+
+    /**
+     * Maximum number of IP addresses and subnets with a bucket. If there are more, new addresses are
+     * only limited by the global bucket until the full buckets have been cleaned up.
+     */
+    private static final int MAX_TRACKED_ADDRESSES = 100_000;
+
+    private final Map<IpAddress, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+    private final Map<IpAddress, TokenBucket> subnetBuckets = new ConcurrentHashMap<>();
+    private final LongAdder admittedCount = new LongAdder();
+    private final LongAdder ipRejectCount = new LongAdder();
+    private final LongAdder subnetRejectCount = new LongAdder();
+    private final LongAdder globalRejectCount = new LongAdder();
+
+    private volatile boolean isEnabled;
+    private volatile TokenBucket globalBucket;
+    private int ipCapacity;
+    private int ipPerMinute;
+    private int subnetCapacity;
+    private int subnetPerMinute;
+
+    @Inject
+    AdmissionControlService(Settings settings) {
+        reload(settings);
+    }
+
+    @Override
+    public void reload(Settings settings) {
+        ipCapacity = settings.getProperty(ProtectionSettings.ADMISSION_IP_CAPACITY);
+        ipPerMinute = settings.getProperty(ProtectionSettings.ADMISSION_IP_PER_MINUTE);
+        subnetCapacity = settings.getProperty(ProtectionSettings.ADMISSION_SUBNET_CAPACITY);
+        subnetPerMinute = settings.getProperty(ProtectionSettings.ADMISSION_SUBNET_PER_MINUTE);
+        globalBucket = createBucket(settings.getProperty(ProtectionSettings.ADMISSION_GLOBAL_CAPACITY),
+            settings.getProperty(ProtectionSettings.ADMISSION_GLOBAL_PER_MINUTE));
+        // Existing buckets have been created with the previous limits
+        ipBuckets.clear();
+        subnetBuckets.clear();
+        isEnabled = settings.getProperty(ProtectionSettings.ENABLE_ADMISSION_CONTROL);
+    }
+
+    /**
+     * Takes a token for a connection from the given address, if the connection rate allows it.
+     *
+     * @param address the address of the connecting player
+     * @return true if the connection is admitted, false if it should be refused
+     */
+    public boolean tryAdmit(InetAddress address) {
+        if (!isEnabled) {
+            return true;
+        }
+
+        if (!address.isLoopbackAddress()) {
+            IpAddress ip = IpAddress.of(address);
+            if (!tryConsume(ipBuckets, ip, ipCapacity, ipPerMinute)) {
+                ipRejectCount.increment();
+                return false;
+            } else if (!tryConsume(subnetBuckets, ip.getSubnet(), subnetCapacity, subnetPerMinute)) {
+                subnetRejectCount.increment();
+                return false;
+            }
+        }
+
+        TokenBucket global = globalBucket;
+        if (global != null && !global.tryConsume()) {
+            globalRejectCount.increment();
+            return false;
+        }
+        admittedCount.increment();
+        return true;
+    }
+
+    @Override
+    public void performCleanup() {
+        // Full buckets are in the same state as new ones
+        ipBuckets.values().removeIf(TokenBucket::isFull);
+        subnetBuckets.values().removeIf(TokenBucket::isFull);
+    }
+
+    /**
+     * @return the number of admitted connections
+     */
+    public long getAdmittedCount() {
+        return admittedCount.sum();
+    }
+
+    /**
+     * @return the number of connections refused because of the limit per IP address
+     */
+    public long getIpRejectCount() {
+        return ipRejectCount.sum();
+    }
+
+    /**
+     * @return the number of connections refused because of the limit per subnet
+     */
+    public long getSubnetRejectCount() {
+        return subnetRejectCount.sum();
+    }
+
+    /**
+     * @return the number of connections refused because of the global limit
+     */
+    public long getGlobalRejectCount() {
+        return globalRejectCount.sum();
+    }
+
+    /**
+     * @return the number of IP addresses and subnets with a bucket
+     */
+    public int getTrackedAddressCount() {
+        return ipBuckets.size() + subnetBuckets.size();
+    }
+
+    /**
+     * @return true if the admission control is enabled, false otherwise
+     */
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    private static boolean tryConsume(Map<IpAddress, TokenBucket> buckets, IpAddress key,
+                                      int capacity, int perMinute) {
+        if (capacity <= 0 || perMinute <= 0) {
+            return true;
+        }
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= MAX_TRACKED_ADDRESSES) {
+                return true;
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(capacity, perMinute));
+        }
+        return bucket.tryConsume();
+    }
+
+    private static TokenBucket createBucket(int capacity, int perMinute) {
+        return capacity <= 0 || perMinute <= 0 ? null : new TokenBucket(capacity, perMinute);
+    }
+}
@@ -1,5 +1,7 @@
 package fr.xephi.authme.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import fr.xephi.authme.initialization.SettingsDependent;
 import fr.xephi.authme.message.MessageKey;
 import fr.xephi.authme.message.Messages;
@@ -8,11 +10,14 @@ import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.settings.Settings;
 import fr.xephi.authme.settings.properties.ProtectionSettings;
 import fr.xephi.authme.util.AtomicIntervalCounter;
+import fr.xephi.authme.util.SlidingWindowRateEstimator;
+import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 
 import javax.inject.Inject;
 import java.util.Locale;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import static fr.xephi.authme.service.BukkitService.TICKS_PER_MINUTE;
 import static fr.xephi.authme.service.BukkitService.TICKS_PER_SECOND;
@@ -22,18 +27,37 @@ import static fr.xephi.authme.service.BukkitService.TICKS_PER_SECOND;
  */
 public class AntiBotService implements SettingsDependent {
 
+    /** Number of buckets the interval of the adaptive antibot is divided into. */
+    private static final int JOIN_RATE_BUCKETS = 10;
+    /** Maximum number of names kept as kicked by antibot, so that an attack cannot exhaust the memory. */
+    private static final int MAX_KICKED_NAMES = 10_000;
+    /** Time after which a kicked name is forgotten, by when the player's quit has long been processed. */
+    private static final long KICKED_NAME_EXPIRATION_MINUTES = 5;
+
     // Instances
     private final Messages messages;
     private final PermissionsManager permissionsManager;
     private final BukkitService bukkitService;
-    private final CopyOnWriteArrayList<String> antibotKicked = new CopyOnWriteArrayList<>();
+    /** Lowercase names of the players kicked by antibot. */
+    private final Cache<String, Boolean> antibotKicked = CacheBuilder.newBuilder()
+        .maximumSize(MAX_KICKED_NAMES)
+        .expireAfterWrite(KICKED_NAME_EXPIRATION_MINUTES, TimeUnit.MINUTES)
+        .build();
+    private final LongAdder activationCount = new LongAdder();
     // Settings
     private int duration;
+    private int sensibility;
+    private int activationFactor;
+    private int deactivationPercent;
     // Service status
-    private AntiBotStatus antiBotStatus;
+    private volatile AntiBotStatus antiBotStatus;
     private boolean startup;
     private BukkitTask disableTask;
+    /** Timestamp of the activation by the adaptive antibot, 0 if inactive or activated otherwise. */
+    private long adaptiveActivationMillis;
     private AtomicIntervalCounter flaggedCounter;
+    /** Join rate estimator of the adaptive antibot, null if the fixed limit is used. */
+    private SlidingWindowRateEstimator joinRate;
 
     @Inject
     AntiBotService(Settings settings, Messages messages, PermissionsManager permissionsManager,
@@ -54,9 +78,18 @@ public class AntiBotService implements SettingsDependent {
     public void reload(Settings settings) {
         // Load settings
         duration = settings.getProperty(ProtectionSettings.ANTIBOT_DURATION);
-        int sensibility = settings.getProperty(ProtectionSettings.ANTIBOT_SENSIBILITY);
+        sensibility = settings.getProperty(ProtectionSettings.ANTIBOT_SENSIBILITY);
         int interval = settings.getProperty(ProtectionSettings.ANTIBOT_INTERVAL);
         flaggedCounter = new AtomicIntervalCounter(sensibility, interval * 1000);
+        if (settings.getProperty(ProtectionSettings.ENABLE_ADAPTIVE_ANTIBOT)) {
+            activationFactor = Math.max(1, settings.getProperty(ProtectionSettings.ADAPTIVE_ANTIBOT_ACTIVATION_FACTOR));
+            deactivationPercent = settings.getProperty(ProtectionSettings.ADAPTIVE_ANTIBOT_DEACTIVATION_PERCENT);
+            long baselineMillis = TimeUnit.MINUTES.toMillis(
+                settings.getProperty(ProtectionSettings.ADAPTIVE_ANTIBOT_BASELINE_MINUTES));
+            joinRate = new SlidingWindowRateEstimator(interval * 1000L, JOIN_RATE_BUCKETS, baselineMillis);
+        } else {
+            joinRate = null;
+        }
 
         // Stop existing protection
         stopProtection();
@@ -81,9 +114,13 @@ public class AntiBotService implements SettingsDependent {
     }
 
     /**
-     * Transitions the anti bot service to an active status.
+     * Transitions the anti bot service to an active status. Synchronized as it may be called from
+     * multiple asynchronous pre-login threads at the same time.
+     *
+     * @param adaptive true to deactivate once the join rate has fallen, false to deactivate after
+     *                 the configured duration
      */
-    private void startProtection() {
+    private synchronized void startProtection(boolean adaptive) {
         if (antiBotStatus == AntiBotStatus.ACTIVE) {
             return; // Already activating/active
         }
@@ -91,7 +128,22 @@ public class AntiBotService implements SettingsDependent {
             disableTask.cancel();
         }
         // Schedule auto-disable
-        disableTask = bukkitService.runTaskLater(this::stopProtection, duration * TICKS_PER_MINUTE);
+        adaptiveActivationMillis = adaptive ? System.currentTimeMillis() : 0;
+        if (adaptive) {
+            disableTask = bukkitService.runTaskTimer(new BukkitRunnable() {
+                @Override
+                public void run() {
+                    stopProtectionIfJoinRateFell();
+                }
+            }, TICKS_PER_SECOND, TICKS_PER_SECOND);
+        } else {
+            disableTask = bukkitService.runTaskLater(this::stopProtection, duration * TICKS_PER_MINUTE);
+        }
+        if (joinRate != null) {
+            // Don't learn the join rate of the attack as the usual rate
+            joinRate.setBaselineFrozen(true);
+        }
+        activationCount.increment();
         antiBotStatus = AntiBotStatus.ACTIVE;
         bukkitService.scheduleSyncTaskFromOptionallyAsyncTask(() -> {
             // Inform admins
@@ -104,7 +156,7 @@ public class AntiBotService implements SettingsDependent {
     /**
      * Transitions the anti bot service from active status back to listening.
      */
-    private void stopProtection() {
+    private synchronized void stopProtection() {
         if (antiBotStatus != AntiBotStatus.ACTIVE) {
             return;
         }
@@ -112,19 +164,36 @@ public class AntiBotService implements SettingsDependent {
         // Change status
         antiBotStatus = AntiBotStatus.LISTENING;
         flaggedCounter.reset();
-        antibotKicked.clear();
+        antibotKicked.invalidateAll();
+        if (joinRate != null) {
+            joinRate.setBaselineFrozen(false);
+        }
 
         // Cancel auto-disable task
         disableTask.cancel();
         disableTask = null;
 
-        // Inform admins
-        String durationString = Integer.toString(duration);
+        // Inform admins: the adaptive antibot was active for as long as the attack lasted
+        long activeMinutes = adaptiveActivationMillis == 0 ? duration
+            : Math.max(1, Math.round((System.currentTimeMillis() - adaptiveActivationMillis) / 60_000.0));
+        adaptiveActivationMillis = 0;
+        String durationString = Long.toString(activeMinutes);
         bukkitService.getOnlinePlayers().stream()
             .filter(player -> permissionsManager.hasPermission(player, AdminPermission.ANTIBOT_MESSAGES))
             .forEach(player -> messages.send(player, MessageKey.ANTIBOT_AUTO_DISABLED_MESSAGE, durationString));
     }
 
+    /**
+     * Transitions the anti bot service back to listening if the join rate has fallen below the
+     * deactivation threshold of the adaptive antibot (hysteresis).
+     */
+    private void stopProtectionIfJoinRateFell() {
+        SlidingWindowRateEstimator rate = joinRate;
+        if (rate == null || rate.getWindowCount() < getActivationThreshold() * deactivationPercent / 100) {
+            stopProtection();
+        }
+    }
+
     /**
      * Returns the status of the AntiBot service.
      *
@@ -142,7 +211,7 @@ public class AntiBotService implements SettingsDependent {
     public void overrideAntiBotStatus(boolean started) {
         if (antiBotStatus != AntiBotStatus.DISABLED) {
             if (started) {
-                startProtection();
+                startProtection(false);
             } else {
                 stopProtection();
             }
@@ -157,27 +226,77 @@ public class AntiBotService implements SettingsDependent {
     public boolean shouldKick() {
         if (antiBotStatus == AntiBotStatus.DISABLED) {
             return false;
-        } else if (antiBotStatus == AntiBotStatus.ACTIVE) {
+        }
+        SlidingWindowRateEstimator rate = joinRate;
+        if (rate != null) {
+            // Joins are also recorded while active, so that the end of the attack can be detected
+            rate.record();
+        }
+        if (antiBotStatus == AntiBotStatus.ACTIVE) {
             return true;
         }
 
-        if (flaggedCounter.handle()) {
-            startProtection();
+        if (rate != null) {
+            if (rate.getWindowCount() > getActivationThreshold()) {
+                startProtection(true);
+                return true;
+            }
+        } else if (flaggedCounter.handle()) {
+            startProtection(false);
             return true;
         }
         return false;
     }
 
     /**
-     * Returns whether the player was kicked because of activated antibot. The list is reset
-     * when antibot is deactivated.
+     * @return true if the adaptive antibot is used, false if the fixed limit is used
+     */
+    public boolean isAdaptive() {
+        return joinRate != null;
+    }
+
+    /**
+     * @return the number of joins in the last interval, or -1 if the adaptive antibot is not used
+     */
+    public long getJoinRate() {
+        SlidingWindowRateEstimator rate = joinRate;
+        return rate == null ? -1 : rate.getWindowCount();
+    }
+
+    /**
+     * @return the learned usual number of joins per interval, or -1 if the adaptive antibot is not used
+     */
+    public double getJoinRateBaseline() {
+        SlidingWindowRateEstimator rate = joinRate;
+        return rate == null ? -1 : rate.getBaseline();
+    }
+
+    /**
+     * @return the number of joins per interval above which the adaptive antibot activates,
+     *         or -1 if the adaptive antibot is not used
+     */
+    public double getActivationThreshold() {
+        SlidingWindowRateEstimator rate = joinRate;
+        return rate == null ? -1 : Math.max(sensibility, activationFactor * rate.getBaseline());
+    }
+
+    /**
+     * @return the number of times the antibot has been activated
+     */
+    public long getActivationCount() {
+        return activationCount.sum();
+    }
+
+    /**
+     * Returns whether the player was kicked because of activated antibot. The names are forgotten
+     * when antibot is deactivated, after a few minutes, or if too many players have been kicked.
      *
      * @param name the name to check
      *
      * @return true if the given name has been kicked because of Antibot
      */
     public boolean wasPlayerKicked(String name) {
-        return antibotKicked.contains(name.toLowerCase(Locale.ROOT));
+        return antibotKicked.getIfPresent(name.toLowerCase(Locale.ROOT)) != null;
     }
 
     /**
@@ -187,7 +306,7 @@ public class AntiBotService implements SettingsDependent {
      * @param name the name to add
      */
     public void addPlayerKick(String name) {
-        antibotKicked.addIfAbsent(name.toLowerCase(Locale.ROOT));
+        antibotKicked.put(name.toLowerCase(Locale.ROOT), true);
     }
 
     public enum AntiBotStatus {
@@ -1,7 +1,9 @@
 package fr.xephi.authme.service;
 
 import fr.xephi.authme.AuthMe;
+import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.initialization.SettingsDependent;
+import fr.xephi.authme.output.ConsoleLoggerFactory;
 import fr.xephi.authme.settings.Settings;
 import fr.xephi.authme.settings.properties.PluginSettings;
 import org.bukkit.BanEntry;
@@ -21,6 +23,8 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
@@ -33,6 +37,7 @@ public class BukkitService implements SettingsDependent {
     /** Number of ticks per minute. */
     public static final int TICKS_PER_MINUTE = 60 * TICKS_PER_SECOND;
 
+    private final ConsoleLogger logger = ConsoleLoggerFactory.get(BukkitService.class);
     private final AuthMe authMe;
     private boolean useAsyncTasks;
 
@@ -122,6 +127,32 @@ public class BukkitService implements SettingsDependent {
         }
     }
 
+    /**
+     * Runs the given action with the result of the future in the same context as
+     * {@link #runTaskOptionallyAsync(Runnable) optionally asynchronous tasks}. If the future has already
+     * completed, the action is run immediately; otherwise it is scheduled once the result is available,
+     * so that no thread has to wait for it.
+     *
+     * @param future the future to wait for
+     * @param action the action to run with the future's result
+     * @param <T> the result type
+     */
+    public <T> void runWhenCompleteOptionallyAsync(CompletableFuture<T> future, Consumer<? super T> action) {
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            action.accept(future.join());
+            return;
+        }
+        future.whenComplete((result, failure) -> {
+            if (failure != null) {
+                logger.logException("Asynchronous operation failed:", failure);
+            } else if (useAsyncTasks) {
+                runTaskAsynchronously(() -> action.accept(result));
+            } else {
+                runTask(() -> action.accept(result));
+            }
+        });
+    }
+
     /**
      * <b>Asynchronous tasks should never access any API in Bukkit. Great care
      * should be taken to assure the thread-safety of asynchronous tasks.</b>
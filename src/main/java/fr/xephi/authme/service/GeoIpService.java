@@ -1,6 +1,8 @@
 package fr.xephi.authme.service;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
@@ -12,20 +14,21 @@ import com.maxmind.db.model.Country;
 import com.maxmind.db.model.CountryResponse;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.initialization.DataFolder;
+import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.output.ConsoleLoggerFactory;
 import fr.xephi.authme.settings.Settings;
 import fr.xephi.authme.settings.properties.ProtectionSettings;
 import fr.xephi.authme.util.FileUtils;
 import fr.xephi.authme.util.InternetProtocolUtils;
+import fr.xephi.authme.util.IpAddress;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.net.InetAddress;
 import java.net.URL;
-import java.net.UnknownHostException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -36,11 +39,13 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Base64;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
-public class GeoIpService {
+public class GeoIpService implements Reloadable {
 
     private static final String LICENSE =
             "[LICENSE] This product includes GeoLite2 data created by MaxMind, available at https://www.maxmind.com";
@@ -49,6 +54,8 @@ public class GeoIpService {
     private static final String DATABASE_FILE = DATABASE_NAME + ".mmdb";
     private static final String DATABASE_TMP_FILE = DATABASE_NAME + ".mmdb.tmp";
 
+    private static final String ASN_DATABASE_FILE = "GeoLite2-ASN.mmdb";
+
     private static final String ARCHIVE_FILE = DATABASE_NAME + ".mmdb.gz";
 
     private static final String ARCHIVE_URL =
@@ -56,22 +63,36 @@ public class GeoIpService {
 
     private static final int UPDATE_INTERVAL_DAYS = 30;
 
+    private static final int COUNTRY_CACHE_SIZE = 10_000;
+    private static final int COUNTRY_CACHE_DURATION_MINUTES = 30;
+
     private final ConsoleLogger logger = ConsoleLoggerFactory.get(GeoIpService.class);
     private final Path dataFile;
+    private final Path asnDataFile;
     private final BukkitService bukkitService;
     private final Settings settings;
-
-    private GeoIp2Provider databaseReader;
+    /** Countries of the recently looked up IP addresses, empty if MaxMind has no record of the address. */
+    private final Cache<IpAddress, Optional<Country>> countryCache = CacheBuilder.newBuilder()
+        .maximumSize(COUNTRY_CACHE_SIZE)
+        .expireAfterWrite(COUNTRY_CACHE_DURATION_MINUTES, TimeUnit.MINUTES)
+        .recordStats()
+        .build();
+
+    /** Only replaced as a whole, so that lookups can use it without locking. */
+    private volatile GeoIp2Provider databaseReader;
+    /** Reader of the optional ASN database, replaced as a whole on reload. */
+    private volatile Reader asnReader;
     private volatile boolean downloading;
 
     @Inject
     GeoIpService(@DataFolder File dataFolder, BukkitService bukkitService, Settings settings) {
         this.bukkitService = bukkitService;
         this.dataFile = dataFolder.toPath().resolve(DATABASE_FILE);
+        this.asnDataFile = dataFolder.toPath().resolve(ASN_DATABASE_FILE);
         this.settings = settings;
 
         // Fires download of recent data or the initialization of the look up service
-        isDataAvailable();
+        getDatabaseReader();
     }
 
     @VisibleForTesting
@@ -79,46 +100,86 @@ public class GeoIpService {
         this.bukkitService = bukkitService;
         this.settings = settings;
         this.dataFile = dataFolder.toPath().resolve(DATABASE_FILE);
+        this.asnDataFile = dataFolder.toPath().resolve(ASN_DATABASE_FILE);
 
         this.databaseReader = reader;
     }
 
     /**
-     * Download (if absent or old) the GeoIpLite data file and then try to load it.
+     * Loads the ASN database if it is enabled. Unlike the country database, it is not downloaded
+     * automatically and must be put in the data folder by the server owner.
+     */
+    @PostConstruct
+    @Override
+    public void reload() {
+        if (!settings.getProperty(ProtectionSettings.ENABLE_ASN_DATABASE)) {
+            asnReader = null;
+            return;
+        }
+        if (!Files.exists(asnDataFile)) {
+            logger.warning("The ASN database is enabled, but " + asnDataFile + " does not exist."
+                + " ASN checks will be skipped.");
+            asnReader = null;
+            return;
+        }
+
+        try {
+            // Lookups still using the previous reader can complete, as it is not closed
+            asnReader = new Reader(asnDataFile.toFile(), getFileMode(), new CHMCache());
+            logger.info("Loaded ASN database " + asnDataFile);
+        } catch (IOException ioEx) {
+            logger.logException("Failed to load ASN database", ioEx);
+        }
+    }
+
+    /**
+     * Returns the reader of the GeoIpLite database. Once a database is loaded, this method does not lock.
      *
-     * @return True if the data is available, false otherwise.
+     * @return the database reader, or null if the data is not available
      */
-    private synchronized boolean isDataAvailable() {
+    private GeoIp2Provider getDatabaseReader() {
 
         // If this feature is disabled, just stop
         if (!settings.getProperty(ProtectionSettings.ENABLE_GEOIP)) {
-            return false;
+            return null;
         }
 
-        if (downloading) {
-            // we are currently downloading the database
-            return false;
+        GeoIp2Provider reader = databaseReader;
+        if (reader != null || downloading) {
+            // everything is initialized, or we are currently downloading the database
+            return reader;
         }
+        return loadDatabase();
+    }
 
-        if (databaseReader != null) {
-            // everything is initialized
-            return true;
+    /**
+     * Loads the GeoIpLite data file and downloads a new one if it is absent or old.
+     *
+     * @return the database reader, or null if the data is not available
+     */
+    private synchronized GeoIp2Provider loadDatabase() {
+        if (databaseReader != null || downloading) {
+            // another thread loaded the database in the meantime
+            return databaseReader;
         }
 
         if (Files.exists(dataFile)) {
             try {
                 FileTime lastModifiedTime = Files.getLastModifiedTime(dataFile);
                 if (Duration.between(lastModifiedTime.toInstant(), Instant.now()).toDays() <= UPDATE_INTERVAL_DAYS) {
-                    startReading();
+                    startReading(getFileMode());
 
                     // don't fire the update task - we are up to date
-                    return true;
+                    return databaseReader;
                 } else {
                     logger.debug("GEO IP database is older than " + UPDATE_INTERVAL_DAYS + " Days");
+                    // Use the old database until the new one is available. It is not memory-mapped,
+                    // as a mapped file cannot be replaced on all systems.
+                    startReading(FileMode.MEMORY);
                 }
             } catch (IOException ioEx) {
                 logger.logException("Failed to load GeoLiteAPI database", ioEx);
-                return false;
+                return null;
             }
         }
 
@@ -128,7 +189,7 @@ public class GeoIpService {
         // File is outdated or doesn't exist - let's try to download the data file!
         // use bukkit's cached threads
         bukkitService.runTaskAsynchronously(this::updateDatabase);
-        return false;
+        return databaseReader;
     }
 
     /**
@@ -147,7 +208,10 @@ public class GeoIpService {
             String expectedChecksum = downloadDatabaseArchive(downloadFile);
             if (expectedChecksum == null) {
                 logger.info("There is no newer GEO IP database uploaded to MaxMind. Using the old one for now.");
-                startReading();
+                if (databaseReader == null) {
+                    startReading(getFileMode());
+                }
+                downloading = false;
                 return;
             }
 
@@ -161,7 +225,7 @@ public class GeoIpService {
 
             //only set this value to false on success otherwise errors could lead to endless download triggers
             logger.info("Successfully downloaded new GEO IP database to " + dataFile);
-            startReading();
+            startReading(getFileMode());
         } catch (IOException ioEx) {
             logger.logException("Could not download GeoLiteAPI database", ioEx);
         } finally {
@@ -175,14 +239,26 @@ public class GeoIpService {
         }
     }
 
-    private void startReading() throws IOException {
-        databaseReader = new Reader(dataFile.toFile(), FileMode.MEMORY, new CHMCache());
+    /**
+     * Opens the database file and replaces the current reader with it. The previous reader is not closed,
+     * so that lookups which are still using it can complete; it is released by the garbage collector.
+     *
+     * @param fileMode the mode to open the database file with
+     * @throws IOException if the database file could not be opened
+     */
+    private void startReading(FileMode fileMode) throws IOException {
+        databaseReader = new Reader(dataFile.toFile(), fileMode, new CHMCache());
+        countryCache.invalidateAll();
         logger.info(LICENSE);
 
         // clear downloading flag, because we now have working reader instance
         downloading = false;
     }
 
+    private FileMode getFileMode() {
+        return settings.getProperty(ProtectionSettings.GEOIP_MEMORY_MAPPED) ? FileMode.MEMORY_MAPPED : FileMode.MEMORY;
+    }
+
     /**
      * Downloads the archive to the destination file if it's newer than the locally version.
      *
@@ -305,6 +381,52 @@ public class GeoIpService {
         return getCountry(ip).map(Country::getName).orElse("N/A");
     }
 
+    /**
+     * Get the autonomous system number (ASN) of the given IP address, i.e. the number of the network
+     * the IP address belongs to.
+     *
+     * @param ip textual IP address to lookup
+     * @return the ASN, 0 if the ASN database has no record about the IP address, or -1 if the ASN
+     *         database is not available or the IP address is invalid
+     */
+    public long getAsn(String ip) {
+        Reader reader = asnReader;
+        IpAddress address = reader == null ? null : IpAddress.parse(ip);
+        if (address == null) {
+            return -1;
+        }
+
+        try {
+            Map<?, ?> record = reader.get(address.toInetAddress(), Map.class);
+            Object asn = record == null ? null : record.get("autonomous_system_number");
+            return asn instanceof Number ? ((Number) asn).longValue() : 0;
+        } catch (IOException ioEx) {
+            logger.logException("Cannot lookup ASN for " + ip + " at ASN database", ioEx);
+            return -1;
+        }
+    }
+
+    /**
+     * @return the number of IP addresses whose country is cached
+     */
+    public long getCachedCountryCount() {
+        return countryCache.size();
+    }
+
+    /**
+     * @return the number of lookups which were answered from the cache
+     */
+    public long getCacheHitCount() {
+        return countryCache.stats().hitCount();
+    }
+
+    /**
+     * @return the number of lookups which had to query the database
+     */
+    public long getCacheMissCount() {
+        return countryCache.stats().missCount();
+    }
+
     /**
      * Get the country of the given IP address
      *
@@ -318,18 +440,31 @@ public class GeoIpService {
      *   </ul>
      */
     private Optional<Country> getCountry(String ip) {
-        if (ip == null || ip.isEmpty() || !isDataAvailable()) {
+        if (ip == null || ip.isEmpty()) {
+            return Optional.empty();
+        }
+        GeoIp2Provider reader = getDatabaseReader();
+        if (reader == null) {
             return Optional.empty();
         }
 
-        try {
-            InetAddress address = InetAddress.getByName(ip);
-
-            // Reader.getCountry() can be null for unknown addresses
-            return Optional.ofNullable(databaseReader.getCountry(address)).map(CountryResponse::getCountry);
-        } catch (UnknownHostException e) {
+        IpAddress address = IpAddress.parse(ip);
+        if (address == null) {
             // Ignore invalid ip addresses
             // Legacy GEO IP Database returned a unknown country object with Country-Code: '--' and Country-Name: 'N/A'
+            return Optional.empty();
+        }
+
+        Optional<Country> cachedCountry = countryCache.getIfPresent(address);
+        if (cachedCountry != null) {
+            return cachedCountry;
+        }
+        try {
+            // Reader.getCountry() can be null for unknown addresses
+            Optional<Country> country = Optional.ofNullable(reader.getCountry(address.toInetAddress()))
+                .map(CountryResponse::getCountry);
+            countryCache.put(address, country);
+            return country;
         } catch (IOException ioEx) {
             logger.logException("Cannot lookup country for " + ip + " at GEO IP database", ioEx);
         }
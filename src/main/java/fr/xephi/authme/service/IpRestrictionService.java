@@ -1,13 +1,19 @@
 package fr.xephi.authme.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import fr.xephi.authme.data.OnlinePlayerIpIndex;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.permission.PlayerStatePermission;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.ProtectionSettings;
 import fr.xephi.authme.settings.properties.RestrictionSettings;
 import fr.xephi.authme.util.InternetProtocolUtils;
+import fr.xephi.authme.util.IpAddress;
 import fr.xephi.authme.util.PlayerUtils;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
@@ -16,9 +22,8 @@ import org.bukkit.scheduler.BukkitTask;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Service for handling IP-based restrictions with improved performance and caching.
@@ -40,33 +45,20 @@ public class IpRestrictionService implements Reloadable {
     @Inject
     private VpnDetectionService vpnDetectionService;
 
-    private final ConcurrentHashMap<String, CachedIpData> ipCache = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Long> lastCheckTime = new ConcurrentHashMap<>();
-    private final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
+    @Inject
+    private OnlinePlayerIpIndex onlinePlayerIpIndex;
 
-    private static final long DEFAULT_CACHE_DURATION_MS = TimeUnit.MINUTES.toMillis(5);
-    private static final long CLEANUP_INTERVAL_TICKS = 20L * 60L * 5L;
+    @Inject
+    private ValidationService validationService;
 
-    private BukkitTask cleanupTask;
+    private static final long CLEANUP_INTERVAL_TICKS = 20L * 60L * 5L;
 
     /**
-     * Cached data for an IP address.
+     * Number of accounts by IP address. Loading a count blocks only the threads that request the same IP
+     * address, and cached counts are updated when accounts get or lose an IP address.
      */
-    private static class CachedIpData {
-        final int registeredCount;
-        final int onlineCount;
-        final long timestamp;
-
-        CachedIpData(int registeredCount, int onlineCount) {
-            this.registeredCount = registeredCount;
-            this.onlineCount = onlineCount;
-            this.timestamp = System.currentTimeMillis();
-        }
-
-        boolean isExpired(long cacheDurationMs) {
-            return System.currentTimeMillis() - timestamp > cacheDurationMs;
-        }
-    }
+    private Cache<IpAddress, Integer> registeredAccountsCache;
+    private BukkitTask cleanupTask;
 
     /**
      * Checks if the player's IP is allowed to register based on the maximum registrations per IP.
@@ -109,6 +101,23 @@ public class IpRestrictionService implements Reloadable {
         return allowed;
     }
 
+    /**
+     * Checks if the player's IP address belongs to a network (autonomous system) which is not allowed
+     * by the configured ASN whitelist or blacklist.
+     *
+     * @param player the player to check
+     * @return true if the player's network is blocked, false otherwise
+     */
+    public boolean isAsnBlocked(Player player) {
+        if (!settings.getProperty(ProtectionSettings.ENABLE_PROTECTION)) {
+            return false;
+        }
+
+        String ip = PlayerUtils.getPlayerIp(player);
+        return ip != null && !validationService.isAsnAdmitted(ip)
+            && !permissionsManager.hasPermission(player, PlayerStatePermission.BYPASS_ASN_CHECK);
+    }
+
     /**
      * Checks if the player's IP has reached the maximum number of logged-in players.
      *
@@ -138,15 +147,7 @@ public class IpRestrictionService implements Reloadable {
             }
         }
 
-        int loggedInCount = getLoggedInPlayersCount(ip, player.getName());
-        boolean reached = loggedInCount >= maxLoginPerIp;
-
-        if (reached && settings.getProperty(RestrictionSettings.ENABLE_STRICT_IP_RESTRICTION)) {
-            loggedInCount = getLoggedInPlayersCountRealTime(ip, player.getName());
-            reached = loggedInCount >= maxLoginPerIp;
-        }
-
-        return reached;
+        return getLoggedInPlayersCount(ip, player.getName()) >= maxLoginPerIp;
     }
 
     /**
@@ -188,32 +189,15 @@ public class IpRestrictionService implements Reloadable {
      * @return the number of registered accounts
      */
     public int getRegisteredAccountsCount(String ip) {
-        long cacheDuration = getCacheDuration();
-
-        cacheLock.readLock().lock();
-        try {
-            CachedIpData cached = ipCache.get(ip);
-            if (cached != null && !cached.isExpired(cacheDuration)) {
-                return cached.registeredCount;
-            }
-        } finally {
-            cacheLock.readLock().unlock();
+        IpAddress address = IpAddress.parse(ip);
+        if (address == null) {
+            return dataSource.countAuthsByIp(ip);
         }
-
-        cacheLock.writeLock().lock();
         try {
-            CachedIpData cached = ipCache.get(ip);
-            if (cached != null && !cached.isExpired(cacheDuration)) {
-                return cached.registeredCount;
-            }
-
-            List<String> accounts = dataSource.getAllAuthsByIp(ip);
-            int count = accounts.size();
-
-            updateCache(ip, count, getOnlinePlayersCount(ip));
-            return count;
-        } finally {
-            cacheLock.writeLock().unlock();
+            // The IP address is passed as given to the data source, which stores it in textual form
+            return registeredAccountsCache.get(address, () -> dataSource.countAuthsByIp(ip));
+        } catch (ExecutionException e) {
+            throw new UncheckedExecutionException(e.getCause());
         }
     }
 
@@ -225,16 +209,7 @@ public class IpRestrictionService implements Reloadable {
      * @return the number of logged-in players
      */
     public int getLoggedInPlayersCount(String ip, String excludePlayer) {
-        int count = 0;
-        for (Player onlinePlayer : bukkitService.getOnlinePlayers()) {
-            String playerIp = PlayerUtils.getPlayerIp(onlinePlayer);
-            if (ip.equalsIgnoreCase(playerIp)
-                && !onlinePlayer.getName().equals(excludePlayer)
-                && dataSource.isLogged(onlinePlayer.getName().toLowerCase())) {
-                count++;
-            }
-        }
-        return count;
+        return onlinePlayerIpIndex.countLoggedInPlayers(ip, excludePlayer);
     }
 
     /**
@@ -244,25 +219,7 @@ public class IpRestrictionService implements Reloadable {
      * @return the number of online players
      */
     public int getOnlinePlayersCount(String ip) {
-        int count = 0;
-        for (Player onlinePlayer : bukkitService.getOnlinePlayers()) {
-            String playerIp = PlayerUtils.getPlayerIp(onlinePlayer);
-            if (ip.equalsIgnoreCase(playerIp)) {
-                count++;
-            }
-        }
-        return count;
-    }
-
-    /**
-     * Updates the cache for the given IP address.
-     *
-     * @param ip the IP address
-     * @param registeredCount the number of registered accounts
-     * @param onlineCount the number of online players
-     */
-    private void updateCache(String ip, int registeredCount, int onlineCount) {
-        ipCache.put(ip, new CachedIpData(registeredCount, onlineCount));
+        return onlinePlayerIpIndex.countOnlinePlayers(ip);
     }
 
     private long getCacheDuration() {
@@ -270,45 +227,19 @@ public class IpRestrictionService implements Reloadable {
         return TimeUnit.MINUTES.toMillis(Math.max(1, minutes));
     }
 
-    private int getLoggedInPlayersCountRealTime(String ip, String excludePlayer) {
-        int count = 0;
-        for (Player onlinePlayer : bukkitService.getOnlinePlayers()) {
-            String playerIp = PlayerUtils.getPlayerIp(onlinePlayer);
-            if (ip.equalsIgnoreCase(playerIp)
-                && !onlinePlayer.getName().equals(excludePlayer)
-                && dataSource.isLogged(onlinePlayer.getName().toLowerCase())) {
-                count++;
-            }
-        }
-        return count;
-    }
-
     public void clearCacheForIp(String ip) {
-        cacheLock.writeLock().lock();
-        try {
-            ipCache.remove(ip);
-        } finally {
-            cacheLock.writeLock().unlock();
-        }
+        invalidateCache(ip);
     }
 
     public void clearAllCache() {
-        cacheLock.writeLock().lock();
-        try {
-            ipCache.clear();
-        } finally {
-            cacheLock.writeLock().unlock();
-        }
+        registeredAccountsCache.invalidateAll();
     }
 
     /**
      * Clears expired cache entries.
      */
     public void cleanupCache() {
-        long cacheDuration = getCacheDuration();
-        ipCache.entrySet().removeIf(entry -> entry.getValue().isExpired(cacheDuration));
-        lastCheckTime.entrySet().removeIf(entry ->
-            System.currentTimeMillis() - entry.getValue() > cacheDuration);
+        registeredAccountsCache.cleanUp();
     }
 
     /**
@@ -317,11 +248,66 @@ public class IpRestrictionService implements Reloadable {
      * @param ip the IP address
      */
     public void invalidateCache(String ip) {
-        ipCache.remove(ip);
-        lastCheckTime.remove(ip);
+        IpAddress address = IpAddress.parse(ip);
+        if (address != null) {
+            registeredAccountsCache.invalidate(address);
+        }
     }
 
+    /**
+     * Updates the cached account counts after a player has logged in, which sets his last IP address.
+     *
+     * @param previousIp the last IP address of the player before the login (nullable, e.g. after registration)
+     * @param ip the IP address the player logged in with
+     * @param accountsWithIp the number of accounts with the IP address, including the player's
+     */
+    public void processLogin(String previousIp, String ip, int accountsWithIp) {
+        if (previousIp != null && !previousIp.equals(ip)) {
+            decrementAccountsCount(previousIp);
+        }
+        IpAddress address = IpAddress.parse(ip);
+        if (address != null) {
+            registeredAccountsCache.put(address, accountsWithIp);
+        }
+    }
 
+    /**
+     * Updates the cached account counts after an account has been removed.
+     *
+     * @param lastIp the last IP address of the removed account (nullable)
+     */
+    public void processAccountRemoval(String lastIp) {
+        if (lastIp != null) {
+            decrementAccountsCount(lastIp);
+        }
+    }
+
+    /**
+     * Updates the cached account counts after the last IP address of all accounts with the given IP
+     * address has been cleared.
+     *
+     * @param ip the IP address that was cleared
+     */
+    public void processLastIpCleared(String ip) {
+        IpAddress address = IpAddress.parse(ip);
+        if (address != null) {
+            registeredAccountsCache.put(address, 0);
+        }
+    }
+
+    /**
+     * Updates the cached account counts after the last IP address of all accounts has been cleared.
+     */
+    public void processAllLastIpsCleared() {
+        registeredAccountsCache.asMap().replaceAll((ip, count) -> 0);
+    }
+
+    private void decrementAccountsCount(String ip) {
+        IpAddress address = IpAddress.parse(ip);
+        if (address != null) {
+            registeredAccountsCache.asMap().computeIfPresent(address, (k, count) -> Math.max(0, count - 1));
+        }
+    }
 
     /**
      * Gets all registered usernames for the given IP address.
@@ -336,6 +322,10 @@ public class IpRestrictionService implements Reloadable {
     @PostConstruct
     @Override
     public void reload() {
+        registeredAccountsCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(getCacheDuration(), TimeUnit.MILLISECONDS)
+            .build();
+
         if (cleanupTask != null) {
             cleanupTask.cancel();
         }
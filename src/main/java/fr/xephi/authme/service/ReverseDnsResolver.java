@@ -0,0 +1,274 @@
+package fr.xephi.authme.service;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.initialization.Reloadable;
+import fr.xephi.authme.output.ConsoleLoggerFactory;
+import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.RestrictionSettings;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves the host names of IP addresses for the advanced VPN detection. Lookups run on a bounded
+ * thread pool and are only waited for up to the configured timeout, so that a slow DNS server does not
+ * block the authentication of players. Lookups which time out continue in the background and their
+ * result is cached for the next check.
+ * <p>
+ * Concurrent lookups of the same IP address share one lookup. Found host names and IP addresses without
+ * host name are cached separately, with their own expiration times.
+ */
+public class ReverseDnsResolver implements Reloadable {
+
+    private static final int QUEUE_SIZE = 256;
+    private static final int MAX_CACHE_SIZE = 50_000;
+
+    private final ConsoleLogger logger = ConsoleLoggerFactory.get(ReverseDnsResolver.class);
+
+    private final Settings settings;
+
+    private final ConcurrentMap<String, CompletableFuture<String>> pendingLookups = new ConcurrentHashMap<>();
+    private final LongAdder lookupCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private ExecutorService executor;
+    private Cache<String, String> hostNames;
+    private Cache<String, Boolean> ipsWithoutHostName;
+    private long timeoutMillis;
+
+    @Inject
+    ReverseDnsResolver(Settings settings) {
+        this.settings = settings;
+    }
+
+    @PostConstruct
+    @Override
+    public void reload() {
+        if (executor != null) {
+            // Lookups which are already running or queued are still completed
+            executor.shutdown();
+        }
+        int threads = Math.max(1, settings.getProperty(RestrictionSettings.REVERSE_DNS_THREADS));
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(QUEUE_SIZE),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("AuthMe-ReverseDns-%d")
+                .build());
+        threadPool.allowCoreThreadTimeOut(true);
+        executor = threadPool;
+
+        hostNames = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHE_SIZE)
+            .expireAfterWrite(settings.getProperty(RestrictionSettings.REVERSE_DNS_CACHE_DURATION),
+                TimeUnit.MINUTES)
+            .build();
+        ipsWithoutHostName = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHE_SIZE)
+            .expireAfterWrite(settings.getProperty(RestrictionSettings.REVERSE_DNS_NEGATIVE_CACHE_DURATION),
+                TimeUnit.MINUTES)
+            .build();
+        timeoutMillis = settings.getProperty(RestrictionSettings.REVERSE_DNS_TIMEOUT);
+    }
+
+    /**
+     * Returns the host name of the given IP address, waiting at most the configured timeout for it.
+     *
+     * @param ip the IP address to look up
+     * @return the lookup result
+     */
+    public Result resolve(String ip) {
+        String hostName = hostNames.getIfPresent(ip);
+        if (hostName != null) {
+            return Result.resolved(hostName);
+        } else if (ipsWithoutHostName.getIfPresent(ip) != null) {
+            return Result.NO_HOST_NAME;
+        }
+
+        CompletableFuture<String> lookup = getOrStartLookup(ip);
+        if (lookup == null) {
+            return Result.UNKNOWN;
+        }
+        try {
+            String result = lookup.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return result == null ? Result.NO_HOST_NAME : Result.resolved(result);
+        } catch (TimeoutException e) {
+            timeoutCount.increment();
+            logger.debug("Reverse DNS lookup for IP `{0}` timed out", ip);
+            return Result.UNKNOWN;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.UNKNOWN;
+        } catch (ExecutionException e) {
+            // The lookup could not be started or failed unexpectedly
+            return Result.UNKNOWN;
+        }
+    }
+
+    /**
+     * Returns the running lookup for the given IP address, or starts a new one.
+     *
+     * @param ip the IP address to look up
+     * @return the lookup, or null if the lookup could not be started because the thread pool is busy
+     */
+    private CompletableFuture<String> getOrStartLookup(String ip) {
+        CompletableFuture<String> newLookup = new CompletableFuture<>();
+        CompletableFuture<String> existingLookup = pendingLookups.putIfAbsent(ip, newLookup);
+        if (existingLookup != null) {
+            return existingLookup;
+        }
+
+        Cache<String, String> hostNameCache = hostNames;
+        Cache<String, Boolean> noHostNameCache = ipsWithoutHostName;
+        try {
+            executor.execute(() -> {
+                try {
+                    String hostName = lookUpHostName(ip);
+                    // Cache the result before removing the pending lookup, so it can always be found
+                    if (hostName == null) {
+                        noHostNameCache.put(ip, true);
+                    } else {
+                        hostNameCache.put(ip, hostName);
+                    }
+                    newLookup.complete(hostName);
+                } catch (RuntimeException e) {
+                    newLookup.completeExceptionally(e);
+                } finally {
+                    pendingLookups.remove(ip, newLookup);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            pendingLookups.remove(ip, newLookup);
+            newLookup.completeExceptionally(e);
+            return null;
+        }
+        lookupCount.increment();
+        return newLookup;
+    }
+
+    /**
+     * Performs the reverse DNS lookup.
+     *
+     * @param ip the IP address to look up
+     * @return the host name, or null if the IP address has no host name
+     */
+    @VisibleForTesting
+    String lookUpHostName(String ip) {
+        try {
+            InetAddress address = InetAddress.getByName(ip);
+            String hostName = address.getCanonicalHostName();
+            // The textual IP address is returned if there is no host name
+            return hostName.equals(address.getHostAddress()) ? null : hostName;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of lookups which were started
+     */
+    public long getLookupCount() {
+        return lookupCount.sum();
+    }
+
+    /**
+     * @return the number of times the lookup timed out
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * @return the number of lookups which could not be started because the thread pool was busy
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * @return the number of cached host names
+     */
+    public long getCachedHostNames() {
+        return hostNames.size();
+    }
+
+    /**
+     * @return the number of cached IP addresses without host name
+     */
+    public long getCachedIpsWithoutHostName() {
+        return ipsWithoutHostName.size();
+    }
+
+    /**
+     * @return the number of running lookups
+     */
+    public int getPendingLookups() {
+        return pendingLookups.size();
+    }
+
+    /**
+     * Result of a reverse DNS lookup.
+     */
+    public static final class Result {
+
+        /** The IP address has no host name. */
+        public static final Result NO_HOST_NAME = new Result(null);
+        /** The lookup did not complete in time. */
+        public static final Result UNKNOWN = new Result(null);
+
+        private final String hostName;
+
+        private Result(String hostName) {
+            this.hostName = hostName;
+        }
+
+        static Result resolved(String hostName) {
+            return new Result(hostName);
+        }
+
+        /**
+         * @return the host name, or null if there is none or the lookup did not complete in time
+         */
+        public String getHostName() {
+            return hostName;
+        }
+
+        /**
+         * @return true if the lookup did not complete in time, false otherwise
+         */
+        public boolean isUnknown() {
+            return this == UNKNOWN;
+        }
+    }
+
+    /**
+     * What the advanced VPN detection assumes if the reverse DNS lookup does not complete in time.
+     */
+    public enum TimeoutFallback {
+
+        /** The IP address is not treated as a VPN, and it is checked again the next time. */
+        UNKNOWN,
+
+        /** The IP address is treated as a VPN. */
+        VPN
+
+    }
+}
@@ -1,11 +1,9 @@
 package fr.xephi.authme.service;
 
-import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.data.auth.PlayerAuth;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.events.RestoreSessionEvent;
 import fr.xephi.authme.initialization.Reloadable;
-import fr.xephi.authme.output.ConsoleLoggerFactory;
 import fr.xephi.authme.message.MessageKey;
 import fr.xephi.authme.settings.properties.PluginSettings;
 import fr.xephi.authme.util.PlayerUtils;
@@ -20,7 +18,6 @@ import static fr.xephi.authme.util.Utils.MILLIS_PER_MINUTE;
  */
 public class SessionService implements Reloadable {
 
-    private final ConsoleLogger logger = ConsoleLoggerFactory.get(SessionService.class);
     private final CommonService service;
     private final BukkitService bukkitService;
     private final DataSource database;
@@ -42,11 +39,11 @@ public class SessionService implements Reloadable {
      * @return true if there is a current session, false otherwise
      */
     public boolean canResumeSession(Player player) {
-        final String name = player.getName();
-        if (isEnabled && database.hasSession(name)) {
-            database.setUnlogged(name);
-            database.revokeSession(name);
-            PlayerAuth auth = database.getAuth(name);
+        if (isEnabled) {
+            PlayerAuth auth = database.consumeSession(player.getName());
+            if (auth == null) {
+                return false;
+            }
 
             SessionState state = fetchSessionStatus(auth, player);
             if (state.equals(SessionState.VALID)) {
@@ -69,10 +66,7 @@ public class SessionService implements Reloadable {
      * @return SessionState based on the state of the session (VALID, NOT_VALID, OUTDATED, IP_CHANGED)
      */
     private SessionState fetchSessionStatus(PlayerAuth auth, Player player) {
-        if (auth == null) {
-            logger.warning("No PlayerAuth in database for '" + player.getName() + "' during session check");
-            return SessionState.NOT_VALID;
-        } else if (auth.getLastLogin() == null) {
+        if (auth.getLastLogin() == null) {
             return SessionState.NOT_VALID;
         }
         long timeSinceLastLogin = System.currentTimeMillis() - auth.getLastLogin();
@@ -88,6 +82,13 @@ public class SessionService implements Reloadable {
         return SessionState.OUTDATED;
     }
 
+    /**
+     * @return true if sessions are enabled, i.e. players are granted a session when they log in
+     */
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
     public void grantSession(String name) {
         if (isEnabled) {
             database.grantSession(name);
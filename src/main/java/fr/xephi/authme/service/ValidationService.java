@@ -135,6 +135,32 @@ public class ValidationService implements Reloadable {
         return isCountryAllowed;
     }
 
+    /**
+     * Checks whether the network (autonomous system) of the given IP address is allowed to join the server,
+     * based on the configured ASN whitelist or blacklist. IP addresses are admitted if the ASN database
+     * is not available.
+     *
+     * @param hostAddress the IP address to verify
+     * @return true if the IP address' network is allowed, false otherwise
+     */
+    public boolean isAsnAdmitted(String hostAddress) {
+        // Check if we have restrictions on ASN, if not return true and avoid the ASN lookup
+        if (settings.getProperty(ProtectionSettings.ASN_WHITELIST).isEmpty()
+            && settings.getProperty(ProtectionSettings.ASN_BLACKLIST).isEmpty()) {
+            return true;
+        }
+
+        long asn = geoIpService.getAsn(hostAddress);
+        if (asn < 0) {
+            return true;
+        }
+        String asnCode = "AS" + asn;
+        boolean isAsnAllowed = validateWhitelistAndBlacklist(asnCode,
+            ProtectionSettings.ASN_WHITELIST, ProtectionSettings.ASN_BLACKLIST);
+        logger.debug("ASN `{0}` for `{1}` is allowed: {2}", asnCode, hostAddress, isAsnAllowed);
+        return isAsnAllowed;
+    }
+
     /**
      * Checks if the name is unrestricted according to the configured settings.
      *
@@ -1,30 +1,68 @@
 package fr.xephi.authme.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.initialization.DataFolder;
+import fr.xephi.authme.initialization.HasCleanup;
+import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.output.ConsoleLoggerFactory;
 import fr.xephi.authme.settings.Settings;
 import fr.xephi.authme.settings.properties.RestrictionSettings;
+import fr.xephi.authme.util.CidrRangeSet;
 import fr.xephi.authme.util.InternetProtocolUtils;
+import fr.xephi.authme.util.IpAddress;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
-public class VpnDetectionService {
+public class VpnDetectionService implements Reloadable, HasCleanup {
 
     private static final ConsoleLogger logger = ConsoleLoggerFactory.get(VpnDetectionService.class);
 
     @Inject
     private Settings settings;
 
-    private final ConcurrentHashMap<String, CachedVpnResult> vpnCache = new ConcurrentHashMap<>();
+    @Inject
+    private VpnRangeFileLoader vpnRangeFileLoader;
+
+    @Inject
+    private ReverseDnsResolver reverseDnsResolver;
+
+    @Inject
+    @DataFolder
+    private File dataFolder;
+
+    private CidrRangeSet customVpnRanges;
+    /** Custom VPN ranges as configured, with which the results in the cache were determined. */
+    private Set<String> customVpnRangesSetting;
+    private CidrRangeSet whitelist;
+    /** Ranges of the range files with which the results in the cache were determined. */
+    private volatile CidrRangeSet cachedFileRanges;
+
+    private Cache<IpAddress, CachedVpnResult> vpnCache;
+    private int vpnCacheMaxSize;
     private static final long VPN_CACHE_DURATION_MS = TimeUnit.MINUTES.toMillis(30);
 
+    /** File to which the VPN check results are saved if persistence is enabled. */
+    private static final String SNAPSHOT_FILE_NAME = "vpn_cache.dat";
+    private static final int SNAPSHOT_VERSION = 1;
+
     private static final Set<String> KNOWN_VPN_RANGES = new HashSet<>(Arrays.asList(
         "103.28.54.0/24", "103.28.55.0/24", "104.16.0.0/12", "104.17.0.0/16",
         "104.18.0.0/16", "104.19.0.0/16", "104.20.0.0/16", "104.21.0.0/16",
@@ -38,6 +76,9 @@ public class VpnDetectionService {
         "76.76.19.0/24", "76.76.76.0/24", "94.140.14.0/24", "94.140.15.0/24"
     ));
 
+    private static final CidrRangeSet KNOWN_VPN_RANGE_SET = CidrRangeSet.compile(KNOWN_VPN_RANGES);
+    private static final CidrRangeSet DNS_VPN_RANGE_SET = CidrRangeSet.compile(DNS_VPN_RANGES);
+
     private static final Set<String> HOSTING_PROVIDERS = new HashSet<>(Arrays.asList(
         "amazonaws.com", "googleusercontent.com", "digitalocean.com",
         "vultr.com", "linode.com", "ovh.net", "hetzner.de", "cloudflare.com"
@@ -47,13 +88,46 @@ public class VpnDetectionService {
         KICK, BLOCK_REGISTER, BLOCK_LOGIN, LOG_ONLY
     }
 
+    /**
+     * The VPN range lists an address can be matched against.
+     */
+    private enum RangeList {
+        KNOWN_VPN("known VPN ranges"),
+        DNS_VPN("DNS VPN service ranges"),
+        CUSTOM_VPN("custom VPN ranges"),
+        RANGE_FILES("VPN range files");
+
+        private final String description;
+
+        RangeList(String description) {
+            this.description = description;
+        }
+
+        String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * Result of a VPN check.
+     */
+    private enum CheckResult {
+        VPN, NOT_VPN,
+        /** The check could not be completed because the reverse DNS lookup timed out. */
+        UNKNOWN
+    }
+
     private static class CachedVpnResult {
         final boolean isVpn;
         final long timestamp;
 
         CachedVpnResult(boolean isVpn) {
+            this(isVpn, System.currentTimeMillis());
+        }
+
+        CachedVpnResult(boolean isVpn, long timestamp) {
             this.isVpn = isVpn;
-            this.timestamp = System.currentTimeMillis();
+            this.timestamp = timestamp;
         }
 
         boolean isExpired() {
@@ -61,6 +135,51 @@ public class VpnDetectionService {
         }
     }
 
+    @PostConstruct
+    @Override
+    public void reload() {
+        Set<String> customRanges = settings.getProperty(RestrictionSettings.CUSTOM_VPN_RANGES);
+        customVpnRanges = CidrRangeSet.compile(customRanges);
+        whitelist = CidrRangeSet.compile(settings.getProperty(RestrictionSettings.VPN_WHITELIST));
+
+        // Keep the cached results over reloads: the cache is only rebuilt if its size has changed
+        boolean isFirstLoad = vpnCache == null;
+        int maxSize = Math.max(1, settings.getProperty(RestrictionSettings.VPN_CACHE_MAX_SIZE));
+        if (isFirstLoad || maxSize != vpnCacheMaxSize) {
+            Cache<IpAddress, CachedVpnResult> newCache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(VPN_CACHE_DURATION_MS, TimeUnit.MILLISECONDS)
+                .build();
+            if (!isFirstLoad) {
+                newCache.putAll(vpnCache.asMap());
+            }
+            vpnCache = newCache;
+            vpnCacheMaxSize = maxSize;
+        }
+
+        if (isFirstLoad) {
+            // Afterwards only set by isVpnOrProxy, so that ranges reloaded in the meantime invalidate the cache
+            cachedFileRanges = vpnRangeFileLoader.getRanges();
+            if (settings.getProperty(RestrictionSettings.ENABLE_VPN_CACHE_PERSISTENCE)) {
+                loadSnapshot();
+            }
+        } else if (!customRanges.equals(customVpnRangesSetting)) {
+            // Results may have been determined with ranges which no longer apply
+            vpnCache.invalidateAll();
+        }
+        customVpnRangesSetting = customRanges;
+    }
+
+    @Override
+    public void performCleanup() {
+        // Results loaded from the snapshot are not expired by the cache, as it only knows their load time
+        vpnCache.asMap().values().removeIf(CachedVpnResult::isExpired);
+        vpnCache.cleanUp();
+        if (settings.getProperty(RestrictionSettings.ENABLE_VPN_CACHE_PERSISTENCE)) {
+            saveSnapshot();
+        }
+    }
+
     public boolean isVpnDetectionEnabled() {
         return settings.getProperty(RestrictionSettings.ENABLE_VPN_DETECTION);
     }
@@ -80,17 +199,33 @@ public class VpnDetectionService {
             return false;
         }
 
-        if (isWhitelisted(ip)) {
+        IpAddress address = IpAddress.parse(ip);
+        if (isWhitelisted(address)) {
             return false;
         }
 
-        CachedVpnResult cached = vpnCache.get(ip);
+        // Cached results are outdated if the range files have been loaded again
+        CidrRangeSet fileRanges = vpnRangeFileLoader.getRanges();
+        if (fileRanges != cachedFileRanges) {
+            vpnCache.invalidateAll();
+            cachedFileRanges = fileRanges;
+        }
+
+        CachedVpnResult cached = address == null ? null : vpnCache.getIfPresent(address);
         if (cached != null && !cached.isExpired()) {
             return cached.isVpn;
         }
 
-        boolean isVpn = performVpnCheck(ip);
-        vpnCache.put(ip, new CachedVpnResult(isVpn));
+        CheckResult result = performVpnCheck(ip, address);
+        if (result == CheckResult.UNKNOWN) {
+            // Not cached, so the IP is checked again once the reverse DNS lookup has completed
+            return settings.getProperty(RestrictionSettings.REVERSE_DNS_TIMEOUT_FALLBACK)
+                == ReverseDnsResolver.TimeoutFallback.VPN;
+        }
+        boolean isVpn = result == CheckResult.VPN;
+        if (address != null) {
+            vpnCache.put(address, new CachedVpnResult(isVpn));
+        }
 
         if (isVpn) {
             logger.info("VPN/Proxy detected for IP: " + ip);
@@ -99,114 +234,50 @@ public class VpnDetectionService {
         return isVpn;
     }
 
-    private boolean performVpnCheck(String ip) {
-        try {
-            if (isInKnownVpnRange(ip)) {
-                return true;
-            }
-
-            if (settings.getProperty(RestrictionSettings.ENABLE_DNS_VPN_DETECTION) && isInDnsVpnRange(ip)) {
-                return true;
-            }
-
-            if (isInCustomVpnRange(ip)) {
-                return true;
-            }
-
-            if (settings.getProperty(RestrictionSettings.ENABLE_ADVANCED_VPN_DETECTION)) {
-                InetAddress address = InetAddress.getByName(ip);
-                String hostname = getHostname(address);
-
-                if (hostname != null && (isHostingProvider(hostname) || isCustomVpnHostname(hostname))) {
-                    return true;
-                }
-            }
-
-            return false;
-        } catch (Exception e) {
-            logger.debug("Error checking VPN for IP " + ip + ": " + e.getMessage());
-            return false;
+    private CheckResult performVpnCheck(String ip, IpAddress address) {
+        if (findVpnRangeList(address) != null) {
+            return CheckResult.VPN;
         }
-    }
 
-    private boolean isInKnownVpnRange(String ip) {
-        for (String range : KNOWN_VPN_RANGES) {
-            if (isIpInRange(ip, range)) {
-                return true;
+        if (settings.getProperty(RestrictionSettings.ENABLE_ADVANCED_VPN_DETECTION)) {
+            ReverseDnsResolver.Result lookup = reverseDnsResolver.resolve(ip);
+            if (lookup.isUnknown()) {
+                return CheckResult.UNKNOWN;
             }
-        }
-        return false;
-    }
-
-    private boolean isInDnsVpnRange(String ip) {
-        for (String range : DNS_VPN_RANGES) {
-            if (isIpInRange(ip, range)) {
-                return true;
+            String hostname = lookup.getHostName();
+            if (hostname != null && (isHostingProvider(hostname) || isCustomVpnHostname(hostname))) {
+                return CheckResult.VPN;
             }
         }
-        return false;
-    }
 
-    private boolean isInCustomVpnRange(String ip) {
-        Set<String> customRanges = settings.getProperty(RestrictionSettings.CUSTOM_VPN_RANGES);
-        for (String range : customRanges) {
-            if (isIpInRange(ip, range)) {
-                return true;
-            }
-        }
-        return false;
+        return CheckResult.NOT_VPN;
     }
 
-    private boolean isWhitelisted(String ip) {
-        Set<String> whitelist = settings.getProperty(RestrictionSettings.VPN_WHITELIST);
-        for (String range : whitelist) {
-            if (isIpInRange(ip, range)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean isIpInRange(String ip, String cidr) {
-        try {
-            String[] parts = cidr.split("/");
-            InetAddress targetAddr = InetAddress.getByName(ip);
-            InetAddress rangeAddr = InetAddress.getByName(parts[0]);
-            int prefixLength = Integer.parseInt(parts[1]);
-
-            byte[] targetBytes = targetAddr.getAddress();
-            byte[] rangeBytes = rangeAddr.getAddress();
-
-            if (targetBytes.length != rangeBytes.length) {
-                return false;
-            }
-
-            int bytesToCheck = prefixLength / 8;
-            int bitsToCheck = prefixLength % 8;
-
-            for (int i = 0; i < bytesToCheck; i++) {
-                if (targetBytes[i] != rangeBytes[i]) {
-                    return false;
-                }
-            }
-
-            if (bitsToCheck > 0 && bytesToCheck < targetBytes.length) {
-                int mask = 0xFF << (8 - bitsToCheck);
-                return (targetBytes[bytesToCheck] & mask) == (rangeBytes[bytesToCheck] & mask);
-            }
-
-            return true;
-        } catch (Exception e) {
-            return false;
+    /**
+     * Returns the VPN range list the given address is in, taking into account whether DNS VPN detection
+     * is enabled. The whitelist is not checked.
+     *
+     * @param address the address, or null if the IP is invalid
+     * @return the matched range list, or null if the address is in none
+     */
+    private RangeList findVpnRangeList(IpAddress address) {
+        if (address == null) {
+            return null;
+        } else if (KNOWN_VPN_RANGE_SET.contains(address)) {
+            return RangeList.KNOWN_VPN;
+        } else if (settings.getProperty(RestrictionSettings.ENABLE_DNS_VPN_DETECTION)
+            && DNS_VPN_RANGE_SET.contains(address)) {
+            return RangeList.DNS_VPN;
+        } else if (customVpnRanges.contains(address)) {
+            return RangeList.CUSTOM_VPN;
+        } else if (vpnRangeFileLoader.getRanges().contains(address)) {
+            return RangeList.RANGE_FILES;
         }
+        return null;
     }
 
-    private String getHostname(InetAddress address) {
-        try {
-            return address.getCanonicalHostName();
-        } catch (Exception e) {
-            return null;
-        }
+    private boolean isWhitelisted(IpAddress address) {
+        return address != null && whitelist.contains(address);
     }
 
     private boolean isHostingProvider(String hostname) {
@@ -229,51 +300,125 @@ public class VpnDetectionService {
     }
 
     public void clearCache() {
-        vpnCache.clear();
+        vpnCache.invalidateAll();
         logger.info("VPN detection cache cleared");
     }
 
     public void clearCacheForIp(String ip) {
-        vpnCache.remove(ip);
+        IpAddress address = IpAddress.parse(ip);
+        if (address != null) {
+            vpnCache.invalidate(address);
+        }
         logger.debug("VPN cache cleared for IP: " + ip);
     }
 
+    /**
+     * @return the number of IPs whose VPN check result is cached
+     */
+    public long getCachedResultCount() {
+        return vpnCache.size();
+    }
+
+    /**
+     * Saves the cached VPN check results to the snapshot file, so that they can be loaded after a restart.
+     * Each entry is saved as the binary IP address, the result and the time of the check.
+     */
+    public synchronized void saveSnapshot() {
+        List<Map.Entry<IpAddress, CachedVpnResult>> entries = new ArrayList<>();
+        for (Map.Entry<IpAddress, CachedVpnResult> entry : vpnCache.asMap().entrySet()) {
+            if (!entry.getValue().isExpired()) {
+                entries.add(entry);
+            }
+        }
+
+        File snapshotFile = new File(dataFolder, SNAPSHOT_FILE_NAME);
+        File tempFile = new File(dataFolder, SNAPSHOT_FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<IpAddress, CachedVpnResult> entry : entries) {
+                byte[] address = entry.getKey().toBytes();
+                out.writeByte(address.length);
+                out.write(address);
+                out.writeBoolean(entry.getValue().isVpn);
+                out.writeLong(entry.getValue().timestamp);
+            }
+        } catch (IOException e) {
+            logger.logException("Failed to save VPN check results to '" + tempFile + "':", e);
+            return;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.logException("Failed to replace VPN check results file '" + snapshotFile + "':", e);
+        }
+    }
+
+    private void loadSnapshot() {
+        File snapshotFile = new File(dataFolder, SNAPSHOT_FILE_NAME);
+        if (!snapshotFile.exists()) {
+            return;
+        }
+
+        int loadedEntries = 0;
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(snapshotFile.toPath())))) {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                logger.warning("Ignoring VPN check results file '" + snapshotFile + "' of unknown version");
+                return;
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; ++i) {
+                byte[] address = new byte[in.readUnsignedByte()];
+                in.readFully(address);
+                CachedVpnResult result = new CachedVpnResult(in.readBoolean(), in.readLong());
+                IpAddress ipAddress = IpAddress.fromBytes(address);
+                if (ipAddress == null) {
+                    logger.warning("VPN check results file '" + snapshotFile + "' contains an invalid IP address");
+                    return;
+                } else if (!result.isExpired()) {
+                    vpnCache.put(ipAddress, result);
+                    ++loadedEntries;
+                }
+            }
+        } catch (IOException e) {
+            logger.logException("Failed to load VPN check results from '" + snapshotFile + "':", e);
+        }
+        logger.debug("Loaded {0} VPN check results from the snapshot", loadedEntries);
+    }
+
     public String getVpnDetectionInfo(String ip) {
         if (!isVpnDetectionEnabled()) {
             return "VPN detection is disabled";
         }
 
-        if (isWhitelisted(ip)) {
+        IpAddress address = IpAddress.parse(ip);
+        if (isWhitelisted(address)) {
             return "IP is whitelisted";
         }
 
-        if (isInKnownVpnRange(ip)) {
-            return "Detected in known VPN ranges";
-        }
-
-        if (settings.getProperty(RestrictionSettings.ENABLE_DNS_VPN_DETECTION) && isInDnsVpnRange(ip)) {
-            return "Detected as DNS VPN service";
+        RangeList matchedList = findVpnRangeList(address);
+        if (matchedList != null) {
+            return "Detected in " + matchedList.getDescription();
         }
 
-        if (isInCustomVpnRange(ip)) {
-            return "Detected in custom VPN ranges";
-        }
+        if (settings.getProperty(RestrictionSettings.ENABLE_ADVANCED_VPN_DETECTION)) {
+            ReverseDnsResolver.Result lookup = reverseDnsResolver.resolve(ip);
+            String hostname = lookup.getHostName();
 
-        try {
-            if (settings.getProperty(RestrictionSettings.ENABLE_ADVANCED_VPN_DETECTION)) {
-                InetAddress address = InetAddress.getByName(ip);
-                String hostname = getHostname(address);
+            if (lookup.isUnknown()) {
+                return "Reverse DNS lookup did not complete in time";
+            }
 
-                if (hostname != null && isHostingProvider(hostname)) {
-                    return "Detected as hosting provider: " + hostname;
-                }
+            if (hostname != null && isHostingProvider(hostname)) {
+                return "Detected as hosting provider: " + hostname;
+            }
 
-                if (hostname != null && isCustomVpnHostname(hostname)) {
-                    return "Detected as custom VPN hostname: " + hostname;
-                }
+            if (hostname != null && isCustomVpnHostname(hostname)) {
+                return "Detected as custom VPN hostname: " + hostname;
             }
-        } catch (Exception e) {
-            return "Error during detection: " + e.getMessage();
         }
 
         return "Not detected as VPN/Proxy";
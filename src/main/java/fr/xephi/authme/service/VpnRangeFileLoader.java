@@ -0,0 +1,331 @@
+package fr.xephi.authme.service;
+
+import com.google.common.net.InetAddresses;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.initialization.DataFolder;
+import fr.xephi.authme.initialization.Reloadable;
+import fr.xephi.authme.output.ConsoleLoggerFactory;
+import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.RestrictionSettings;
+import fr.xephi.authme.util.CidrRangeSet;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Loads VPN, proxy and Tor IP ranges from the files in the {@link #FOLDER_NAME} folder. The files are
+ * read line by line into a {@link CidrRangeSet} in the background, and the new range set replaces the
+ * previous one once it has been loaded. The folder is watched for changes, upon which the files are
+ * loaded again.
+ * <p>
+ * Each line may contain:<ul>
+ *   <li>an IP address or a range in CIDR notation,</li>
+ *   <li>an {@code ExitAddress} entry of a Tor exit list,</li>
+ *   <li>CSV data (comma or tab separated) with a CIDR range in the first column,
+ *       or the first and last IP address of a range in the first two columns.</li>
+ * </ul>
+ * Empty lines and lines starting with {@code #} are ignored.
+ */
+public class VpnRangeFileLoader implements Reloadable {
+
+    /** Name of the folder in AuthMe's data folder with the range files. */
+    static final String FOLDER_NAME = "vpn_ranges";
+
+    private static final long WATCH_INTERVAL_TICKS = BukkitService.TICKS_PER_SECOND;
+
+    private final ConsoleLogger logger = ConsoleLoggerFactory.get(VpnRangeFileLoader.class);
+
+    private final File folder;
+    private final Settings settings;
+    private final BukkitService bukkitService;
+
+    private volatile CidrRangeSet ranges = CidrRangeSet.empty();
+    private volatile LoadStatistics lastLoad;
+    /** Incremented on each reload, so that loads started before it do not replace the newer ranges. */
+    private volatile int generation;
+    /** Lock to load the files one after another, so that the most recently started load is applied last. */
+    private final Object loadLock = new Object();
+    private WatchService watchService;
+    private BukkitTask watchTask;
+
+    @Inject
+    VpnRangeFileLoader(@DataFolder File dataFolder, Settings settings, BukkitService bukkitService) {
+        this.folder = new File(dataFolder, FOLDER_NAME);
+        this.settings = settings;
+        this.bukkitService = bukkitService;
+    }
+
+    /**
+     * @return the ranges of the last load (empty if the range files are disabled)
+     */
+    public CidrRangeSet getRanges() {
+        return ranges;
+    }
+
+    /**
+     * @return statistics of the last load, or null if the files have not been loaded
+     */
+    public LoadStatistics getLastLoad() {
+        return lastLoad;
+    }
+
+    @PostConstruct
+    @Override
+    public void reload() {
+        stopWatching();
+        int currentGeneration;
+        synchronized (this) {
+            currentGeneration = ++generation;
+            if (!settings.getProperty(RestrictionSettings.ENABLE_VPN_RANGE_FILES)) {
+                ranges = CidrRangeSet.empty();
+                lastLoad = null;
+                return;
+            }
+        }
+
+        if (!folder.exists() && !folder.mkdirs()) {
+            logger.warning("Could not create folder '" + folder + "' for VPN range files");
+            return;
+        }
+        // The current ranges remain in use until the files have been loaded
+        bukkitService.runTaskAsynchronously(() -> loadFiles(currentGeneration));
+        startWatching(currentGeneration);
+    }
+
+    /**
+     * Loads all files in the folder and replaces the current ranges with them, unless the loader
+     * has been reloaded in the meantime.
+     *
+     * @param loadGeneration the generation the load belongs to
+     */
+    void loadFiles(int loadGeneration) {
+        synchronized (loadLock) {
+            if (loadGeneration == generation) {
+                loadFilesInternal(loadGeneration);
+            }
+        }
+    }
+
+    private void loadFilesInternal(int loadGeneration) {
+        long start = System.nanoTime();
+        CidrRangeSet.Builder builder = CidrRangeSet.builder();
+        int fileCount = 0;
+        int invalidLines = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder.toPath())) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file) && !file.getFileName().toString().startsWith(".")) {
+                    invalidLines += loadFile(file, builder);
+                    ++fileCount;
+                }
+            }
+        } catch (IOException e) {
+            logger.logException("Could not read VPN range files from '" + folder + "':", e);
+            return;
+        }
+
+        CidrRangeSet loadedRanges = builder.build();
+        long loadTimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        synchronized (this) {
+            if (loadGeneration != generation) {
+                return;
+            }
+            ranges = loadedRanges;
+            lastLoad = new LoadStatistics(fileCount, invalidLines, loadTimeMillis, System.currentTimeMillis());
+        }
+        logger.info("Loaded " + loadedRanges.getRangeCount() + " VPN ranges from " + fileCount
+            + " files in " + loadTimeMillis + " ms");
+    }
+
+    /**
+     * Adds the ranges of the given file to the builder.
+     *
+     * @param file the file to read
+     * @param builder the builder to add the ranges to
+     * @return the number of lines which could not be read
+     */
+    private int loadFile(Path file, CidrRangeSet.Builder builder) {
+        int invalidLines = 0;
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ++lineNumber;
+                // Skip the first line of CSV files silently if it cannot be parsed, as it is likely a header
+                if (!addLine(line, builder) && lineNumber > 1) {
+                    ++invalidLines;
+                }
+            }
+        } catch (IOException e) {
+            logger.logException("Could not read VPN range file '" + file + "':", e);
+        }
+        if (invalidLines > 0) {
+            logger.warning("Skipped " + invalidLines + " invalid lines in VPN range file '"
+                + file.getFileName() + "'");
+        }
+        return invalidLines;
+    }
+
+    /**
+     * Parses the given line and adds its range to the builder.
+     *
+     * @param line the line to process
+     * @param builder the builder to add the range to
+     * @return true if the line was added or is to be ignored, false if it is invalid
+     */
+    static boolean addLine(String line, CidrRangeSet.Builder builder) {
+        String trimmedLine = line.trim();
+        if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) {
+            return true;
+        }
+
+        // Tor exit lists (exit-addresses) contain other entries which can be ignored
+        if (trimmedLine.startsWith("ExitAddress ")) {
+            String[] parts = trimmedLine.split("\\s+");
+            return builder.add(parts[1]);
+        } else if (trimmedLine.startsWith("ExitNode ") || trimmedLine.startsWith("Published ")
+            || trimmedLine.startsWith("LastStatus ")) {
+            return true;
+        }
+
+        String[] columns = trimmedLine.split("[,\t]", 3);
+        String first = unquote(columns[0]);
+        if (columns.length > 1 && first.indexOf('/') < 0) {
+            String second = unquote(columns[1]);
+            if (InetAddresses.isInetAddress(second)) {
+                return builder.add(first, second);
+            }
+        }
+        return builder.add(first);
+    }
+
+    private static String unquote(String column) {
+        String value = column.trim();
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private void startWatching(int watchGeneration) {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            folder.toPath().register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        } catch (IOException e) {
+            logger.logException("Could not watch folder '" + folder + "' for changes, VPN range files will only"
+                + " be loaded on reload:", e);
+            return;
+        }
+        watchTask = bukkitService.runTaskTimerAsynchronously(
+            new WatchTask(watchService, watchGeneration), WATCH_INTERVAL_TICKS, WATCH_INTERVAL_TICKS);
+    }
+
+    private void stopWatching() {
+        if (watchTask != null) {
+            watchTask.cancel();
+            watchTask = null;
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.logException("Failed to close watch service:", e);
+            }
+            watchService = null;
+        }
+    }
+
+    /**
+     * Checks the watch service for changes and loads the files once no more changes are reported,
+     * so that files which are still being written are not loaded.
+     */
+    private final class WatchTask extends BukkitRunnable {
+
+        private final WatchService service;
+        private final int watchGeneration;
+        private boolean hasPendingChanges;
+
+        WatchTask(WatchService service, int watchGeneration) {
+            this.service = service;
+            this.watchGeneration = watchGeneration;
+        }
+
+        @Override
+        public void run() {
+            List<WatchKey> keys = new ArrayList<>();
+            try {
+                WatchKey key;
+                while ((key = service.poll()) != null) {
+                    keys.add(key);
+                }
+            } catch (ClosedWatchServiceException e) {
+                // The loader is being reloaded and this task is being cancelled
+                return;
+            }
+
+            if (!keys.isEmpty()) {
+                keys.forEach(key -> {
+                    key.pollEvents();
+                    key.reset();
+                });
+                hasPendingChanges = true;
+            } else if (hasPendingChanges) {
+                hasPendingChanges = false;
+                loadFiles(watchGeneration);
+            }
+        }
+    }
+
+    /**
+     * Statistics about a load of the range files.
+     */
+    public static final class LoadStatistics {
+
+        private final int fileCount;
+        private final int invalidLines;
+        private final long loadTimeMillis;
+        private final long timestamp;
+
+        LoadStatistics(int fileCount, int invalidLines, long loadTimeMillis, long timestamp) {
+            this.fileCount = fileCount;
+            this.invalidLines = invalidLines;
+            this.loadTimeMillis = loadTimeMillis;
+            this.timestamp = timestamp;
+        }
+
+        public int getFileCount() {
+            return fileCount;
+        }
+
+        public int getInvalidLines() {
+            return invalidLines;
+        }
+
+        public long getLoadTimeMillis() {
+            return loadTimeMillis;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
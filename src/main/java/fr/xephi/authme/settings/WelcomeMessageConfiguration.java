@@ -1,13 +1,13 @@
 package fr.xephi.authme.settings;
 
 import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.data.OnlinePlayerIpIndex;
 import fr.xephi.authme.data.auth.PlayerCache;
 import fr.xephi.authme.initialization.DataFolder;
 import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.output.ConsoleLoggerFactory;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.service.CommonService;
-import fr.xephi.authme.service.GeoIpService;
 import fr.xephi.authme.settings.properties.PluginSettings;
 import fr.xephi.authme.settings.properties.RegistrationSettings;
 import fr.xephi.authme.util.PlayerUtils;
@@ -47,7 +47,7 @@ public class WelcomeMessageConfiguration implements Reloadable {
     private Server server;
 
     @Inject
-    private GeoIpService geoIpService;
+    private OnlinePlayerIpIndex onlinePlayerIpIndex;
 
     @Inject
     private BukkitService bukkitService;
@@ -71,7 +71,7 @@ public class WelcomeMessageConfiguration implements Reloadable {
         createTag("{WORLD}",       pl -> pl.getWorld().getName()),
         createTag("{SERVER}",      () -> service.getProperty(PluginSettings.SERVER_NAME)),
         createTag("{VERSION}",     () -> server.getBukkitVersion()),
-        createTag("{COUNTRY}",     pl -> geoIpService.getCountryName(PlayerUtils.getPlayerIp(pl))));
+        createTag("{COUNTRY}",     pl -> onlinePlayerIpIndex.getCountryName(pl)));
 
     private TagReplacer<Player> messageSupplier;
 
@@ -2,10 +2,10 @@ package fr.xephi.authme.settings.commandconfig;
 
 import ch.jalu.configme.SettingsManager;
 import ch.jalu.configme.SettingsManagerBuilder;
+import fr.xephi.authme.data.OnlinePlayerIpIndex;
 import fr.xephi.authme.initialization.DataFolder;
 import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.service.BukkitService;
-import fr.xephi.authme.service.GeoIpService;
 import fr.xephi.authme.service.yaml.YamlFileResourceProvider;
 import fr.xephi.authme.util.FileUtils;
 import fr.xephi.authme.util.PlayerUtils;
@@ -29,7 +29,7 @@ public class CommandManager implements Reloadable {
 
     private final File dataFolder;
     private final BukkitService bukkitService;
-    private final GeoIpService geoIpService;
+    private final OnlinePlayerIpIndex onlinePlayerIpIndex;
     private final CommandMigrationService commandMigrationService;
     private final List<Tag<Player>> availableTags = buildAvailableTags();
 
@@ -42,11 +42,11 @@ public class CommandManager implements Reloadable {
     private WrappedTagReplacer<Command, Player> onLogoutCommands;
 
     @Inject
-    CommandManager(@DataFolder File dataFolder, BukkitService bukkitService, GeoIpService geoIpService,
+    CommandManager(@DataFolder File dataFolder, BukkitService bukkitService, OnlinePlayerIpIndex onlinePlayerIpIndex,
                    CommandMigrationService commandMigrationService) {
         this.dataFolder = dataFolder;
         this.bukkitService = bukkitService;
-        this.geoIpService = geoIpService;
+        this.onlinePlayerIpIndex = onlinePlayerIpIndex;
         this.commandMigrationService = commandMigrationService;
         reload();
     }
@@ -187,6 +187,6 @@ public class CommandManager implements Reloadable {
             createTag("%p",       Player::getName),
             createTag("%nick",    Player::getDisplayName),
             createTag("%ip",      PlayerUtils::getPlayerIp),
-            createTag("%country", pl -> geoIpService.getCountryName(PlayerUtils.getPlayerIp(pl))));
+            createTag("%country", pl -> onlinePlayerIpIndex.getCountryName(pl)));
     }
 }
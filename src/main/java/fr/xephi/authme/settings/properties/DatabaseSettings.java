@@ -19,6 +19,34 @@ public final class DatabaseSettings implements SettingsHolder {
     public static final Property<Boolean> USE_CACHING =
         newProperty("DataSource.caching", true);
 
+    @Comment({"Keep a compact in-memory filter of all registered names so that joins with unknown",
+        "names (e.g. bots joining with random names) don't query the database. Only used if caching",
+        "is enabled. Accounts created outside of this server (e.g. by other servers sharing the",
+        "database or by a website) are only known after /login, /register or the next rebuild of",
+        "the filter (every 30 minutes), so joins may treat them as unregistered until then."})
+    public static final Property<Boolean> USE_REGISTERED_NAMES_FILTER =
+        newProperty("DataSource.registeredNamesFilter", false);
+
+    @Comment({"Interval in milliseconds in which session, quit location and login state updates",
+        "are written to the database in batches. Only used if caching is enabled; 0 writes every",
+        "update immediately. Keep it short if other servers or a website read these columns."})
+    public static final Property<Integer> WRITE_BEHIND_INTERVAL =
+        newProperty("DataSource.writeBehindInterval", 0);
+
+    @Comment("Number of players with buffered updates after which they are written immediately")
+    public static final Property<Integer> WRITE_BEHIND_MAX_PENDING =
+        newProperty("DataSource.writeBehindMaxPending", 500);
+
+    @Comment({"SQLite only: use write-ahead logging so that players can be looked up on separate",
+        "read connections while data is being written. All writes are then committed together",
+        "by a single writer thread. Recommended if your SQLite database has many accounts."})
+    public static final Property<Boolean> SQLITE_WAL_MODE =
+        newProperty("DataSource.sqliteWalMode", false);
+
+    @Comment("SQLite only: number of read-only connections to use in write-ahead logging mode")
+    public static final Property<Integer> SQLITE_READ_CONNECTIONS =
+        newProperty("DataSource.sqliteReadConnections", 4);
+
     @Comment("Database host address")
     public static final Property<String> MYSQL_HOST =
         newProperty("DataSource.mySQLHost", "127.0.0.1");
@@ -35,6 +35,19 @@ public final class ProtectionSettings implements SettingsHolder {
     public static final Property<String> MAXMIND_API_LICENSE_KEY =
         newProperty("Protection.geoIpDatabase.licenseKey", "");
 
+    @Comment({
+        "Map the GeoIp database file into memory instead of loading it onto the heap.",
+        "This reduces the heap usage of the server."})
+    public static final Property<Boolean> GEOIP_MEMORY_MAPPED =
+        newProperty("Protection.geoIpDatabase.memoryMapped", false);
+
+    @Comment({
+        "Load the GeoLite2-ASN.mmdb database from the plugin folder to look up the network",
+        "(autonomous system) of IP addresses. It is not downloaded automatically, get it at",
+        "https://dev.maxmind.com/geoip/geolite2-free-geolocation-data"})
+    public static final Property<Boolean> ENABLE_ASN_DATABASE =
+        newProperty("Protection.geoIpDatabase.asnEnabled", false);
+
     @Comment({
         "Countries allowed to join the server and register. For country codes, see",
         "https://dev.maxmind.com/geoip/legacy/codes/iso3166/",
@@ -49,6 +62,18 @@ public final class ProtectionSettings implements SettingsHolder {
     public static final Property<List<String>> COUNTRIES_BLACKLIST =
         newListProperty("Protection.countriesBlacklist", "A1");
 
+    @Comment({
+        "Networks (autonomous systems) allowed to join the server and register, e.g. \"AS16276\".",
+        "Requires the ASN database. If empty, all networks not in asnBlacklist are allowed."})
+    public static final Property<List<String>> ASN_WHITELIST =
+        newListProperty("Protection.asnWhitelist");
+
+    @Comment({
+        "Networks (autonomous systems) not allowed to join the server and register,",
+        "e.g. hosting providers. Players with authme.bypassasncheck are not affected."})
+    public static final Property<List<String>> ASN_BLACKLIST =
+        newListProperty("Protection.asnBlacklist");
+
     @Comment("Do we need to enable automatic antibot system?")
     public static final Property<Boolean> ENABLE_ANTIBOT =
         newProperty("Protection.enableAntiBot", true);
@@ -71,6 +96,62 @@ public final class ProtectionSettings implements SettingsHolder {
     public static final Property<Integer> ANTIBOT_DELAY =
         newProperty("Protection.antiBotDelay", 60);
 
+    @Comment({
+        "Use the adaptive antibot: instead of a fixed limit, it learns the usual rate of joins.",
+        "It activates when the joins in the last antiBotInterval seconds are activationFactor",
+        "times the usual number, and at least antiBotSensibility. It deactivates once the joins",
+        "have fallen below deactivationPercent of this threshold, not after antiBotDuration."})
+    public static final Property<Boolean> ENABLE_ADAPTIVE_ANTIBOT =
+        newProperty("Protection.adaptiveAntiBot.enabled", false);
+
+    @Comment("How many times the usual join rate activates the adaptive antibot")
+    public static final Property<Integer> ADAPTIVE_ANTIBOT_ACTIVATION_FACTOR =
+        newProperty("Protection.adaptiveAntiBot.activationFactor", 4);
+
+    @Comment("Percentage of the activation threshold below which the adaptive antibot deactivates")
+    public static final Property<Integer> ADAPTIVE_ANTIBOT_DEACTIVATION_PERCENT =
+        newProperty("Protection.adaptiveAntiBot.deactivationPercent", 50);
+
+    @Comment("Time in minutes over which the usual join rate is averaged")
+    public static final Property<Integer> ADAPTIVE_ANTIBOT_BASELINE_MINUTES =
+        newProperty("Protection.adaptiveAntiBot.baselineMinutes", 15);
+
+    @Comment({
+        "Limit the rate of connections before any other check is done, so that a flood of",
+        "connections does not cause a flood of database lookups. Each IP address, each subnet",
+        "(/24 for IPv4, /64 for IPv6) and the whole server have a bucket of tokens: every",
+        "connection takes a token from each of them, and a connection is refused with the",
+        "antibot kick message if a bucket is empty. The buckets are refilled continuously.",
+        "This check runs before any bypass permission is known. Don't enable it behind a proxy",
+        "(e.g. BungeeCord) without IP forwarding: all players would then share the proxy's IP.",
+        "Raise the limits if many players connect from the same network (schools, internet cafes)."})
+    public static final Property<Boolean> ENABLE_ADMISSION_CONTROL =
+        newProperty("Protection.admissionControl.enabled", false);
+
+    @Comment("Number of connections an IP address can make in a row (0 for no limit)")
+    public static final Property<Integer> ADMISSION_IP_CAPACITY =
+        newProperty("Protection.admissionControl.perIp.capacity", 10);
+
+    @Comment("Number of connections per minute an IP address is refilled with")
+    public static final Property<Integer> ADMISSION_IP_PER_MINUTE =
+        newProperty("Protection.admissionControl.perIp.perMinute", 30);
+
+    @Comment("Number of connections a subnet can make in a row (0 for no limit)")
+    public static final Property<Integer> ADMISSION_SUBNET_CAPACITY =
+        newProperty("Protection.admissionControl.perSubnet.capacity", 40);
+
+    @Comment("Number of connections per minute a subnet is refilled with")
+    public static final Property<Integer> ADMISSION_SUBNET_PER_MINUTE =
+        newProperty("Protection.admissionControl.perSubnet.perMinute", 120);
+
+    @Comment("Number of connections the server accepts in a row (0 for no limit)")
+    public static final Property<Integer> ADMISSION_GLOBAL_CAPACITY =
+        newProperty("Protection.admissionControl.global.capacity", 300);
+
+    @Comment("Number of connections per minute the server is refilled with")
+    public static final Property<Integer> ADMISSION_GLOBAL_PER_MINUTE =
+        newProperty("Protection.admissionControl.global.perMinute", 3000);
+
     @Comment("Kicks the player that issued a command before the defined time after the join process")
     public static final Property<Integer> QUICK_COMMANDS_DENIED_BEFORE_MILLISECONDS =
         newProperty("Protection.quickCommands.denyCommandsBeforeMilliseconds", 1000);
@@ -40,6 +40,15 @@ public final class PurgeSettings implements SettingsHolder {
     public static final Property<Boolean> REMOVE_PERMISSIONS =
         newProperty("Purge.removePermissions", false);
 
+    @Comment({"Number of accounts deleted per database transaction during a purge.",
+        "Smaller values keep the table locked for a shorter time."})
+    public static final Property<Integer> DELETE_CHUNK_SIZE =
+        newProperty("Purge.deleteChunkSize", 500);
+
+    @Comment("Pause in milliseconds between two chunks of deleted accounts")
+    public static final Property<Integer> DELETE_CHUNK_PAUSE =
+        newProperty("Purge.deleteChunkPause", 50);
+
     private PurgeSettings() {
     }
 
@@ -3,6 +3,7 @@ package fr.xephi.authme.settings.properties;
 import ch.jalu.configme.Comment;
 import ch.jalu.configme.SettingsHolder;
 import ch.jalu.configme.properties.Property;
+import fr.xephi.authme.service.ReverseDnsResolver;
 
 import java.util.List;
 import java.util.Set;
@@ -195,6 +196,15 @@ public final class RestrictionSettings implements SettingsHolder {
     public static final Property<Set<String>> CUSTOM_VPN_RANGES =
         newLowercaseStringSetProperty("settings.restrictions.customVpnRanges");
 
+    @Comment({
+        "Load additional VPN/Proxy/Tor IP ranges from the files in the 'vpn_ranges' folder",
+        "of AuthMe's data folder. Supported are files with one IP or CIDR range per line,",
+        "Tor exit lists and CSV exports (e.g. ASN to CIDR) with the range in the first column",
+        "or the first and last IP in the first two columns.",
+        "Changed files are reloaded automatically."})
+    public static final Property<Boolean> ENABLE_VPN_RANGE_FILES =
+        newProperty("settings.restrictions.enableVpnRangeFiles", false);
+
     @Comment({
         "Custom VPN/Proxy hostnames to block.",
         "Example: vpn.example.com, proxy.example.com"})
@@ -213,6 +223,43 @@ public final class RestrictionSettings implements SettingsHolder {
     public static final Property<Boolean> ENABLE_ADVANCED_VPN_DETECTION =
         newProperty("settings.restrictions.enableAdvancedVpnDetection", false);
 
+    @Comment("Maximum number of IPs for which the result of the VPN detection is remembered")
+    public static final Property<Integer> VPN_CACHE_MAX_SIZE =
+        newProperty("settings.restrictions.vpnCacheMaxSize", 10000);
+
+    @Comment({
+        "Save the remembered VPN detection results to a file, so that players",
+        "do not have to be checked again after a restart"})
+    public static final Property<Boolean> ENABLE_VPN_CACHE_PERSISTENCE =
+        newProperty("settings.restrictions.vpnCachePersistence", false);
+
+    @Comment({
+        "Maximum time in milliseconds to wait for the reverse DNS lookup of the advanced",
+        "VPN detection. Lookups which take longer continue in the background, so that",
+        "their result is known for the next check."})
+    public static final Property<Integer> REVERSE_DNS_TIMEOUT =
+        newProperty("settings.restrictions.reverseDnsTimeout", 500);
+
+    @Comment({
+        "What to assume if the reverse DNS lookup of the advanced VPN detection times out:",
+        "UNKNOWN: the IP is not treated as VPN and is checked again the next time",
+        "VPN: the IP is treated as VPN"})
+    public static final Property<ReverseDnsResolver.TimeoutFallback> REVERSE_DNS_TIMEOUT_FALLBACK =
+        newProperty(ReverseDnsResolver.TimeoutFallback.class, "settings.restrictions.reverseDnsTimeoutFallback",
+            ReverseDnsResolver.TimeoutFallback.UNKNOWN);
+
+    @Comment("Maximum number of reverse DNS lookups of the advanced VPN detection running at once")
+    public static final Property<Integer> REVERSE_DNS_THREADS =
+        newProperty("settings.restrictions.reverseDnsThreads", 4);
+
+    @Comment("Minutes to remember the host name found by a reverse DNS lookup")
+    public static final Property<Integer> REVERSE_DNS_CACHE_DURATION =
+        newProperty("settings.restrictions.reverseDnsCacheDuration", 60);
+
+    @Comment("Minutes to remember that an IP has no host name")
+    public static final Property<Integer> REVERSE_DNS_NEGATIVE_CACHE_DURATION =
+        newProperty("settings.restrictions.reverseDnsNegativeCacheDuration", 10);
+
     @Comment("AuthMe will NEVER teleport players if set to true!")
     public static final Property<Boolean> NO_TELEPORT =
         newProperty("settings.restrictions.noTeleport", false);
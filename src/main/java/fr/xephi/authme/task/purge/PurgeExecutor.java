@@ -1,5 +1,6 @@
 package fr.xephi.authme.task.purge;
 
+import com.google.common.collect.Iterables;
 import fr.xephi.authme.ConsoleLogger;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.output.ConsoleLoggerFactory;
@@ -15,6 +16,8 @@ import org.bukkit.Server;
 import javax.inject.Inject;
 import java.io.File;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 
 import static fr.xephi.authme.util.FileUtils.makePath;
@@ -53,15 +56,17 @@ public class PurgeExecutor {
      *
      * @param players the players to purge
      * @param names   names to purge
+     * @return the number of deleted AuthMe accounts
      */
-    public void executePurge(Collection<OfflinePlayer> players, Collection<String> names) {
+    public int executePurge(Collection<OfflinePlayer> players, Collection<String> names) {
+        int deletedAccounts = purgeFromAuthMe(names);
         // Purge other data
-        purgeFromAuthMe(names);
         purgeEssentials(players);
         purgeDat(players);
         purgeLimitedCreative(names);
         purgeAntiXray(names);
         purgePermissions(players);
+        return deletedAccounts;
     }
 
     /**
@@ -93,14 +98,48 @@ public class PurgeExecutor {
     }
 
     /**
-     * Deletes the given accounts from AuthMe.
+     * Deletes the given accounts from AuthMe. The accounts are deleted in chunks of the configured size,
+     * pausing between chunks so that the table isn't locked for the entire purge.
      *
      * @param names the name of the accounts to delete
+     * @return the number of deleted accounts
      */
-    synchronized void purgeFromAuthMe(Collection<String> names) {
-        dataSource.purgeRecords(names);
-        //TODO ljacqu 20160717: We shouldn't output namedBanned.size() but the actual total that was deleted
-        logger.info(ChatColor.GOLD + "Deleted " + names.size() + " user accounts");
+    synchronized int purgeFromAuthMe(Collection<String> names) {
+        int chunkSize = Math.max(1, settings.getProperty(PurgeSettings.DELETE_CHUNK_SIZE));
+        int pause = settings.getProperty(PurgeSettings.DELETE_CHUNK_PAUSE);
+
+        int deletedAccounts = 0;
+        int processedNames = 0;
+        Iterator<List<String>> chunks = Iterables.partition(names, chunkSize).iterator();
+        while (chunks.hasNext()) {
+            List<String> chunk = chunks.next();
+            deletedAccounts += dataSource.purgeRecords(chunk);
+            processedNames += chunk.size();
+
+            if (chunks.hasNext()) {
+                logger.info("Purge progress: " + processedNames + "/" + names.size() + " names processed, "
+                    + deletedAccounts + " accounts deleted");
+                if (!pauseBetweenChunks(pause)) {
+                    logger.warning("Purge was interrupted; " + (names.size() - processedNames)
+                        + " names were not processed");
+                    break;
+                }
+            }
+        }
+        logger.info(ChatColor.GOLD + "Deleted " + deletedAccounts + " user accounts");
+        return deletedAccounts;
+    }
+
+    private static boolean pauseBetweenChunks(int pause) {
+        if (pause > 0) {
+            try {
+                Thread.sleep(pause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -116,8 +116,9 @@ public class PurgeService {
      *
      * @param players the players (associated with the names)
      * @param names the lowercase names
+     * @return the number of deleted AuthMe accounts
      */
-    void executePurge(Collection<OfflinePlayer> players, Collection<String> names) {
-        purgeExecutor.executePurge(players, names);
+    int executePurge(Collection<OfflinePlayer> players, Collection<String> names) {
+        return purgeExecutor.executePurge(players, names);
     }
 }
@@ -31,6 +31,7 @@ class PurgeTask extends BukkitRunnable {
     private final int totalPurgeCount;
 
     private int currentPage = 0;
+    private int deletedAccounts = 0;
 
     /**
      * Constructor.
@@ -100,10 +101,11 @@ class PurgeTask extends BukkitRunnable {
         }
 
         currentPage++;
-        purgeService.executePurge(playerPortion, namePortion);
+        deletedAccounts += purgeService.executePurge(playerPortion, namePortion);
         if (currentPage % 20 == 0) {
             int completed = totalPurgeCount - toPurge.size();
-            sendMessage("[AuthMe] Purge progress " + completed + '/' + totalPurgeCount);
+            sendMessage("[AuthMe] Purge progress " + completed + '/' + totalPurgeCount
+                + " (" + deletedAccounts + " accounts deleted)");
         }
     }
 
@@ -113,7 +115,7 @@ class PurgeTask extends BukkitRunnable {
         // Show a status message
         sendMessage(ChatColor.GREEN + "[AuthMe] Database has been purged successfully");
 
-        logger.info("Purge finished!");
+        logger.info("Purge finished! Deleted " + deletedAccounts + " accounts");
         purgeService.setPurging(false);
     }
 
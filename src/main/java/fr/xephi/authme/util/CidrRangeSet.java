@@ -0,0 +1,358 @@
+package fr.xephi.authme.util;
+
+import com.google.common.net.InetAddresses;
+import fr.xephi.authme.ConsoleLogger;
+import fr.xephi.authme.output.ConsoleLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable set of IPv4 and IPv6 address ranges. The ranges are compiled into sorted, non-overlapping
+ * intervals stored in primitive arrays, so that checking whether an address is contained in the set is
+ * a binary search which doesn't allocate any objects.
+ */
+public final class CidrRangeSet {
+
+    private static final ConsoleLogger logger = ConsoleLoggerFactory.get(CidrRangeSet.class);
+
+    private static final int IPV4_BITS = 32;
+    private static final int IPV6_BITS = 128;
+
+    private static final CidrRangeSet EMPTY = new Builder().build();
+
+    /** Start and end of the IPv4 intervals, as unsigned ints. */
+    private final int[] ipv4Starts;
+    private final int[] ipv4Ends;
+    /** Start and end of the IPv6 intervals, as high and low 64 bits. */
+    private final long[] ipv6StartsHigh;
+    private final long[] ipv6StartsLow;
+    private final long[] ipv6EndsHigh;
+    private final long[] ipv6EndsLow;
+    private final int rangeCount;
+
+    private CidrRangeSet(Builder builder) {
+        this.rangeCount = builder.ipv4Count + builder.ipv6Ranges.size();
+
+        long[] ipv4Ranges = Arrays.copyOf(builder.ipv4Ranges, builder.ipv4Count);
+        int ipv4Intervals = mergeIpv4(ipv4Ranges);
+        ipv4Starts = new int[ipv4Intervals];
+        ipv4Ends = new int[ipv4Intervals];
+        for (int i = 0; i < ipv4Intervals; ++i) {
+            ipv4Starts[i] = (int) (ipv4Ranges[i] >>> 32);
+            ipv4Ends[i] = (int) ipv4Ranges[i];
+        }
+
+        List<long[]> ipv6Ranges = mergeIpv6(builder.ipv6Ranges);
+        ipv6StartsHigh = new long[ipv6Ranges.size()];
+        ipv6StartsLow = new long[ipv6Ranges.size()];
+        ipv6EndsHigh = new long[ipv6Ranges.size()];
+        ipv6EndsLow = new long[ipv6Ranges.size()];
+        for (int i = 0; i < ipv6Ranges.size(); ++i) {
+            long[] range = ipv6Ranges.get(i);
+            ipv6StartsHigh[i] = range[0];
+            ipv6StartsLow[i] = range[1];
+            ipv6EndsHigh[i] = range[2];
+            ipv6EndsLow[i] = range[3];
+        }
+    }
+
+    /**
+     * @return an empty range set
+     */
+    public static CidrRangeSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return a new builder to compile a range set with
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Compiles the given ranges into a range set. Ranges are in CIDR notation (e.g. 192.168.0.0/16 or
+     * 2001:db8::/32); single addresses without a prefix length are also accepted. Invalid entries
+     * are skipped with a warning.
+     *
+     * @param ranges the ranges to compile
+     * @return the compiled range set
+     */
+    public static CidrRangeSet compile(Collection<String> ranges) {
+        Builder builder = new Builder();
+        for (String range : ranges) {
+            if (!builder.add(range)) {
+                logger.warning("Skipping invalid IP range '" + range + "'");
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns whether the given address is in one of the ranges.
+     *
+     * @param address the address bytes (4 bytes for IPv4, 16 bytes for IPv6)
+     * @return true if the address is contained in the set, false otherwise
+     */
+    public boolean contains(byte[] address) {
+        if (address.length == 4) {
+            return containsIpv4((int) toLong(address, 0, 4));
+        } else if (address.length == 16) {
+            return containsIpv6(toLong(address, 0, 8), toLong(address, 8, 16));
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the given address is in one of the ranges.
+     *
+     * @param address the address to check
+     * @return true if the address is contained in the set, false otherwise
+     */
+    public boolean contains(IpAddress address) {
+        return address.isIpv6()
+            ? containsIpv6(address.getHighBits(), address.getLowBits())
+            : containsIpv4(address.getIpv4Bits());
+    }
+
+    /**
+     * Returns whether the given IP address is in one of the ranges.
+     *
+     * @param ip the IP address (must be a literal address, no host name)
+     * @return true if the address is valid and contained in the set, false otherwise
+     */
+    public boolean contains(String ip) {
+        IpAddress address = IpAddress.parse(ip);
+        return address != null && contains(address);
+    }
+
+    /**
+     * @return the number of valid ranges the set was compiled from
+     */
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    /**
+     * @return the number of intervals the ranges were merged into
+     */
+    public int getIntervalCount() {
+        return ipv4Starts.length + ipv6StartsHigh.length;
+    }
+
+    /**
+     * @return the number of bytes used by the compiled intervals
+     */
+    public long getMemoryFootprint() {
+        return 2L * Integer.BYTES * ipv4Starts.length + 4L * Long.BYTES * ipv6StartsHigh.length;
+    }
+
+    private boolean containsIpv4(int value) {
+        // Find the last interval which starts before or at the value
+        int left = 0;
+        int right = ipv4Starts.length - 1;
+        int candidate = -1;
+        while (left <= right) {
+            int middle = (left + right) >>> 1;
+            if (Integer.compareUnsigned(ipv4Starts[middle], value) <= 0) {
+                candidate = middle;
+                left = middle + 1;
+            } else {
+                right = middle - 1;
+            }
+        }
+        return candidate >= 0 && Integer.compareUnsigned(value, ipv4Ends[candidate]) <= 0;
+    }
+
+    private boolean containsIpv6(long high, long low) {
+        int left = 0;
+        int right = ipv6StartsHigh.length - 1;
+        int candidate = -1;
+        while (left <= right) {
+            int middle = (left + right) >>> 1;
+            if (compare(ipv6StartsHigh[middle], ipv6StartsLow[middle], high, low) <= 0) {
+                candidate = middle;
+                left = middle + 1;
+            } else {
+                right = middle - 1;
+            }
+        }
+        return candidate >= 0 && compare(high, low, ipv6EndsHigh[candidate], ipv6EndsLow[candidate]) <= 0;
+    }
+
+    /**
+     * Sorts and merges the given IPv4 ranges in place, each range being packed as start (upper 32 bits)
+     * and end (lower 32 bits).
+     *
+     * @param ranges the ranges to sort and merge
+     * @return the number of merged intervals at the start of the array
+     */
+    private static int mergeIpv4(long[] ranges) {
+        // The packed values are unsigned: flip the sign bit so that a signed sort orders them correctly
+        for (int i = 0; i < ranges.length; ++i) {
+            ranges[i] ^= Long.MIN_VALUE;
+        }
+        Arrays.sort(ranges);
+
+        int count = 0;
+        for (int i = 0; i < ranges.length; ++i) {
+            long range = ranges[i] ^ Long.MIN_VALUE;
+            if (count > 0 && Long.compareUnsigned(range >>> 32, ranges[count - 1] & 0xFFFFFFFFL) <= 0) {
+                long previous = ranges[count - 1];
+                if (Long.compareUnsigned(range & 0xFFFFFFFFL, previous & 0xFFFFFFFFL) > 0) {
+                    ranges[count - 1] = (previous & 0xFFFFFFFF00000000L) | (range & 0xFFFFFFFFL);
+                }
+            } else {
+                ranges[count++] = range;
+            }
+        }
+        return count;
+    }
+
+    private static List<long[]> mergeIpv6(List<long[]> ranges) {
+        ranges.sort((a, b) -> compare(a[0], a[1], b[0], b[1]));
+
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && compare(range[0], range[1], last[2], last[3]) <= 0) {
+                if (compare(range[2], range[3], last[2], last[3]) > 0) {
+                    last[2] = range[2];
+                    last[3] = range[3];
+                }
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    private static long toLong(byte[] bytes, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; ++i) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int compare(long highA, long lowA, long highB, long lowB) {
+        int result = Long.compareUnsigned(highA, highB);
+        return result != 0 ? result : Long.compareUnsigned(lowA, lowB);
+    }
+
+    /**
+     * Collects ranges to compile into a {@link CidrRangeSet}. IPv4 ranges are kept packed in a primitive
+     * array so that large range lists can be added without creating an object per range.
+     */
+    public static final class Builder {
+
+        private long[] ipv4Ranges = new long[64];
+        private int ipv4Count;
+        private final List<long[]> ipv6Ranges = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds the given range in CIDR notation, or a single IP address.
+         *
+         * @param range the range to add
+         * @return true if the range was added, false if it is invalid
+         */
+        public boolean add(String range) {
+            String trimmedRange = range.trim();
+            int slashIndex = trimmedRange.indexOf('/');
+            String addressPart = slashIndex < 0 ? trimmedRange : trimmedRange.substring(0, slashIndex);
+            if (!InetAddresses.isInetAddress(addressPart)) {
+                return false;
+            }
+            byte[] address = InetAddresses.forString(addressPart).getAddress();
+            int maxBits = address.length == 4 ? IPV4_BITS : IPV6_BITS;
+            int prefixLength;
+            try {
+                prefixLength = slashIndex < 0 ? maxBits : Integer.parseInt(trimmedRange.substring(slashIndex + 1));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (prefixLength < 0 || prefixLength > maxBits) {
+                return false;
+            }
+
+            if (address.length == 4) {
+                long value = toLong(address, 0, 4);
+                long hostMask = (1L << (IPV4_BITS - prefixLength)) - 1;
+                addIpv4(value & ~hostMask, value | hostMask);
+            } else {
+                long high = toLong(address, 0, 8);
+                long low = toLong(address, 8, 16);
+                long highHostMask = prefixLength >= 64 ? 0 : (prefixLength == 0 ? -1L : -1L >>> prefixLength);
+                long lowHostMask = prefixLength <= 64 ? -1L
+                    : (prefixLength == IPV6_BITS ? 0 : -1L >>> (prefixLength - 64));
+                ipv6Ranges.add(new long[]{
+                    high & ~highHostMask, low & ~lowHostMask, high | highHostMask, low | lowHostMask});
+            }
+            return true;
+        }
+
+        /**
+         * Adds the range from the given start address to the given end address (both inclusive).
+         *
+         * @param startIp the first IP address of the range
+         * @param endIp the last IP address of the range
+         * @return true if the range was added, false if it is invalid
+         */
+        public boolean add(String startIp, String endIp) {
+            String start = startIp.trim();
+            String end = endIp.trim();
+            if (!InetAddresses.isInetAddress(start) || !InetAddresses.isInetAddress(end)) {
+                return false;
+            }
+            byte[] startAddress = InetAddresses.forString(start).getAddress();
+            byte[] endAddress = InetAddresses.forString(end).getAddress();
+            if (startAddress.length != endAddress.length) {
+                return false;
+            }
+
+            if (startAddress.length == 4) {
+                long startValue = toLong(startAddress, 0, 4);
+                long endValue = toLong(endAddress, 0, 4);
+                if (startValue > endValue) {
+                    return false;
+                }
+                addIpv4(startValue, endValue);
+            } else {
+                long[] range = {toLong(startAddress, 0, 8), toLong(startAddress, 8, 16),
+                    toLong(endAddress, 0, 8), toLong(endAddress, 8, 16)};
+                if (compare(range[0], range[1], range[2], range[3]) > 0) {
+                    return false;
+                }
+                ipv6Ranges.add(range);
+            }
+            return true;
+        }
+
+        /**
+         * @return the number of ranges added so far
+         */
+        public int getRangeCount() {
+            return ipv4Count + ipv6Ranges.size();
+        }
+
+        /**
+         * @return the compiled range set
+         */
+        public CidrRangeSet build() {
+            return new CidrRangeSet(this);
+        }
+
+        private void addIpv4(long start, long end) {
+            if (ipv4Count == ipv4Ranges.length) {
+                ipv4Ranges = Arrays.copyOf(ipv4Ranges, ipv4Ranges.length * 2);
+            }
+            ipv4Ranges[ipv4Count++] = (start << 32) | end;
+        }
+    }
+}
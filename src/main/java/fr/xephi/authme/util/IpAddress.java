@@ -0,0 +1,250 @@
+package fr.xephi.authme.util;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.net.InetAddresses;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Immutable binary representation of an IPv4 or IPv6 address, to be used instead of the textual
+ * representation as key of IP-based maps. An IPv4 address is stored in one long, an IPv6 address in
+ * two longs, so the equality check and hash code computation don't depend on how the address was written.
+ * <p>
+ * Instances are interned, i.e. all parsed instances of the same address are the same object as long as
+ * one of them is referenced.
+ */
+public final class IpAddress {
+
+    private static final Interner<IpAddress> INTERNER = Interners.newWeakInterner();
+
+    private static final long IPV4_SUBNET_MASK = 0xFFFFFF00L;
+    /** Bits 32 to 63 of IPv4-mapped IPv6 addresses (::ffff:0:0/96). */
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFFL;
+
+    /** High 64 bits of an IPv6 address, 0 for IPv4 addresses. */
+    private final long high;
+    /** Low 64 bits of an IPv6 address, or the IPv4 address as unsigned int. */
+    private final long low;
+    private final boolean ipv6;
+
+    private IpAddress(long high, long low, boolean ipv6) {
+        this.high = high;
+        this.low = low;
+        this.ipv6 = ipv6;
+    }
+
+    /**
+     * Parses the given textual IP address. IPv4 addresses are parsed without creating intermediate objects;
+     * IPv4-mapped IPv6 addresses (e.g. ::ffff:127.0.0.1) are returned as IPv4 address.
+     *
+     * @param ip the IP address to parse (must be a literal address, no host name)
+     * @return the IP address, or null if the text is not a valid IP address
+     */
+    public static IpAddress parse(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            return null;
+        }
+        long ipv4 = parseIpv4(ip);
+        if (ipv4 >= 0) {
+            return ofIpv4((int) ipv4);
+        }
+        if (ip.indexOf(':') < 0) {
+            return null;
+        }
+        try {
+            return of(InetAddresses.forString(ip));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the IP address of the given {@link InetAddress}.
+     *
+     * @param address the address to convert
+     * @return the IP address
+     */
+    public static IpAddress of(InetAddress address) {
+        return fromBytes(address.getAddress());
+    }
+
+    /**
+     * Returns the IP address with the given bytes. IPv4-mapped IPv6 addresses are returned as IPv4 address.
+     *
+     * @param address the address bytes (4 bytes for IPv4, 16 bytes for IPv6)
+     * @return the IP address, or null if the number of bytes is invalid
+     */
+    public static IpAddress fromBytes(byte[] address) {
+        if (address.length == 4) {
+            return ofIpv4((int) toLong(address, 0, 4));
+        } else if (address.length == 16) {
+            long high = toLong(address, 0, 8);
+            long low = toLong(address, 8, 16);
+            if (high == 0 && (low >>> 32) == IPV4_MAPPED_PREFIX) {
+                return ofIpv4((int) low);
+            }
+            return ofIpv6(high, low);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the IPv4 address with the given bits.
+     *
+     * @param address the 32 bits of the address
+     * @return the IP address
+     */
+    public static IpAddress ofIpv4(int address) {
+        return INTERNER.intern(new IpAddress(0, Integer.toUnsignedLong(address), false));
+    }
+
+    /**
+     * Returns the IPv6 address with the given bits.
+     *
+     * @param high the high 64 bits of the address
+     * @param low the low 64 bits of the address
+     * @return the IP address
+     */
+    public static IpAddress ofIpv6(long high, long low) {
+        return INTERNER.intern(new IpAddress(high, low, true));
+    }
+
+    /**
+     * @return true if this is an IPv6 address, false if it is an IPv4 address
+     */
+    public boolean isIpv6() {
+        return ipv6;
+    }
+
+    /**
+     * @return the 32 bits of the IPv4 address, or the lowest 32 bits of the IPv6 address
+     */
+    public int getIpv4Bits() {
+        return (int) low;
+    }
+
+    /**
+     * @return the high 64 bits of the IPv6 address, 0 for IPv4 addresses
+     */
+    public long getHighBits() {
+        return high;
+    }
+
+    /**
+     * @return the low 64 bits of the IPv6 address, or the IPv4 address as unsigned int
+     */
+    public long getLowBits() {
+        return low;
+    }
+
+    /**
+     * Returns the subnet of this address which is usually assigned to one customer, i.e. the /24 network
+     * of an IPv4 address and the /64 network of an IPv6 address. Attackers typically control many addresses
+     * of the same subnet.
+     *
+     * @return the first address of the subnet
+     */
+    public IpAddress getSubnet() {
+        return ipv6 ? ofIpv6(high, 0) : ofIpv4((int) (low & IPV4_SUBNET_MASK));
+    }
+
+    /**
+     * @return the address bytes (4 bytes for IPv4, 16 bytes for IPv6)
+     */
+    public byte[] toBytes() {
+        if (!ipv6) {
+            return new byte[]{(byte) (low >>> 24), (byte) (low >>> 16), (byte) (low >>> 8), (byte) low};
+        }
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; ++i) {
+            bytes[i] = (byte) (high >>> (56 - 8 * i));
+            bytes[i + 8] = (byte) (low >>> (56 - 8 * i));
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the {@link InetAddress} of this IP address
+     */
+    public InetAddress toInetAddress() {
+        try {
+            return InetAddress.getByAddress(toBytes());
+        } catch (UnknownHostException e) {
+            // Cannot happen as the number of bytes is always valid
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        } else if (!(other instanceof IpAddress)) {
+            return false;
+        }
+        IpAddress that = (IpAddress) other;
+        return high == that.high && low == that.low && ipv6 == that.ipv6;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = high * 0x9E3779B97F4A7C15L + low;
+        return (int) (hash ^ (hash >>> 32)) + (ipv6 ? 1 : 0);
+    }
+
+    /**
+     * @return the textual representation of the address, in the compressed form for IPv6 addresses
+     */
+    @Override
+    public String toString() {
+        if (!ipv6) {
+            return (low >>> 24) + "." + ((low >>> 16) & 0xFF) + "." + ((low >>> 8) & 0xFF) + "." + (low & 0xFF);
+        }
+        return InetAddresses.toAddrString(toInetAddress());
+    }
+
+    /**
+     * Parses the given text as IPv4 address in dotted decimal notation.
+     *
+     * @param ip the text to parse
+     * @return the address as unsigned int, or -1 if the text is not an IPv4 address
+     */
+    private static long parseIpv4(String ip) {
+        long address = 0;
+        int octets = 0;
+        int octet = -1;
+        for (int i = 0; i < ip.length(); ++i) {
+            char chr = ip.charAt(i);
+            if (chr >= '0' && chr <= '9') {
+                if (octet == 0) {
+                    // Leading zeros are ambiguous (octal or decimal), InetAddresses rejects them as well
+                    return -1;
+                }
+                octet = (octet < 0 ? 0 : octet * 10) + (chr - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (chr == '.' && octet >= 0 && octets < 3) {
+                address = (address << 8) | octet;
+                ++octets;
+                octet = -1;
+            } else {
+                return -1;
+            }
+        }
+        if (octet < 0 || octets != 3) {
+            return -1;
+        }
+        return (address << 8) | octet;
+    }
+
+    private static long toLong(byte[] bytes, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; ++i) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+}
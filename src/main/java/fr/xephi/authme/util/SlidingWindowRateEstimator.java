@@ -0,0 +1,149 @@
+package fr.xephi.authme.util;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free estimator of the rate of an event. The number of events in the sliding window is counted
+ * with a ring of time buckets, and the usual number of events per window is learned as an
+ * exponentially weighted moving average (EWMA) of the counts of the completed buckets.
+ * <p>
+ * Each bucket of the ring holds its number and its count in one long, so that recording an event is
+ * a single compare-and-set which also resets the buckets of past rounds.
+ */
+public class SlidingWindowRateEstimator {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long BUCKET_MASK = -1L >>> COUNT_BITS;
+
+    private final int bucketCount;
+    private final long bucketMillis;
+    /** Weight of one completed bucket in the moving average. */
+    private final double smoothing;
+    private final AtomicLongArray buckets;
+    private final AtomicReference<Baseline> baseline;
+    private volatile boolean baselineFrozen;
+
+    /**
+     * Constructor.
+     *
+     * @param windowMillis the length of the sliding window in milliseconds
+     * @param bucketCount the number of buckets the window is divided into
+     * @param baselineMillis the time in milliseconds over which the baseline is averaged
+     */
+    public SlidingWindowRateEstimator(long windowMillis, int bucketCount, long baselineMillis) {
+        this.bucketCount = bucketCount;
+        this.bucketMillis = Math.max(1, windowMillis / bucketCount);
+        this.smoothing = Math.min(1.0, (double) bucketMillis / Math.max(1, baselineMillis));
+        this.buckets = new AtomicLongArray(bucketCount);
+        this.baseline = new AtomicReference<>(new Baseline(currentBucket() - 1, 0.0));
+    }
+
+    /**
+     * Records an event.
+     */
+    public void record() {
+        long bucket = currentBucket();
+        updateBaseline(bucket);
+        int index = (int) (bucket % bucketCount);
+        while (true) {
+            long value = buckets.get(index);
+            long updated = (value >>> COUNT_BITS) == (bucket & BUCKET_MASK)
+                ? value + ((value & COUNT_MASK) == COUNT_MASK ? 0 : 1)
+                : (bucket << COUNT_BITS) | 1;
+            if (buckets.compareAndSet(index, value, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of events in the sliding window
+     */
+    public long getWindowCount() {
+        long bucket = currentBucket();
+        updateBaseline(bucket);
+        long count = 0;
+        for (long i = bucket - bucketCount + 1; i <= bucket; ++i) {
+            count += getCount(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the learned usual number of events per window
+     */
+    public double getBaseline() {
+        updateBaseline(currentBucket());
+        return baseline.get().value;
+    }
+
+    /**
+     * Sets whether the baseline is frozen. While it is frozen, completed buckets are not taken into
+     * account for the baseline, e.g. so that an attack is not learned as the usual rate.
+     *
+     * @param frozen true to freeze the baseline, false to continue learning
+     */
+    public void setBaselineFrozen(boolean frozen) {
+        updateBaseline(currentBucket());
+        baselineFrozen = frozen;
+    }
+
+    /**
+     * Takes the buckets which have been completed since the last update into account for the baseline.
+     *
+     * @param currentBucket the number of the current bucket
+     */
+    private void updateBaseline(long currentBucket) {
+        while (true) {
+            Baseline previous = baseline.get();
+            long lastCompleted = currentBucket - 1;
+            if (previous.lastBucket >= lastCompleted) {
+                return;
+            }
+            double value = previous.value;
+            if (!baselineFrozen) {
+                // Buckets which are no longer in the ring had no events
+                long first = Math.max(previous.lastBucket + 1, currentBucket - bucketCount);
+                value *= Math.pow(1 - smoothing, first - previous.lastBucket - 1);
+                for (long i = first; i <= lastCompleted; ++i) {
+                    value += smoothing * (getCount(i) * bucketCount - value);
+                }
+            }
+            if (baseline.compareAndSet(previous, new Baseline(lastCompleted, value))) {
+                return;
+            }
+        }
+    }
+
+    private long getCount(long bucket) {
+        long value = buckets.get((int) (bucket % bucketCount));
+        return (value >>> COUNT_BITS) == (bucket & BUCKET_MASK) ? value & COUNT_MASK : 0;
+    }
+
+    private long currentBucket() {
+        return currentTimeMillis() / bucketMillis;
+    }
+
+    @VisibleForTesting
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Immutable state of the moving average.
+     */
+    private static final class Baseline {
+        /** Number of the last bucket which has been taken into account. */
+        private final long lastBucket;
+        private final double value;
+
+        Baseline(long lastBucket, double value) {
+            this.lastBucket = lastBucket;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package fr.xephi.authme.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket: it holds up to 'capacity' tokens and is refilled with the given number of
+ * tokens per minute. Instead of the number of tokens, the bucket only keeps the time at which it will
+ * be full again, so that taking a token is a single compare-and-set.
+ */
+public final class TokenBucket {
+
+    /** Time in nanoseconds it takes to refill one token. */
+    private final long refillNanos;
+    /** Time in nanoseconds it takes to refill the whole bucket. */
+    private final long capacityNanos;
+    /** Time (as of {@link System#nanoTime()}) at which the bucket is full again. */
+    private final AtomicLong fullAt;
+
+    /**
+     * Constructs a new, full token bucket.
+     *
+     * @param capacity the maximum number of tokens (must be positive)
+     * @param tokensPerMinute the number of tokens added per minute (must be positive)
+     */
+    public TokenBucket(int capacity, int tokensPerMinute) {
+        this.refillNanos = Math.max(1, TimeUnit.MINUTES.toNanos(1) / tokensPerMinute);
+        this.capacityNanos = refillNanos * capacity;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a token from the bucket if one is available.
+     *
+     * @return true if a token was taken, false if the bucket is empty
+     */
+    public boolean tryConsume() {
+        long now = System.nanoTime();
+        while (true) {
+            long current = fullAt.get();
+            long updated = (current - now > 0 ? current : now) + refillNanos;
+            if (updated - now > capacityNanos) {
+                return false;
+            } else if (fullAt.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true if the bucket is full, i.e. no token has been taken recently
+     */
+    public boolean isFull() {
+        return fullAt.get() - System.nanoTime() <= 0;
+    }
+}
@@ -12,21 +12,41 @@ import java.util.concurrent.TimeUnit;
  * Time starts counting directly after insertion. Inserting a new entry with
  * a key that already has a value will "reset" the expiration. Although the
  * expiration can be redefined later on, only entries which are inserted
- * afterwards will use the new expiration.
+ * afterwards will use the new expiration. Entries may also be inserted with
+ * their own expiration.
  * <p>
  * An expiration of {@code <= 0} will make the map expire all entries
  * immediately after insertion. Note that the map does not remove expired
  * entries automatically; this is only done when calling
  * {@link #removeExpiredEntries()}.
+ * <p>
+ * Entries are additionally kept in a hierarchical timing wheel by expiration time,
+ * so that {@link #removeExpiredEntries()} only visits the entries which have expired
+ * instead of all entries. Lookups do not lock; modifications lock the map.
  *
  * @param <K> the key type
  * @param <V> the value type
  */
 public class ExpiringMap<K, V> {
 
+    /** Duration of one tick of the lowest wheel level. */
+    private static final long TICK_MILLIS = 1000L;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    /** Number of wheel levels: the wheel covers 64^4 ticks (about 194 days) without re-sorting. */
+    private static final int LEVELS = 4;
+
     private final Map<K, ExpiringEntry<V>> entries = new ConcurrentHashMap<>();
     private long expirationMillis;
 
+    /** Heads of the doubly linked lists of entries, by level and slot. */
+    @SuppressWarnings("unchecked")
+    private final ExpiringEntry<V>[][] wheel = new ExpiringEntry[LEVELS][SLOTS];
+    /** Next tick whose entries have not been removed yet. */
+    private long nextTick = currentTick();
+    private int linkedEntries;
+
     /**
      * Constructor.
      *
@@ -49,7 +69,7 @@ public class ExpiringMap<K, V> {
         if (value == null) {
             return null;
         } else if (System.currentTimeMillis() > value.getExpiration()) {
-            entries.remove(key);
+            removeIfExpired(key, value);
             return null;
         }
         return value.getValue();
@@ -63,8 +83,32 @@ public class ExpiringMap<K, V> {
      * @param value the value to insert
      */
     public void put(K key, V value) {
-        long expiration = System.currentTimeMillis() + expirationMillis;
-        entries.put(key, new ExpiringEntry<>(value, expiration));
+        put(key, value, expirationMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Inserts a value for the given key with its own expiration. Overwrites a previous
+     * value for the key if it exists.
+     *
+     * @param key the key to insert a value for
+     * @param value the value to insert
+     * @param duration the duration of time after which the entry expires
+     * @param unit the time unit in which {@code duration} is expressed
+     */
+    public synchronized void put(K key, V value, long duration, TimeUnit unit) {
+        long expiration = System.currentTimeMillis() + unit.toMillis(duration);
+        ExpiringEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            entry = new ExpiringEntry<>(value, expiration);
+            entries.put(key, entry);
+        } else {
+            // Reuse the entry of the previous value
+            unlink(entry);
+            entry.value = value;
+            entry.expiration = expiration;
+        }
+        entry.key = key;
+        link(entry);
     }
 
     /**
@@ -72,15 +116,43 @@ public class ExpiringMap<K, V> {
      *
      * @param key the key to remove the value for
      */
-    public void remove(K key) {
-        entries.remove(key);
+    public synchronized void remove(K key) {
+        ExpiringEntry<V> entry = entries.remove(key);
+        if (entry != null) {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        for (ExpiringEntry<V>[] level : wheel) {
+            for (int slot = 0; slot < SLOTS; ++slot) {
+                level[slot] = null;
+            }
+        }
+        linkedEntries = 0;
     }
 
     /**
      * Removes all entries which have expired from the internal structure.
      */
-    public void removeExpiredEntries() {
-        entries.entrySet().removeIf(entry -> System.currentTimeMillis() > entry.getValue().getExpiration());
+    public synchronized void removeExpiredEntries() {
+        long now = System.currentTimeMillis();
+        long currentTick = Math.floorDiv(now, TICK_MILLIS);
+        if (linkedEntries == 0) {
+            nextTick = currentTick;
+        }
+        // All entries of past ticks have expired
+        for (; nextTick < currentTick && linkedEntries > 0; ++nextTick) {
+            cascade(nextTick);
+            removeExpired(wheel[0], (int) (nextTick & SLOT_MASK), now);
+        }
+        nextTick = currentTick;
+        // Entries of the current tick have only expired if their time has passed
+        removeExpired(wheel[0], (int) (currentTick & SLOT_MASK), now);
     }
 
     /**
@@ -113,14 +185,128 @@ public class ExpiringMap<K, V> {
     }
 
     /**
-     * Class holding a value paired with an expiration timestamp.
+     * Removes the entry of the given key if it is the given entry and it has expired. The entry
+     * may have been replaced or reused for a new value since it was found to be expired.
+     *
+     * @param key the key of the entry
+     * @param entry the entry which was found to be expired
+     */
+    synchronized void removeIfExpired(K key, ExpiringEntry<V> entry) {
+        if (System.currentTimeMillis() > entry.getExpiration() && entries.remove(key, entry)) {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * Moves the entries of the higher levels whose time range starts with the given tick to the lower levels.
+     *
+     * @param tick the tick which is being processed
+     */
+    private void cascade(long tick) {
+        for (int level = LEVELS - 1; level > 0; --level) {
+            if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                int slot = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                ExpiringEntry<V> entry = wheel[level][slot];
+                wheel[level][slot] = null;
+                while (entry != null) {
+                    ExpiringEntry<V> next = entry.next;
+                    entry.prev = null;
+                    entry.next = null;
+                    --linkedEntries;
+                    link(entry);
+                    entry = next;
+                }
+            }
+        }
+    }
+
+    private void removeExpired(ExpiringEntry<V>[] slots, int slot, long now) {
+        ExpiringEntry<V> entry = slots[slot];
+        while (entry != null) {
+            ExpiringEntry<V> next = entry.next;
+            if (now > entry.getExpiration()) {
+                unlink(entry);
+                entries.remove(entry.key, entry);
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * Adds the entry to the wheel slot of its expiration time: the lowest level whose range
+     * covers the time until the expiration, or the slot of the next tick if it has already expired.
+     *
+     * @param entry the entry to add
+     */
+    private void link(ExpiringEntry<V> entry) {
+        long tick = Math.floorDiv(entry.getExpiration(), TICK_MILLIS);
+        long ticksLeft = tick - nextTick;
+        int level = 0;
+        int slot;
+        if (ticksLeft < 0) {
+            slot = (int) (nextTick & SLOT_MASK);
+        } else {
+            while (level < LEVELS - 1 && ticksLeft >= 1L << (SLOT_BITS * (level + 1))) {
+                ++level;
+            }
+            if (ticksLeft >= 1L << (SLOT_BITS * LEVELS)) {
+                // Beyond the range of the wheel: park in the slot of the highest level which is cascaded last
+                slot = (int) (((nextTick >>> (SLOT_BITS * level)) - 1) & SLOT_MASK);
+            } else {
+                slot = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            }
+        }
+
+        ExpiringEntry<V> head = wheel[level][slot];
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        wheel[level][slot] = entry;
+        entry.level = level;
+        entry.slot = slot;
+        ++linkedEntries;
+    }
+
+    private void unlink(ExpiringEntry<V> entry) {
+        if (entry.level < 0) {
+            return;
+        }
+        if (entry.prev == null) {
+            wheel[entry.level][entry.slot] = entry.next;
+        } else {
+            entry.prev.next = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.level = -1;
+        --linkedEntries;
+    }
+
+    private static long currentTick() {
+        return Math.floorDiv(System.currentTimeMillis(), TICK_MILLIS);
+    }
+
+    /**
+     * Class holding a value paired with an expiration timestamp. The entry is reused
+     * if a new value is inserted for its key.
      *
      * @param <V> the value type
      */
     protected static final class ExpiringEntry<V> {
 
-        private final V value;
-        private final long expiration;
+        private volatile V value;
+        private volatile long expiration;
+
+        // Position in the timing wheel, guarded by the map's lock
+        private Object key;
+        private ExpiringEntry<V> prev;
+        private ExpiringEntry<V> next;
+        private int level = -1;
+        private int slot;
 
         ExpiringEntry(V value, long expiration) {
             this.value = value;
@@ -1,7 +1,5 @@
 package fr.xephi.authme.util.expiring;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -15,11 +13,11 @@ import java.util.concurrent.TimeUnit;
  * effectively resets its expiration.
  *
  * @param <E> the type of the entries
+ * @see ExpiringMap
  */
 public class ExpiringSet<E> {
 
-    private Map<E, Long> entries = new ConcurrentHashMap<>();
-    private long expirationMillis;
+    private final ExpiringMap<E, Boolean> entries;
 
     /**
      * Constructor.
@@ -28,7 +26,7 @@ public class ExpiringSet<E> {
      * @param unit the time unit in which {@code duration} is expressed
      */
     public ExpiringSet(long duration, TimeUnit unit) {
-        setExpiration(duration, unit);
+        entries = new ExpiringMap<>(duration, unit);
     }
 
     /**
@@ -37,7 +35,18 @@ public class ExpiringSet<E> {
      * @param entry the entry to add
      */
     public void add(E entry) {
-        entries.put(entry, System.currentTimeMillis() + expirationMillis);
+        entries.put(entry, Boolean.TRUE);
+    }
+
+    /**
+     * Adds an entry to the set with its own expiration.
+     *
+     * @param entry the entry to add
+     * @param duration the duration of time after which the entry expires
+     * @param unit the time unit in which {@code duration} is expressed
+     */
+    public void add(E entry, long duration, TimeUnit unit) {
+        entries.put(entry, Boolean.TRUE, duration, unit);
     }
 
     /**
@@ -47,13 +56,13 @@ public class ExpiringSet<E> {
      * @return true if the entry is present and not expired, false otherwise
      */
     public boolean contains(E entry) {
-        Long expiration = entries.get(entry);
-        if (expiration == null) {
+        ExpiringMap.ExpiringEntry<Boolean> expiringEntry = entries.getEntries().get(entry);
+        if (expiringEntry == null) {
             return false;
-        } else if (expiration > System.currentTimeMillis()) {
+        } else if (expiringEntry.getExpiration() > System.currentTimeMillis()) {
             return true;
         } else {
-            entries.remove(entry);
+            entries.removeIfExpired(entry, expiringEntry);
             return false;
         }
     }
@@ -78,7 +87,7 @@ public class ExpiringSet<E> {
      * Removes all entries which have expired from the internal structure.
      */
     public void removeExpiredEntries() {
-        entries.entrySet().removeIf(entry -> System.currentTimeMillis() > entry.getValue());
+        entries.removeExpiredEntries();
     }
 
     /**
@@ -89,13 +98,13 @@ public class ExpiringSet<E> {
      * @return duration the entry will remain in the set (if there are not modifications)
      */
     public Duration getExpiration(E entry) {
-        Long expiration = entries.get(entry);
-        if (expiration == null) {
+        ExpiringMap.ExpiringEntry<Boolean> expiringEntry = entries.getEntries().get(entry);
+        if (expiringEntry == null) {
             return new Duration(-1, TimeUnit.SECONDS);
         }
-        long stillPresentMillis = expiration - System.currentTimeMillis();
+        long stillPresentMillis = expiringEntry.getExpiration() - System.currentTimeMillis();
         if (stillPresentMillis < 0) {
-            entries.remove(entry);
+            entries.removeIfExpired(entry, expiringEntry);
             return new Duration(-1, TimeUnit.SECONDS);
         }
         return Duration.createWithSuitableUnit(stillPresentMillis, TimeUnit.MILLISECONDS);
@@ -109,7 +118,7 @@ public class ExpiringSet<E> {
      * @param unit the time unit in which {@code duration} is expressed
      */
     public void setExpiration(long duration, TimeUnit unit) {
-        this.expirationMillis = unit.toMillis(duration);
+        entries.setExpiration(duration, unit);
     }
 
     /**
@@ -1,16 +1,37 @@
 package fr.xephi.authme.util.expiring;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongBinaryOperator;
 
 /**
  * Keeps a count per key which expires after a configurable amount of time.
  * <p>
  * Once the expiration of an entry has been reached, the counter resets
- * to 0. The counter returns 0 rather than {@code null} for any given key.
+ * to 0. The counter returns 0 for any given key without a count.
+ * <p>
+ * The counter is lock-free: each key holds its count and its expiration in one long, so that
+ * incrementing is a single compare-and-set. The total of all counts is maintained on each update,
+ * and expired counts are only subtracted once the earliest expiration has been reached.
  *
  * @param <K> the type of the key
  */
-public class TimedCounter<K> extends ExpiringMap<K, Integer> {
+public class TimedCounter<K> {
+
+    private static final int COUNT_BITS = 20;
+    private static final long MAX_COUNT = (1L << COUNT_BITS) - 1;
+    private static final long MAX_EXPIRATION = Long.MAX_VALUE >>> COUNT_BITS;
+    /** State of a count which has been removed from the map and may no longer be updated. */
+    private static final long REMOVED = -1L;
+
+    private final Map<K, AtomicLong> counts = new ConcurrentHashMap<>();
+    /** Sum of the counts in the map, including expired counts which have not been removed yet. */
+    private final AtomicLong total = new AtomicLong();
+    /** Lower bound of the expiration of all counts in the map. */
+    private final AtomicLong earliestExpiration = new AtomicLong(MAX_EXPIRATION);
+    private volatile long expirationMillis;
 
     /**
      * Constructor.
@@ -19,13 +40,29 @@ public class TimedCounter<K> extends ExpiringMap<K, Integer> {
      * @param unit the time unit in which {@code duration} is expressed
      */
     public TimedCounter(long duration, TimeUnit unit) {
-        super(duration, unit);
+        setExpiration(duration, unit);
+    }
+
+    /**
+     * Returns the count of the given key.
+     *
+     * @param key the key to look up
+     * @return the count, or 0 if there is none or it has expired
+     */
+    public int get(K key) {
+        AtomicLong counter = counts.get(key);
+        return counter == null ? 0 : (int) liveCount(counter.get(), System.currentTimeMillis());
     }
 
-    @Override
-    public Integer get(K key) {
-        Integer value = super.get(key);
-        return value == null ? 0 : value;
+    /**
+     * Sets the count of the given key and resets its expiration.
+     *
+     * @param key the key to set the count for
+     * @param value the count to set
+     */
+    public void put(K key, int value) {
+        long newCount = Math.max(0, Math.min(MAX_COUNT, value));
+        update(key, (state, now) -> pack(newCount, expirationFrom(now)));
     }
 
     /**
@@ -34,24 +71,45 @@ public class TimedCounter<K> extends ExpiringMap<K, Integer> {
      * @param key the key to increment the counter for
      */
     public void increment(K key) {
-        put(key, get(key) + 1);
+        update(key, (state, now) -> pack(Math.min(MAX_COUNT, liveCount(state, now) + 1), expirationFrom(now)));
     }
 
     /**
      * Decrements the value stored for the provided key.
      * This method will NOT update the expiration.
      *
-     * @param key the key to increment the counter for
+     * @param key the key to decrement the counter for
      */
     public void decrement(K key) {
-        ExpiringEntry<Integer> e = getEntries().get(key);
-
-        if (e != null) {
-            if (e.getValue() <= 0) {
-                remove(key);
-            } else {
-                getEntries().put(key, new ExpiringEntry<>(e.getValue() - 1, e.getExpiration()));
+        AtomicLong counter = counts.get(key);
+        if (counter == null) {
+            return;
+        }
+        while (true) {
+            long state = counter.get();
+            if (state == REMOVED) {
+                return;
             }
+            long value = liveCount(state, System.currentTimeMillis());
+            if (value <= 0) {
+                remove(key, counter);
+                return;
+            } else if (counter.compareAndSet(state, pack(value - 1, expiration(state)))) {
+                total.addAndGet(value - 1 - count(state));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the count of the given key, if available.
+     *
+     * @param key the key to remove the count for
+     */
+    public void remove(K key) {
+        AtomicLong counter = counts.get(key);
+        if (counter != null) {
+            remove(key, counter);
         }
     }
 
@@ -61,10 +119,116 @@ public class TimedCounter<K> extends ExpiringMap<K, Integer> {
      * @return the total of all valid entries
      */
     public int total() {
-        long currentTime = System.currentTimeMillis();
-        return getEntries().values().stream()
-            .filter(entry -> currentTime <= entry.getExpiration())
-            .map(ExpiringEntry::getValue)
-            .reduce(0, Integer::sum);
+        long now = System.currentTimeMillis();
+        if (earliestExpiration.get() < now) {
+            removeExpiredEntries(now);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total.get());
+    }
+
+    /**
+     * Removes all entries which have expired from the internal structure.
+     */
+    public void removeExpiredEntries() {
+        removeExpiredEntries(System.currentTimeMillis());
+    }
+
+    /**
+     * Sets a new expiration duration. Note that already present entries
+     * will still make use of the old expiration.
+     *
+     * @param duration the duration of time after which entries expire
+     * @param unit the time unit in which {@code duration} is expressed
+     */
+    public void setExpiration(long duration, TimeUnit unit) {
+        this.expirationMillis = unit.toMillis(duration);
+    }
+
+    /**
+     * Returns whether this counter is empty. This reflects the state of the
+     * internal map, which may contain expired entries only. The result
+     * may change after running {@link #removeExpiredEntries()}.
+     *
+     * @return true if counter is really empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    /**
+     * Atomically replaces the state of the given key's count.
+     *
+     * @param key the key to update
+     * @param function function returning the new state from the current state and the current time
+     */
+    private void update(K key, LongBinaryOperator function) {
+        while (true) {
+            AtomicLong counter = counts.computeIfAbsent(key, k -> new AtomicLong(0L));
+            long state = counter.get();
+            if (state == REMOVED) {
+                // Concurrently removed: make sure it is gone from the map and start over with a new count
+                counts.remove(key, counter);
+                continue;
+            }
+            long updated = function.applyAsLong(state, System.currentTimeMillis());
+            if (counter.compareAndSet(state, updated)) {
+                total.addAndGet(count(updated) - count(state));
+                earliestExpiration.accumulateAndGet(expiration(updated), Math::min);
+                return;
+            }
+        }
+    }
+
+    private void remove(K key, AtomicLong counter) {
+        long state;
+        while ((state = counter.get()) != REMOVED) {
+            if (counter.compareAndSet(state, REMOVED)) {
+                total.addAndGet(-count(state));
+                break;
+            }
+        }
+        counts.remove(key, counter);
+    }
+
+    private void removeExpiredEntries(long now) {
+        long previousEarliest = earliestExpiration.get();
+        long earliest = MAX_EXPIRATION;
+        for (Map.Entry<K, AtomicLong> entry : counts.entrySet()) {
+            AtomicLong counter = entry.getValue();
+            long state;
+            while ((state = counter.get()) != REMOVED) {
+                if (expiration(state) >= now) {
+                    earliest = Math.min(earliest, expiration(state));
+                    break;
+                } else if (counter.compareAndSet(state, REMOVED)) {
+                    total.addAndGet(-count(state));
+                    counts.remove(entry.getKey(), counter);
+                    break;
+                }
+            }
+        }
+        // Updates which lowered the earliest expiration in the meantime make this fail, which is fine
+        earliestExpiration.compareAndSet(previousEarliest, earliest);
+    }
+
+    private long expirationFrom(long now) {
+        long millis = expirationMillis;
+        return millis >= MAX_EXPIRATION - now ? MAX_EXPIRATION : Math.max(0, now + millis);
+    }
+
+    private static long liveCount(long state, long now) {
+        return state == REMOVED || now > expiration(state) ? 0 : count(state);
+    }
+
+    private static long pack(long count, long expiration) {
+        return expiration << COUNT_BITS | count;
+    }
+
+    private static long count(long state) {
+        return state & MAX_COUNT;
+    }
+
+    private static long expiration(long state) {
+        return state >>> COUNT_BITS;
     }
 }
@@ -4,6 +4,7 @@ import fr.xephi.authme.AuthMe;
 import fr.xephi.authme.ReflectionTestUtils;
 import fr.xephi.authme.data.auth.PlayerAuth;
 import fr.xephi.authme.data.auth.PlayerCache;
+import fr.xephi.authme.datasource.AuthProjection;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.process.Management;
 import fr.xephi.authme.process.register.executors.ApiPasswordRegisterParams;
@@ -30,6 +31,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static fr.xephi.authme.IsEqualByReflectionMatcher.hasEqualValuesOnAllFields;
@@ -314,7 +316,11 @@ public class AuthMeApiTest {
         List<PlayerAuth> auths = Arrays.stream(names)
             .map(name -> PlayerAuth.builder().name(name).build())
             .collect(Collectors.toList());
-        given(dataSource.getAllAuths()).willReturn(auths);
+        given(dataSource.forEachName(any(Consumer.class))).willAnswer(invocation -> {
+            Consumer<String> consumer = invocation.getArgument(0);
+            auths.forEach(auth -> consumer.accept(auth.getNickname()));
+            return true;
+        });
 
         // when
         List<String> result = api.getRegisteredNames();
@@ -330,7 +336,11 @@ public class AuthMeApiTest {
         List<PlayerAuth> auths = Arrays.stream(names)
             .map(name -> PlayerAuth.builder().name(name).realName(name).build())
             .collect(Collectors.toList());
-        given(dataSource.getAllAuths()).willReturn(auths);
+        given(dataSource.forEachAuth(eq(AuthProjection.NAMES), any(Consumer.class))).willAnswer(invocation -> {
+            Consumer<PlayerAuth> consumer = invocation.getArgument(1);
+            auths.forEach(consumer);
+            return true;
+        });
 
         // when
         List<String> result = api.getRegisteredRealNames();
@@ -1,6 +1,7 @@
 package fr.xephi.authme.command.executable.authme;
 
 import fr.xephi.authme.data.auth.PlayerAuth;
+import fr.xephi.authme.datasource.AuthProjection;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.message.MessageKey;
 import fr.xephi.authme.service.CommonService;
@@ -14,8 +15,11 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -94,14 +98,18 @@ public class PurgeLastPositionCommandTest {
         PlayerAuth auth1 = mock(PlayerAuth.class);
         PlayerAuth auth2 = mock(PlayerAuth.class);
         PlayerAuth auth3 = mock(PlayerAuth.class);
-        given(dataSource.getAllAuths()).willReturn(Arrays.asList(auth1, auth2, auth3));
+        given(dataSource.forEachAuth(eq(AuthProjection.ALL), any(Consumer.class))).willAnswer(invocation -> {
+            Consumer<PlayerAuth> consumer = invocation.getArgument(1);
+            Arrays.asList(auth1, auth2, auth3).forEach(consumer);
+            return true;
+        });
         CommandSender sender = mock(CommandSender.class);
 
         // when
         command.executeCommand(sender, Collections.singletonList("*"));
 
         // then
-        verify(dataSource).getAllAuths();
+        verify(dataSource).forEachAuth(eq(AuthProjection.ALL), any(Consumer.class));
         verifyPositionWasReset(auth1);
         verifyPositionWasReset(auth2);
         verifyPositionWasReset(auth3);
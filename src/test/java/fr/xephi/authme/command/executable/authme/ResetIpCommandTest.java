@@ -58,7 +58,7 @@ public class ResetIpCommandTest {
         command.executeCommand(sender, Collections.emptyList());
 
         // then
-        verify(ipRestrictionService).clearAllCache();
+        verify(ipRestrictionService).processAllLastIpsCleared();
         verify(dataSource).clearAllLastIp();
         verify(commonService).send(sender, MessageKey.IP_CACHE_CLEARED);
         verify(commonService).send(sender, MessageKey.IP_DATA_CLEARED_ALL, "5");
@@ -80,7 +80,7 @@ public class ResetIpCommandTest {
         command.executeCommand(sender, Collections.singletonList(playerName));
 
         // then
-        verify(ipRestrictionService).invalidateCache(playerIp);
+        verify(ipRestrictionService).processLastIpCleared(playerIp);
         verify(dataSource).clearLastIpForIp(playerIp);
         verify(commonService).send(sender, MessageKey.IP_CACHE_RESET, playerIp);
         verify(commonService).send(sender, MessageKey.IP_RESET_COMPLETE, playerIp);
@@ -100,7 +100,7 @@ public class ResetIpCommandTest {
         command.executeCommand(sender, Collections.singletonList(ipAddress));
 
         // then
-        verify(ipRestrictionService).invalidateCache(ipAddress);
+        verify(ipRestrictionService).processLastIpCleared(ipAddress);
         verify(dataSource).clearLastIpForIp(ipAddress);
         verify(commonService).send(sender, MessageKey.IP_CACHE_RESET, ipAddress);
         verify(commonService).send(sender, MessageKey.IP_RESET_COMPLETE, ipAddress);
@@ -9,6 +9,7 @@ import fr.xephi.authme.data.limbo.LimboPlayer;
 import fr.xephi.authme.data.limbo.LimboService;
 import fr.xephi.authme.datasource.CacheDataSource;
 import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.datasource.RegisteredNamesFilter;
 import fr.xephi.authme.initialization.HasCleanup;
 import fr.xephi.authme.initialization.Reloadable;
 import fr.xephi.authme.initialization.SettingsDependent;
@@ -114,6 +115,30 @@ public class DataStatisticsTest {
         assertThat(stringCaptor.getAllValues(), hasItem("Cached PlayerAuth objects: 11"));
     }
 
+    @Test
+    public void shouldOutputRegisteredNamesFilterStatistics() {
+        // given
+        CacheDataSource cacheDataSource = mock(CacheDataSource.class);
+        given(cacheDataSource.getCachedAuths()).willReturn(mock(LoadingCache.class));
+        RegisteredNamesFilter filter = mock(RegisteredNamesFilter.class);
+        given(filter.isLoaded()).willReturn(true);
+        given(filter.getApproximateSize()).willReturn(2048L);
+        given(filter.getFalsePositiveRate()).willReturn(0.0005);
+        given(filter.getNegativeLookups()).willReturn(37L);
+        given(cacheDataSource.getRegisteredNamesFilter()).willReturn(filter);
+        ReflectionTestUtils.setField(DataStatistics.class, dataStatistics, "dataSource", cacheDataSource);
+        CommandSender sender = mock(CommandSender.class);
+
+        // when
+        dataStatistics.execute(sender, Collections.emptyList());
+
+        // then
+        ArgumentCaptor<String> stringCaptor = ArgumentCaptor.forClass(String.class);
+        verify(sender, atLeastOnce()).sendMessage(stringCaptor.capture());
+        assertThat(stringCaptor.getAllValues(), hasItem(
+            String.format("Registered names filter: ~2048 names, %.3f%% false positives, 37 lookups skipped", 0.05)));
+    }
+
     private static <T> List<T> mockListOfSize(Class<T> mockClass, int size) {
         T mock = mock(mockClass);
         return Collections.nCopies(size, mock);
@@ -7,6 +7,8 @@ import fr.xephi.authme.data.limbo.LimboPlayer;
 import fr.xephi.authme.data.limbo.LimboService;
 import fr.xephi.authme.datasource.CacheDataSource;
 import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.DatabaseSettings;
 import org.bukkit.Location;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,6 +21,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 
 /**
@@ -105,7 +108,10 @@ public class DebugSectionUtilsTest {
         // given
         DataSource source = mock(DataSource.class);
         PlayerCache playerCache = mock(PlayerCache.class);
-        CacheDataSource cacheDataSource = new CacheDataSource(source, playerCache);
+        Settings settings = mock(Settings.class);
+        given(settings.getProperty(DatabaseSettings.WRITE_BEHIND_INTERVAL)).willReturn(0);
+        given(settings.getProperty(DatabaseSettings.USE_REGISTERED_NAMES_FILTER)).willReturn(false);
+        CacheDataSource cacheDataSource = new CacheDataSource(source, playerCache, settings);
 
         // when
         DataSource result = DebugSectionUtils.unwrapSourceFromCacheDataSource(cacheDataSource);
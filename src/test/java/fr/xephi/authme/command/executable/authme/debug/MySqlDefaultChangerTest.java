@@ -9,6 +9,7 @@ import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.datasource.MySQL;
 import fr.xephi.authme.datasource.SqlDataSourceTestUtil;
 import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.DatabaseSettings;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -78,7 +79,10 @@ public class MySqlDefaultChangerTest {
         // given
         DataSource dataSource = mock(DataSource.class);
         PlayerCache playerCache = mock(PlayerCache.class);
-        CacheDataSource cacheDataSource = new CacheDataSource(dataSource, playerCache);
+        Settings settings = mock(Settings.class);
+        given(settings.getProperty(DatabaseSettings.WRITE_BEHIND_INTERVAL)).willReturn(0);
+        given(settings.getProperty(DatabaseSettings.USE_REGISTERED_NAMES_FILTER)).willReturn(false);
+        CacheDataSource cacheDataSource = new CacheDataSource(dataSource, playerCache, settings);
         MySqlDefaultChanger defaultChanger = createDefaultChanger(cacheDataSource);
 
         // when
@@ -0,0 +1,126 @@
+package fr.xephi.authme.data;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.data.auth.PlayerCache;
+import fr.xephi.authme.service.BukkitService;
+import fr.xephi.authme.service.GeoIpService;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link OnlinePlayerIpIndex}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class OnlinePlayerIpIndexTest {
+
+    @Mock
+    private BukkitService bukkitService;
+
+    @Mock
+    private PlayerCache playerCache;
+
+    @Mock
+    private GeoIpService geoIpService;
+
+    @Test
+    public void shouldIndexAlreadyOnlinePlayers() {
+        // given
+        Player albania = mockPlayer("Albania", "1.1.1.1");
+        Player brazil = mockPlayer("brazil", "1.1.1.1");
+        Player congo = mockPlayer("congo", "2.2.2.2");
+        given(bukkitService.getOnlinePlayers()).willReturn(Arrays.asList(albania, brazil, congo));
+
+        // when
+        OnlinePlayerIpIndex index = new OnlinePlayerIpIndex(bukkitService, playerCache, geoIpService);
+
+        // then
+        assertThat(index.countOnlinePlayers("1.1.1.1"), equalTo(2));
+        assertThat(index.countOnlinePlayers("2.2.2.2"), equalTo(1));
+        assertThat(index.countOnlinePlayers("3.3.3.3"), equalTo(0));
+    }
+
+    @Test
+    public void shouldUpdateIndexOnJoinAndQuit() {
+        // given
+        given(bukkitService.getOnlinePlayers()).willReturn(Collections.emptyList());
+        OnlinePlayerIpIndex index = new OnlinePlayerIpIndex(bukkitService, playerCache, geoIpService);
+        Player denmark = mockPlayer("Denmark", "::ABCD");
+        Player ecuador = mockPlayer("ecuador", "::abcd");
+
+        // when
+        index.processJoin(denmark);
+        index.processJoin(ecuador);
+        index.processQuit(denmark);
+        index.processQuit(denmark);
+
+        // then
+        assertThat(index.countOnlinePlayers("0:0:0:0:0:0:0:abcd"), equalTo(1));
+        assertThat(index.countOnlinePlayers("0:0:0:0:0:0:0:ABCD"), equalTo(1));
+    }
+
+    @Test
+    public void shouldCountLoggedInPlayers() {
+        // given
+        Player congo = mockPlayer("Congo", "2.2.2.2");
+        Player denmark = mockPlayer("denmark", "2.2.2.2");
+        Player ecuador = mockPlayer("ecuador", "2.2.2.2");
+        Player france = mockPlayer("france", "3.3.3.3");
+        given(bukkitService.getOnlinePlayers()).willReturn(Arrays.asList(congo, denmark, ecuador, france));
+        given(playerCache.isAuthenticated("congo")).willReturn(true);
+        given(playerCache.isAuthenticated("denmark")).willReturn(false);
+        OnlinePlayerIpIndex index = new OnlinePlayerIpIndex(bukkitService, playerCache, geoIpService);
+
+        // when
+        int loggedIn = index.countLoggedInPlayers("2.2.2.2", "Ecuador");
+        int loggedInExcludingCongo = index.countLoggedInPlayers("2.2.2.2", "congo");
+        int loggedInForUnknownIp = index.countLoggedInPlayers("4.4.4.4", "ecuador");
+
+        // then
+        assertThat(loggedIn, equalTo(1));
+        assertThat(loggedInExcludingCongo, equalTo(0));
+        assertThat(loggedInForUnknownIp, equalTo(0));
+    }
+
+    @Test
+    public void shouldLookUpCountryOncePerConnection() {
+        // given
+        given(bukkitService.getOnlinePlayers()).willReturn(Collections.emptyList());
+        OnlinePlayerIpIndex index = new OnlinePlayerIpIndex(bukkitService, playerCache, geoIpService);
+        Player germany = mockPlayer("Germany", "5.5.5.5");
+        given(geoIpService.getCountryName("5.5.5.5")).willReturn("Syldavia");
+        index.processJoin(germany);
+
+        // when
+        String country1 = index.getCountryName(germany);
+        String country2 = index.getCountryName(germany);
+        index.processQuit(germany);
+        index.processJoin(germany);
+        String country3 = index.getCountryName(germany);
+
+        // then
+        assertThat(country1, equalTo("Syldavia"));
+        assertThat(country2, equalTo("Syldavia"));
+        assertThat(country3, equalTo("Syldavia"));
+        verify(geoIpService, times(2)).getCountryName("5.5.5.5");
+    }
+
+    private static Player mockPlayer(String name, String ip) {
+        Player player = mock(Player.class);
+        given(player.getName()).willReturn(name);
+        TestHelper.mockIpAddressToPlayer(player, ip);
+        return player;
+    }
+}
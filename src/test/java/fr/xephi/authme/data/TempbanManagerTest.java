@@ -7,6 +7,7 @@ import fr.xephi.authme.message.Messages;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.settings.Settings;
 import fr.xephi.authme.settings.properties.SecuritySettings;
+import fr.xephi.authme.util.IpAddress;
 import fr.xephi.authme.util.expiring.TimedCounter;
 import org.bukkit.entity.Player;
 import org.junit.Test;
@@ -214,13 +215,13 @@ public class TempbanManagerTest {
     @Test
     public void shouldPerformCleanup() {
         // given
-        Map<String, TimedCounter<String>> counts = new HashMap<>();
+        Map<IpAddress, TimedCounter<String>> counts = new HashMap<>();
         TimedCounter<String> counter1 = mockCounter();
         given(counter1.isEmpty()).willReturn(true);
-        counts.put("11.11.11.11", counter1);
+        counts.put(IpAddress.parse("11.11.11.11"), counter1);
         TimedCounter<String> counter2 = mockCounter();
         given(counter2.isEmpty()).willReturn(false);
-        counts.put("33.33.33.33", counter2);
+        counts.put(IpAddress.parse("33.33.33.33"), counter2);
 
         TempbanManager manager = new TempbanManager(bukkitService, messages, mockSettings(3, 10, ""));
         ReflectionTestUtils.setField(TempbanManager.class, manager, "ipLoginFailureCounts", counts);
@@ -231,7 +232,7 @@ public class TempbanManagerTest {
         // then
         verify(counter1).removeExpiredEntries();
         verify(counter2).removeExpiredEntries();
-        assertThat(counts.keySet(), contains("33.33.33.33"));
+        assertThat(counts.keySet(), contains(IpAddress.parse("33.33.33.33")));
     }
 
     private static Settings mockSettings(int maxTries, int tempbanLength, String customCommand) {
@@ -246,16 +247,16 @@ public class TempbanManagerTest {
     }
 
     private static void assertHasNoEntries(TempbanManager manager, String address) {
-        Map<String, TimedCounter<String>> playerCounts = ReflectionTestUtils
+        Map<IpAddress, TimedCounter<String>> playerCounts = ReflectionTestUtils
             .getFieldValue(TempbanManager.class, manager, "ipLoginFailureCounts");
-        TimedCounter<String> counter = playerCounts.get(address);
+        TimedCounter<String> counter = playerCounts.get(IpAddress.parse(address));
         assertThat(counter == null || counter.isEmpty(), equalTo(true));
     }
 
     private static void assertHasCount(TempbanManager manager, String address, String name, int count) {
-        Map<String, TimedCounter<String>> playerCounts = ReflectionTestUtils
+        Map<IpAddress, TimedCounter<String>> playerCounts = ReflectionTestUtils
             .getFieldValue(TempbanManager.class, manager, "ipLoginFailureCounts");
-        assertThat(playerCounts.get(address).get(name), equalTo(count));
+        assertThat(playerCounts.get(IpAddress.parse(address)).get(name), equalTo(count));
     }
 
     @SuppressWarnings("unchecked")
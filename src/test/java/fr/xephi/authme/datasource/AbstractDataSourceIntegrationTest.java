@@ -7,6 +7,7 @@ import fr.xephi.authme.data.auth.PlayerAuth;
 import fr.xephi.authme.security.crypts.HashedPassword;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -153,6 +154,66 @@ public abstract class AbstractDataSourceIntegrationTest {
         assertThat(newAuthList, hasItem(hasAuthBasicData("bobby", "Bobby", null, "123.45.67.89")));
     }
 
+    @Test
+    public void shouldPassAllNamesToConsumer() {
+        // given
+        DataSource dataSource = getDataSource();
+        List<String> names = new ArrayList<>();
+
+        // when
+        boolean result = dataSource.forEachName(names::add);
+
+        // then
+        assertThat(result, equalTo(true));
+        assertThat(names, containsInAnyOrder("bobby", "user"));
+    }
+
+    @Test
+    public void shouldPassAllAuthsToConsumer() {
+        // given
+        DataSource dataSource = getDataSource();
+        List<PlayerAuth> allAuths = new ArrayList<>();
+        List<PlayerAuth> namesOnly = new ArrayList<>();
+
+        // when
+        boolean result1 = dataSource.forEachAuth(AuthProjection.ALL, allAuths::add);
+        boolean result2 = dataSource.forEachAuth(AuthProjection.NAMES, namesOnly::add);
+
+        // then
+        assertThat(result1, equalTo(true));
+        assertThat(result2, equalTo(true));
+        assertThat(allAuths, containsInAnyOrder(
+            hasAuthBasicData("bobby", "Bobby", null, "123.45.67.89"),
+            hasAuthBasicData("user", "user", "user@example.org", "34.56.78.90")));
+        assertThat(namesOnly, containsInAnyOrder(
+            hasAuthBasicData("bobby", "Bobby", null, null),
+            hasAuthBasicData("user", "user", null, null)));
+    }
+
+    @Test
+    public void shouldApplyPendingWrites() {
+        // given
+        DataSource dataSource = getDataSource();
+        PendingAuthWrite bobbyWrite = new PendingAuthWrite("Bobby");
+        bobbyWrite.setSessionData(PlayerAuth.builder()
+            .name("bobby").realName("BOBBY").lastIp("12.34.56.78").lastLogin(1500000000L).build());
+        bobbyWrite.setLogged(true);
+        PendingAuthWrite userWrite = new PendingAuthWrite("user");
+        userWrite.setLogged(true);
+        userWrite.setHasSession(true);
+
+        // when
+        boolean result = dataSource.applyPendingWrites(Arrays.asList(bobbyWrite, userWrite));
+
+        // then
+        assertThat(result, equalTo(true));
+        assertThat(dataSource.getAuth("bobby"), hasAuthBasicData("bobby", "BOBBY", null, "12.34.56.78"));
+        assertThat(dataSource.isLogged("bobby"), equalTo(true));
+        assertThat(dataSource.isLogged("user"), equalTo(true));
+        assertThat(dataSource.hasSession("user"), equalTo(true));
+        assertThat(dataSource.hasSession("bobby"), equalTo(false));
+    }
+
     @Test
     public void shouldUpdatePassword() {
         // given
@@ -235,6 +296,33 @@ public abstract class AbstractDataSourceIntegrationTest {
         assertThat(result.getLastLogin(), equalTo(123L));
     }
 
+    @Test
+    public void shouldCommitLogin() {
+        // given
+        DataSource dataSource = getDataSource();
+        PlayerAuth bobby = PlayerAuth.builder()
+            .name("bobby").realName("BOBBY").lastLogin(123L)
+            .lastIp("22.22.22.22").build();
+        PlayerAuth user = PlayerAuth.builder()
+            .name("user").realName("user").lastLogin(456L)
+            .lastIp("22.22.22.22").build();
+
+        // when
+        List<String> bobbyAccounts = dataSource.commitLogin(bobby, true);
+        List<String> userAccounts = dataSource.commitLogin(user, false);
+
+        // then
+        assertThat(bobbyAccounts, contains("bobby"));
+        assertThat(userAccounts, containsInAnyOrder("bobby", "user"));
+        PlayerAuth result = dataSource.getAuth("bobby");
+        assertThat(result, hasAuthBasicData("bobby", "BOBBY", null, "22.22.22.22"));
+        assertThat(result.getLastLogin(), equalTo(123L));
+        assertThat(dataSource.isLogged("bobby"), equalTo(true));
+        assertThat(dataSource.hasSession("bobby"), equalTo(true));
+        assertThat(dataSource.isLogged("user"), equalTo(true));
+        assertThat(dataSource.hasSession("user"), equalTo(false));
+    }
+
     @Test
     public void shouldUpdateLastLoc() {
         // given
@@ -259,9 +347,10 @@ public abstract class AbstractDataSourceIntegrationTest {
         assumeThat(dataSource.getAccountsRegistered(), equalTo(2));
 
         // when
-        dataSource.purgeRecords(playersToDelete);
+        int deletedAccounts = dataSource.purgeRecords(playersToDelete);
 
         // then
+        assertThat(deletedAccounts, equalTo(1));
         assertThat(dataSource.getAccountsRegistered(), equalTo(1));
         assertThat(dataSource.isAuthAvailable("bobby"), equalTo(false));
         assertThat(dataSource.isAuthAvailable("user"), equalTo(true));
@@ -326,6 +415,27 @@ public abstract class AbstractDataSourceIntegrationTest {
         assertThat(updatedList, hasItem(equalTo("test-1")));
     }
 
+    @Test
+    public void shouldCountAuthsByIp() {
+        // given
+        DataSource dataSource = getDataSource();
+        for (int i = 0; i < 3; ++i) {
+            PlayerAuth auth = PlayerAuth.builder().name("test-" + i).lastIp("123.45.67.89").build();
+            dataSource.saveAuth(auth);
+            dataSource.updateSession(auth); // trigger storage of last IP
+        }
+
+        // when
+        int count = dataSource.countAuthsByIp("123.45.67.89");
+        int otherCount = dataSource.countAuthsByIp("34.56.78.90");
+        int unknownCount = dataSource.countAuthsByIp("8.8.8.8");
+
+        // then
+        assertThat(count, equalTo(4));
+        assertThat(otherCount, equalTo(1));
+        assertThat(unknownCount, equalTo(0));
+    }
+
     @Test
     public void shouldUpdateRealName() {
         // given
@@ -410,9 +520,10 @@ public abstract class AbstractDataSourceIntegrationTest {
         DataSource dataSource = getDataSource();
 
         // when
-        dataSource.purgeRecords(names);
+        int deletedAccounts = dataSource.purgeRecords(names);
 
         // then
+        assertThat(deletedAccounts, equalTo(2));
         assertThat(dataSource.getAllAuths(), empty());
     }
 
@@ -478,6 +589,30 @@ public abstract class AbstractDataSourceIntegrationTest {
         assertThat(dataSource.hasSession("nonExistentName"), equalTo(false));
     }
 
+    @Test
+    public void shouldConsumeSession() {
+        // given
+        DataSource dataSource = getDataSource();
+        dataSource.grantSession("bobby");
+        dataSource.setLogged("bobby");
+        dataSource.setLogged("user");
+
+        // when
+        PlayerAuth bobbyAuth = dataSource.consumeSession("Bobby");
+        PlayerAuth bobbyAuthAgain = dataSource.consumeSession("bobby");
+        PlayerAuth userAuth = dataSource.consumeSession("user");
+        PlayerAuth bogusAuth = dataSource.consumeSession("bogus");
+
+        // then
+        assertThat(bobbyAuth, hasAuthBasicData("bobby", "Bobby", null, "123.45.67.89"));
+        assertThat(bobbyAuthAgain, nullValue());
+        assertThat(userAuth, nullValue());
+        assertThat(bogusAuth, nullValue());
+        assertThat(dataSource.hasSession("bobby"), equalTo(false));
+        assertThat(dataSource.isLogged("bobby"), equalTo(false));
+        assertThat(dataSource.isLogged("user"), equalTo(true));
+    }
+
     @Test
     public void shouldGetRecentlyLoggedInPlayers() {
         // given
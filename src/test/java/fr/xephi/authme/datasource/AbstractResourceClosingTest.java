@@ -28,6 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -177,9 +178,18 @@ public abstract class AbstractResourceClosingTest {
             .put(boolean.class, true)
             .put(PlayerAuth.class, PlayerAuth.builder().name("test").realName("test").password(hash).build())
             .put(HashedPassword.class, hash)
+            .put(Consumer.class, (Consumer<?>) value -> { })
+            .put(AuthProjection.class, AuthProjection.ALL)
+            .put(PendingAuthWrite.class, createPendingAuthWrite())
             .build();
     }
 
+    private static PendingAuthWrite createPendingAuthWrite() {
+        PendingAuthWrite write = new PendingAuthWrite("test");
+        write.setLogged(true);
+        return write;
+    }
+
     // ---------------------
     // Mock initialization
     // ---------------------
@@ -0,0 +1,173 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.ReflectionTestUtils;
+import fr.xephi.authme.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link RegisteredNamesFilter}.
+ */
+public class RegisteredNamesFilterTest {
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Test
+    public void shouldConsiderAllNamesRegisteredBeforeLoading() {
+        // given
+        RegisteredNamesFilter filter = new RegisteredNamesFilter();
+
+        // when / then
+        assertThat(filter.isLoaded(), equalTo(false));
+        assertThat(filter.mightBeRegistered("bobby"), equalTo(true));
+        assertThat(filter.mightBeRegistered("unknown"), equalTo(true));
+    }
+
+    @Test
+    public void shouldLoadNamesFromDataSource() {
+        // given
+        RegisteredNamesFilter filter = new RegisteredNamesFilter();
+        DataSource dataSource = dataSourceWithNames("Bobby", "user");
+
+        // when
+        filter.load(dataSource);
+
+        // then
+        assertThat(filter.isLoaded(), equalTo(true));
+        assertThat(filter.mightBeRegistered("bobby"), equalTo(true));
+        assertThat(filter.mightBeRegistered("user"), equalTo(true));
+        assertThat(filter.mightBeRegistered("unknown"), equalTo(false));
+        assertThat(filter.getNegativeLookups(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldAddName() {
+        // given
+        RegisteredNamesFilter filter = new RegisteredNamesFilter();
+        filter.load(dataSourceWithNames("bobby"));
+
+        // when
+        filter.add("newplayer");
+
+        // then
+        assertThat(filter.mightBeRegistered("newplayer"), equalTo(true));
+    }
+
+    @Test
+    public void shouldNotUseFilterIfLoadingFailed() {
+        // given
+        RegisteredNamesFilter filter = new RegisteredNamesFilter();
+        DataSource dataSource = mock(DataSource.class);
+        given(dataSource.forEachName(any(Consumer.class))).willReturn(false);
+
+        // when
+        filter.load(dataSource);
+
+        // then
+        assertThat(filter.isLoaded(), equalTo(false));
+        assertThat(filter.mightBeRegistered("unknown"), equalTo(true));
+    }
+
+    @Test
+    public void shouldRequireRebuildAfterManyRemovals() {
+        // given
+        RegisteredNamesFilter filter = new RegisteredNamesFilter();
+        filter.load(dataSourceWithNames("bobby"));
+
+        // when
+        filter.markRemoved(100);
+        boolean needsRebuildAfterFewRemovals = filter.needsRebuild();
+        filter.markRemoved(5000);
+
+        // then
+        assertThat(needsRebuildAfterFewRemovals, equalTo(false));
+        assertThat(filter.needsRebuild(), equalTo(true));
+    }
+
+    @Test
+    public void shouldRequireRebuildIfOutdated() {
+        // given
+        RegisteredNamesFilter filter = new RegisteredNamesFilter();
+        filter.load(dataSourceWithNames("bobby"));
+        boolean needsRebuildAfterLoading = filter.needsRebuild();
+
+        // when
+        ReflectionTestUtils.setField(RegisteredNamesFilter.class, filter, "loadTimestamp",
+            System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+
+        // then
+        assertThat(needsRebuildAfterLoading, equalTo(false));
+        assertThat(filter.needsRebuild(), equalTo(true));
+    }
+
+    @Test
+    public void shouldScheduleOnlyOneLoadForStaleFilter() {
+        // given
+        RegisteredNamesFilter filter = new RegisteredNamesFilter();
+        DataSource dataSource = dataSourceWithNames("bobby");
+        filter.load(dataSource);
+        ReflectionTestUtils.setField(RegisteredNamesFilter.class, filter, "loadTimestamp",
+            System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+        List<Runnable> scheduledTasks = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 100; ++i) {
+            if (!filter.mightBeRegistered("unknown" + i) && filter.needsRebuild()) {
+                filter.loadAsync(dataSource, scheduledTasks::add);
+            }
+        }
+
+        // then
+        assertThat(scheduledTasks, hasSize(1));
+        verify(dataSource, times(1)).getAccountsRegistered();
+        scheduledTasks.get(0).run();
+        verify(dataSource, times(2)).getAccountsRegistered();
+        assertThat(filter.needsRebuild(), equalTo(false));
+    }
+
+    @Test
+    public void shouldAllowNewLoadAfterScheduledLoadHasRun() {
+        // given
+        RegisteredNamesFilter filter = new RegisteredNamesFilter();
+        DataSource dataSource = dataSourceWithNames("bobby");
+        List<Runnable> scheduledTasks = new ArrayList<>();
+        filter.loadAsync(dataSource, scheduledTasks::add);
+        scheduledTasks.remove(0).run();
+
+        // when
+        filter.loadAsync(dataSource, scheduledTasks::add);
+
+        // then
+        assertThat(scheduledTasks, hasSize(1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DataSource dataSourceWithNames(String... names) {
+        DataSource dataSource = mock(DataSource.class);
+        given(dataSource.getAccountsRegistered()).willReturn(names.length);
+        given(dataSource.forEachName(any(Consumer.class))).willAnswer(invocation -> {
+            Consumer<String> consumer = invocation.getArgument(0);
+            Arrays.stream(names).forEach(consumer);
+            return true;
+        });
+        return dataSource;
+    }
+}
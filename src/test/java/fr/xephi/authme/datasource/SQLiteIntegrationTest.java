@@ -8,7 +8,9 @@ import fr.xephi.authme.settings.properties.DatabaseSettings;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -17,9 +19,13 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -55,6 +61,9 @@ public class SQLiteIntegrationTest extends AbstractDataSourceIntegrationTest {
         sqlInitialize = new String(Files.readAllBytes(sqlInitFile)).split(";(\\r?)\\n");
     }
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Before
     public void initializeConnectionAndTable() throws SQLException {
         Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
@@ -111,6 +120,87 @@ public class SQLiteIntegrationTest extends AbstractDataSourceIntegrationTest {
         assertThat(sqLite.getAllAuths(), hasSize(1));
     }
 
+    @Test
+    public void shouldCreateIndexesForHotQueries() throws SQLException {
+        // given
+        SQLite sqLite = new SQLite(settings, null, con);
+
+        // when
+        sqLite.setup();
+        List<QueryPlan> plans = sqLite.explainHotQueries();
+
+        // then
+        assertThat(plans, hasSize(4));
+        for (QueryPlan plan : plans) {
+            assertThat(plan.getQueryName() + ": " + plan.getPlanRows(), plan.isFullScan(), equalTo(false));
+        }
+    }
+
+    @Test
+    public void shouldOnlySetUpTableOnce() throws SQLException {
+        // given
+        SQLite sqLite = new SQLite(settings, null, con);
+        sqLite.setup();
+
+        // when
+        // index created by the setup is removed: setup must not add it again as the schema is marked up to date
+        try (Statement st = con.createStatement()) {
+            st.execute("DROP INDEX authme_email_idx");
+        }
+        sqLite.setup();
+
+        // then
+        assertThat(SchemaVersionTable.isUpToDate(con, "authme", new Columns(settings)), equalTo(true));
+        assertThat(sqLite.explainHotQueries().stream().anyMatch(QueryPlan::isFullScan), equalTo(true));
+    }
+
+    @Test
+    public void shouldSetUpTableAgainIfItWasDropped() throws SQLException {
+        // given
+        SQLite sqLite = new SQLite(settings, null, con);
+        sqLite.setup();
+        Columns columns = new Columns(settings);
+        boolean isUpToDateAfterSetup = SchemaVersionTable.isUpToDate(con, "authme", columns);
+
+        // when
+        try (Statement st = con.createStatement()) {
+            st.execute("DROP TABLE authme");
+        }
+        boolean isUpToDateWithoutTable = SchemaVersionTable.isUpToDate(con, "authme", columns);
+        sqLite.setup();
+
+        // then
+        assertThat(isUpToDateAfterSetup, equalTo(true));
+        assertThat(isUpToDateWithoutTable, equalTo(false));
+        sqLite.saveAuth(PlayerAuth.builder().name("bobby").realName("Bobby").build());
+        assertThat(sqLite.isAuthAvailable("bobby"), equalTo(true));
+        assertThat(SchemaVersionTable.isUpToDate(con, "authme", columns), equalTo(true));
+    }
+
+    @Test
+    public void shouldReadAndWriteInWalMode() throws SQLException {
+        // given
+        Settings walSettings = mock(Settings.class);
+        TestHelper.returnDefaultsForAllProperties(walSettings);
+        given(walSettings.getProperty(DatabaseSettings.SQLITE_WAL_MODE)).willReturn(true);
+        given(walSettings.getProperty(DatabaseSettings.SQLITE_READ_CONNECTIONS)).willReturn(2);
+        SQLite sqLite = new SQLite(walSettings, temporaryFolder.getRoot());
+
+        try {
+            // when
+            boolean isSaved = sqLite.saveAuth(PlayerAuth.builder().name("Name").realName("NAME").build());
+            sqLite.updateSession(PlayerAuth.builder().name("name").realName("NAME").lastIp("12.34.56.78").build());
+
+            // then
+            assertThat(isSaved, equalTo(true));
+            assertThat(sqLite.isAuthAvailable("name"), equalTo(true));
+            assertThat(sqLite.getAuth("name").getLastIp(), equalTo("12.34.56.78"));
+            assertThat(sqLite.getAllAuthsByIp("12.34.56.78"), contains("name"));
+        } finally {
+            sqLite.closeConnection();
+        }
+    }
+
     @Override
     protected DataSource getDataSource(String saltColumn) {
         when(settings.getProperty(DatabaseSettings.MYSQL_COL_SALT)).thenReturn(saltColumn);
@@ -0,0 +1,160 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.TestHelper;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link SqLiteWriter}.
+ */
+public class SqLiteWriterTest {
+
+    private SqLiteWriter writer;
+    private ExecutorService executor;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @After
+    public void stopThreads() {
+        if (writer != null) {
+            writer.close();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldRunSingleWriteWithoutTransaction() throws SQLException {
+        // given
+        Connection connection = mock(Connection.class);
+        writer = new SqLiteWriter(connection);
+
+        // when
+        int result = writer.execute(() -> 42, 0, false);
+
+        // then
+        assertThat(result, equalTo(42));
+        verify(connection, never()).setAutoCommit(false);
+        verify(connection, never()).commit();
+    }
+
+    @Test
+    public void shouldCommitQueuedWritesTogether() throws Exception {
+        // given
+        Connection connection = mock(Connection.class);
+        writer = new SqLiteWriter(connection);
+        executor = Executors.newFixedThreadPool(4);
+        CountDownLatch blockingWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseBlockingWrite = new CountDownLatch(1);
+
+        Future<Boolean> blockingWrite = executor.submit(() -> writer.execute(() -> {
+            blockingWriteStarted.countDown();
+            awaitUninterruptibly(releaseBlockingWrite);
+            return true;
+        }, false, false));
+        blockingWriteStarted.await();
+
+        // when
+        List<Future<Integer>> queuedWrites = new ArrayList<>();
+        for (int i = 1; i <= 3; ++i) {
+            int value = i;
+            queuedWrites.add(executor.submit(() -> writer.execute(() -> value, 0, false)));
+        }
+        while (writer.getQueuedWrites() < 3) {
+            Thread.sleep(5);
+        }
+        releaseBlockingWrite.countDown();
+
+        // then
+        assertThat(blockingWrite.get(), equalTo(true));
+        for (int i = 0; i < 3; ++i) {
+            assertThat(queuedWrites.get(i).get(), equalTo(i + 1));
+        }
+        verify(connection).setAutoCommit(false);
+        verify(connection, times(1)).commit();
+    }
+
+    @Test
+    public void shouldReturnFailureValuesIfCommitFails() throws Exception {
+        // given
+        Connection connection = mock(Connection.class);
+        willThrow(SQLException.class).given(connection).commit();
+        writer = new SqLiteWriter(connection);
+        executor = Executors.newFixedThreadPool(3);
+        CountDownLatch blockingWriteStarted = new CountDownLatch(1);
+        CountDownLatch releaseBlockingWrite = new CountDownLatch(1);
+
+        executor.submit(() -> writer.execute(() -> {
+            blockingWriteStarted.countDown();
+            awaitUninterruptibly(releaseBlockingWrite);
+            return true;
+        }, false, false));
+        blockingWriteStarted.await();
+
+        // when
+        Future<Boolean> write1 = executor.submit(() -> writer.execute(() -> true, false, false));
+        Future<Boolean> write2 = executor.submit(() -> writer.execute(() -> true, false, false));
+        while (writer.getQueuedWrites() < 2) {
+            Thread.sleep(5);
+        }
+        releaseBlockingWrite.countDown();
+
+        // then
+        assertThat(write1.get(), equalTo(false));
+        assertThat(write2.get(), equalTo(false));
+        verify(connection).rollback();
+    }
+
+    @Test
+    public void shouldCompleteAllWritesWhenClosing() throws Exception {
+        // given
+        Connection connection = mock(Connection.class);
+        writer = new SqLiteWriter(connection);
+        executor = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            int value = i;
+            results.add(executor.submit(() -> writer.execute(() -> value, -1, false)));
+        }
+
+        // when
+        writer.close();
+
+        // then
+        for (int i = 0; i < results.size(); ++i) {
+            assertThat(results.get(i).get(10, TimeUnit.SECONDS), equalTo(i));
+        }
+        assertThat(writer.execute(() -> 7, -1, false), equalTo(7));
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package fr.xephi.authme.datasource;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.data.auth.PlayerAuth;
+import fr.xephi.authme.settings.Settings;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Test for {@link WriteBehindBuffer}.
+ */
+public class WriteBehindBufferTest {
+
+    private WriteBehindBuffer buffer;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @After
+    public void closeBuffer() {
+        if (buffer != null) {
+            buffer.close();
+        }
+    }
+
+    @Test
+    public void shouldCoalesceUpdatesOfSamePlayer() {
+        // given
+        DataSource source = mock(DataSource.class);
+        given(source.applyPendingWrites(anyCollection())).willReturn(true);
+        buffer = new WriteBehindBuffer(source, 60_000, 100);
+        PlayerAuth auth = PlayerAuth.builder().name("bobby").lastIp("12.34.56.78").build();
+
+        // when
+        buffer.update("bobby", write -> write.setSessionData(auth));
+        buffer.update("bobby", write -> write.setLogged(true));
+        buffer.update("bobby", write -> write.setHasSession(true));
+        buffer.update("bobby", write -> write.setLogged(false));
+
+        // then
+        assertThat(buffer.size(), equalTo(1));
+        PendingAuthWrite write = buffer.get("bobby");
+        assertThat(write.getLastIp(), equalTo("12.34.56.78"));
+        assertThat(write.getLogged(), equalTo(false));
+        assertThat(write.getHasSession(), equalTo(true));
+        verifyNoInteractions(source);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldFlushPendingWrites() {
+        // given
+        DataSource source = mock(DataSource.class);
+        given(source.applyPendingWrites(anyCollection())).willReturn(true);
+        buffer = new WriteBehindBuffer(source, 60_000, 100);
+        buffer.update("bobby", write -> write.setLogged(true));
+        buffer.update("user", write -> write.setHasSession(false));
+
+        // when
+        buffer.flush();
+
+        // then
+        ArgumentCaptor<Collection<PendingAuthWrite>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(source).applyPendingWrites(captor.capture());
+        assertThat(captor.getValue(), hasSize(2));
+        assertThat(buffer.size(), equalTo(0));
+        assertThat(buffer.get("bobby"), nullValue());
+    }
+
+    @Test
+    public void shouldKeepWritesIfFlushFailed() {
+        // given
+        DataSource source = mock(DataSource.class);
+        given(source.applyPendingWrites(anyCollection())).willReturn(false);
+        buffer = new WriteBehindBuffer(source, 60_000, 100);
+        buffer.update("bobby", write -> write.setLogged(true));
+
+        // when
+        buffer.flush();
+
+        // then
+        assertThat(buffer.size(), equalTo(1));
+        assertThat(buffer.get("bobby").getLogged(), equalTo(true));
+    }
+
+    @Test
+    public void shouldKeepStoredLastIpWhenMergingWrites() {
+        // given
+        DataSource source = mock(DataSource.class);
+        buffer = new WriteBehindBuffer(source, 60_000, 100);
+        PlayerAuth auth = PlayerAuth.builder().name("bobby").lastIp("12.34.56.78").build();
+
+        // when
+        buffer.update("bobby", write -> write.setStoredLastIp("22.22.22.22"));
+        buffer.update("bobby", write -> write.setSessionData(auth));
+
+        // then
+        PendingAuthWrite write = buffer.get("bobby");
+        assertThat(write.isStoredLastIpKnown(), equalTo(true));
+        assertThat(write.getStoredLastIp(), equalTo("22.22.22.22"));
+        assertThat(write.getLastIp(), equalTo("12.34.56.78"));
+    }
+
+    @Test
+    public void shouldUpdateStoredLastIpOfWriteChangedDuringFlush() {
+        // given
+        DataSource source = mock(DataSource.class);
+        buffer = new WriteBehindBuffer(source, 60_000, 100);
+        PlayerAuth firstAuth = PlayerAuth.builder().name("bobby").lastIp("12.34.56.78").build();
+        PlayerAuth secondAuth = PlayerAuth.builder().name("bobby").lastIp("44.44.44.44").build();
+        buffer.update("bobby", write -> {
+            write.setStoredLastIp("22.22.22.22");
+            write.setSessionData(firstAuth);
+        });
+        given(source.applyPendingWrites(anyCollection())).willAnswer(invocation -> {
+            buffer.update("bobby", write -> write.setSessionData(secondAuth));
+            return true;
+        });
+
+        // when
+        buffer.flush();
+
+        // then
+        PendingAuthWrite write = buffer.get("bobby");
+        assertThat(write.getStoredLastIp(), equalTo("12.34.56.78"));
+        assertThat(write.getLastIp(), equalTo("44.44.44.44"));
+    }
+
+    @Test
+    public void shouldGenerateSameStatementForWritesOfSameColumns() {
+        // given
+        Settings settings = mock(Settings.class);
+        TestHelper.returnDefaultsForAllProperties(settings);
+        Columns col = new Columns(settings);
+        PendingAuthWrite write1 = new PendingAuthWrite("bobby");
+        write1.setLogged(true);
+        write1.setHasSession(true);
+        PendingAuthWrite write2 = new PendingAuthWrite("user");
+        write2.setHasSession(false);
+        write2.setLogged(false);
+
+        // when
+        String statement1 = write1.getUpdateStatement(col, "authme");
+        String statement2 = write2.getUpdateStatement(col, "authme");
+        List<Object> values = write2.getStatementValues();
+
+        // then
+        assertThat(statement1, equalTo(statement2));
+        assertThat(statement1, equalTo("UPDATE authme SET isLogged=?, hasSession=? WHERE username=?;"));
+        assertThat(values, contains((Object) 0, 0, "user"));
+    }
+}
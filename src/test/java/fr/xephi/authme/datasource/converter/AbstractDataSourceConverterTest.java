@@ -2,6 +2,7 @@ package fr.xephi.authme.datasource.converter;
 
 import fr.xephi.authme.TestHelper;
 import fr.xephi.authme.data.auth.PlayerAuth;
+import fr.xephi.authme.datasource.AuthProjection;
 import fr.xephi.authme.datasource.DataSource;
 import fr.xephi.authme.datasource.DataSourceType;
 import org.bukkit.command.CommandSender;
@@ -11,10 +12,12 @@ import org.mockito.Mockito;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -85,7 +88,11 @@ public class AbstractDataSourceConverterTest {
 
         List<PlayerAuth> auths =
             Arrays.asList(mockAuthWithName("Steven"), mockAuthWithName("bobby"), mockAuthWithName("Jack"));
-        given(source.getAllAuths()).willReturn(auths);
+        given(source.forEachAuth(eq(AuthProjection.ALL), any(Consumer.class))).willAnswer(invocation -> {
+            Consumer<PlayerAuth> consumer = invocation.getArgument(1);
+            auths.forEach(consumer);
+            return true;
+        });
         given(destination.isAuthAvailable(auths.get(0).getNickname())).willReturn(true);
 
         Converter converter = new DataSourceConverterTestImpl<>(source, destination, destinationType);
@@ -7,6 +7,7 @@ import fr.xephi.authme.message.MessageKey;
 import fr.xephi.authme.message.Messages;
 import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.permission.PlayerStatePermission;
+import fr.xephi.authme.service.AdmissionControlService;
 import fr.xephi.authme.service.AntiBotService;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.service.ValidationService;
@@ -29,6 +30,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.net.InetAddress;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -62,6 +64,8 @@ public class OnJoinVerifierTest {
     @Mock
     private AntiBotService antiBotService;
     @Mock
+    private AdmissionControlService admissionControlService;
+    @Mock
     private ValidationService validationService;
     @Mock
     private BukkitService bukkitService;
@@ -500,6 +504,65 @@ public class OnJoinVerifierTest {
         onJoinVerifier.checkPlayerCountry(name, ip, false);
     }
 
+    @Test
+    public void shouldThrowForBlockedAsn() throws FailedVerificationException {
+        // given
+        String ip = "5.6.7.8";
+        String name = "charles";
+        given(settings.getProperty(ProtectionSettings.ENABLE_PROTECTION)).willReturn(true);
+        given(validationService.isAsnAdmitted(ip)).willReturn(false);
+        given(permissionsManager.hasPermissionOffline(name, PlayerStatePermission.BYPASS_ASN_CHECK)).willReturn(false);
+
+        // expect
+        expectValidationExceptionWith(MessageKey.VPN_PROXY_DETECTED);
+
+        // when
+        onJoinVerifier.checkPlayerAsn(name, ip);
+    }
+
+    @Test
+    public void shouldAcceptBlockedAsnForPlayerWithBypassPermission() throws FailedVerificationException {
+        // given
+        String ip = "5.6.7.8";
+        String name = "diana";
+        given(settings.getProperty(ProtectionSettings.ENABLE_PROTECTION)).willReturn(true);
+        given(validationService.isAsnAdmitted(ip)).willReturn(false);
+        given(permissionsManager.hasPermissionOffline(name, PlayerStatePermission.BYPASS_ASN_CHECK)).willReturn(true);
+
+        // when
+        onJoinVerifier.checkPlayerAsn(name, ip);
+
+        // then
+        verify(permissionsManager).hasPermissionOffline(name, PlayerStatePermission.BYPASS_ASN_CHECK);
+    }
+
+    @Test
+    public void shouldAdmitConnection() throws Exception {
+        // given
+        InetAddress address = InetAddress.getByName("5.6.7.8");
+        given(admissionControlService.tryAdmit(address)).willReturn(true);
+
+        // when
+        onJoinVerifier.checkAdmission(address);
+
+        // then
+        verify(admissionControlService).tryAdmit(address);
+        verifyNoInteractions(dataSource, permissionsManager);
+    }
+
+    @Test
+    public void shouldRefuseConnectionOverAdmissionBudget() throws Exception {
+        // given
+        InetAddress address = InetAddress.getByName("5.6.7.8");
+        given(admissionControlService.tryAdmit(address)).willReturn(false);
+
+        // expect
+        expectValidationExceptionWith(MessageKey.KICK_ANTIBOT);
+
+        // when
+        onJoinVerifier.checkAdmission(address);
+    }
+
     private void expectValidationExceptionWith(MessageKey messageKey, String... args) {
         expectedException.expect(exceptionWithData(messageKey, args));
     }
@@ -1,5 +1,6 @@
 package fr.xephi.authme.listener;
 
+import fr.xephi.authme.data.OnlinePlayerIpIndex;
 import fr.xephi.authme.data.QuickCommandsProtectionManager;
 import fr.xephi.authme.data.auth.PlayerAuth;
 import fr.xephi.authme.datasource.DataSource;
@@ -122,6 +123,8 @@ public class PlayerListenerTest {
     @Mock
     private QuickCommandsProtectionManager quickCommandsProtectionManager;
     @Mock
+    private OnlinePlayerIpIndex onlinePlayerIpIndex;
+    @Mock
     private PermissionsManager permissionsManager;
 
     /**
@@ -642,6 +645,7 @@ public class PlayerListenerTest {
 
         // then
         verify(teleportationService).teleportNewPlayerToFirstSpawn(player);
+        verify(onlinePlayerIpIndex).processJoin(player);
         verify(management).performJoin(player);
     }
 
@@ -758,7 +762,9 @@ public class PlayerListenerTest {
         listener.onAsyncPlayerPreLoginEventHighest(preLoginEvent);
 
         // then
+        verify(onJoinVerifier).checkAdmission(preLoginEvent.getAddress());
         verify(validationService).isUnrestricted(name);
+        verify(onJoinVerifier).checkPlayerAsn(name, ip);
         verify(onJoinVerifier).checkKickNonRegistered(true);
         verify(onJoinVerifier).checkAntibot(name, true);
         verify(onJoinVerifier).checkNameCasing(name, auth);
@@ -813,6 +819,54 @@ public class PlayerListenerTest {
         verify(event).setLoginResult(AsyncPlayerPreLoginEvent.Result.KICK_OTHER);
     }
 
+    @Test
+    public void shouldRejectBlockedAsnBeforeDataSourceLookup() throws FailedVerificationException {
+        // given
+        String name = "someone";
+        UUID uniqueId = UUID.fromString("753493c9-33ba-4a4a-bf61-1bce9d3c9a71");
+        String ip = "45.67.89.10";
+        AsyncPlayerPreLoginEvent event = spy(new AsyncPlayerPreLoginEvent(name, mockAddrWithIp(ip), uniqueId));
+        given(validationService.isUnrestricted(name)).willReturn(false);
+        FailedVerificationException exception = new FailedVerificationException(MessageKey.VPN_PROXY_DETECTED);
+        doThrow(exception).when(onJoinVerifier).checkPlayerAsn(name, ip);
+        String message = "VPN/Proxy connections are not allowed on this server!";
+        given(messages.retrieveSingle(name, exception.getReason(), exception.getArgs())).willReturn(message);
+
+        // when
+        listener.onAsyncPlayerPreLoginEventHighest(event);
+
+        // then
+        verify(onJoinVerifier).checkAdmission(event.getAddress());
+        verify(onJoinVerifier).checkPlayerAsn(name, ip);
+        verifyNoMoreInteractions(onJoinVerifier);
+        verifyNoInteractions(dataSource);
+        verify(event).setKickMessage(message);
+        verify(event).setLoginResult(AsyncPlayerPreLoginEvent.Result.KICK_OTHER);
+    }
+
+    @Test
+    public void shouldRefuseConnectionOverAdmissionBudgetBeforeAnyLookup() throws FailedVerificationException {
+        // given
+        String name = "someone";
+        UUID uniqueId = UUID.fromString("753493c9-33ba-4a4a-bf61-1bce9d3c9a71");
+        InetAddress address = mockAddrWithIp("45.67.89.10");
+        AsyncPlayerPreLoginEvent event = spy(new AsyncPlayerPreLoginEvent(name, address, uniqueId));
+        FailedVerificationException exception = new FailedVerificationException(MessageKey.KICK_ANTIBOT);
+        doThrow(exception).when(onJoinVerifier).checkAdmission(address);
+        String message = "AntiBot protection mode is enabled!";
+        given(messages.retrieveSingle(name, exception.getReason(), exception.getArgs())).willReturn(message);
+
+        // when
+        listener.onAsyncPlayerPreLoginEventHighest(event);
+
+        // then
+        verify(onJoinVerifier).checkAdmission(address);
+        verifyNoMoreInteractions(onJoinVerifier);
+        verifyNoInteractions(dataSource, validationService, permissionsManager);
+        verify(event).setKickMessage(message);
+        verify(event).setLoginResult(AsyncPlayerPreLoginEvent.Result.KICK_OTHER);
+    }
+
     @Test
     public void shouldRemoveMessageOnQuit() {
         // given
@@ -847,6 +901,7 @@ public class PlayerListenerTest {
         // then
         assertThat(event.getQuitMessage(), nullValue());
         verify(antiBotService).wasPlayerKicked(name);
+        verify(onlinePlayerIpIndex).processQuit(player);
         verifyNoInteractions(management);
     }
 
@@ -1,6 +1,7 @@
 package fr.xephi.authme.process.login;
 
 import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.data.OnlinePlayerIpIndex;
 import fr.xephi.authme.data.auth.PlayerAuth;
 import fr.xephi.authme.data.auth.PlayerCache;
 import fr.xephi.authme.data.limbo.LimboService;
@@ -25,9 +26,9 @@ import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import static fr.xephi.authme.service.BukkitServiceTestHelper.setBukkitServiceToRunWhenCompleteOptionallyAsync;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
@@ -62,6 +63,8 @@ public class AsynchronousLoginTest {
     private BukkitService bukkitService;
     @Mock
     private VpnDetectionService vpnDetectionService;
+    @Mock
+    private OnlinePlayerIpIndex onlinePlayerIpIndex;
 
     @BeforeClass
     public static void initLogger() {
@@ -90,7 +93,8 @@ public class AsynchronousLoginTest {
         String name = "oscar";
         Player player = mockPlayer(name);
         given(playerCache.isAuthenticated(name)).willReturn(false);
-        given(dataSource.getAuth(name)).willReturn(null);
+        given(dataSource.getAuthAsync(name)).willReturn(CompletableFuture.completedFuture(null));
+        setBukkitServiceToRunWhenCompleteOptionallyAsync(bukkitService);
 
         // when
         asynchronousLogin.forceLogin(player);
@@ -98,7 +102,7 @@ public class AsynchronousLoginTest {
         // then
         verify(playerCache, only()).isAuthenticated(name);
         verify(commonService).send(player, MessageKey.UNKNOWN_USER);
-        verify(dataSource, only()).getAuth(name);
+        verify(dataSource, only()).getAuthAsync(name);
     }
 
     @Test
@@ -109,7 +113,8 @@ public class AsynchronousLoginTest {
         given(playerCache.isAuthenticated(name)).willReturn(false);
         int groupId = 13;
         PlayerAuth auth = PlayerAuth.builder().name(name).groupId(groupId).build();
-        given(dataSource.getAuth(name)).willReturn(auth);
+        given(dataSource.getAuthAsync(name)).willReturn(CompletableFuture.completedFuture(auth));
+        setBukkitServiceToRunWhenCompleteOptionallyAsync(bukkitService);
         given(commonService.getProperty(DatabaseSettings.MYSQL_COL_GROUP)).willReturn("group");
         given(commonService.getProperty(HooksSettings.NON_ACTIVATED_USERS_GROUP)).willReturn(groupId);
 
@@ -119,7 +124,7 @@ public class AsynchronousLoginTest {
         // then
         verify(playerCache, only()).isAuthenticated(name);
         verify(commonService).send(player, MessageKey.ACCOUNT_NOT_ACTIVATED);
-        verify(dataSource, only()).getAuth(name);
+        verify(dataSource, only()).getAuthAsync(name);
     }
 
     @Test
@@ -131,7 +136,8 @@ public class AsynchronousLoginTest {
         TestHelper.mockIpAddressToPlayer(player, ip);
         given(playerCache.isAuthenticated(name)).willReturn(false);
         PlayerAuth auth = PlayerAuth.builder().name(name).build();
-        given(dataSource.getAuth(name)).willReturn(auth);
+        given(dataSource.getAuthAsync(name)).willReturn(CompletableFuture.completedFuture(auth));
+        setBukkitServiceToRunWhenCompleteOptionallyAsync(bukkitService);
         given(commonService.getProperty(DatabaseSettings.MYSQL_COL_GROUP)).willReturn("");
         given(commonService.getProperty(RestrictionSettings.ENABLE_IMPROVED_IP_RESTRICTION)).willReturn(false);
         doReturn(true).when(asynchronousLogin).hasReachedMaxLoggedInPlayersForIp(any(Player.class), anyString());
@@ -142,7 +148,7 @@ public class AsynchronousLoginTest {
         // then
         verify(playerCache, only()).isAuthenticated(name);
         verify(commonService).send(player, MessageKey.ALREADY_LOGGED_IN_ERROR);
-        verify(dataSource, only()).getAuth(name);
+        verify(dataSource, only()).getAuthAsync(name);
         verify(asynchronousLogin).hasReachedMaxLoggedInPlayersForIp(player, ip);
     }
 
@@ -155,7 +161,8 @@ public class AsynchronousLoginTest {
         TestHelper.mockIpAddressToPlayer(player, ip);
         given(playerCache.isAuthenticated(name)).willReturn(false);
         PlayerAuth auth = PlayerAuth.builder().name(name).build();
-        given(dataSource.getAuth(name)).willReturn(auth);
+        given(dataSource.getAuthAsync(name)).willReturn(CompletableFuture.completedFuture(auth));
+        setBukkitServiceToRunWhenCompleteOptionallyAsync(bukkitService);
         given(commonService.getProperty(DatabaseSettings.MYSQL_COL_GROUP)).willReturn("");
         given(commonService.getProperty(PluginSettings.USE_ASYNC_TASKS)).willReturn(true);
         given(commonService.getProperty(RestrictionSettings.ENABLE_IMPROVED_IP_RESTRICTION)).willReturn(false);
@@ -170,7 +177,7 @@ public class AsynchronousLoginTest {
 
         // then
         verify(playerCache, only()).isAuthenticated(name);
-        verify(dataSource, only()).getAuth(name);
+        verify(dataSource, only()).getAuthAsync(name);
         verify(asynchronousLogin).hasReachedMaxLoggedInPlayersForIp(player, ip);
     }
 
@@ -181,7 +188,7 @@ public class AsynchronousLoginTest {
         Player player = mockPlayer("Carl");
         given(commonService.getProperty(RestrictionSettings.MAX_LOGIN_PER_IP)).willReturn(2);
         given(commonService.hasPermission(player, PlayerStatePermission.ALLOW_MULTIPLE_ACCOUNTS)).willReturn(false);
-        mockOnlinePlayersInBukkitService();
+        given(onlinePlayerIpIndex.countLoggedInPlayers("1.1.1.1", "Carl")).willReturn(1);
 
         // when
         boolean result = asynchronousLogin.hasReachedMaxLoggedInPlayersForIp(player, "1.1.1.1");
@@ -189,7 +196,8 @@ public class AsynchronousLoginTest {
         // then
         assertThat(result, equalTo(false));
         verify(commonService).hasPermission(player, PlayerStatePermission.ALLOW_MULTIPLE_ACCOUNTS);
-        verify(bukkitService).getOnlinePlayers();
+        verify(onlinePlayerIpIndex).countLoggedInPlayers("1.1.1.1", "Carl");
+        verifyNoInteractions(bukkitService, dataSource);
     }
 
     @Test
@@ -228,7 +236,7 @@ public class AsynchronousLoginTest {
         Player player = mockPlayer("Ian");
         given(commonService.getProperty(RestrictionSettings.MAX_LOGIN_PER_IP)).willReturn(2);
         given(commonService.hasPermission(player, PlayerStatePermission.ALLOW_MULTIPLE_ACCOUNTS)).willReturn(false);
-        mockOnlinePlayersInBukkitService();
+        given(onlinePlayerIpIndex.countLoggedInPlayers("2.2.2.2", "Ian")).willReturn(2);
 
         // when
         boolean result = asynchronousLogin.hasReachedMaxLoggedInPlayersForIp(player, "2.2.2.2");
@@ -236,7 +244,8 @@ public class AsynchronousLoginTest {
         // then
         assertThat(result, equalTo(true));
         verify(commonService).hasPermission(player, PlayerStatePermission.ALLOW_MULTIPLE_ACCOUNTS);
-        verify(bukkitService).getOnlinePlayers();
+        verify(onlinePlayerIpIndex).countLoggedInPlayers("2.2.2.2", "Ian");
+        verifyNoInteractions(bukkitService, dataSource);
     }
 
     private static Player mockPlayer(String name) {
@@ -245,32 +254,4 @@ public class AsynchronousLoginTest {
         return player;
     }
 
-    private void mockOnlinePlayersInBukkitService() {
-        // 1.1.1.1: albania (online), brazil (offline)
-        Player playerA = mockPlayer("albania");
-        TestHelper.mockIpAddressToPlayer(playerA, "1.1.1.1");
-        given(dataSource.isLogged(playerA.getName())).willReturn(true);
-        Player playerB = mockPlayer("brazil");
-        TestHelper.mockIpAddressToPlayer(playerB, "1.1.1.1");
-        given(dataSource.isLogged(playerB.getName())).willReturn(false);
-
-        // 2.2.2.2: congo (online), denmark (offline), ecuador (online)
-        Player playerC = mockPlayer("congo");
-        TestHelper.mockIpAddressToPlayer(playerC, "2.2.2.2");
-        given(dataSource.isLogged(playerC.getName())).willReturn(true);
-        Player playerD = mockPlayer("denmark");
-        TestHelper.mockIpAddressToPlayer(playerD, "2.2.2.2");
-        given(dataSource.isLogged(playerD.getName())).willReturn(false);
-        Player playerE = mockPlayer("ecuador");
-        TestHelper.mockIpAddressToPlayer(playerE, "2.2.2.2");
-        given(dataSource.isLogged(playerE.getName())).willReturn(true);
-
-        // 3.3.3.3: france (offline)
-        Player playerF = mockPlayer("france");
-        TestHelper.mockIpAddressToPlayer(playerF, "3.3.3.3");
-
-        List<Player> onlinePlayers = Arrays.asList(playerA, playerB, playerC, playerD, playerE, playerF);
-        given(bukkitService.getOnlinePlayers()).willReturn(onlinePlayers);
-    }
-
 }
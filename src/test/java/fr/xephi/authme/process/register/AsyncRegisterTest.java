@@ -12,6 +12,7 @@ import fr.xephi.authme.process.register.executors.RegistrationMethod;
 import fr.xephi.authme.process.register.executors.TwoFactorRegisterParams;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.service.CommonService;
+import fr.xephi.authme.service.IpRestrictionService;
 import fr.xephi.authme.service.VpnDetectionService;
 import fr.xephi.authme.settings.properties.RegistrationSettings;
 import fr.xephi.authme.settings.properties.RestrictionSettings;
@@ -22,8 +23,10 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
+import static fr.xephi.authme.service.BukkitServiceTestHelper.setBukkitServiceToRunWhenCompleteOptionallyAsync;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
@@ -52,6 +55,8 @@ public class AsyncRegisterTest {
     private SingletonStore<RegistrationExecutor> registrationExecutorStore;
     @Mock
     private VpnDetectionService vpnDetectionService;
+    @Mock
+    private IpRestrictionService ipRestrictionService;
 
     @Test
     public void shouldDetectAlreadyLoggedInPlayer() {
@@ -95,7 +100,8 @@ public class AsyncRegisterTest {
         Player player = mockPlayerWithName(name);
         given(playerCache.isAuthenticated(name)).willReturn(false);
         given(commonService.getProperty(RegistrationSettings.IS_ENABLED)).willReturn(true);
-        given(dataSource.isAuthAvailable(name)).willReturn(true);
+        given(dataSource.isAuthAvailableAsync(name)).willReturn(CompletableFuture.completedFuture(true));
+        setBukkitServiceToRunWhenCompleteOptionallyAsync(bukkitService);
         RegistrationExecutor executor = mock(RegistrationExecutor.class);
         singletonStoreWillReturn(registrationExecutorStore, executor);
 
@@ -104,7 +110,7 @@ public class AsyncRegisterTest {
 
         // then
         verify(commonService).send(player, MessageKey.NAME_ALREADY_REGISTERED);
-        verify(dataSource, only()).isAuthAvailable(name);
+        verify(dataSource, only()).isAuthAvailableAsync(name);
         verifyNoInteractions(executor);
     }
 
@@ -117,7 +123,8 @@ public class AsyncRegisterTest {
         TestHelper.mockIpAddressToPlayer(player, "33.44.55.66");
         given(playerCache.isAuthenticated(name)).willReturn(false);
         given(commonService.getProperty(RegistrationSettings.IS_ENABLED)).willReturn(true);
-        given(dataSource.isAuthAvailable(name)).willReturn(false);
+        given(dataSource.isAuthAvailableAsync(name)).willReturn(CompletableFuture.completedFuture(false));
+        setBukkitServiceToRunWhenCompleteOptionallyAsync(bukkitService);
         RegistrationExecutor executor = mock(RegistrationExecutor.class);
         TwoFactorRegisterParams params = TwoFactorRegisterParams.of(player);
         singletonStoreWillReturn(registrationExecutorStore, executor);
@@ -130,7 +137,7 @@ public class AsyncRegisterTest {
         asyncRegister.register(RegistrationMethod.TWO_FACTOR_REGISTRATION, params);
 
         // then
-        verify(dataSource, only()).isAuthAvailable(name);
+        verify(dataSource, only()).isAuthAvailableAsync(name);
     }
 
     @Test
@@ -144,7 +151,8 @@ public class AsyncRegisterTest {
         given(commonService.getProperty(RegistrationSettings.IS_ENABLED)).willReturn(true);
         given(commonService.getProperty(RestrictionSettings.MAX_REGISTRATION_PER_IP)).willReturn(0);
         given(commonService.getProperty(RestrictionSettings.ENABLE_IMPROVED_IP_RESTRICTION)).willReturn(false);
-        given(dataSource.isAuthAvailable(name)).willReturn(false);
+        given(dataSource.isAuthAvailableAsync(name)).willReturn(CompletableFuture.completedFuture(false));
+        setBukkitServiceToRunWhenCompleteOptionallyAsync(bukkitService);
         RegistrationExecutor executor = mock(RegistrationExecutor.class);
         TwoFactorRegisterParams params = TwoFactorRegisterParams.of(player);
         given(executor.isRegistrationAdmitted(params)).willReturn(false);
@@ -157,7 +165,7 @@ public class AsyncRegisterTest {
         asyncRegister.register(RegistrationMethod.TWO_FACTOR_REGISTRATION, params);
 
         // then
-        verify(dataSource, only()).isAuthAvailable(name);
+        verify(dataSource, only()).isAuthAvailableAsync(name);
         verify(executor, only()).isRegistrationAdmitted(params);
     }
 
@@ -11,6 +11,7 @@ import fr.xephi.authme.security.PasswordSecurity;
 import fr.xephi.authme.security.crypts.HashedPassword;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.service.CommonService;
+import fr.xephi.authme.service.IpRestrictionService;
 import fr.xephi.authme.service.TeleportationService;
 import fr.xephi.authme.service.bungeecord.BungeeSender;
 import fr.xephi.authme.settings.commandconfig.CommandManager;
@@ -68,6 +69,8 @@ public class AsynchronousUnregisterTest {
     private CommandManager commandManager;
     @Mock
     private BungeeSender bungeeSender;
+    @Mock
+    private IpRestrictionService ipRestrictionService;
 
     @BeforeClass
     public static void initLogger() {
@@ -108,6 +111,7 @@ public class AsynchronousUnregisterTest {
         given(playerCache.getAuth(name)).willReturn(auth);
         HashedPassword password = new HashedPassword("password", "in_auth_obj");
         given(auth.getPassword()).willReturn(password);
+        given(auth.getLastIp()).willReturn("12.34.56.78");
         String userPassword = "pass";
         given(passwordSecurity.comparePassword(userPassword, password, name)).willReturn(true);
         given(dataSource.removeAuth(name)).willReturn(true);
@@ -123,6 +127,7 @@ public class AsynchronousUnregisterTest {
         verify(service).send(player, MessageKey.UNREGISTERED_SUCCESS);
         verify(passwordSecurity).comparePassword(userPassword, password, name);
         verify(dataSource).removeAuth(name);
+        verify(ipRestrictionService).processAccountRemoval("12.34.56.78");
         verify(playerCache).removePlayer(name);
         verify(teleportationService).teleportOnJoin(player);
         verifyCalledUnregisterEventFor(player);
@@ -0,0 +1,129 @@
+package fr.xephi.authme.service;
+
+import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.ProtectionSettings;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for {@link AdmissionControlService}.
+ */
+public class AdmissionControlServiceTest {
+
+    @Test
+    public void shouldRefuseIpOverBudget() throws UnknownHostException {
+        // given
+        AdmissionControlService service = new AdmissionControlService(mockSettings(true, 2, 10, 100));
+
+        // when / then
+        assertThat(service.tryAdmit(address("20.30.40.50")), equalTo(true));
+        assertThat(service.tryAdmit(address("20.30.40.50")), equalTo(true));
+        assertThat(service.tryAdmit(address("20.30.40.50")), equalTo(false));
+        assertThat(service.tryAdmit(address("20.30.40.51")), equalTo(true));
+        assertThat(service.getAdmittedCount(), equalTo(3L));
+        assertThat(service.getIpRejectCount(), equalTo(1L));
+        assertThat(service.getSubnetRejectCount(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldRefuseSubnetOverBudget() throws UnknownHostException {
+        // given
+        AdmissionControlService service = new AdmissionControlService(mockSettings(true, 5, 2, 100));
+
+        // when / then
+        assertThat(service.tryAdmit(address("20.30.40.1")), equalTo(true));
+        assertThat(service.tryAdmit(address("20.30.40.2")), equalTo(true));
+        assertThat(service.tryAdmit(address("20.30.40.3")), equalTo(false));
+        assertThat(service.tryAdmit(address("2a02:1234:5678:9abc::1")), equalTo(true));
+        assertThat(service.tryAdmit(address("2a02:1234:5678:9abc::2")), equalTo(true));
+        assertThat(service.tryAdmit(address("2a02:1234:5678:9abc:ffff::3")), equalTo(false));
+        assertThat(service.tryAdmit(address("2a02:1234:5678:9abd::1")), equalTo(true));
+        assertThat(service.getSubnetRejectCount(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldRefuseConnectionsOverGlobalBudget() throws UnknownHostException {
+        // given
+        AdmissionControlService service = new AdmissionControlService(mockSettings(true, 5, 10, 3));
+
+        // when / then
+        assertThat(service.tryAdmit(address("1.1.1.1")), equalTo(true));
+        assertThat(service.tryAdmit(address("2.2.2.2")), equalTo(true));
+        assertThat(service.tryAdmit(address("127.0.0.1")), equalTo(true));
+        assertThat(service.tryAdmit(address("3.3.3.3")), equalTo(false));
+        assertThat(service.getGlobalRejectCount(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldOnlyApplyGlobalBudgetToLoopbackAddresses() throws UnknownHostException {
+        // given
+        AdmissionControlService service = new AdmissionControlService(mockSettings(true, 1, 1, 100));
+
+        // when / then
+        for (int i = 0; i < 10; ++i) {
+            assertThat(service.tryAdmit(address("127.0.0.1")), equalTo(true));
+        }
+        assertThat(service.getTrackedAddressCount(), equalTo(0));
+    }
+
+    @Test
+    public void shouldAdmitEverythingIfDisabled() throws UnknownHostException {
+        // given
+        AdmissionControlService service = new AdmissionControlService(mockSettings(false, 1, 1, 1));
+
+        // when / then
+        for (int i = 0; i < 10; ++i) {
+            assertThat(service.tryAdmit(address("20.30.40.50")), equalTo(true));
+        }
+        assertThat(service.getAdmittedCount(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldNotLimitIfCapacityIsZero() throws UnknownHostException {
+        // given
+        AdmissionControlService service = new AdmissionControlService(mockSettings(true, 0, 0, 0));
+
+        // when / then
+        for (int i = 0; i < 10; ++i) {
+            assertThat(service.tryAdmit(address("20.30.40.50")), equalTo(true));
+        }
+        assertThat(service.getTrackedAddressCount(), equalTo(0));
+    }
+
+    @Test
+    public void shouldKeepUsedBucketsOnCleanup() throws UnknownHostException {
+        // given
+        AdmissionControlService service = new AdmissionControlService(mockSettings(true, 5, 10, 100));
+        service.tryAdmit(address("20.30.40.50"));
+        service.tryAdmit(address("2a02:1234:5678:9abc::1"));
+
+        // when
+        service.performCleanup();
+
+        // then
+        assertThat(service.getTrackedAddressCount(), equalTo(4));
+    }
+
+    private static InetAddress address(String ip) throws UnknownHostException {
+        return InetAddress.getByName(ip);
+    }
+
+    private static Settings mockSettings(boolean enabled, int ipCapacity, int subnetCapacity, int globalCapacity) {
+        Settings settings = mock(Settings.class);
+        given(settings.getProperty(ProtectionSettings.ENABLE_ADMISSION_CONTROL)).willReturn(enabled);
+        given(settings.getProperty(ProtectionSettings.ADMISSION_IP_CAPACITY)).willReturn(ipCapacity);
+        given(settings.getProperty(ProtectionSettings.ADMISSION_IP_PER_MINUTE)).willReturn(1);
+        given(settings.getProperty(ProtectionSettings.ADMISSION_SUBNET_CAPACITY)).willReturn(subnetCapacity);
+        given(settings.getProperty(ProtectionSettings.ADMISSION_SUBNET_PER_MINUTE)).willReturn(1);
+        given(settings.getProperty(ProtectionSettings.ADMISSION_GLOBAL_CAPACITY)).willReturn(globalCapacity);
+        given(settings.getProperty(ProtectionSettings.ADMISSION_GLOBAL_PER_MINUTE)).willReturn(1);
+        return settings;
+    }
+}
@@ -3,25 +3,36 @@ package fr.xephi.authme.service;
 import ch.jalu.injector.testing.BeforeInjecting;
 import ch.jalu.injector.testing.DelayedInjectionRunner;
 import ch.jalu.injector.testing.InjectDelayed;
+import com.google.common.cache.Cache;
+import fr.xephi.authme.ReflectionTestUtils;
 import fr.xephi.authme.message.MessageKey;
 import fr.xephi.authme.message.Messages;
 import fr.xephi.authme.permission.AdminPermission;
 import fr.xephi.authme.permission.PermissionsManager;
 import fr.xephi.authme.settings.Settings;
 import fr.xephi.authme.settings.properties.ProtectionSettings;
+import fr.xephi.authme.util.SlidingWindowRateEstimator;
 import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static fr.xephi.authme.service.BukkitServiceTestHelper.setBukkitServiceToScheduleSyncDelayedTaskWithDelay;
 import static fr.xephi.authme.service.BukkitServiceTestHelper.setBukkitServiceToScheduleSyncTaskFromOptionallyAsyncTask;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -57,6 +68,7 @@ public class AntiBotServiceTest {
         given(settings.getProperty(ProtectionSettings.ANTIBOT_SENSIBILITY)).willReturn(5);
         given(settings.getProperty(ProtectionSettings.ENABLE_ANTIBOT)).willReturn(true);
         given(settings.getProperty(ProtectionSettings.ANTIBOT_DELAY)).willReturn(8);
+        given(settings.getProperty(ProtectionSettings.ENABLE_ADAPTIVE_ANTIBOT)).willReturn(false);
         setBukkitServiceToScheduleSyncDelayedTaskWithDelay(bukkitService);
     }
 
@@ -126,6 +138,34 @@ public class AntiBotServiceTest {
         assertThat(result2, equalTo(false));
     }
 
+    @Test
+    public void shouldBoundNumberOfKickedPlayers() {
+        // given / when
+        for (int i = 0; i < 12_000; ++i) {
+            antiBotService.addPlayerKick("bot" + i);
+        }
+
+        // then
+        Cache<String, Boolean> kickedNames =
+            ReflectionTestUtils.getFieldValue(AntiBotService.class, antiBotService, "antibotKicked");
+        assertThat(kickedNames.size(), lessThanOrEqualTo(10_000L));
+        assertThat(antiBotService.wasPlayerKicked("Bot11999"), equalTo(true));
+    }
+
+    @Test
+    public void shouldForgetKickedPlayersOnDeactivation() {
+        // given
+        given(bukkitService.runTaskLater(any(Runnable.class), anyLong())).willReturn(mock(BukkitTask.class));
+        antiBotService.overrideAntiBotStatus(true);
+        antiBotService.addPlayerKick("bot");
+
+        // when
+        antiBotService.overrideAntiBotStatus(false);
+
+        // then
+        assertThat(antiBotService.wasPlayerKicked("bot"), equalTo(false));
+    }
+
     @Test
     public void shouldAcceptPlayerToJoin() {
         // given / when
@@ -154,6 +194,74 @@ public class AntiBotServiceTest {
         assertThat(antiBotService.getAntiBotStatus(), equalTo(AntiBotService.AntiBotStatus.ACTIVE));
     }
 
+    @Test
+    public void shouldActivateAdaptiveAntibotAfterThresholdAndDeactivateByHysteresis() {
+        // given
+        given(settings.getProperty(ProtectionSettings.ENABLE_ADAPTIVE_ANTIBOT)).willReturn(true);
+        given(settings.getProperty(ProtectionSettings.ADAPTIVE_ANTIBOT_ACTIVATION_FACTOR)).willReturn(4);
+        given(settings.getProperty(ProtectionSettings.ADAPTIVE_ANTIBOT_DEACTIVATION_PERCENT)).willReturn(50);
+        given(settings.getProperty(ProtectionSettings.ADAPTIVE_ANTIBOT_BASELINE_MINUTES)).willReturn(10);
+        AntiBotService antiBotService = new AntiBotService(settings, messages, permissionsManager, bukkitService);
+        SlidingWindowRateEstimator joinRate = mock(SlidingWindowRateEstimator.class);
+        ReflectionTestUtils.setField(AntiBotService.class, antiBotService, "joinRate", joinRate);
+        given(joinRate.getBaseline()).willReturn(2.0);
+        BukkitTask task = mock(BukkitTask.class);
+        given(bukkitService.runTaskTimer(any(BukkitRunnable.class), anyLong(), anyLong())).willReturn(task);
+
+        // when / then - threshold is max(5, 4 * 2.0) = 8
+        given(joinRate.getWindowCount()).willReturn(8L);
+        assertThat(antiBotService.shouldKick(), equalTo(false));
+        given(joinRate.getWindowCount()).willReturn(9L);
+        assertThat(antiBotService.shouldKick(), equalTo(true));
+        assertThat(antiBotService.getAntiBotStatus(), equalTo(AntiBotService.AntiBotStatus.ACTIVE));
+        verify(joinRate).setBaselineFrozen(true);
+
+        // Deactivates below 50% of the threshold only
+        ArgumentCaptor<BukkitRunnable> taskCaptor = ArgumentCaptor.forClass(BukkitRunnable.class);
+        verify(bukkitService).runTaskTimer(taskCaptor.capture(), anyLong(), anyLong());
+        given(joinRate.getWindowCount()).willReturn(4L);
+        taskCaptor.getValue().run();
+        assertThat(antiBotService.getAntiBotStatus(), equalTo(AntiBotService.AntiBotStatus.ACTIVE));
+        given(joinRate.getWindowCount()).willReturn(3L);
+        Player admin = mock(Player.class);
+        given(bukkitService.getOnlinePlayers()).willReturn(Collections.singletonList(admin));
+        given(permissionsManager.hasPermission(admin, AdminPermission.ANTIBOT_MESSAGES)).willReturn(true);
+        ReflectionTestUtils.setField(AntiBotService.class, antiBotService, "adaptiveActivationMillis",
+            System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(3));
+        taskCaptor.getValue().run();
+        assertThat(antiBotService.getAntiBotStatus(), equalTo(AntiBotService.AntiBotStatus.LISTENING));
+        verify(joinRate).setBaselineFrozen(false);
+        verify(task).cancel();
+        assertThat(antiBotService.getActivationCount(), equalTo(1L));
+        // Admins are told how long the protection was actually active
+        verify(messages).send(admin, MessageKey.ANTIBOT_AUTO_DISABLED_MESSAGE, "3");
+    }
+
+    @Test
+    public void shouldActivateOnlyOnceForConcurrentCallers() throws Exception {
+        // given
+        given(bukkitService.runTaskLater(any(Runnable.class), anyLong())).willReturn(mock(BukkitTask.class));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // when
+        try {
+            List<Future<?>> activations = new ArrayList<>();
+            for (int i = 0; i < 20; ++i) {
+                activations.add(executor.submit(() -> antiBotService.overrideAntiBotStatus(true)));
+            }
+            for (Future<?> activation : activations) {
+                activation.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertThat(antiBotService.getAntiBotStatus(), equalTo(AntiBotService.AntiBotStatus.ACTIVE));
+        assertThat(antiBotService.getActivationCount(), equalTo(1L));
+        verify(bukkitService).runTaskLater(any(Runnable.class), anyLong());
+    }
+
     @Test
     public void shouldInformPlayersOnActivation() {
         // given - listening antibot
@@ -1,5 +1,8 @@
 package fr.xephi.authme.service;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doAnswer;
@@ -54,6 +57,22 @@ public final class BukkitServiceTestHelper {
         }).when(bukkitService).runTaskOptionallyAsync(any(Runnable.class));
     }
 
+    /**
+     * Sets a BukkitService mock to immediately run any action it is passed to its method
+     * {@link BukkitService#runWhenCompleteOptionallyAsync} with the result of the given future.
+     *
+     * @param bukkitService the mock to set behavior on
+     */
+    @SuppressWarnings("unchecked")
+    public static void setBukkitServiceToRunWhenCompleteOptionallyAsync(BukkitService bukkitService) {
+        doAnswer(invocation -> {
+            CompletableFuture<Object> future = invocation.getArgument(0);
+            Consumer<Object> action = invocation.getArgument(1);
+            action.accept(future.join());
+            return null;
+        }).when(bukkitService).runWhenCompleteOptionallyAsync(any(CompletableFuture.class), any(Consumer.class));
+    }
+
     /**
      * Sets a BukkitService mock to run any Runnable it is passed to its method
      * {@link BukkitService#scheduleSyncDelayedTask(Runnable)}.
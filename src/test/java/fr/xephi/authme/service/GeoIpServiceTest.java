@@ -136,4 +136,58 @@ public class GeoIpServiceTest {
         assertThat(result, equalTo("N/A"));
         verifyNoInteractions(lookupService);
     }
+
+    @Test
+    public void shouldStartDownloadOnceIfDatabaseIsAbsent() {
+        // given
+        GeoIpService service = new GeoIpService(dataFolder, bukkitService, settings, null);
+        given(settings.getProperty(ProtectionSettings.ENABLE_GEOIP)).willReturn(true);
+
+        // when
+        String result1 = service.getCountryCode("24.45.167.89");
+        String result2 = service.getCountryName("24.45.167.89");
+
+        // then
+        assertThat(result1, equalTo("--"));
+        assertThat(result2, equalTo("N/A"));
+        verify(bukkitService).runTaskAsynchronously(any(Runnable.class));
+    }
+
+    @Test
+    public void shouldCacheCountryOfIpAddress() throws Exception {
+        // given
+        InetAddress ip = InetAddress.getByName("2001:db8::7");
+        Country country = mock(Country.class);
+        given(country.getIsoCode()).willReturn("XX");
+        given(country.getName()).willReturn("Syldavia");
+        CountryResponse response = mock(CountryResponse.class);
+        given(response.getCountry()).willReturn(country);
+        given(lookupService.getCountry(ip)).willReturn(response);
+        given(settings.getProperty(ProtectionSettings.ENABLE_GEOIP)).willReturn(true);
+
+        // when
+        String code = geoIpService.getCountryCode("2001:db8::7");
+        String name = geoIpService.getCountryName("2001:db8:0:0::7");
+
+        // then
+        assertThat(code, equalTo("XX"));
+        assertThat(name, equalTo("Syldavia"));
+        verify(lookupService).getCountry(ip);
+        assertThat(geoIpService.getCachedCountryCount(), equalTo(1L));
+        assertThat(geoIpService.getCacheHitCount(), equalTo(1L));
+        assertThat(geoIpService.getCacheMissCount(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldNotLookUpAsnIfDisabled() {
+        // given
+        given(settings.getProperty(ProtectionSettings.ENABLE_ASN_DATABASE)).willReturn(false);
+        geoIpService.reload();
+
+        // when
+        long result = geoIpService.getAsn("24.45.167.89");
+
+        // then
+        assertThat(result, equalTo(-1L));
+    }
 }
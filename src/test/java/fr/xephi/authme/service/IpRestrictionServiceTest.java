@@ -0,0 +1,90 @@
+package fr.xephi.authme.service;
+
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.RestrictionSettings;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link IpRestrictionService}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class IpRestrictionServiceTest {
+
+    @InjectMocks
+    private IpRestrictionService ipRestrictionService;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Settings settings;
+
+    @Before
+    public void initCache() {
+        given(settings.getProperty(RestrictionSettings.IP_RESTRICTION_CACHE_DURATION)).willReturn(5);
+        given(settings.getProperty(RestrictionSettings.ENABLE_IMPROVED_IP_RESTRICTION)).willReturn(false);
+        ipRestrictionService.reload();
+    }
+
+    @Test
+    public void shouldCountAccountsOnceAndCacheResult() {
+        // given
+        given(dataSource.countAuthsByIp("1.1.1.1")).willReturn(3);
+
+        // when
+        int firstCount = ipRestrictionService.getRegisteredAccountsCount("1.1.1.1");
+        int secondCount = ipRestrictionService.getRegisteredAccountsCount("1.1.1.1");
+
+        // then
+        assertThat(firstCount, equalTo(3));
+        assertThat(secondCount, equalTo(3));
+        verify(dataSource, times(1)).countAuthsByIp("1.1.1.1");
+    }
+
+    @Test
+    public void shouldUpdateCachedCountsOnLoginAndRemoval() {
+        // given
+        given(dataSource.countAuthsByIp("1.1.1.1")).willReturn(3);
+        ipRestrictionService.getRegisteredAccountsCount("1.1.1.1");
+
+        // when
+        ipRestrictionService.processLogin("1.1.1.1", "2.2.2.2", 2);
+        ipRestrictionService.processAccountRemoval("1.1.1.1");
+        ipRestrictionService.processAccountRemoval(null);
+
+        // then
+        assertThat(ipRestrictionService.getRegisteredAccountsCount("1.1.1.1"), equalTo(1));
+        assertThat(ipRestrictionService.getRegisteredAccountsCount("2.2.2.2"), equalTo(2));
+        verify(dataSource, times(1)).countAuthsByIp("1.1.1.1");
+    }
+
+    @Test
+    public void shouldResetCachedCountsWhenLastIpsAreCleared() {
+        // given
+        given(dataSource.countAuthsByIp("1.1.1.1")).willReturn(3);
+        given(dataSource.countAuthsByIp("2.2.2.2")).willReturn(4);
+        ipRestrictionService.getRegisteredAccountsCount("1.1.1.1");
+        ipRestrictionService.getRegisteredAccountsCount("2.2.2.2");
+
+        // when
+        ipRestrictionService.processLastIpCleared("1.1.1.1");
+        int countAfterClearingIp = ipRestrictionService.getRegisteredAccountsCount("1.1.1.1");
+        ipRestrictionService.processAllLastIpsCleared();
+
+        // then
+        assertThat(countAfterClearingIp, equalTo(0));
+        assertThat(ipRestrictionService.getRegisteredAccountsCount("2.2.2.2"), equalTo(0));
+    }
+}
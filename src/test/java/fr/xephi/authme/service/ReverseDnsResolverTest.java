@@ -0,0 +1,165 @@
+package fr.xephi.authme.service;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.RestrictionSettings;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Test for {@link ReverseDnsResolver}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ReverseDnsResolverTest {
+
+    @Mock
+    private Settings settings;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void initSettings() {
+        given(settings.getProperty(RestrictionSettings.REVERSE_DNS_THREADS)).willReturn(2);
+        given(settings.getProperty(RestrictionSettings.REVERSE_DNS_CACHE_DURATION)).willReturn(60);
+        given(settings.getProperty(RestrictionSettings.REVERSE_DNS_NEGATIVE_CACHE_DURATION)).willReturn(10);
+    }
+
+    @Test
+    public void shouldResolveAndCacheHostName() {
+        // given
+        given(settings.getProperty(RestrictionSettings.REVERSE_DNS_TIMEOUT)).willReturn(1000);
+        TestResolver resolver = new TestResolver(settings, "vps.example.org", null);
+
+        // when
+        ReverseDnsResolver.Result result1 = resolver.resolve("203.0.113.5");
+        ReverseDnsResolver.Result result2 = resolver.resolve("203.0.113.5");
+
+        // then
+        assertThat(result1.getHostName(), equalTo("vps.example.org"));
+        assertThat(result2.getHostName(), equalTo("vps.example.org"));
+        assertThat(resolver.lookups.get(), equalTo(1));
+        assertThat(resolver.getCachedHostNames(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldCacheIpWithoutHostName() {
+        // given
+        given(settings.getProperty(RestrictionSettings.REVERSE_DNS_TIMEOUT)).willReturn(1000);
+        TestResolver resolver = new TestResolver(settings, null, null);
+
+        // when
+        ReverseDnsResolver.Result result1 = resolver.resolve("203.0.113.5");
+        ReverseDnsResolver.Result result2 = resolver.resolve("203.0.113.5");
+
+        // then
+        assertThat(result1, equalTo(ReverseDnsResolver.Result.NO_HOST_NAME));
+        assertThat(result2, equalTo(ReverseDnsResolver.Result.NO_HOST_NAME));
+        assertThat(resolver.lookups.get(), equalTo(1));
+        assertThat(resolver.getCachedIpsWithoutHostName(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldReturnUnknownOnTimeoutAndCacheLateResult() throws InterruptedException {
+        // given
+        given(settings.getProperty(RestrictionSettings.REVERSE_DNS_TIMEOUT)).willReturn(50);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+        TestResolver resolver = new TestResolver(settings, "slow.example.org", releaseLookup);
+
+        // when
+        ReverseDnsResolver.Result result = resolver.resolve("198.51.100.7");
+
+        // then
+        assertThat(result.isUnknown(), equalTo(true));
+        assertThat(result.getHostName(), nullValue());
+        assertThat(resolver.getTimeoutCount(), equalTo(1L));
+
+        // when
+        releaseLookup.countDown();
+        while (resolver.getPendingLookups() > 0) {
+            Thread.sleep(5);
+        }
+        ReverseDnsResolver.Result lateResult = resolver.resolve("198.51.100.7");
+
+        // then
+        assertThat(lateResult.getHostName(), equalTo("slow.example.org"));
+        assertThat(resolver.lookups.get(), equalTo(1));
+    }
+
+    @Test
+    public void shouldShareConcurrentLookupsOfSameIp() throws Exception {
+        // given
+        given(settings.getProperty(RestrictionSettings.REVERSE_DNS_TIMEOUT)).willReturn(5000);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+        TestResolver resolver = new TestResolver(settings, "shared.example.org", releaseLookup);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try {
+            // when
+            Future<ReverseDnsResolver.Result> result1 = executor.submit(() -> resolver.resolve("192.0.2.1"));
+            Future<ReverseDnsResolver.Result> result2 = executor.submit(() -> resolver.resolve("192.0.2.1"));
+            Future<ReverseDnsResolver.Result> result3 = executor.submit(() -> resolver.resolve("192.0.2.1"));
+            while (resolver.lookups.get() == 0) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(50);
+            releaseLookup.countDown();
+
+            // then
+            assertThat(result1.get().getHostName(), equalTo("shared.example.org"));
+            assertThat(result2.get().getHostName(), equalTo("shared.example.org"));
+            assertThat(result3.get().getHostName(), equalTo("shared.example.org"));
+            assertThat(resolver.lookups.get(), equalTo(1));
+            assertThat(resolver.getLookupCount(), equalTo(1L));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolver which returns a fixed host name instead of performing DNS lookups.
+     */
+    private static final class TestResolver extends ReverseDnsResolver {
+
+        private final String hostName;
+        private final CountDownLatch releaseLookup;
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        TestResolver(Settings settings, String hostName, CountDownLatch releaseLookup) {
+            super(settings);
+            this.hostName = hostName;
+            this.releaseLookup = releaseLookup;
+            reload();
+        }
+
+        @Override
+        String lookUpHostName(String ip) {
+            lookups.incrementAndGet();
+            if (releaseLookup != null) {
+                try {
+                    releaseLookup.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return hostName;
+        }
+    }
+}
@@ -75,7 +75,7 @@ public class SessionServiceTest {
         String name = "Bobby";
         Player player = mock(Player.class);
         given(player.getName()).willReturn(name);
-        given(dataSource.hasSession(name)).willReturn(false);
+        given(dataSource.consumeSession(name)).willReturn(null);
 
         // when
         boolean result = sessionService.canResumeSession(player);
@@ -83,7 +83,7 @@ public class SessionServiceTest {
         // then
         assertThat(result, equalTo(false));
         verify(commonService, only()).getProperty(PluginSettings.SESSIONS_ENABLED);
-        verify(dataSource, only()).hasSession(name);
+        verify(dataSource, only()).consumeSession(name);
     }
 
     @Test
@@ -93,12 +93,11 @@ public class SessionServiceTest {
         String ip = "127.3.12.15";
         Player player = mockPlayerWithNameAndIp(name, ip);
         given(commonService.getProperty(PluginSettings.SESSIONS_TIMEOUT)).willReturn(8);
-        given(dataSource.hasSession(name)).willReturn(true);
         PlayerAuth auth = PlayerAuth.builder()
             .name(name)
             .lastLogin(System.currentTimeMillis() - 10 * 60 * 1000)
             .lastIp(ip).build();
-        given(dataSource.getAuth(name)).willReturn(auth);
+        given(dataSource.consumeSession(name)).willReturn(auth);
 
         // when
         boolean result = sessionService.canResumeSession(player);
@@ -106,9 +105,7 @@ public class SessionServiceTest {
         // then
         assertThat(result, equalTo(false));
         verify(commonService).getProperty(PluginSettings.SESSIONS_ENABLED);
-        verify(dataSource).hasSession(name);
-        verify(dataSource).setUnlogged(name);
-        verify(dataSource).revokeSession(name);
+        verify(dataSource, only()).consumeSession(name);
     }
 
     @Test
@@ -118,12 +115,11 @@ public class SessionServiceTest {
         String ip = "127.3.12.15";
         Player player = mockPlayerWithNameAndIp(name, ip);
         given(commonService.getProperty(PluginSettings.SESSIONS_TIMEOUT)).willReturn(8);
-        given(dataSource.hasSession(name)).willReturn(true);
         PlayerAuth auth = PlayerAuth.builder()
             .name(name)
             .lastLogin(null)
             .lastIp(ip).build();
-        given(dataSource.getAuth(name)).willReturn(auth);
+        given(dataSource.consumeSession(name)).willReturn(auth);
 
         // when
         boolean result = sessionService.canResumeSession(player);
@@ -131,9 +127,7 @@ public class SessionServiceTest {
         // then
         assertThat(result, equalTo(false));
         verify(commonService).getProperty(PluginSettings.SESSIONS_ENABLED);
-        verify(dataSource).hasSession(name);
-        verify(dataSource).setUnlogged(name);
-        verify(dataSource).revokeSession(name);
+        verify(dataSource, only()).consumeSession(name);
     }
 
     @Test
@@ -142,13 +136,12 @@ public class SessionServiceTest {
         String name = "Bobby";
         String ip = "127.3.12.15";
         Player player = mockPlayerWithNameAndIp(name, ip);
-        given(dataSource.hasSession(name)).willReturn(true);
         given(commonService.getProperty(PluginSettings.SESSIONS_TIMEOUT)).willReturn(8);
         PlayerAuth auth = PlayerAuth.builder()
             .name(name)
             .lastLogin(System.currentTimeMillis() - 7 * 60 * 1000)
             .lastIp("8.8.8.8").build();
-        given(dataSource.getAuth(name)).willReturn(auth);
+        given(dataSource.consumeSession(name)).willReturn(auth);
 
         // when
         boolean result = sessionService.canResumeSession(player);
@@ -157,9 +150,7 @@ public class SessionServiceTest {
         assertThat(result, equalTo(false));
         verify(commonService).getProperty(PluginSettings.SESSIONS_ENABLED);
         verify(commonService).send(player, MessageKey.SESSION_EXPIRED);
-        verify(dataSource).hasSession(name);
-        verify(dataSource).setUnlogged(name);
-        verify(dataSource).revokeSession(name);
+        verify(dataSource, only()).consumeSession(name);
     }
 
     @Test
@@ -169,12 +160,11 @@ public class SessionServiceTest {
         String ip = "127.3.12.15";
         Player player = mockPlayerWithNameAndIp(name, ip);
         given(commonService.getProperty(PluginSettings.SESSIONS_TIMEOUT)).willReturn(8);
-        given(dataSource.hasSession(name)).willReturn(true);
         PlayerAuth auth = PlayerAuth.builder()
             .name(name)
             .lastLogin(System.currentTimeMillis() - 7 * 60 * 1000)
             .lastIp(ip).build();
-        given(dataSource.getAuth(name)).willReturn(auth);
+        given(dataSource.consumeSession(name)).willReturn(auth);
         RestoreSessionEvent event = spy(new RestoreSessionEvent(player, false));
         given(bukkitService.createAndCallEvent(any(Function.class))).willReturn(event);
 
@@ -186,44 +176,21 @@ public class SessionServiceTest {
         verify(commonService).getProperty(PluginSettings.SESSIONS_ENABLED);
         verify(commonService).getProperty(PluginSettings.SESSIONS_TIMEOUT);
         verifyNoMoreInteractions(commonService);
-        verify(dataSource).hasSession(name);
-        verify(dataSource).setUnlogged(name);
-        verify(dataSource).revokeSession(name);
+        verify(dataSource, only()).consumeSession(name);
         verify(event).isCancelled();
     }
 
-    @Test
-    public void shouldHandleNullPlayerAuth() {
-        // given
-        String name = "Bobby";
-        Player player = mockPlayerWithNameAndIp(name, "127.3.12.15");
-        given(dataSource.hasSession(name)).willReturn(true);
-        given(dataSource.getAuth(name)).willReturn(null);
-
-        // when
-        boolean result = sessionService.canResumeSession(player);
-
-        // then
-        assertThat(result, equalTo(false));
-        verify(commonService).getProperty(PluginSettings.SESSIONS_ENABLED);
-        verify(dataSource).hasSession(name);
-        verify(dataSource).setUnlogged(name);
-        verify(dataSource).revokeSession(name);
-        verify(dataSource).getAuth(name);
-    }
-
     @Test
     public void shouldHandlePlayerAuthWithNullLastIp() {
         // given
         String name = "Charles";
         Player player = mockPlayerWithNameAndIp(name, "144.117.118.145");
-        given(dataSource.hasSession(name)).willReturn(true);
         given(commonService.getProperty(PluginSettings.SESSIONS_TIMEOUT)).willReturn(8);
         PlayerAuth auth = PlayerAuth.builder()
             .name(name)
             .lastIp(null)
             .lastLogin(System.currentTimeMillis()).build();
-        given(dataSource.getAuth(name)).willReturn(auth);
+        given(dataSource.consumeSession(name)).willReturn(auth);
 
         // when
         boolean result = sessionService.canResumeSession(player);
@@ -231,10 +198,7 @@ public class SessionServiceTest {
         // then
         assertThat(result, equalTo(false));
         verify(commonService).getProperty(PluginSettings.SESSIONS_ENABLED);
-        verify(dataSource).hasSession(name);
-        verify(dataSource).setUnlogged(name);
-        verify(dataSource).revokeSession(name);
-        verify(dataSource).getAuth(name);
+        verify(dataSource, only()).consumeSession(name);
     }
 
     private static Player mockPlayerWithNameAndIp(String name, String ip) {
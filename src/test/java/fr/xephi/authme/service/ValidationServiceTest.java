@@ -284,6 +284,50 @@ public class ValidationServiceTest {
         verifyNoInteractions(geoIpService);
     }
 
+    @Test
+    public void shouldNotLookUpAsnIfAsnListsAreEmpty() {
+        // given
+        given(settings.getProperty(ProtectionSettings.ASN_WHITELIST)).willReturn(Collections.emptyList());
+        given(settings.getProperty(ProtectionSettings.ASN_BLACKLIST)).willReturn(Collections.emptyList());
+
+        // when
+        boolean result = validationService.isAsnAdmitted("addr");
+
+        // then
+        assertThat(result, equalTo(true));
+        verifyNoInteractions(geoIpService);
+    }
+
+    @Test
+    public void shouldRejectAsnInBlacklist() {
+        // given
+        given(settings.getProperty(ProtectionSettings.ASN_WHITELIST)).willReturn(Collections.emptyList());
+        given(settings.getProperty(ProtectionSettings.ASN_BLACKLIST)).willReturn(asList("AS16276", "as14061"));
+        given(geoIpService.getAsn("5.5.5.5")).willReturn(14061L);
+        given(geoIpService.getAsn("6.6.6.6")).willReturn(3320L);
+
+        // when
+        boolean result1 = validationService.isAsnAdmitted("5.5.5.5");
+        boolean result2 = validationService.isAsnAdmitted("6.6.6.6");
+
+        // then
+        assertThat(result1, equalTo(false));
+        assertThat(result2, equalTo(true));
+    }
+
+    @Test
+    public void shouldAdmitAnyAsnIfAsnDatabaseIsUnavailable() {
+        // given
+        given(settings.getProperty(ProtectionSettings.ASN_WHITELIST)).willReturn(asList("AS3320"));
+        given(geoIpService.getAsn("5.5.5.5")).willReturn(-1L);
+
+        // when
+        boolean result = validationService.isAsnAdmitted("5.5.5.5");
+
+        // then
+        assertThat(result, equalTo(true));
+    }
+
     @Test
     public void shouldAcceptCountryInWhitelist() {
         // given
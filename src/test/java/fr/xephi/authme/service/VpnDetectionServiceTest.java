@@ -0,0 +1,156 @@
+package fr.xephi.authme.service;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.RestrictionSettings;
+import fr.xephi.authme.util.CidrRangeSet;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static fr.xephi.authme.ReflectionTestUtils.setField;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Test for {@link VpnDetectionService}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class VpnDetectionServiceTest {
+
+    private VpnDetectionService vpnDetectionService;
+    private File dataFolder;
+
+    @Mock
+    private Settings settings;
+
+    @Mock
+    private VpnRangeFileLoader vpnRangeFileLoader;
+
+    @Mock
+    private ReverseDnsResolver reverseDnsResolver;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void initService() throws IOException {
+        dataFolder = temporaryFolder.newFolder();
+        given(settings.getProperty(RestrictionSettings.CUSTOM_VPN_RANGES))
+            .willReturn(Collections.singleton("198.51.100.0/24"));
+        given(settings.getProperty(RestrictionSettings.VPN_WHITELIST))
+            .willReturn(Collections.singleton("185.220.101.7"));
+        given(settings.getProperty(RestrictionSettings.VPN_CACHE_MAX_SIZE)).willReturn(100);
+        given(settings.getProperty(RestrictionSettings.ENABLE_VPN_CACHE_PERSISTENCE)).willReturn(true);
+        given(vpnRangeFileLoader.getRanges()).willReturn(CidrRangeSet.empty());
+        vpnDetectionService = createService();
+    }
+
+    @Test
+    public void shouldDetectVpnRangesAndReportMatchedList() {
+        // given
+        given(settings.getProperty(RestrictionSettings.ENABLE_VPN_DETECTION)).willReturn(true);
+        given(settings.getProperty(RestrictionSettings.ENABLE_DNS_VPN_DETECTION)).willReturn(true);
+
+        // when / then
+        assertThat(vpnDetectionService.isVpnOrProxy("185.220.101.5"), equalTo(true));
+        assertThat(vpnDetectionService.isVpnOrProxy("185.220.101.7"), equalTo(false));
+        assertThat(vpnDetectionService.getVpnDetectionInfo("185.220.101.5"), equalTo("Detected in known VPN ranges"));
+        assertThat(vpnDetectionService.getVpnDetectionInfo("185.220.101.7"), equalTo("IP is whitelisted"));
+        assertThat(vpnDetectionService.getVpnDetectionInfo("198.51.100.40"), equalTo("Detected in custom VPN ranges"));
+        assertThat(vpnDetectionService.getVpnDetectionInfo("8.8.8.8"), equalTo("Detected in DNS VPN service ranges"));
+    }
+
+    @Test
+    public void shouldSaveAndLoadCachedResults() {
+        // given
+        given(settings.getProperty(RestrictionSettings.ENABLE_VPN_DETECTION)).willReturn(true);
+        given(settings.getProperty(RestrictionSettings.ENABLE_DNS_VPN_DETECTION)).willReturn(false);
+        given(settings.getProperty(RestrictionSettings.ENABLE_ADVANCED_VPN_DETECTION)).willReturn(false);
+        vpnDetectionService.isVpnOrProxy("185.220.101.5");
+        vpnDetectionService.isVpnOrProxy("203.0.113.9");
+        vpnDetectionService.isVpnOrProxy("2001:db8:0:0:0:0:0:1");
+
+        // when
+        vpnDetectionService.performCleanup();
+        VpnDetectionService restartedService = createService();
+
+        // then
+        assertThat(new File(dataFolder, "vpn_cache.dat").exists(), equalTo(true));
+        assertThat(restartedService.getCachedResultCount(), equalTo(3L));
+        assertThat(restartedService.isVpnOrProxy("185.220.101.5"), equalTo(true));
+        assertThat(restartedService.isVpnOrProxy("203.0.113.9"), equalTo(false));
+    }
+
+    @Test
+    public void shouldBoundNumberOfCachedResults() {
+        // given
+        given(settings.getProperty(RestrictionSettings.VPN_CACHE_MAX_SIZE)).willReturn(2);
+        given(settings.getProperty(RestrictionSettings.ENABLE_VPN_CACHE_PERSISTENCE)).willReturn(false);
+        given(settings.getProperty(RestrictionSettings.ENABLE_VPN_DETECTION)).willReturn(true);
+        given(settings.getProperty(RestrictionSettings.ENABLE_DNS_VPN_DETECTION)).willReturn(false);
+        given(settings.getProperty(RestrictionSettings.ENABLE_ADVANCED_VPN_DETECTION)).willReturn(false);
+        vpnDetectionService.reload();
+
+        // when
+        for (int i = 1; i <= 10; ++i) {
+            vpnDetectionService.isVpnOrProxy("203.0.113." + i);
+        }
+        vpnDetectionService.performCleanup();
+
+        // then
+        assertThat(vpnDetectionService.getCachedResultCount() <= 2, equalTo(true));
+    }
+
+    @Test
+    public void shouldKeepCachedResultsOnReload() {
+        // given
+        given(settings.getProperty(RestrictionSettings.ENABLE_VPN_CACHE_PERSISTENCE)).willReturn(false);
+        given(settings.getProperty(RestrictionSettings.ENABLE_VPN_DETECTION)).willReturn(true);
+        given(settings.getProperty(RestrictionSettings.ENABLE_DNS_VPN_DETECTION)).willReturn(false);
+        given(settings.getProperty(RestrictionSettings.ENABLE_ADVANCED_VPN_DETECTION)).willReturn(false);
+        vpnDetectionService.isVpnOrProxy("185.220.101.5");
+        vpnDetectionService.isVpnOrProxy("203.0.113.9");
+
+        // when
+        vpnDetectionService.reload();
+        long countAfterReload = vpnDetectionService.getCachedResultCount();
+        given(settings.getProperty(RestrictionSettings.VPN_CACHE_MAX_SIZE)).willReturn(50);
+        vpnDetectionService.reload();
+        long countAfterResize = vpnDetectionService.getCachedResultCount();
+        given(settings.getProperty(RestrictionSettings.CUSTOM_VPN_RANGES))
+            .willReturn(Collections.singleton("203.0.113.0/24"));
+        vpnDetectionService.reload();
+
+        // then
+        assertThat(countAfterReload, equalTo(2L));
+        assertThat(countAfterResize, equalTo(2L));
+        assertThat(vpnDetectionService.getCachedResultCount(), equalTo(0L));
+        assertThat(vpnDetectionService.isVpnOrProxy("203.0.113.9"), equalTo(true));
+    }
+
+    private VpnDetectionService createService() {
+        VpnDetectionService service = new VpnDetectionService();
+        setField(service, "settings", settings);
+        setField(service, "vpnRangeFileLoader", vpnRangeFileLoader);
+        setField(service, "reverseDnsResolver", reverseDnsResolver);
+        setField(service, "dataFolder", dataFolder);
+        service.reload();
+        return service;
+    }
+}
@@ -0,0 +1,153 @@
+package fr.xephi.authme.service;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.RestrictionSettings;
+import fr.xephi.authme.util.CidrRangeSet;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static fr.xephi.authme.service.BukkitServiceTestHelper.setBukkitServiceToRunTaskAsynchronously;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Test for {@link VpnRangeFileLoader}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class VpnRangeFileLoaderTest {
+
+    private VpnRangeFileLoader loader;
+    private File dataFolder;
+
+    @Mock
+    private Settings settings;
+
+    @Mock
+    private BukkitService bukkitService;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Before
+    public void initLoader() throws IOException {
+        dataFolder = temporaryFolder.newFolder();
+        loader = new VpnRangeFileLoader(dataFolder, settings, bukkitService);
+    }
+
+    @Test
+    public void shouldLoadRangeFiles() throws IOException {
+        // given
+        File folder = new File(dataFolder, VpnRangeFileLoader.FOLDER_NAME);
+        folder.mkdirs();
+        Files.write(new File(folder, "vpn.txt").toPath(), Arrays.asList(
+            "# VPN ranges", "104.16.0.0/12", "", "2001:db8::/32", "not a range"), StandardCharsets.UTF_8);
+        Files.write(new File(folder, "tor-exits.txt").toPath(), Arrays.asList(
+            "ExitNode 0011BD2485AD45D984EC4159C88FC066E5E3300E",
+            "Published 2024-01-01 10:00:00",
+            "LastStatus 2024-01-01 11:00:00",
+            "ExitAddress 185.220.101.5 2024-01-01 11:32:46"), StandardCharsets.UTF_8);
+        Files.write(new File(folder, "asn.csv").toPath(), Arrays.asList(
+            "network,autonomous_system_number,autonomous_system_organization",
+            "\"45.76.0.0/15\",20473,\"AS-CHOOPA\"",
+            "5.8.0.0,5.8.0.255,29802"), StandardCharsets.UTF_8);
+        given(settings.getProperty(RestrictionSettings.ENABLE_VPN_RANGE_FILES)).willReturn(true);
+        setBukkitServiceToRunTaskAsynchronously(bukkitService);
+
+        // when
+        loader.reload();
+
+        // then
+        CidrRangeSet ranges = loader.getRanges();
+        assertThat(ranges.getRangeCount(), equalTo(5));
+        assertThat(ranges.contains("104.20.1.1"), equalTo(true));
+        assertThat(ranges.contains("2001:db8::42"), equalTo(true));
+        assertThat(ranges.contains("185.220.101.5"), equalTo(true));
+        assertThat(ranges.contains("45.77.255.1"), equalTo(true));
+        assertThat(ranges.contains("5.8.0.128"), equalTo(true));
+        assertThat(ranges.contains("5.8.1.0"), equalTo(false));
+        assertThat(loader.getLastLoad().getFileCount(), equalTo(3));
+        assertThat(loader.getLastLoad().getInvalidLines(), equalTo(1));
+        verify(bukkitService).runTaskTimerAsynchronously(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldLoadFilesAsynchronously() throws IOException {
+        // given
+        File folder = new File(dataFolder, VpnRangeFileLoader.FOLDER_NAME);
+        folder.mkdirs();
+        Files.write(new File(folder, "vpn.txt").toPath(), Arrays.asList("104.16.0.0/12"), StandardCharsets.UTF_8);
+        given(settings.getProperty(RestrictionSettings.ENABLE_VPN_RANGE_FILES)).willReturn(true);
+
+        // when
+        loader.reload();
+
+        // then
+        assertThat(loader.getRanges().getRangeCount(), equalTo(0));
+        ArgumentCaptor<Runnable> loadCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(bukkitService).runTaskAsynchronously(loadCaptor.capture());
+        loadCaptor.getValue().run();
+        assertThat(loader.getRanges().getRangeCount(), equalTo(1));
+    }
+
+    @Test
+    public void shouldDiscardLoadStartedBeforeReload() throws IOException {
+        // given
+        File folder = new File(dataFolder, VpnRangeFileLoader.FOLDER_NAME);
+        folder.mkdirs();
+        Files.write(new File(folder, "vpn.txt").toPath(), Arrays.asList("104.16.0.0/12"), StandardCharsets.UTF_8);
+        given(settings.getProperty(RestrictionSettings.ENABLE_VPN_RANGE_FILES)).willReturn(true, false);
+        loader.reload();
+        ArgumentCaptor<Runnable> loadCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(bukkitService).runTaskAsynchronously(loadCaptor.capture());
+
+        // when
+        loader.reload();
+        loadCaptor.getValue().run();
+
+        // then
+        assertThat(loader.getRanges().getRangeCount(), equalTo(0));
+        assertThat(loader.getLastLoad(), nullValue());
+    }
+
+    @Test
+    public void shouldNotLoadFilesIfDisabled() throws IOException {
+        // given
+        File folder = new File(dataFolder, VpnRangeFileLoader.FOLDER_NAME);
+        folder.mkdirs();
+        Files.write(new File(folder, "vpn.txt").toPath(), Arrays.asList("104.16.0.0/12"), StandardCharsets.UTF_8);
+        given(settings.getProperty(RestrictionSettings.ENABLE_VPN_RANGE_FILES)).willReturn(false);
+
+        // when
+        loader.reload();
+
+        // then
+        assertThat(loader.getRanges().getRangeCount(), equalTo(0));
+        assertThat(loader.getLastLoad(), nullValue());
+        verifyNoInteractions(bukkitService);
+    }
+}
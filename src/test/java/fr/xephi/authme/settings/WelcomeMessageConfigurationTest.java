@@ -4,11 +4,11 @@ import ch.jalu.injector.testing.BeforeInjecting;
 import ch.jalu.injector.testing.DelayedInjectionRunner;
 import ch.jalu.injector.testing.InjectDelayed;
 import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.data.OnlinePlayerIpIndex;
 import fr.xephi.authme.data.auth.PlayerCache;
 import fr.xephi.authme.initialization.DataFolder;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.service.CommonService;
-import fr.xephi.authme.service.GeoIpService;
 import fr.xephi.authme.settings.properties.PluginSettings;
 import fr.xephi.authme.settings.properties.RegistrationSettings;
 import org.bukkit.Server;
@@ -47,7 +47,7 @@ public class WelcomeMessageConfigurationTest {
     @Mock
     private BukkitService bukkitService;
     @Mock
-    private GeoIpService geoIpService;
+    private OnlinePlayerIpIndex onlinePlayerIpIndex;
     @Mock
     private PlayerCache playerCache;
     @Mock
@@ -81,7 +81,7 @@ public class WelcomeMessageConfigurationTest {
         // then
         assertThat(result, hasSize(2));
         assertThat(result, contains(welcomeMessage.split("\\n")));
-        verifyNoInteractions(player, playerCache, geoIpService, bukkitService, server);
+        verifyNoInteractions(player, playerCache, onlinePlayerIpIndex, bukkitService, server);
     }
 
     @Test
@@ -93,7 +93,7 @@ public class WelcomeMessageConfigurationTest {
         Player player = mock(Player.class);
         given(player.getName()).willReturn("Bobby");
         TestHelper.mockIpAddressToPlayer(player, "123.45.66.77");
-        given(geoIpService.getCountryName("123.45.66.77")).willReturn("Syldavia");
+        given(onlinePlayerIpIndex.getCountryName(player)).willReturn("Syldavia");
         given(service.getProperty(PluginSettings.SERVER_NAME)).willReturn("CrazyServer");
 
         // when
@@ -2,9 +2,9 @@ package fr.xephi.authme.settings.commandconfig;
 
 import com.google.common.io.Files;
 import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.data.OnlinePlayerIpIndex;
 import fr.xephi.authme.service.BukkitService;
 import fr.xephi.authme.service.BukkitServiceTestHelper;
-import fr.xephi.authme.service.GeoIpService;
 import fr.xephi.authme.settings.SettingsMigrationService;
 import org.bukkit.entity.Player;
 import org.junit.Before;
@@ -48,7 +48,7 @@ public class CommandManagerTest {
     @Mock
     private BukkitService bukkitService;
     @Mock
-    private GeoIpService geoIpService;
+    private OnlinePlayerIpIndex onlinePlayerIpIndex;
     @Mock
     private SettingsMigrationService settingsMigrationService;
 
@@ -80,7 +80,7 @@ public class CommandManagerTest {
         verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq(60L));
         verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq(120L));
         verifyNoMoreInteractions(bukkitService);
-        verifyNoInteractions(geoIpService);
+        verifyNoInteractions(onlinePlayerIpIndex);
     }
 
     @Test
@@ -101,7 +101,7 @@ public class CommandManagerTest {
         verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq(120L));
         verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq(180L));
         verifyNoMoreInteractions(bukkitService);
-        verifyNoInteractions(geoIpService);
+        verifyNoInteractions(onlinePlayerIpIndex);
     }
 
     @Test
@@ -124,7 +124,7 @@ public class CommandManagerTest {
         verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq(180L));
         verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq(240L));
         verifyNoMoreInteractions(bukkitService);
-        verifyNoInteractions(geoIpService);
+        verifyNoInteractions(onlinePlayerIpIndex);
     }
 
     @Test
@@ -145,7 +145,7 @@ public class CommandManagerTest {
         verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq(120L));
         verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq(180L));
         verifyNoMoreInteractions(bukkitService);
-        verifyNoInteractions(geoIpService);
+        verifyNoInteractions(onlinePlayerIpIndex);
     }
 
     @Test
@@ -163,7 +163,7 @@ public class CommandManagerTest {
         verify(bukkitService).dispatchCommand(any(Player.class), eq("list"));
         verify(bukkitService).scheduleSyncDelayedTask(any(Runnable.class), eq(100L));
         verifyNoMoreInteractions(bukkitService);
-        verifyNoInteractions(geoIpService);
+        verifyNoInteractions(onlinePlayerIpIndex);
     }
 
     @Test
@@ -178,7 +178,7 @@ public class CommandManagerTest {
         // then
         verify(bukkitService).dispatchConsoleCommand("msg Bobby Session login!");
         verifyNoMoreInteractions(bukkitService);
-        verifyNoInteractions(geoIpService);
+        verifyNoInteractions(onlinePlayerIpIndex);
     }
 
     @Test
@@ -193,7 +193,7 @@ public class CommandManagerTest {
         // then
         verify(bukkitService).dispatchConsoleCommand("pay Bobby 30");
         verifyNoMoreInteractions(bukkitService);
-        verifyNoInteractions(geoIpService);
+        verifyNoInteractions(onlinePlayerIpIndex);
     }
 
     @Test
@@ -206,7 +206,7 @@ public class CommandManagerTest {
         manager.runCommandsOnFirstLogin(player, Arrays.asList("u", "wot", "m8"));
 
         // then
-        verifyNoInteractions(bukkitService, geoIpService);
+        verifyNoInteractions(bukkitService, onlinePlayerIpIndex);
     }
 
     @Test
@@ -220,7 +220,7 @@ public class CommandManagerTest {
 
         // then
         verify(bukkitService, only()).dispatchConsoleCommand("broadcast bob has joined");
-        verifyNoInteractions(geoIpService);
+        verifyNoInteractions(onlinePlayerIpIndex);
     }
 
     @Test
@@ -234,7 +234,7 @@ public class CommandManagerTest {
 
         // then
         verify(bukkitService, only()).dispatchConsoleCommand("broadcast Bobby has joined");
-        verifyNoInteractions(geoIpService);
+        verifyNoInteractions(onlinePlayerIpIndex);
     }
 
     @Test
@@ -265,7 +265,7 @@ public class CommandManagerTest {
         // then
         verify(bukkitService).dispatchConsoleCommand("broadcast Bobby (127.0.0.3) logged out");
         verifyNoMoreInteractions(bukkitService);
-        verifyNoInteractions(geoIpService);
+        verifyNoInteractions(onlinePlayerIpIndex);
     }
 
     @Test
@@ -278,7 +278,7 @@ public class CommandManagerTest {
         manager.runCommandsOnRegister(player);
 
         // then
-        verifyNoInteractions(bukkitService, geoIpService);
+        verifyNoInteractions(bukkitService, onlinePlayerIpIndex);
     }
 
     @Test
@@ -295,7 +295,7 @@ public class CommandManagerTest {
     }
 
     private void initManager() {
-        manager = new CommandManager(testFolder, bukkitService, geoIpService, commandMigrationService);
+        manager = new CommandManager(testFolder, bukkitService, onlinePlayerIpIndex, commandMigrationService);
     }
 
     private void copyJarFileAsCommandsYml(String path) {
@@ -314,7 +314,7 @@ public class CommandManagerTest {
         given(player.getDisplayName()).willReturn("bob");
         String ip = "127.0.0.3";
         TestHelper.mockIpAddressToPlayer(player, ip);
-        given(geoIpService.getCountryName(ip)).willReturn("Syldavia");
+        given(onlinePlayerIpIndex.getCountryName(player)).willReturn("Syldavia");
         return player;
     }
 }
@@ -0,0 +1,64 @@
+package fr.xephi.authme.task.purge;
+
+import fr.xephi.authme.TestHelper;
+import fr.xephi.authme.datasource.DataSource;
+import fr.xephi.authme.settings.Settings;
+import fr.xephi.authme.settings.properties.PurgeSettings;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+/**
+ * Test for {@link PurgeExecutor}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PurgeExecutorTest {
+
+    @InjectMocks
+    private PurgeExecutor purgeExecutor;
+
+    @Mock
+    private Settings settings;
+
+    @Mock
+    private DataSource dataSource;
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Test
+    public void shouldDeleteAccountsInChunks() {
+        // given
+        given(settings.getProperty(PurgeSettings.DELETE_CHUNK_SIZE)).willReturn(2);
+        given(settings.getProperty(PurgeSettings.DELETE_CHUNK_PAUSE)).willReturn(0);
+        List<String> names = Arrays.asList("alpha", "bravo", "charlie", "delta", "echo");
+        given(dataSource.purgeRecords(Arrays.asList("alpha", "bravo"))).willReturn(2);
+        given(dataSource.purgeRecords(Arrays.asList("charlie", "delta"))).willReturn(1);
+        given(dataSource.purgeRecords(Collections.singletonList("echo"))).willReturn(1);
+
+        // when
+        int deletedAccounts = purgeExecutor.purgeFromAuthMe(names);
+
+        // then
+        assertThat(deletedAccounts, equalTo(4));
+        verify(dataSource).purgeRecords(Arrays.asList("alpha", "bravo"));
+        verify(dataSource).purgeRecords(Arrays.asList("charlie", "delta"));
+        verify(dataSource).purgeRecords(Collections.singletonList("echo"));
+        verifyNoMoreInteractions(dataSource);
+    }
+}
@@ -0,0 +1,134 @@
+package fr.xephi.authme.util;
+
+import fr.xephi.authme.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link CidrRangeSet}.
+ */
+public class CidrRangeSetTest {
+
+    @BeforeClass
+    public static void initLogger() {
+        TestHelper.setupLogger();
+    }
+
+    @Test
+    public void shouldMatchIpv4Ranges() {
+        // given
+        CidrRangeSet rangeSet = CidrRangeSet.compile(Arrays.asList(
+            "10.0.0.0/8", "192.168.1.0/24", "185.220.101.7/24", "203.0.113.5", "255.255.255.0/24"));
+
+        // when / then
+        assertThat(rangeSet.contains("10.0.0.0"), equalTo(true));
+        assertThat(rangeSet.contains("10.255.255.255"), equalTo(true));
+        assertThat(rangeSet.contains("11.0.0.0"), equalTo(false));
+        assertThat(rangeSet.contains("9.255.255.255"), equalTo(false));
+        assertThat(rangeSet.contains("192.168.1.77"), equalTo(true));
+        assertThat(rangeSet.contains("192.168.2.1"), equalTo(false));
+        assertThat(rangeSet.contains("185.220.101.200"), equalTo(true)); // host bits of the range are ignored
+        assertThat(rangeSet.contains("203.0.113.5"), equalTo(true));
+        assertThat(rangeSet.contains("203.0.113.6"), equalTo(false));
+        assertThat(rangeSet.contains("255.255.255.255"), equalTo(true));
+        assertThat(rangeSet.getRangeCount(), equalTo(5));
+    }
+
+    @Test
+    public void shouldMatchIpv6Ranges() {
+        // given
+        CidrRangeSet rangeSet = CidrRangeSet.compile(Arrays.asList(
+            "2001:db8::/32", "2a02:1234:5678:9abc::/64", "fe80::1/128", "ffff::/16"));
+
+        // when / then
+        assertThat(rangeSet.contains("2001:db8::1"), equalTo(true));
+        assertThat(rangeSet.contains("2001:db8:ffff:ffff:ffff:ffff:ffff:ffff"), equalTo(true));
+        assertThat(rangeSet.contains("2001:db9::"), equalTo(false));
+        assertThat(rangeSet.contains("2a02:1234:5678:9abc:dead:beef:0:1"), equalTo(true));
+        assertThat(rangeSet.contains("2a02:1234:5678:9abd::1"), equalTo(false));
+        assertThat(rangeSet.contains("fe80::1"), equalTo(true));
+        assertThat(rangeSet.contains("fe80::2"), equalTo(false));
+        assertThat(rangeSet.contains("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"), equalTo(true));
+    }
+
+    @Test
+    public void shouldNotMixIpv4AndIpv6() {
+        // given
+        CidrRangeSet rangeSet = CidrRangeSet.compile(Arrays.asList("0.0.0.0/0", "2001:db8::/32"));
+
+        // when / then
+        assertThat(rangeSet.contains("127.0.0.1"), equalTo(true));
+        assertThat(rangeSet.contains("::1"), equalTo(false));
+        assertThat(rangeSet.contains("2001:db8::5"), equalTo(true));
+    }
+
+    @Test
+    public void shouldMergeOverlappingRanges() {
+        // given
+        CidrRangeSet rangeSet = CidrRangeSet.compile(Arrays.asList(
+            "104.16.0.0/12", "104.17.0.0/16", "104.18.0.0/16", "104.32.0.0/16", "104.31.255.0/24"));
+
+        // when / then
+        assertThat(rangeSet.getIntervalCount(), equalTo(2));
+        assertThat(rangeSet.contains("104.16.0.1"), equalTo(true));
+        assertThat(rangeSet.contains("104.17.4.4"), equalTo(true));
+        assertThat(rangeSet.contains("104.31.255.255"), equalTo(true));
+        assertThat(rangeSet.contains("104.32.0.0"), equalTo(true));
+        assertThat(rangeSet.contains("104.33.0.0"), equalTo(false));
+        assertThat(rangeSet.contains("104.15.255.255"), equalTo(false));
+    }
+
+    @Test
+    public void shouldAddRangesFromStartToEnd() {
+        // given
+        CidrRangeSet.Builder builder = CidrRangeSet.builder();
+
+        // when
+        boolean result1 = builder.add("5.8.0.10", "5.8.1.20");
+        boolean result2 = builder.add("2001:db8::10", "2001:db8::20");
+        boolean result3 = builder.add("5.8.1.20", "5.8.0.10");
+        boolean result4 = builder.add("5.8.0.10", "2001:db8::20");
+        CidrRangeSet rangeSet = builder.build();
+
+        // then
+        assertThat(Arrays.asList(result1, result2, result3, result4), contains(true, true, false, false));
+        assertThat(rangeSet.contains("5.8.0.10"), equalTo(true));
+        assertThat(rangeSet.contains("5.8.0.255"), equalTo(true));
+        assertThat(rangeSet.contains("5.8.1.21"), equalTo(false));
+        assertThat(rangeSet.contains("5.8.0.9"), equalTo(false));
+        assertThat(rangeSet.contains("2001:db8::1a"), equalTo(true));
+        assertThat(rangeSet.contains("2001:db8::21"), equalTo(false));
+        assertThat(rangeSet.getMemoryFootprint(), equalTo(8L + 32L));
+    }
+
+    @Test
+    public void shouldSkipInvalidRanges() {
+        // given
+        CidrRangeSet rangeSet = CidrRangeSet.compile(Arrays.asList(
+            "1.2.3.0/33", "bogus/8", "1.2.3.0/x", "host.example.org", "8.8.8.0/24"));
+
+        // when / then
+        assertThat(rangeSet.getRangeCount(), equalTo(1));
+        assertThat(rangeSet.contains("8.8.8.8"), equalTo(true));
+        assertThat(rangeSet.contains("1.2.3.4"), equalTo(false));
+        assertThat(rangeSet.contains("not-an-ip"), equalTo(false));
+    }
+
+    @Test
+    public void shouldHandleEmptySet() {
+        // given
+        CidrRangeSet rangeSet = CidrRangeSet.compile(Collections.emptyList());
+
+        // when / then
+        assertThat(rangeSet.contains("1.1.1.1"), equalTo(false));
+        assertThat(rangeSet.contains("::"), equalTo(false));
+        assertThat(rangeSet.getRangeCount(), equalTo(0));
+    }
+}
@@ -0,0 +1,98 @@
+package fr.xephi.authme.util;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link IpAddress}.
+ */
+public class IpAddressTest {
+
+    @Test
+    public void shouldParseIpv4Address() {
+        // given / when
+        IpAddress address = IpAddress.parse("192.168.10.254");
+
+        // then
+        assertThat(address.isIpv6(), equalTo(false));
+        assertThat(address.getLowBits(), equalTo(0xC0A80AFEL));
+        assertThat(address.getHighBits(), equalTo(0L));
+        assertThat(address.toString(), equalTo("192.168.10.254"));
+    }
+
+    @Test
+    public void shouldParseIpv6Address() {
+        // given / when
+        IpAddress address = IpAddress.parse("2001:DB8:0:0:0:0:0:1");
+
+        // then
+        assertThat(address.isIpv6(), equalTo(true));
+        assertThat(address.getHighBits(), equalTo(0x20010DB800000000L));
+        assertThat(address.getLowBits(), equalTo(1L));
+        assertThat(address.toString(), equalTo("2001:db8::1"));
+        assertThat(address, sameInstance(IpAddress.parse("2001:db8::1")));
+    }
+
+    @Test
+    public void shouldReturnNullForInvalidAddresses() {
+        // given
+        String[] invalidAddresses = {
+            null, "", "1.2.3", "1.2.3.4.5", "1.2.3.256", "1..2.3", "1.2.3.4.", "01.2.3.4", "-1.2.3.4",
+            "host.example.org", "2001:db8::g", ":::"};
+
+        // when / then
+        for (String invalidAddress : invalidAddresses) {
+            assertThat(invalidAddress, IpAddress.parse(invalidAddress), nullValue());
+        }
+    }
+
+    @Test
+    public void shouldTreatIpv4MappedAddressAsIpv4() {
+        // given / when
+        IpAddress address = IpAddress.parse("::ffff:10.20.30.40");
+
+        // then
+        assertThat(address.isIpv6(), equalTo(false));
+        assertThat(address, sameInstance(IpAddress.parse("10.20.30.40")));
+    }
+
+    @Test
+    public void shouldReturnSubnet() {
+        // given / when / then
+        assertThat(IpAddress.parse("85.12.34.56").getSubnet(), equalTo(IpAddress.parse("85.12.34.0")));
+        assertThat(IpAddress.parse("2a02:1234:5678:9abc:dead:beef:0:1").getSubnet(),
+            equalTo(IpAddress.parse("2a02:1234:5678:9abc::")));
+    }
+
+    @Test
+    public void shouldConvertToBytesAndBack() throws Exception {
+        // given
+        String[] addresses = {"0.0.0.0", "255.255.255.255", "127.0.0.1", "::", "fe80::1", "2001:db8:ffff::ff00"};
+
+        // when / then
+        for (String ip : addresses) {
+            IpAddress address = IpAddress.parse(ip);
+            assertThat(IpAddress.fromBytes(address.toBytes()), sameInstance(address));
+            assertThat(address.toInetAddress(), equalTo(InetAddress.getByName(ip)));
+            assertThat(IpAddress.of(InetAddress.getByName(ip)), sameInstance(address));
+        }
+        assertThat(IpAddress.fromBytes(new byte[5]), nullValue());
+    }
+
+    @Test
+    public void shouldInternEqualAddresses() {
+        // given
+        IpAddress address = IpAddress.parse("8.8.4.4");
+
+        // when / then
+        assertThat(IpAddress.ofIpv4(0x08080404), sameInstance(address));
+        assertThat(address.hashCode(), equalTo(IpAddress.parse("8.8.4.4").hashCode()));
+        assertThat(IpAddress.parse("0.0.0.1").equals(IpAddress.parse("::1")), equalTo(false));
+    }
+}
@@ -0,0 +1,115 @@
+package fr.xephi.authme.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link SlidingWindowRateEstimator}.
+ */
+public class SlidingWindowRateEstimatorTest {
+
+    @Test
+    public void shouldCountEventsInWindow() {
+        // given
+        TestEstimator estimator = new TestEstimator(10_000L, 10, 60_000L);
+
+        // when
+        record(estimator, 5);
+        estimator.time += 4_000L;
+        record(estimator, 3);
+
+        // then
+        assertThat(estimator.getWindowCount(), equalTo(8L));
+        estimator.time += 6_000L;
+        assertThat(estimator.getWindowCount(), equalTo(3L));
+        estimator.time += 4_000L;
+        assertThat(estimator.getWindowCount(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldResetBucketsOfPreviousRounds() {
+        // given
+        TestEstimator estimator = new TestEstimator(10_000L, 10, 60_000L);
+        record(estimator, 7);
+
+        // when
+        estimator.time += 10_000L;
+        record(estimator, 2);
+
+        // then
+        assertThat(estimator.getWindowCount(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldLearnBaseline() {
+        // given
+        TestEstimator estimator = new TestEstimator(10_000L, 10, 10_000L);
+
+        // when - one event per bucket, i.e. 10 per window
+        for (int i = 0; i < 100; ++i) {
+            estimator.record();
+            estimator.time += 1_000L;
+        }
+
+        // then
+        assertThat(estimator.getBaseline(), closeTo(10.0, 0.01));
+    }
+
+    @Test
+    public void shouldDecayBaselineWithoutEvents() {
+        // given
+        TestEstimator estimator = new TestEstimator(10_000L, 10, 10_000L);
+        for (int i = 0; i < 100; ++i) {
+            estimator.record();
+            estimator.time += 1_000L;
+        }
+
+        // when
+        estimator.time += 3_600_000L;
+
+        // then
+        assertThat(estimator.getBaseline(), closeTo(0.0, 0.01));
+    }
+
+    @Test
+    public void shouldNotLearnWhileFrozen() {
+        // given
+        TestEstimator estimator = new TestEstimator(10_000L, 10, 10_000L);
+        estimator.setBaselineFrozen(true);
+
+        // when
+        for (int i = 0; i < 100; ++i) {
+            record(estimator, 50);
+            estimator.time += 1_000L;
+        }
+
+        // then
+        assertThat(estimator.getBaseline(), equalTo(0.0));
+        estimator.setBaselineFrozen(false);
+        estimator.time += 1_000L;
+        assertThat(estimator.getBaseline(), equalTo(0.0));
+    }
+
+    private static void record(SlidingWindowRateEstimator estimator, int times) {
+        for (int i = 0; i < times; ++i) {
+            estimator.record();
+        }
+    }
+
+    private static final class TestEstimator extends SlidingWindowRateEstimator {
+
+        private long time = 1_600_000_000_000L;
+
+        TestEstimator(long windowMillis, int bucketCount, long baselineMillis) {
+            super(windowMillis, bucketCount, baselineMillis);
+        }
+
+        @Override
+        long currentTimeMillis() {
+            return time;
+        }
+    }
+}
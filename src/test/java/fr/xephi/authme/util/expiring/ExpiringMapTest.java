@@ -8,6 +8,7 @@ import java.util.concurrent.TimeUnit;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -92,4 +93,76 @@ public class ExpiringMapTest {
         map.removeExpiredEntries();
         assertThat(map.isEmpty(), equalTo(true));
     }
+
+    @Test
+    public void shouldSupportExpirationPerEntry() {
+        // given
+        ExpiringMap<String, Integer> map = new ExpiringMap<>(1, TimeUnit.HOURS);
+
+        // when
+        map.put("default", 1);
+        map.put("expired", 2, -1, TimeUnit.SECONDS);
+        map.put("days", 3, 3, TimeUnit.DAYS);
+        map.put("beyondWheel", 4, 400, TimeUnit.DAYS);
+        map.removeExpiredEntries();
+
+        // then
+        assertThat(map.get("default"), equalTo(1));
+        assertThat(map.get("expired"), nullValue());
+        assertThat(map.get("days"), equalTo(3));
+        assertThat(map.get("beyondWheel"), equalTo(4));
+        assertThat(map.getEntries().keySet(), containsInAnyOrder("default", "days", "beyondWheel"));
+    }
+
+    @Test
+    public void shouldReuseEntryForNewValue() {
+        // given
+        ExpiringMap<String, Integer> map = new ExpiringMap<>(-1, TimeUnit.SECONDS);
+        map.put("test", 1);
+        ExpiringMap.ExpiringEntry<Integer> entry = map.getEntries().get("test");
+
+        // when
+        map.put("test", 2, 5, TimeUnit.MINUTES);
+        map.removeExpiredEntries();
+
+        // then
+        assertThat(map.getEntries().get("test"), sameInstance(entry));
+        assertThat(map.get("test"), equalTo(2));
+    }
+
+    @Test
+    public void shouldRemoveExpiredEntriesOfPastTicks() throws InterruptedException {
+        // given
+        ExpiringMap<Integer, Integer> map = new ExpiringMap<>(1, TimeUnit.MINUTES);
+        map.put(1, 1, 100, TimeUnit.MILLISECONDS);
+        map.put(2, 2, 1100, TimeUnit.MILLISECONDS);
+        map.put(3, 3);
+
+        // when
+        Thread.sleep(1200);
+        map.removeExpiredEntries();
+
+        // then
+        assertThat(map.getEntries().keySet(), containsInAnyOrder(3));
+        map.remove(3);
+        map.removeExpiredEntries();
+        assertThat(map.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void shouldClearEntries() {
+        // given
+        ExpiringMap<String, Integer> map = new ExpiringMap<>(1, TimeUnit.HOURS);
+        map.put("a", 1);
+        map.put("b", 2, 2, TimeUnit.DAYS);
+
+        // when
+        map.clear();
+
+        // then
+        assertThat(map.isEmpty(), equalTo(true));
+        assertThat(map.get("a"), nullValue());
+        map.put("a", 3);
+        assertThat(map.get("a"), equalTo(3));
+    }
 }
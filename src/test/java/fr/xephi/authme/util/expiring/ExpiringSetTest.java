@@ -136,6 +136,23 @@ public class ExpiringSetTest {
         assertIsDuration(expiration, -1, TimeUnit.SECONDS);
     }
 
+    @Test
+    public void shouldSupportExpirationPerEntry() {
+        // given
+        ExpiringSet<String> set = new ExpiringSet<>(10, TimeUnit.MINUTES);
+
+        // when
+        set.add("default");
+        set.add("expired", -5, TimeUnit.SECONDS);
+        set.add("long", 3, TimeUnit.DAYS);
+        set.removeExpiredEntries();
+
+        // then
+        assertThat(set.contains("default"), equalTo(true));
+        assertThat(set.contains("expired"), equalTo(false));
+        assertIsDuration(set.getExpiration("long"), 2, TimeUnit.DAYS);
+    }
+
     private static void assertIsDuration(Duration duration, long expectedDuration, TimeUnit expectedUnit) {
         assertThat(duration.getTimeUnit(), equalTo(expectedUnit));
         assertThat(duration.getDuration(), equalTo(expectedDuration));
@@ -2,6 +2,8 @@ package fr.xephi.authme.util.expiring;
 
 import org.junit.Test;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.equalTo;
@@ -55,9 +57,10 @@ public class TimedCounterTest {
     @Test
     public void shouldSumUpEntries() {
         // given
-        TimedCounter<String> counter = new TimedCounter<>(90, TimeUnit.SECONDS);
-        counter.getEntries().put("expired", new ExpiringMap.ExpiringEntry<>(800, 0));
-        counter.getEntries().put("expired2", new ExpiringMap.ExpiringEntry<>(24, System.currentTimeMillis() - 100));
+        TimedCounter<String> counter = new TimedCounter<>(-100, TimeUnit.MILLISECONDS);
+        counter.put("expired", 800);
+        counter.put("expired2", 24);
+        counter.setExpiration(90, TimeUnit.SECONDS);
         counter.put("other", 10);
         counter.put("Another", 4);
 
@@ -67,4 +70,58 @@ public class TimedCounterTest {
         // then
         assertThat(totals, equalTo(14));
     }
+
+    @Test
+    public void shouldUpdateTotal() {
+        // given
+        TimedCounter<String> counter = new TimedCounter<>(10, TimeUnit.MINUTES);
+        counter.increment("a");
+        counter.increment("a");
+        counter.put("b", 5);
+
+        // when
+        counter.decrement("b");
+        counter.remove("a");
+        counter.increment("c");
+
+        // then
+        assertThat(counter.total(), equalTo(5));
+    }
+
+    @Test
+    public void shouldRemoveExpiredEntries() {
+        // given
+        TimedCounter<String> counter = new TimedCounter<>(-1, TimeUnit.SECONDS);
+        counter.increment("expired");
+        counter.setExpiration(1, TimeUnit.HOURS);
+        counter.increment("valid");
+
+        // when
+        counter.removeExpiredEntries();
+
+        // then
+        assertThat(counter.get("expired"), equalTo(0));
+        assertThat(counter.get("valid"), equalTo(1));
+        counter.remove("valid");
+        assertThat(counter.isEmpty(), equalTo(true));
+        assertThat(counter.total(), equalTo(0));
+    }
+
+    @Test
+    public void shouldNotLoseConcurrentIncrements() throws InterruptedException {
+        // given
+        TimedCounter<String> counter = new TimedCounter<>(10, TimeUnit.MINUTES);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // when
+        for (int i = 0; i < 4000; ++i) {
+            executor.execute(() -> counter.increment("name"));
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // then
+        assertThat(counter.get("name"), equalTo(4000));
+        assertThat(counter.total(), equalTo(4000));
+    }
 }